@@ -0,0 +1,113 @@
+package org.iki.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.iki.model.AttributeSchema;
+import org.iki.model.EventAttributes;
+
+import java.io.IOException;
+
+/**
+ * Jackson module that reads the {@code attributes} object of a transaction event straight into
+ * {@link EventAttributes} slots: numeric values are taken from the parser unboxed and no intermediate map is
+ * built. Attributes not declared in the schema, and null values, are ignored; a value of the wrong JSON type
+ * is rejected.
+ */
+public class EventAttributesModule extends SimpleModule {
+
+    public EventAttributesModule(AttributeSchema schema) {
+        super("EventAttributesModule");
+        addDeserializer(EventAttributes.class, new Deserializer(schema));
+        addSerializer(EventAttributes.class, new Serializer());
+    }
+
+    static final class Deserializer extends StdDeserializer<EventAttributes> {
+
+        private final AttributeSchema schema;
+
+        Deserializer(AttributeSchema schema) {
+            super(EventAttributes.class);
+            this.schema = schema;
+        }
+
+        @Override
+        public EventAttributes deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartObjectToken()) {
+                return (EventAttributes) context.handleUnexpectedToken(EventAttributes.class, parser);
+            }
+            EventAttributes.Builder builder = EventAttributes.builder(schema);
+            for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+                JsonToken token = parser.nextToken();
+                AttributeSchema.Attribute attribute = schema.attribute(name);
+                if (attribute == null || token == JsonToken.VALUE_NULL) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (attribute.type()) {
+                    case STRING -> {
+                        expect(context, attribute, token == JsonToken.VALUE_STRING);
+                        builder.setString(attribute, parser.getText());
+                    }
+                    case INT -> {
+                        expect(context, attribute, token == JsonToken.VALUE_NUMBER_INT);
+                        builder.setLong(attribute, parser.getLongValue());
+                    }
+                    case DOUBLE -> {
+                        expect(context, attribute, token.isNumeric());
+                        builder.setDouble(attribute, parser.getDoubleValue());
+                    }
+                    case BOOL -> {
+                        expect(context, attribute, token.isBoolean());
+                        builder.setBoolean(attribute, token == JsonToken.VALUE_TRUE);
+                    }
+                }
+            }
+            return builder.build();
+        }
+
+        private void expect(DeserializationContext context, AttributeSchema.Attribute attribute, boolean matches)
+                throws IOException {
+            if (!matches) {
+                context.reportInputMismatch(this, "Attribute %s must be of type %s",
+                        attribute.name(), attribute.type());
+            }
+        }
+
+        @Override
+        public EventAttributes getNullValue(DeserializationContext context) {
+            return EventAttributes.NONE;
+        }
+    }
+
+    static final class Serializer extends StdSerializer<EventAttributes> {
+
+        Serializer() {
+            super(EventAttributes.class);
+        }
+
+        @Override
+        public void serialize(EventAttributes attributes, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            for (AttributeSchema.Attribute attribute : attributes.schema().attributes()) {
+                if (!attributes.isPresent(attribute)) {
+                    continue;
+                }
+                generator.writeFieldName(attribute.name());
+                switch (attribute.type()) {
+                    case STRING -> generator.writeString(attributes.getString(attribute));
+                    case INT -> generator.writeNumber(attributes.getLong(attribute));
+                    case DOUBLE -> generator.writeNumber(attributes.getDouble(attribute));
+                    case BOOL -> generator.writeBoolean(attributes.getBoolean(attribute));
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
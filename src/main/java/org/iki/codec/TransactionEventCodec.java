@@ -3,16 +3,32 @@ package org.iki.codec;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.MessageCodec;
 import io.vertx.core.json.JsonObject;
+import org.iki.model.AttributeSchema;
+import org.iki.model.EventAttributes;
 import org.iki.model.TransactionEvent;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
 /**
  * Codec for serializing/deserializing TransactionEvent on the Vert.x Event Bus.
+ * Core fields are written as length-prefixed JSON; attributes follow in binary, in schema order:
+ * a presence bit mask, then each present attribute as a {@code long} (numeric types) or a
+ * length-prefixed UTF-8 string, so decoding fills the attribute slots directly.
  */
 public class TransactionEventCodec implements MessageCodec<TransactionEvent, TransactionEvent> {
 
+    private final AttributeSchema schema;
+
+    public TransactionEventCodec() {
+        this(AttributeSchema.EMPTY);
+    }
+
+    public TransactionEventCodec(AttributeSchema schema) {
+        this.schema = schema;
+    }
+
     @Override
     public void encodeToWire(Buffer buffer, TransactionEvent event) {
         JsonObject json = new JsonObject()
@@ -20,11 +36,38 @@ public class TransactionEventCodec implements MessageCodec<TransactionEvent, Tra
                 .put("creditAccount", event.creditAccount())
                 .put("cin", event.cin())
                 .put("amount", event.amount().toString())
-                .put("transactedTime", event.transactedTime().toString());
+                .put("transactedTime", event.transactedTime().toString())
+                .put("currency", event.currency());
 
-        String encoded = json.encode();
-        buffer.appendInt(encoded.length());
-        buffer.appendString(encoded);
+        byte[] encoded = json.encode().getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(encoded.length);
+        buffer.appendBytes(encoded);
+        encodeAttributes(buffer, event.attributes());
+    }
+
+    private void encodeAttributes(Buffer buffer, EventAttributes attributes) {
+        long present = 0;
+        for (AttributeSchema.Attribute attribute : schema.attributes()) {
+            if (attributes.isPresent(attribute)) {
+                present |= 1L << attribute.ordinal();
+            }
+        }
+        buffer.appendLong(present);
+        for (AttributeSchema.Attribute attribute : schema.attributes()) {
+            if ((present & (1L << attribute.ordinal())) == 0) {
+                continue;
+            }
+            switch (attribute.type()) {
+                case STRING -> {
+                    byte[] value = attributes.getString(attribute).getBytes(StandardCharsets.UTF_8);
+                    buffer.appendInt(value.length);
+                    buffer.appendBytes(value);
+                }
+                case INT -> buffer.appendLong(attributes.getLong(attribute));
+                case DOUBLE -> buffer.appendLong(Double.doubleToRawLongBits(attributes.getDouble(attribute)));
+                case BOOL -> buffer.appendLong(attributes.getBoolean(attribute) ? 1L : 0L);
+            }
+        }
     }
 
     @Override
@@ -38,10 +81,41 @@ public class TransactionEventCodec implements MessageCodec<TransactionEvent, Tra
                 json.getString("creditAccount"),
                 json.getString("cin"),
                 new BigDecimal(json.getString("amount")),
-                Instant.parse(json.getString("transactedTime"))
+                Instant.parse(json.getString("transactedTime")),
+                json.getString("currency"),
+                decodeAttributes(pos + 4 + length, buffer)
         );
     }
 
+    private EventAttributes decodeAttributes(int pos, Buffer buffer) {
+        long present = buffer.getLong(pos);
+        if (present == 0) {
+            return EventAttributes.NONE;
+        }
+        pos += Long.BYTES;
+        EventAttributes.Builder builder = EventAttributes.builder(schema);
+        for (AttributeSchema.Attribute attribute : schema.attributes()) {
+            if ((present & (1L << attribute.ordinal())) == 0) {
+                continue;
+            }
+            if (attribute.type().numeric()) {
+                long bits = buffer.getLong(pos);
+                pos += Long.BYTES;
+                switch (attribute.type()) {
+                    case INT -> builder.setLong(attribute, bits);
+                    case DOUBLE -> builder.setDouble(attribute, Double.longBitsToDouble(bits));
+                    default -> builder.setBoolean(attribute, bits != 0);
+                }
+            } else {
+                int valueLength = buffer.getInt(pos);
+                pos += Integer.BYTES;
+                builder.setString(attribute, buffer.getString(pos, pos + valueLength));
+                pos += valueLength;
+            }
+        }
+        return builder.build();
+    }
+
     @Override
     public TransactionEvent transform(TransactionEvent event) {
         return event;
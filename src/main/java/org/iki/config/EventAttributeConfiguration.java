@@ -0,0 +1,31 @@
+package org.iki.config;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.AttributeSchema;
+import org.jboss.logging.Logger;
+
+import java.util.Optional;
+
+/**
+ * Produces the event {@link AttributeSchema} from {@code app.events.attributes}, a comma-separated list of
+ * {@code name:type} declarations. The schema is shared by JSON ingestion, the event bus codec and the rule engine.
+ */
+@ApplicationScoped
+public class EventAttributeConfiguration {
+
+    private static final Logger LOG = Logger.getLogger(EventAttributeConfiguration.class);
+
+    @ConfigProperty(name = "app.events.attributes")
+    Optional<String> attributes;
+
+    @Produces
+    @Singleton
+    AttributeSchema attributeSchema() {
+        AttributeSchema schema = AttributeSchema.parse(attributes.orElse(""));
+        LOG.infof("Event attribute schema: %d attributes [%s]", schema.size(), schema);
+        return schema;
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import org.iki.codec.TransactionEventCodec;
+import org.iki.model.AttributeSchema;
 import org.iki.model.TransactionEvent;
 import org.jboss.logging.Logger;
 
@@ -21,10 +22,13 @@ public class EventBusConfiguration {
     @Inject
     EventBus eventBus;
 
+    @Inject
+    AttributeSchema attributeSchema;
+
     void onStart(@Observes StartupEvent event) {
         try {
             LOG.info("Registering TransactionEvent codec on Event Bus");
-            eventBus.registerDefaultCodec(TransactionEvent.class, new TransactionEventCodec());
+            eventBus.registerDefaultCodec(TransactionEvent.class, new TransactionEventCodec(attributeSchema));
         } catch (IllegalStateException e) {
             // Codec already registered (happens during hot reload in dev mode)
             LOG.debug("TransactionEvent codec already registered");
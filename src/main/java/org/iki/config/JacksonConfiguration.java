@@ -4,17 +4,24 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import io.quarkus.jackson.ObjectMapperCustomizer;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.iki.codec.EventAttributesModule;
+import org.iki.model.AttributeSchema;
 
 /**
- * Jackson ObjectMapper customization for proper date/time serialization.
+ * Jackson ObjectMapper customization for proper date/time serialization and event attribute slots.
  */
 @Singleton
 public class JacksonConfiguration implements ObjectMapperCustomizer {
 
+    @Inject
+    AttributeSchema attributeSchema;
+
     @Override
     public void customize(ObjectMapper objectMapper) {
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.registerModule(new EventAttributesModule(attributeSchema));
     }
 }
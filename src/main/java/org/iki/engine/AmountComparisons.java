@@ -0,0 +1,106 @@
+package org.iki.engine;
+
+import dev.cel.common.ast.CelConstant;
+import dev.cel.common.ast.CelExpr;
+import org.iki.model.MinorUnits;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Rewrites comparisons between {@code amount} and a decimal literal into exact integer comparisons.
+ * The literal is converted once, at compile time, to a {@code long} at {@link MinorUnits#MAX_SCALE};
+ * at evaluation time the event amount is read from {@link #FLOOR} or {@link #CEILING}, the amount the event
+ * converted to the same scale on construction, rounded down or up. For an integer literal {@code L} and any
+ * amount {@code a}, {@code a >= L} exactly when {@code floor(a) >= L} and {@code a > L} exactly when
+ * {@code ceil(a) > L}, so each operator reads the bound that keeps it exact and the comparison runs on
+ * primitive longs without {@code double} rounding, whatever the number of fraction digits of the amount.
+ * The event amount is not rounded to its currency's scale either, so {@code 1000.004} is above
+ * {@code 1000.0} and a JPY amount of {@code 999.5} is below it. Amounts beyond the range of a {@code long}
+ * saturate, which keeps every comparison with an in-range literal exact.
+ * <p>
+ * The literal is taken as the shortest decimal that round-trips its {@code double} value, which is the
+ * literal as written for any threshold up to 15 significant digits. The parsed expression only holds the
+ * {@code double}, so a longer literal compares as that value; keeping its digits would mean reading them
+ * back from the expression source.
+ */
+final class AmountComparisons {
+
+    /**
+     * Name of the CEL variable holding the event amount at {@link MinorUnits#MAX_SCALE}, rounded down.
+     */
+    static final String FLOOR = "__amountFloor";
+
+    /**
+     * Name of the CEL variable holding the event amount at {@link MinorUnits#MAX_SCALE}, rounded up.
+     */
+    static final String CEILING = "__amountCeiling";
+
+    // Operator with its operands swapped, for literal <op> amount
+    private static final Map<String, String> MIRRORED = Map.of(
+            "_==_", "_==_", "_!=_", "_!=_", "_<_", "_>_", "_<=_", "_>=_", "_>_", "_<_", "_>=_", "_<=_");
+
+    private AmountComparisons() {
+    }
+
+    /**
+     * Returns the integer comparison for {@code amount <op> literal} or {@code literal <op> amount},
+     * or null for any other node or a literal that is not exact at {@link MinorUnits#MAX_SCALE}.
+     */
+    static String substitution(CelExpr expr) {
+        if (expr.exprKind().getKind() != CelExpr.ExprKind.Kind.CALL) {
+            return null;
+        }
+        CelExpr.CelCall call = expr.call();
+        if (!MIRRORED.containsKey(call.function()) || call.args().size() != 2) {
+            return null;
+        }
+        CelExpr left = call.args().get(0);
+        CelExpr right = call.args().get(1);
+        if (isAmount(left)) {
+            String literal = scaledLiteral(right);
+            return literal == null ? null : comparison(call.function(), literal);
+        }
+        if (isAmount(right)) {
+            String literal = scaledLiteral(left);
+            return literal == null ? null : comparison(MIRRORED.get(call.function()), literal);
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code amount <op> literal} on the rounded amounts.
+     */
+    private static String comparison(String function, String literal) {
+        return switch (function) {
+            case "_==_" -> "(" + FLOOR + " == " + literal + " && " + CEILING + " == " + literal + ")";
+            case "_!=_" -> "(" + FLOOR + " != " + literal + " || " + CEILING + " != " + literal + ")";
+            case "_<_", "_>=_" -> FLOOR + " " + CelExprPrinter.binaryOperator(function) + " " + literal;
+            default -> CEILING + " " + CelExprPrinter.binaryOperator(function) + " " + literal;
+        };
+    }
+
+    private static boolean isAmount(CelExpr expr) {
+        return expr.exprKind().getKind() == CelExpr.ExprKind.Kind.IDENT && expr.ident().name().equals("amount");
+    }
+
+    private static String scaledLiteral(CelExpr expr) {
+        if (expr.exprKind().getKind() != CelExpr.ExprKind.Kind.CONSTANT
+                || expr.constant().getKind() != CelConstant.Kind.DOUBLE_VALUE) {
+            return null;
+        }
+        double value = expr.constant().doubleValue();
+        if (!Double.isFinite(value)) {
+            return null;
+        }
+        BigDecimal scaled = new BigDecimal(Double.toString(value)).movePointRight(MinorUnits.MAX_SCALE);
+        try {
+            long units = scaled.longValueExact();
+            // Saturated amounts equal the bounds, so a literal at a bound would compare equal to them
+            return units == Long.MIN_VALUE || units == Long.MAX_VALUE ? null : Long.toString(units);
+        } catch (ArithmeticException e) {
+            // Fraction digits beyond MAX_SCALE or out of range; keep the double comparison
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.iki.engine;
+
+import dev.cel.common.CelFunctionDecl;
+import dev.cel.common.CelOverloadDecl;
+import dev.cel.common.types.SimpleType;
+import dev.cel.runtime.CelFunctionBinding;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.iki.state.CardinalityStore;
+import org.iki.state.WindowDurations;
+
+import java.util.List;
+
+/**
+ * CEL functions over distinct-counterparty sketches.
+ * <ul>
+ *   <li>{@code distinctCounterparties(debitAccount, "24h")} - distinct credit accounts paid (fan-out)</li>
+ *   <li>{@code distinctSenders(creditAccount, "24h")} - distinct debit accounts paying in (fan-in)</li>
+ * </ul>
+ * Constant windows are checked when the rule is compiled; a window longer than the sketches keep is rejected rather
+ * than estimated over a shorter one.
+ */
+@ApplicationScoped
+public class CardinalityFunctions implements RuleFunctionLibrary {
+
+    @Inject
+    CardinalityStore cardinalityStore;
+
+    @Override
+    public List<CelFunctionDecl> functionDeclarations() {
+        return List.of(
+                CelFunctionDecl.newFunctionDeclaration("distinctCounterparties",
+                        CelOverloadDecl.newGlobalOverload("distinctCounterparties_string_string",
+                                SimpleType.INT, SimpleType.STRING, SimpleType.STRING)),
+                CelFunctionDecl.newFunctionDeclaration("distinctSenders",
+                        CelOverloadDecl.newGlobalOverload("distinctSenders_string_string",
+                                SimpleType.INT, SimpleType.STRING, SimpleType.STRING))
+        );
+    }
+
+    @Override
+    public List<CelFunctionBinding> functionBindings() {
+        return List.of(
+                CelFunctionBinding.from("distinctCounterparties_string_string", String.class, String.class,
+                        (account, window) -> cardinalityStore.distinctCounterparties(
+                                account, WindowDurations.toMillis(window))),
+                CelFunctionBinding.from("distinctSenders_string_string", String.class, String.class,
+                        (account, window) -> cardinalityStore.distinctSenders(
+                                account, WindowDurations.toMillis(window)))
+        );
+    }
+
+    @Override
+    public void checkCall(String function, List<String> literals) {
+        String window = literals.get(1);
+        if (window != null && WindowDurations.toMillis(window) > cardinalityStore.maxWindowMillis()) {
+            throw new IllegalArgumentException("Window \"" + window
+                    + "\" is longer than the longest cardinality window of " + cardinalityStore.maxWindowMillis() / 1000
+                    + " s");
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.iki.engine;
+
+import dev.cel.common.ast.CelConstant;
+import dev.cel.common.ast.CelExpr;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Prints a (checked) CEL expression tree back to CEL source.
+ * Used by compile-time rewrites: a rewrite substitutes source for selected nodes and recompiles the result.
+ * Only the subset of CEL produced by plain predicates is supported (constants, identifiers, field selection,
+ * list literals, operators and function calls); anything else, such as comprehensions from macros, raises
+ * {@link UnsupportedExpressionException} so callers can fall back to the original expression.
+ */
+final class CelExprPrinter {
+
+    private static final Map<String, String> BINARY_OPERATORS = Map.ofEntries(
+            Map.entry("_&&_", "&&"),
+            Map.entry("_||_", "||"),
+            Map.entry("_==_", "=="),
+            Map.entry("_!=_", "!="),
+            Map.entry("_<_", "<"),
+            Map.entry("_<=_", "<="),
+            Map.entry("_>_", ">"),
+            Map.entry("_>=_", ">="),
+            Map.entry("_+_", "+"),
+            Map.entry("_-_", "-"),
+            Map.entry("_*_", "*"),
+            Map.entry("_/_", "/"),
+            Map.entry("_%_", "%"),
+            Map.entry("@in", "in")
+    );
+
+    private static final Map<String, String> UNARY_OPERATORS = Map.of(
+            "!_", "!",
+            "-_", "-"
+    );
+
+    private CelExprPrinter() {
+    }
+
+    /**
+     * Thrown when an expression uses a construct the printer does not support.
+     */
+    static final class UnsupportedExpressionException extends RuntimeException {
+        UnsupportedExpressionException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Returns the infix symbol for a binary operator function such as {@code _&&_}, or null.
+     */
+    static String binaryOperator(String function) {
+        return BINARY_OPERATORS.get(function);
+    }
+
+    /**
+     * Returns the prefix symbol for a unary operator function such as {@code !_}, or null.
+     */
+    static String unaryOperator(String function) {
+        return UNARY_OPERATORS.get(function);
+    }
+
+    static String print(CelExpr expr) {
+        return print(expr, e -> null);
+    }
+
+    /**
+     * Prints {@code expr}, replacing any node for which {@code substitution} returns non-null source.
+     */
+    static String print(CelExpr expr, Function<CelExpr, String> substitution) {
+        StringBuilder out = new StringBuilder();
+        append(out, expr, substitution);
+        return out.toString();
+    }
+
+    private static void append(StringBuilder out, CelExpr expr, Function<CelExpr, String> substitution) {
+        String replacement = substitution.apply(expr);
+        if (replacement != null) {
+            out.append(replacement);
+            return;
+        }
+        switch (expr.exprKind().getKind()) {
+            case CONSTANT -> appendConstant(out, expr.constant());
+            case IDENT -> out.append(expr.ident().name());
+            case SELECT -> {
+                CelExpr.CelSelect select = expr.select();
+                if (select.testOnly()) {
+                    out.append("has(");
+                    appendOperand(out, select.operand(), substitution);
+                    out.append('.').append(select.field()).append(')');
+                } else {
+                    appendOperand(out, select.operand(), substitution);
+                    out.append('.').append(select.field());
+                }
+            }
+            case CALL -> appendCall(out, expr.call(), substitution);
+            case LIST -> {
+                List<CelExpr> elements = expr.list().elements();
+                out.append('[');
+                for (int i = 0; i < elements.size(); i++) {
+                    if (i > 0) {
+                        out.append(", ");
+                    }
+                    append(out, elements.get(i), substitution);
+                }
+                out.append(']');
+            }
+            default -> throw new UnsupportedExpressionException(
+                    "Unsupported expression kind: " + expr.exprKind().getKind());
+        }
+    }
+
+    private static void appendCall(StringBuilder out, CelExpr.CelCall call, Function<CelExpr, String> substitution) {
+        String function = call.function();
+        List<CelExpr> args = call.args();
+
+        String binary = BINARY_OPERATORS.get(function);
+        if (binary != null && args.size() == 2) {
+            appendOperand(out, args.get(0), substitution);
+            out.append(' ').append(binary).append(' ');
+            appendOperand(out, args.get(1), substitution);
+            return;
+        }
+        String unary = UNARY_OPERATORS.get(function);
+        if (unary != null && args.size() == 1) {
+            out.append(unary);
+            appendOperand(out, args.get(0), substitution);
+            return;
+        }
+        if (function.equals("_?_:_") && args.size() == 3) {
+            appendOperand(out, args.get(0), substitution);
+            out.append(" ? ");
+            appendOperand(out, args.get(1), substitution);
+            out.append(" : ");
+            appendOperand(out, args.get(2), substitution);
+            return;
+        }
+        if (function.equals("_[_]") && args.size() == 2) {
+            appendOperand(out, args.get(0), substitution);
+            out.append('[');
+            append(out, args.get(1), substitution);
+            out.append(']');
+            return;
+        }
+        if (function.startsWith("_") || function.startsWith("@") || function.startsWith("!")) {
+            throw new UnsupportedExpressionException("Unsupported operator: " + function);
+        }
+
+        if (call.target().isPresent()) {
+            appendOperand(out, call.target().get(), substitution);
+            out.append('.');
+        }
+        out.append(function).append('(');
+        for (int i = 0; i < args.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            append(out, args.get(i), substitution);
+        }
+        out.append(')');
+    }
+
+    /**
+     * Operands of operators and member calls are parenthesized unless they are atomic,
+     * which keeps the printed precedence identical to the tree.
+     */
+    private static void appendOperand(StringBuilder out, CelExpr expr, Function<CelExpr, String> substitution) {
+        if (isAtomic(expr)) {
+            append(out, expr, substitution);
+        } else {
+            out.append('(');
+            append(out, expr, substitution);
+            out.append(')');
+        }
+    }
+
+    private static boolean isAtomic(CelExpr expr) {
+        return switch (expr.exprKind().getKind()) {
+            case IDENT, SELECT, LIST -> true;
+            case CONSTANT -> !isNegativeNumber(expr.constant());
+            case CALL -> {
+                String function = expr.call().function();
+                yield !BINARY_OPERATORS.containsKey(function)
+                        && !UNARY_OPERATORS.containsKey(function)
+                        && !function.equals("_?_:_");
+            }
+            default -> false;
+        };
+    }
+
+    private static boolean isNegativeNumber(CelConstant constant) {
+        return switch (constant.getKind()) {
+            case INT64_VALUE -> constant.int64Value() < 0;
+            case DOUBLE_VALUE -> Double.doubleToRawLongBits(constant.doubleValue()) < 0;
+            default -> false;
+        };
+    }
+
+    private static void appendConstant(StringBuilder out, CelConstant constant) {
+        switch (constant.getKind()) {
+            case NULL_VALUE -> out.append("null");
+            case BOOLEAN_VALUE -> out.append(constant.booleanValue());
+            case INT64_VALUE -> out.append(constant.int64Value());
+            case DOUBLE_VALUE -> {
+                double value = constant.doubleValue();
+                if (Double.isNaN(value) || Double.isInfinite(value)) {
+                    throw new UnsupportedExpressionException("Non-finite double constant");
+                }
+                out.append(value);
+            }
+            case STRING_VALUE -> appendString(out, constant.stringValue());
+            default -> throw new UnsupportedExpressionException("Unsupported constant kind: " + constant.getKind());
+        }
+    }
+
+    static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
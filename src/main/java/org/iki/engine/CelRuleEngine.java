@@ -1,25 +1,62 @@
 package org.iki.engine;
 
+import com.google.re2j.Pattern;
 import dev.cel.common.CelAbstractSyntaxTree;
+import dev.cel.common.CelFunctionDecl;
+import dev.cel.common.CelIssue;
+import dev.cel.common.CelOverloadDecl;
 import dev.cel.common.CelValidationException;
+import dev.cel.common.types.CelType;
+import dev.cel.common.types.ListType;
 import dev.cel.common.types.SimpleType;
 import dev.cel.compiler.CelCompiler;
+import dev.cel.compiler.CelCompilerBuilder;
+import dev.cel.common.ast.CelConstant;
+import dev.cel.common.ast.CelExpr;
+import dev.cel.common.navigation.CelNavigableAst;
+import dev.cel.common.navigation.CelNavigableExpr;
 import dev.cel.compiler.CelCompilerFactory;
 import dev.cel.runtime.CelEvaluationException;
+import dev.cel.runtime.CelFunctionBinding;
 import dev.cel.runtime.CelRuntime;
+import dev.cel.runtime.CelRuntimeBuilder;
 import dev.cel.runtime.CelRuntimeFactory;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.AttributeSchema;
+import org.iki.model.AttributeType;
 import org.iki.model.Rule;
 import org.iki.model.RuleEvaluationResult;
+import org.iki.model.SequenceRule;
 import org.iki.model.TransactionEvent;
+import org.iki.state.ProfileStore;
+import org.iki.state.SequenceStore;
+import org.iki.state.WindowDurations;
 import org.jboss.logging.Logger;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 /**
  * CEL (Common Expression Language) rule engine for evaluating transaction events.
@@ -30,87 +67,822 @@ public class CelRuleEngine {
 
     private static final Logger LOG = Logger.getLogger(CelRuleEngine.class);
 
+    private static final int PARTIAL_CACHE_STRIPES = 16;
+
     private CelCompiler compiler;
     private CelRuntime runtime;
+    // Function name -> library that declared it, for compile-time checks of its calls
+    private Map<String, RuleFunctionLibrary> libraryFunctions = Map.of();
+
+    @Inject
+    Instance<RuleFunctionLibrary> functionLibraries;
+
+    @Inject
+    AttributeSchema attributeSchema;
+
+    @Inject
+    ProfileStore profileStore;
+
+    @Inject
+    SequenceStore sequenceStore;
+
+    @ConfigProperty(name = "app.rules.partial-cache.enabled", defaultValue = "true")
+    boolean partialCacheEnabled;
+
+    @ConfigProperty(name = "app.rules.partial-cache.max-entries", defaultValue = "10000")
+    int partialCacheMaxEntries;
+
+    @ConfigProperty(name = "app.rules.warmup.enabled", defaultValue = "false")
+    boolean warmupEnabled;
+
+    @ConfigProperty(name = "app.rules.warmup.events", defaultValue = "256")
+    int warmupEvents;
+
+    @ConfigProperty(name = "app.rules.warmup.passes", defaultValue = "20")
+    int warmupPasses;
+
+    @ConfigProperty(name = "app.rules.warmup.max-duration", defaultValue = "500ms")
+    Duration warmupMaxDuration;
+
+    @ConfigProperty(name = "app.rules.write.compact-after", defaultValue = "32")
+    int compactAfter;
+
+    @ConfigProperty(name = "app.metrics.rules.enabled", defaultValue = "true")
+    boolean ruleMetricsEnabled;
+
+    @ConfigProperty(name = "app.metrics.rules.sample-every", defaultValue = "64")
+    int ruleTimingSampleEvery;
 
     // Volatile reference for atomic swap during recompilation
-    private volatile Map<Long, CelRuntime.Program> compiledPrograms = new ConcurrentHashMap<>();
+    private volatile RuleSnapshot snapshot = RuleSnapshot.EMPTY;
+    // Snapshot being warmed up; only consulted when a lookup misses the current snapshot
+    private volatile RuleSnapshot warming;
+    private RecentEvents recentEvents;
+    private ExecutorService warmupExecutor;
+    // Programs dropped by single-rule writes since the last full compile; guarded by this
+    private int droppedPrograms;
+    // Events evaluated and events timed while rule metrics are enabled, to scale sampled times up to totals
+    private final LongAdder evaluatedEvents = new LongAdder();
+    private final LongAdder timedEvents = new LongAdder();
 
     @PostConstruct
     void init() {
-        compiler = CelCompilerFactory.standardCelCompilerBuilder()
+        init(functionLibraries);
+    }
+
+    /**
+     * Builds the compiler and runtime with the given function libraries; benchmarks call this directly, without CDI.
+     */
+    void init(Iterable<? extends RuleFunctionLibrary> libraries) {
+        if (ruleMetricsEnabled && ruleTimingSampleEvery < 1) {
+            throw new IllegalArgumentException("app.metrics.rules.sample-every must be positive");
+        }
+        CelCompilerBuilder compilerBuilder = CelCompilerFactory.standardCelCompilerBuilder()
                 .addVar("debitAccount", SimpleType.STRING)
                 .addVar("creditAccount", SimpleType.STRING)
                 .addVar("cin", SimpleType.STRING)
+                .addVar("currency", SimpleType.STRING)
                 .addVar("amount", SimpleType.DOUBLE)
+                .addVar("amountMinor", SimpleType.INT)
+                .addVar(AmountComparisons.FLOOR, SimpleType.INT)
+                .addVar(AmountComparisons.CEILING, SimpleType.INT)
                 .addVar("transactedTimeEpochSeconds", SimpleType.INT)
-                .build();
+                .addVar(EventVariables.PROFILE_TX_COUNT, SimpleType.INT)
+                .addVar(EventVariables.PROFILE_AVG_AMOUNT, SimpleType.DOUBLE)
+                .addVar(EventVariables.PROFILE_LAST_TX, SimpleType.INT)
+                .addVar(EventVariables.PROFILE_KNOWN_COUNTERPARTY, SimpleType.BOOL)
+                .addVar(StringMatchIndex.MATCHES_VARIABLE, ListType.create(SimpleType.BOOL))
+                .addFunctionDeclarations(CelFunctionDecl.newFunctionDeclaration(LinearRegex.FUNCTION,
+                        CelOverloadDecl.newGlobalOverload(LinearRegex.FUNCTION + "_string_string",
+                                SimpleType.BOOL, SimpleType.STRING, SimpleType.STRING)))
+                .addFunctionDeclarations(CelFunctionDecl.newFunctionDeclaration(PartialExpression.FUNCTION,
+                        CelOverloadDecl.newGlobalOverload(PartialExpression.FUNCTION + "_string_string",
+                                SimpleType.BOOL, SimpleType.STRING, SimpleType.STRING)));
+        CelRuntimeBuilder runtimeBuilder = CelRuntimeFactory.standardCelRuntimeBuilder()
+                .addFunctionBindings(CelFunctionBinding.from(LinearRegex.FUNCTION + "_string_string",
+                        String.class, String.class, this::matchesLinear))
+                .addFunctionBindings(CelFunctionBinding.from(PartialExpression.FUNCTION + "_string_string",
+                        String.class, String.class, this::evaluatePartial));
 
-        runtime = CelRuntimeFactory.standardCelRuntimeBuilder().build();
+        for (AttributeSchema.Attribute attribute : attributeSchema.attributes()) {
+            if (EventVariables.BUILT_IN.contains(attribute.name())) {
+                throw new IllegalStateException("Event attribute shadows a built-in variable: " + attribute.name());
+            }
+            compilerBuilder.addVar(attribute.name(), celType(attribute.type()));
+        }
 
-        LOG.info("CEL Rule Engine initialized");
+        int libraryCount = 0;
+        Map<String, RuleFunctionLibrary> functions = new HashMap<>();
+        for (RuleFunctionLibrary library : libraries) {
+            compilerBuilder.addFunctionDeclarations(library.functionDeclarations());
+            runtimeBuilder.addFunctionBindings(library.functionBindings());
+            for (CelFunctionDecl declaration : library.functionDeclarations()) {
+                functions.put(declaration.name(), library);
+            }
+            libraryCount++;
+        }
+        libraryFunctions = Map.copyOf(functions);
+
+        compiler = compilerBuilder.build();
+        runtime = runtimeBuilder.build();
+
+        if (warmupEnabled) {
+            recentEvents = new RecentEvents(warmupEvents);
+            warmupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "rule-warmup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        LOG.infof("CEL Rule Engine initialized with %d function libraries and %d event attributes",
+                libraryCount, attributeSchema.size());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (warmupExecutor != null) {
+            warmupExecutor.shutdownNow();
+        }
+    }
+
+    private static CelType celType(AttributeType type) {
+        return switch (type) {
+            case STRING -> SimpleType.STRING;
+            case INT -> SimpleType.INT;
+            case DOUBLE -> SimpleType.DOUBLE;
+            case BOOL -> SimpleType.BOOL;
+        };
     }
 
     /**
-     * Compiles and caches rules for efficient evaluation.
-     * Uses atomic swap to prevent race conditions during recompilation.
+     * Compiles and caches rules for efficient evaluation, without sequence rules.
      *
      * @param rules List of rules to compile
      * @return number of successfully compiled rules
      */
     public int compileAndCacheRules(List<Rule> rules) {
+        return compileAndCacheRules(rules, List.of());
+    }
+
+    /**
+     * Compiles and caches rules and sequence rules for efficient evaluation.
+     * Uses atomic swap to prevent race conditions during recompilation.
+     *
+     * @param rules     List of rules to compile
+     * @param sequences List of sequence rules to compile
+     * @return number of successfully compiled rules, excluding sequence rules
+     */
+    public int compileAndCacheRules(List<Rule> rules, List<SequenceRule> sequences) {
+        return compile(rules, sequences).compiled();
+    }
+
+    /**
+     * Compiles rules and sequence rules into a new snapshot and swaps it in.
+     *
+     * @param rules     List of rules to compile
+     * @param sequences List of sequence rules to compile
+     * @return statistics of the compilation, including the version of the new snapshot
+     */
+    public synchronized CompileStats compile(List<Rule> rules, List<SequenceRule> sequences) {
+        long started = System.nanoTime();
+        long version = snapshot.version() + 1;
+        List<SequenceNfa> compiledSequences = compileSequences(sequences == null ? List.of() : sequences);
         if (rules == null || rules.isEmpty()) {
-            compiledPrograms = new ConcurrentHashMap<>();
-            LOG.info("Cleared compiled CEL programs (empty rule set)");
-            return 0;
+            snapshot = new RuleSnapshot(version, Map.of(), Map.of(), 0, StringMatchIndex.EMPTY, Map.of(), Map.of(),
+                    compiledSequences);
+            droppedPrograms = 0;
+            LOG.infof("Cleared compiled CEL programs (empty rule set), %d sequence rules", compiledSequences.size());
+            return new CompileStats(version, 0, 0, 0, 0, 0, 0, compiledSequences.size(), elapsedMillis(started),
+                    null);
         }
 
-        ConcurrentHashMap<Long, CelRuntime.Program> newPrograms = new ConcurrentHashMap<>();
+        Map<Long, CompiledRule> compiled = new HashMap<>();
+        // Normalised expression -> first rule compiled with it; later rules with the same expression share its program
+        Map<String, CompiledRule> groups = new HashMap<>();
+        StringMatchIndex.Builder stringMatches = new StringMatchIndex.Builder();
+        Map<String, Pattern> patterns = new HashMap<>();
+        Map<String, PartialExpression> partials = new HashMap<>();
 
         for (Rule rule : rules) {
             try {
-                CelAbstractSyntaxTree ast = compiler.compile(rule.expression()).getAst();
-                CelRuntime.Program program = runtime.createProgram(ast);
-                newPrograms.put(rule.id(), program);
-                LOG.debugf("Compiled rule %d: %s", rule.id(), rule.expression());
+                compiled.put(rule.id(), compileRule(rule, groups, groups.size(), stringMatches, patterns, partials));
             } catch (CelValidationException e) {
                 LOG.errorf("Failed to compile rule %d: %s - Error: %s",
                         rule.id(), rule.expression(), e.getMessage());
+            } catch (IllegalArgumentException e) {
+                LOG.errorf("Rejected rule %d: %s - Error: %s",
+                        rule.id(), rule.expression(), e.getMessage());
             } catch (CelEvaluationException e) {
                 LOG.errorf("Failed to create program for rule %d: %s",
                         rule.id(), e.getMessage());
             }
         }
 
-        // Atomic swap - readers see either the old or new map, never a partially updated one
-        compiledPrograms = newPrograms;
-        LOG.infof("Cached %d/%d compiled CEL programs", newPrograms.size(), rules.size());
-        return newPrograms.size();
+        StringMatchIndex index = stringMatches.build();
+        droppedPrograms = 0;
+        RuleSnapshot next = new RuleSnapshot(version, Map.copyOf(compiled), Map.copyOf(groups), groups.size(), index,
+                Map.copyOf(patterns), Map.copyOf(partials), compiledSequences);
+        long compileMillis = elapsedMillis(started);
+        WarmupStats warmup = warmupEnabled && !groups.isEmpty() ? warmUp(next) : null;
+        // Atomic swap - readers see either the old or new snapshot, never a partially updated one;
+        // memoised partial results start empty with every new snapshot, apart from those of the warm-up
+        snapshot = next;
+        CompileStats stats = new CompileStats(version, rules.size(), compiled.size(), groups.size(), index.slotCount(),
+                patterns.size(), partials.size(), compiledSequences.size(), compileMillis, warmup);
+        LOG.infof("Cached %d/%d compiled CEL rules (%d distinct programs), %d indexed string predicates, "
+                        + "%d regex patterns, %d memoised sub-expressions, %d sequence rules in %d ms (version %d)",
+                stats.compiled(), stats.rules(), stats.programs(), stats.indexedPredicates(), stats.patterns(),
+                stats.memoisedExpressions(), stats.sequences(), stats.durationMillis(), version);
+        return stats;
+    }
+
+    /**
+     * Evaluates every distinct program of {@code next} against recent events, topped up with synthetic ones, on the
+     * warm-up thread, so that the JIT has compiled the programs' paths before live events reach them. Passes stop
+     * at {@code app.rules.warmup.passes} or {@code app.rules.warmup.max-duration}; the caller publishes the
+     * snapshot afterwards whether or not the warm-up finished. Sequence rules are not warmed up, since evaluating
+     * them changes their partial matches.
+     *
+     * @return warm-up statistics, or null if the warm-up failed or overran
+     */
+    private WarmupStats warmUp(RuleSnapshot next) {
+        List<TransactionEvent> events = recentEvents.sample(warmupEvents, next.stringMatches().literals());
+        List<CelRuntime.Program> programs = next.groups().values().stream().map(CompiledRule::program).toList();
+        long deadline = System.nanoTime() + warmupMaxDuration.toNanos();
+        warming = next;
+        Future<WarmupStats> result = warmupExecutor.submit(() -> runWarmUp(next, programs, events, deadline));
+        try {
+            // A pass stops at the deadline; the margin covers a single slow evaluation
+            return result.get(2 * warmupMaxDuration.toMillis() + 1, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            LOG.warnf("Rule warm-up overran %s, publishing the snapshot without it", warmupMaxDuration);
+            return null;
+        } catch (ExecutionException e) {
+            LOG.warnf("Rule warm-up failed, publishing the snapshot without it: %s", e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            return null;
+        } finally {
+            warming = null;
+        }
+    }
+
+    private WarmupStats runWarmUp(RuleSnapshot next, List<CelRuntime.Program> programs,
+                                  List<TransactionEvent> events, long deadline) {
+        long started = System.nanoTime();
+        double coldNanos = 0;
+        double warmNanos = 0;
+        int passes = 0;
+        while (passes < warmupPasses && System.nanoTime() < deadline) {
+            long passStarted = System.nanoTime();
+            int evaluated = 0;
+            for (TransactionEvent event : events) {
+                if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                EventVariables variables = new EventVariables(event, next.stringMatches(), attributeSchema,
+                        profileStore);
+                for (CelRuntime.Program program : programs) {
+                    try {
+                        program.eval(variables);
+                    } catch (CelEvaluationException | RuntimeException e) {
+                        // Results and failures are discarded; only the code paths matter
+                    }
+                }
+                evaluated++;
+            }
+            if (evaluated == 0) {
+                break;
+            }
+            double perEvent = (double) (System.nanoTime() - passStarted) / evaluated;
+            if (passes == 0) {
+                coldNanos = perEvent;
+            }
+            warmNanos = perEvent;
+            passes++;
+        }
+        WarmupStats stats = new WarmupStats(events.size(), passes, elapsedMillis(started), coldNanos / 1_000,
+                warmNanos / 1_000, (coldNanos - warmNanos) / 1_000);
+        LOG.debugf("Warmed up %d programs with %d events in %d passes (%d ms): %.1f -> %.1f us per event",
+                programs.size(), stats.events(), stats.passes(), stats.durationMillis(),
+                stats.coldMicrosPerEvent(), stats.warmMicrosPerEvent());
+        return stats;
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    /**
+     * Compiles one rule, reusing the program of the group with the same normalised expression if there is one and
+     * registering a new group otherwise.
+     *
+     * @param nextGroup Group index to give the rule if it starts a new group
+     */
+    private CompiledRule compileRule(Rule rule, Map<String, CompiledRule> groups, int nextGroup,
+                                     StringMatchIndex.Builder stringMatches, Map<String, Pattern> patterns,
+                                     Map<String, PartialExpression> partials)
+            throws CelValidationException, CelEvaluationException {
+        CelAbstractSyntaxTree compiledAst = compiler.compile(rule.expression()).getAst();
+        checkCalls(compiledAst);
+        compiledAst = resolveKeyKinds(compiledAst);
+        Optimized optimized = optimize(rule, compiledAst);
+        CompiledRule leader = groups.get(optimized.source());
+        if (leader != null) {
+            Set<String> optimizations = new LinkedHashSet<>(optimized.optimizations());
+            optimizations.add(RuleOptimizer.SHARED_PROGRAM);
+            LOG.debugf("Rule %d shares the program of rule %d", (long) rule.id(), leader.groupLeaderId());
+            return new CompiledRule(leader.program(), leader.group(), leader.groupLeaderId(),
+                    optimized.source(), Collections.unmodifiableSet(optimizations), counters(rule.id()));
+        }
+        CelAbstractSyntaxTree ast = rewritePredicates(rule, optimized.ast(), stringMatches, patterns, partials);
+        CompiledRule compiledRule = new CompiledRule(runtime.createProgram(ast), nextGroup, rule.id(),
+                optimized.source(), optimized.optimizations(), counters(rule.id()));
+        groups.put(optimized.source(), compiledRule);
+        LOG.debugf("Compiled rule %d: %s", rule.id(), optimized.source());
+        return compiledRule;
     }
 
     /**
-     * Evaluates a transaction event against all provided rules.
+     * Hands every call to a library function to its library's {@link RuleFunctionLibrary#checkCall}.
+     *
+     * @throws IllegalArgumentException if a library rejects a call
+     */
+    private void checkCalls(CelAbstractSyntaxTree ast) {
+        CelNavigableAst.fromAst(ast).getRoot().allNodes()
+                .map(CelNavigableExpr::expr)
+                .filter(expr -> expr.exprKind().getKind() == CelExpr.ExprKind.Kind.CALL)
+                .forEach(expr -> {
+                    RuleFunctionLibrary library = libraryFunctions.get(expr.call().function());
+                    if (library != null) {
+                        library.checkCall(expr.call().function(), stringLiterals(expr.call().args()));
+                    }
+                });
+    }
+
+    /**
+     * Completes velocity calls that do not name the kind of their key from the key expression (see
+     * {@link VelocityFunctions#substitution}), so the kind is never guessed from the key's value at evaluation.
+     *
+     * @throws IllegalArgumentException if a key's kind cannot be resolved or the expression cannot be printed
+     */
+    private CelAbstractSyntaxTree resolveKeyKinds(CelAbstractSyntaxTree ast) throws CelValidationException {
+        boolean unresolved = CelNavigableAst.fromAst(ast).getRoot().allNodes()
+                .map(CelNavigableExpr::expr)
+                .anyMatch(VelocityFunctions::needsKeyKind);
+        if (!unresolved) {
+            return ast;
+        }
+        try {
+            return compiler.compile(CelExprPrinter.print(ast.getExpr(), VelocityFunctions::substitution)).getAst();
+        } catch (CelExprPrinter.UnsupportedExpressionException e) {
+            throw new IllegalArgumentException("Cannot resolve the velocity key kinds of this expression ("
+                    + e.getMessage() + "); pass \"cin\" or \"account\" as a third argument");
+        }
+    }
+
+    private static List<String> stringLiterals(List<CelExpr> args) {
+        List<String> literals = new ArrayList<>(args.size());
+        for (CelExpr arg : args) {
+            boolean literal = arg.exprKind().getKind() == CelExpr.ExprKind.Kind.CONSTANT
+                    && arg.constant().getKind() == CelConstant.Kind.STRING_VALUE;
+            literals.add(literal ? arg.constant().stringValue() : null);
+        }
+        return literals;
+    }
+
+    /**
+     * Returns the counters of the rule with this id in the current snapshot, or new ones if it is not compiled.
+     */
+    private RuleCounters counters(long id) {
+        CompiledRule current = snapshot.rules().get(id);
+        return current == null ? new RuleCounters() : current.counters();
+    }
+
+    /**
+     * Type-checks a rule expression the way {@link #upsertRule(Rule)} would compile it, without changing the
+     * compiled rules.
+     *
+     * @return compiler errors, empty if the expression can be compiled into a rule
+     */
+    public List<String> validate(String expression) {
+        if (expression == null || expression.isBlank()) {
+            return List.of("expression cannot be null or blank");
+        }
+        try {
+            CelAbstractSyntaxTree ast = compiler.compile(expression).getAst();
+            CelType resultType = ast.getResultType();
+            if (resultType != SimpleType.BOOL && resultType != SimpleType.DYN) {
+                return List.of("expression must evaluate to bool, not " + resultType.name());
+            }
+            checkCalls(ast);
+            ast = resolveKeyKinds(ast);
+            // Rewrites reject constant regexes that cannot be matched in linear time
+            rewritePredicates(new Rule(0L, expression), ast, new StringMatchIndex.Builder(), new HashMap<>(),
+                    new HashMap<>());
+            return List.of();
+        } catch (CelValidationException e) {
+            return e.getErrors().stream().map(CelIssue::getMessage).toList();
+        } catch (IllegalArgumentException e) {
+            return List.of(e.getMessage());
+        }
+    }
+
+    /**
+     * Compiles one rule into a copy of the current snapshot, replacing the rule with the same id, and swaps it in.
+     * Other rules keep their programs, group indexes and index slots, so the cost does not grow with the number of
+     * rules beyond copying the maps; memoised sub-expression results are kept as well. A new program takes the
+     * lowest free group index, so the per-event group results stay as long as the number of programs.
+     * <p>
+     * The index slots, regex patterns and memoised sub-expressions of a program dropped by a write stay in the
+     * snapshot, as other programs may read them; {@link #needsCompaction()} tells the caller when enough have
+     * accumulated to reclaim them with a full {@link #compile}.
+     *
+     * @return true if the rule compiled; otherwise the snapshot is unchanged
+     */
+    public synchronized boolean upsertRule(Rule rule) {
+        RuleSnapshot current = snapshot;
+        Map<String, CompiledRule> groups = new HashMap<>(current.groups());
+        StringMatchIndex.Builder stringMatches = new StringMatchIndex.Builder(current.stringMatches());
+        Map<String, Pattern> patterns = new HashMap<>(current.patterns());
+        Map<String, PartialExpression> partials = new HashMap<>(current.partials());
+        Map<Long, CompiledRule> rules = new HashMap<>(current.rules());
+        CompiledRule previous = rules.remove(rule.id());
+        boolean dropped = previous != null && leave(previous, rules, groups);
+        CompiledRule compiledRule;
+        try {
+            compiledRule = compileRule(rule, groups, freeGroup(groups), stringMatches, patterns, partials);
+        } catch (CelValidationException | IllegalArgumentException | CelEvaluationException e) {
+            LOG.errorf("Failed to compile rule %d: %s - Error: %s", rule.id(), rule.expression(), e.getMessage());
+            return false;
+        }
+        rules.put(rule.id(), compiledRule);
+        snapshot = new RuleSnapshot(current.version() + 1, Map.copyOf(rules), Map.copyOf(groups),
+                groupCount(groups), stringMatches.build(),
+                Map.copyOf(patterns), Map.copyOf(partials), current.sequences());
+        if (dropped) {
+            droppedPrograms++;
+        }
+        LOG.infof("Compiled rule %d into the cached rules (%d compiled)", rule.id(), rules.size());
+        return true;
+    }
+
+    /**
+     * Removes one rule from a copy of the current snapshot and swaps it in, without recompiling other rules.
+     *
+     * @return true if the rule was compiled
+     */
+    public synchronized boolean removeRule(long id) {
+        RuleSnapshot current = snapshot;
+        if (!current.rules().containsKey(id)) {
+            return false;
+        }
+        Map<Long, CompiledRule> rules = new HashMap<>(current.rules());
+        Map<String, CompiledRule> groups = new HashMap<>(current.groups());
+        boolean dropped = leave(rules.remove(id), rules, groups);
+        snapshot = new RuleSnapshot(current.version() + 1, Map.copyOf(rules), Map.copyOf(groups),
+                groupCount(groups),
+                current.stringMatches(), current.patterns(), current.partials(), current.sequences());
+        if (dropped) {
+            droppedPrograms++;
+        }
+        LOG.infof("Removed rule %d from the cached rules (%d compiled)", id, rules.size());
+        return true;
+    }
+
+    /**
+     * Returns true once single-rule writes have dropped {@code app.rules.write.compact-after} programs since the
+     * last full compile, whose index slots, patterns and memoised sub-expressions a full compile would reclaim.
+     */
+    public synchronized boolean needsCompaction() {
+        return droppedPrograms >= compactAfter;
+    }
+
+    /**
+     * Returns the lowest group index not used by {@code groups}.
+     */
+    private static int freeGroup(Map<String, CompiledRule> groups) {
+        boolean[] used = new boolean[groups.size() + 1];
+        for (CompiledRule leader : groups.values()) {
+            if (leader.group() < used.length) {
+                used[leader.group()] = true;
+            }
+        }
+        int group = 0;
+        while (used[group]) {
+            group++;
+        }
+        return group;
+    }
+
+    /**
+     * Returns the length of the per-event group results for {@code groups}.
+     */
+    private static int groupCount(Map<String, CompiledRule> groups) {
+        int count = 0;
+        for (CompiledRule leader : groups.values()) {
+            count = Math.max(count, leader.group() + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Updates {@code groups} after {@code removed} left {@code rules}: the group is dropped if it is now empty,
+     * and otherwise handed to its lowest remaining rule id if {@code removed} led it.
+     *
+     * @return true if the group was dropped, so its program is no longer used
+     */
+    private static boolean leave(CompiledRule removed, Map<Long, CompiledRule> rules,
+                                 Map<String, CompiledRule> groups) {
+        List<Long> members = rules.entrySet().stream()
+                .filter(entry -> entry.getValue().group() == removed.group())
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+        if (members.isEmpty()) {
+            groups.remove(removed.optimizedExpression());
+            return true;
+        }
+        if (rules.containsKey(removed.groupLeaderId())) {
+            // The removed rule only shared the program; its leader is unchanged
+            return false;
+        }
+        long newLeaderId = members.get(0);
+        for (Long member : members) {
+            CompiledRule rule = rules.get(member);
+            Set<String> optimizations = rule.optimizations();
+            if (member == newLeaderId) {
+                optimizations = new LinkedHashSet<>(optimizations);
+                optimizations.remove(RuleOptimizer.SHARED_PROGRAM);
+                optimizations = Collections.unmodifiableSet(optimizations);
+            }
+            CompiledRule moved = new CompiledRule(rule.program(), rule.group(), newLeaderId,
+                    rule.optimizedExpression(), optimizations, rule.counters());
+            rules.put(member, moved);
+            if (member == newLeaderId) {
+                groups.put(moved.optimizedExpression(), moved);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compiles each step of each sequence rule into its own program and attaches the rule's partial matches.
+     * A rule with a step that does not compile is skipped as a whole; partial matches of rules that are no longer
+     * compiled are dropped.
+     */
+    private List<SequenceNfa> compileSequences(List<SequenceRule> sequences) {
+        List<SequenceNfa> compiled = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        for (SequenceRule sequence : sequences) {
+            try {
+                long windowMillis = WindowDurations.toMillis(sequence.within());
+                CelRuntime.Program[] steps = new CelRuntime.Program[sequence.steps().size()];
+                for (int i = 0; i < steps.length; i++) {
+                    steps[i] = runtime.createProgram(compiler.compile(sequence.steps().get(i)).getAst());
+                }
+                compiled.add(new SequenceNfa(sequence,
+                        steps, sequenceStore.partials(sequence.id(), steps.length, windowMillis)));
+                ids.add(sequence.id());
+            } catch (CelValidationException e) {
+                LOG.errorf("Failed to compile sequence rule %d: %s - Error: %s",
+                        sequence.id(), sequence.expression(), e.getMessage());
+            } catch (IllegalArgumentException e) {
+                LOG.errorf("Rejected sequence rule %d: %s - Error: %s",
+                        sequence.id(), sequence.expression(), e.getMessage());
+            } catch (CelEvaluationException e) {
+                LOG.errorf("Failed to create program for sequence rule %d: %s",
+                        sequence.id(), e.getMessage());
+            }
+        }
+        sequenceStore.retain(ids);
+        return List.copyOf(compiled);
+    }
+
+    /**
+     * A checked AST after {@link RuleOptimizer}, with the normalised source it was compiled from.
+     */
+    private record Optimized(CelAbstractSyntaxTree ast, String source, Set<String> optimizations) {}
+
+    /**
+     * Runs the {@link RuleOptimizer} pass and recompiles the normalised source if anything changed.
+     * Falls back to the original AST (keyed by the original expression) if the expression cannot be printed
+     * or the optimised source does not compile.
+     */
+    private Optimized optimize(Rule rule, CelAbstractSyntaxTree ast) {
+        RuleOptimizer.Result result;
+        try {
+            result = RuleOptimizer.optimize(ast.getExpr());
+        } catch (CelExprPrinter.UnsupportedExpressionException e) {
+            LOG.debugf("Rule %d not optimised: %s", rule.id(), e.getMessage());
+            return new Optimized(ast, rule.expression(), Set.of());
+        }
+        if (result.optimizations().isEmpty()) {
+            return new Optimized(ast, result.source(), Set.of());
+        }
+        try {
+            CelAbstractSyntaxTree optimizedAst = compiler.compile(result.source()).getAst();
+            LOG.debugf("Rule %d optimised %s: %s", rule.id(), result.optimizations(), result.source());
+            return new Optimized(optimizedAst, result.source(), result.optimizations());
+        } catch (CelValidationException e) {
+            LOG.warnf("Rule %d optimisation failed, using original expression: %s", rule.id(), e.getMessage());
+            return new Optimized(ast, rule.expression(), Set.of());
+        }
+    }
+
+    /**
+     * Rewrites predicates that can be served from per-snapshot structures:
+     * <ul>
+     *   <li>boolean sub-expressions that depend on a single string field (see {@link SingleVariableAnalysis})
+     *       are memoised per field value through {@link PartialExpression#FUNCTION}</li>
+     *   <li>{@code field.startsWith("x")} / {@code field.contains("x")} on event fields read flags from the
+     *       {@link StringMatchIndex}</li>
+     *   <li>{@code matches()} with a constant pattern uses a pre-compiled {@link LinearRegex} pattern</li>
+     *   <li>{@code amount} compared with a decimal literal becomes an exact integer comparison
+     *       (see {@link AmountComparisons})</li>
+     * </ul>
+     * Returns the original AST if nothing was rewritten or the expression cannot be printed.
+     *
+     * @throws IllegalArgumentException if a constant regex cannot be matched in linear time
+     */
+    private CelAbstractSyntaxTree rewritePredicates(Rule rule, CelAbstractSyntaxTree ast,
+                                                    StringMatchIndex.Builder stringMatches,
+                                                    Map<String, Pattern> patterns,
+                                                    Map<String, PartialExpression> partials) {
+        SingleVariableAnalysis analysis = partialCacheEnabled ? SingleVariableAnalysis.of(ast.getExpr()) : null;
+        int[] rewrites = {0};
+        Function<CelExpr, String> rewriter = new Function<>() {
+            @Override
+            public String apply(CelExpr expr) {
+                String substitution = analysis == null ? null : partialSubstitution(expr, analysis, partials, patterns);
+                if (substitution == null) {
+                    substitution = StringMatchIndex.substitution(stringMatches, expr);
+                }
+                if (substitution == null) {
+                    substitution = LinearRegex.substitution(expr, patterns, this);
+                }
+                if (substitution == null) {
+                    substitution = AmountComparisons.substitution(expr);
+                }
+                if (substitution != null) {
+                    rewrites[0]++;
+                }
+                return substitution;
+            }
+        };
+
+        String rewritten;
+        try {
+            rewritten = CelExprPrinter.print(ast.getExpr(), rewriter);
+        } catch (CelExprPrinter.UnsupportedExpressionException e) {
+            LOG.debugf("Rule %d not rewritten: %s", rule.id(), e.getMessage());
+            return ast;
+        }
+        if (rewrites[0] == 0) {
+            return ast;
+        }
+        try {
+            CelAbstractSyntaxTree rewrittenAst = compiler.compile(rewritten).getAst();
+            LOG.debugf("Rule %d rewritten with %d indexed predicates: %s", (long) rule.id(), rewrites[0], rewritten);
+            return rewrittenAst;
+        } catch (CelValidationException e) {
+            LOG.warnf("Rule %d predicate rewrite failed, using original expression: %s",
+                    rule.id(), e.getMessage());
+            return ast;
+        }
+    }
+
+    /**
+     * Returns a {@link PartialExpression#FUNCTION} call for a memoisable sub-expression, registering its
+     * program in {@code partials}; returns null for any other node. The key is the printed sub-expression,
+     * so identical sub-expressions across rules share one cache.
+     */
+    private String partialSubstitution(CelExpr expr, SingleVariableAnalysis analysis,
+                                       Map<String, PartialExpression> partials, Map<String, Pattern> patterns) {
+        String variable = analysis.memoizableVariable(expr);
+        if (variable == null) {
+            return null;
+        }
+        String key = CelExprPrinter.print(expr);
+        if (!partials.containsKey(key)) {
+            Function<CelExpr, String> regexRewriter = new Function<>() {
+                @Override
+                public String apply(CelExpr e) {
+                    return LinearRegex.substitution(e, patterns, this);
+                }
+            };
+            try {
+                CelAbstractSyntaxTree ast = compiler.compile(CelExprPrinter.print(expr, regexRewriter)).getAst();
+                partials.put(key, new PartialExpression(variable, runtime.createProgram(ast),
+                        new StripedLruCache<>(partialCacheMaxEntries, PARTIAL_CACHE_STRIPES)));
+            } catch (CelValidationException | CelEvaluationException e) {
+                LOG.debugf("Sub-expression not memoised: %s - %s", key, e.getMessage());
+                return null;
+            }
+        }
+        StringBuilder out = new StringBuilder(PartialExpression.FUNCTION).append('(');
+        CelExprPrinter.appendString(out, key);
+        return out.append(", ").append(variable).append(')').toString();
+    }
+
+    /**
+     * Runtime binding for memoised sub-expressions. Results are cached per field value in the current snapshot.
+     */
+    private Object evaluatePartial(String key, String value) throws CelEvaluationException {
+        PartialExpression partial = snapshot.partials().get(key);
+        if (partial == null) {
+            RuleSnapshot next = warming;
+            partial = next == null ? null : next.partials().get(key);
+        }
+        if (partial == null) {
+            return evaluateUncached(key, value);
+        }
+        Boolean result = partial.results().get(value);
+        if (result == null) {
+            result = (Boolean) partial.program().eval(Map.of(partial.variable(), value));
+            partial.results().put(value, result);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates a sub-expression missing from the current snapshot, which only happens when an evaluation
+     * races a swap. The sub-expression reads exactly one field, so binding every field to the value is exact.
+     */
+    private Object evaluateUncached(String key, String value) throws CelEvaluationException {
+        try {
+            CelAbstractSyntaxTree ast = compiler.compile(key).getAst();
+            return runtime.createProgram(ast).eval(Map.of(
+                    "debitAccount", value,
+                    "creditAccount", value,
+                    "cin", value
+            ));
+        } catch (CelValidationException e) {
+            throw new IllegalStateException("Memoised sub-expression no longer compiles: " + key, e);
+        }
+    }
+
+    /**
+     * Runtime binding for rewritten {@code matches()} calls.
+     * Patterns come from the current snapshot; a miss only happens when an evaluation races a swap.
+     */
+    private boolean matchesLinear(String subject, String regex) {
+        Pattern pattern = snapshot.patterns().get(regex);
+        if (pattern == null) {
+            RuleSnapshot next = warming;
+            pattern = next == null ? null : next.patterns().get(regex);
+        }
+        if (pattern == null) {
+            pattern = LinearRegex.compile(regex);
+        }
+        return LinearRegex.matches(pattern, subject);
+    }
+
+    /**
+     * Evaluates a transaction event against all provided rules, then feeds it to every compiled sequence rule.
+     * Sequence rules keep per-customer state, so each event must be evaluated exactly once.
      *
      * @param event The transaction event to evaluate
      * @param rules The rules to evaluate against
-     * @return Unmodifiable list of evaluation results for each rule
+     * @return Unmodifiable list of evaluation results for each rule, followed by one per sequence rule
      */
     public List<RuleEvaluationResult> evaluateEvent(TransactionEvent event, List<Rule> rules) {
         if (event == null) {
             throw new IllegalArgumentException("event cannot be null");
         }
-        if (rules == null || rules.isEmpty()) {
+        // Snapshot the reference for consistent reads during evaluation
+        RuleSnapshot current = this.snapshot;
+        if (rules == null) {
+            rules = List.of();
+        }
+        if (rules.isEmpty() && current.sequences().isEmpty()) {
             return Collections.emptyList();
         }
 
-        Map<String, Object> variables = buildVariables(event);
-        // Snapshot the reference for consistent reads during evaluation
-        Map<Long, CelRuntime.Program> programs = this.compiledPrograms;
-        List<RuleEvaluationResult> results = new ArrayList<>(rules.size());
+        if (recentEvents != null) {
+            recentEvents.record(event);
+        }
+        Map<Long, CompiledRule> compiledRules = current.rules();
+        // One event in ruleTimingSampleEvery has each program timed; the others only pay for this draw
+        boolean timed = ruleMetricsEnabled && ThreadLocalRandom.current().nextInt(ruleTimingSampleEvery) == 0;
+        if (ruleMetricsEnabled) {
+            evaluatedEvents.increment();
+            if (timed) {
+                timedEvents.increment();
+            }
+        }
+        EventVariables variables = new EventVariables(event, current.stringMatches(), attributeSchema, profileStore);
+        // Rules sharing a program are evaluated once per event
+        Object[] groupResults = current.hasSharedPrograms() ? new Object[current.groupCount()] : null;
+        List<RuleEvaluationResult> results = new ArrayList<>(rules.size() + current.sequences().size());
 
         for (Rule rule : rules) {
-            CelRuntime.Program program = programs.get(rule.id());
-            if (program == null) {
+            CompiledRule compiled = compiledRules.get(rule.id());
+            if (compiled == null) {
                 results.add(RuleEvaluationResult.failure(
                         rule.id(),
                         rule.expression(),
@@ -120,17 +892,44 @@ public class CelRuleEngine {
             }
 
             try {
-                Object result = program.eval(variables);
+                Object result = groupResults == null ? null : groupResults[compiled.group()];
+                if (result == null) {
+                    if (timed) {
+                        RuleEvaluationEvent recorded = new RuleEvaluationEvent();
+                        recorded.begin();
+                        long started = System.nanoTime();
+                        result = compiled.program().eval(variables);
+                        compiled.counters().timed(System.nanoTime() - started);
+                        recorded.end();
+                        if (recorded.shouldCommit()) {
+                            recorded.ruleId = rule.id();
+                            recorded.matched = Boolean.TRUE.equals(result);
+                            recorded.commit();
+                        }
+                    } else {
+                        result = compiled.program().eval(variables);
+                    }
+                    if (groupResults != null) {
+                        groupResults[compiled.group()] = result;
+                    }
+                }
                 boolean matched = Boolean.TRUE.equals(result);
                 results.add(RuleEvaluationResult.success(rule.id(), rule.expression(), matched));
 
                 if (matched) {
+                    if (ruleMetricsEnabled) {
+                        compiled.counters().matched();
+                    }
                     LOG.debugf("Rule %d matched for CIN %s: %s",
                             rule.id(), event.cin(), rule.expression());
                 }
-            } catch (CelEvaluationException e) {
+            } catch (CelEvaluationException | IllegalArgumentException e) {
+                // Custom functions reject malformed arguments (e.g. window literals) with IllegalArgumentException
                 LOG.warnf("Rule %d evaluation failed for CIN %s: %s",
                         rule.id(), event.cin(), e.getMessage());
+                if (ruleMetricsEnabled) {
+                    compiled.counters().failed();
+                }
                 results.add(RuleEvaluationResult.failure(
                         rule.id(),
                         rule.expression(),
@@ -139,26 +938,180 @@ public class CelRuleEngine {
             }
         }
 
+        for (SequenceNfa sequence : current.sequences()) {
+            SequenceRule rule = sequence.rule();
+            try {
+                boolean matched = sequence.advance(event, variables);
+                results.add(RuleEvaluationResult.sequenceSuccess(rule.id(), rule.expression(), matched));
+                if (matched) {
+                    LOG.debugf("Sequence rule %d matched for CIN %s: %s", rule.id(), event.cin(), rule.expression());
+                }
+            } catch (CelEvaluationException | IllegalArgumentException e) {
+                LOG.warnf("Sequence rule %d evaluation failed for CIN %s: %s",
+                        rule.id(), event.cin(), e.getMessage());
+                results.add(RuleEvaluationResult.sequenceFailure(rule.id(), rule.expression(), e.getMessage()));
+            }
+        }
+
         return Collections.unmodifiableList(results);
     }
 
     /**
-     * Builds the variable map for CEL evaluation from a transaction event.
+     * Returns the number of compiled rules currently cached.
      */
-    Map<String, Object> buildVariables(TransactionEvent event) {
-        return Map.of(
-                "debitAccount", event.debitAccount(),
-                "creditAccount", event.creditAccount(),
-                "cin", event.cin(),
-                "amount", event.amount().doubleValue(),
-                "transactedTimeEpochSeconds", event.transactedTime().getEpochSecond()
-        );
+    public int getCachedRuleCount() {
+        return snapshot.rules().size();
     }
 
     /**
-     * Returns the number of compiled rules currently cached.
+     * Returns the length of the per-event group results of the live snapshot.
      */
-    public int getCachedRuleCount() {
-        return compiledPrograms.size();
+    int getGroupCount() {
+        return snapshot.groupCount();
+    }
+
+    /**
+     * Returns the evaluation counters of each compiled rule, by rule id. The same counters object is returned for a
+     * rule id until the rule is removed.
+     */
+    public Map<Long, RuleCounters> getRuleCounters() {
+        Map<Long, RuleCounters> counters = new HashMap<>();
+        snapshot.rules().forEach((id, compiled) -> counters.put(id, compiled.counters()));
+        return counters;
+    }
+
+    /**
+     * Returns the number of events evaluated while rule metrics were enabled.
+     */
+    long getEvaluatedEvents() {
+        return evaluatedEvents.sum();
+    }
+
+    /**
+     * Returns the number of those events whose evaluation was timed.
+     */
+    long getTimedEvents() {
+        return timedEvents.sum();
+    }
+
+    /**
+     * Returns the version of the current snapshot, incremented by every compile and single-rule update.
+     */
+    public long getSnapshotVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * Returns the number of compiled sequence rules currently cached.
+     */
+    public int getCachedSequenceCount() {
+        return snapshot.sequences().size();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns sequence rule statistics, including the memory held by partial matches.
+     */
+    public SequenceStats getSequenceStats() {
+        return new SequenceStats(snapshot.sequences().size(), sequenceStore.keyCount(),
+                sequenceStore.getMaxKeys(), sequenceStore.memoryBytes(), sequenceStore.getDroppedKeys());
+    }
+
+    /**
+     * Returns the optimisations applied to each compiled rule, ordered by rule id.
+     */
+    public List<RuleOptimization> getRuleOptimizations() {
+        List<RuleOptimization> report = new ArrayList<>();
+        snapshot.rules().forEach((id, compiled) -> report.add(new RuleOptimization(
+                id,
+                compiled.optimizedExpression(),
+                List.copyOf(compiled.optimizations()),
+                compiled.groupLeaderId() == id ? null : compiled.groupLeaderId()
+        )));
+        report.sort(Comparator.comparing(RuleOptimization::ruleId));
+        return report;
+    }
+
+    /**
+     * Returns partial-result cache statistics for the current snapshot (reset whenever rules are recompiled).
+     */
+    public PartialCacheStats getPartialCacheStats() {
+        long entries = 0;
+        long hits = 0;
+        long misses = 0;
+        Map<String, PartialExpression> partials = snapshot.partials();
+        for (PartialExpression partial : partials.values()) {
+            entries += partial.results().size();
+            hits += partial.results().hits();
+            misses += partial.results().misses();
+        }
+        long lookups = hits + misses;
+        return new PartialCacheStats(partials.size(), entries, hits, misses,
+                lookups == 0 ? 0.0 : (double) hits / lookups);
+    }
+
+    /**
+     * Partial-result cache statistics.
+     *
+     * @param expressions Memoised sub-expressions in the current snapshot
+     * @param entries     Cached (sub-expression, field value) results
+     * @param hits        Lookups answered from the cache
+     * @param misses      Lookups that evaluated the sub-expression
+     * @param hitRate     hits / (hits + misses), or 0 before the first lookup
+     */
+    public record PartialCacheStats(int expressions, long entries, long hits, long misses, double hitRate) {}
+
+    /**
+     * Statistics of a full compile.
+     *
+     * @param snapshotVersion     Version of the snapshot swapped in
+     * @param rules               Rules passed in
+     * @param compiled            Rules that compiled
+     * @param programs            Distinct programs after sharing
+     * @param indexedPredicates   String predicates served by the string match index
+     * @param patterns            Pre-compiled regex patterns
+     * @param memoisedExpressions Memoised sub-expressions
+     * @param sequences           Compiled sequence rules
+     * @param durationMillis      Time taken to compile, including sequence rules and excluding the warm-up
+     * @param warmup              Warm-up before the swap, or null if disabled or it did not complete
+     */
+    public record CompileStats(long snapshotVersion, int rules, int compiled, int programs, int indexedPredicates,
+                               int patterns, int memoisedExpressions, int sequences, long durationMillis,
+                               WarmupStats warmup) {}
+
+    /**
+     * Warm-up of newly compiled programs before they were swapped in.
+     *
+     * @param events              Events evaluated per pass, recent ones first and synthetic ones after
+     * @param passes              Passes over the events
+     * @param durationMillis      Time spent warming up
+     * @param coldMicrosPerEvent  Time to evaluate every program for one event in the first pass
+     * @param warmMicrosPerEvent  The same in the last pass
+     * @param latencyDeltaMicros  cold - warm, roughly the extra per-event latency the first live events would have paid
+     */
+    public record WarmupStats(int events, int passes, long durationMillis, double coldMicrosPerEvent,
+                              double warmMicrosPerEvent, double latencyDeltaMicros) {}
+
+    /**
+     * Sequence rule statistics.
+     *
+     * @param rules             Compiled sequence rules
+     * @param partialMatches    (rule, CIN) pairs with at least one partial match
+     * @param maxPartialMatches Cap on {@code partialMatches}
+     * @param memoryBytes       Estimated heap held by partial matches
+     * @param droppedMatches    Partial matches not started because the cap was reached
+     */
+    public record SequenceStats(int rules, long partialMatches, int maxPartialMatches, long memoryBytes,
+                                long droppedMatches) {}
+
+    /**
+     * Optimisations applied to a compiled rule.
+     *
+     * @param ruleId              Rule id
+     * @param optimizedExpression Normalised expression the rule was compiled from
+     * @param optimizations       Names of the optimisations applied, empty if the expression was already normal
+     * @param sharesProgramWith   Id of the rule whose program is reused because the normalised expressions are
+     *                            identical, or null
+     */
+    public record RuleOptimization(long ruleId, String optimizedExpression, List<String> optimizations,
+                                   Long sharesProgramWith) {}
+}
@@ -0,0 +1,26 @@
+package org.iki.engine;
+
+import dev.cel.runtime.CelRuntime;
+
+import java.util.Set;
+
+/**
+ * A rule's compiled program together with the optimisations applied to it.
+ * Rules with the same normalised expression share a program and a {@code group}, so the program
+ * is evaluated once per event for the whole group.
+ *
+ * @param program             Program to evaluate
+ * @param group               Dense index of the distinct program within the snapshot
+ * @param groupLeaderId       Id of the first rule compiled into this group (the rule's own id if not shared)
+ * @param optimizedExpression Normalised expression the program was compiled from
+ * @param optimizations       Names of the optimisations that changed the expression
+ * @param counters            Evaluation counters, kept for the rule's id across snapshots
+ */
+record CompiledRule(
+        CelRuntime.Program program,
+        int group,
+        long groupLeaderId,
+        String optimizedExpression,
+        Set<String> optimizations,
+        RuleCounters counters
+) {}
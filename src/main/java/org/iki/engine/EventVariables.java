@@ -0,0 +1,93 @@
+package org.iki.engine;
+
+import dev.cel.runtime.CelVariableResolver;
+import org.iki.model.AttributeSchema;
+import org.iki.model.TransactionEvent;
+import org.iki.state.Profile;
+import org.iki.state.ProfileStore;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * CEL variables of one event. Derived values are computed on first access, so an event only pays for
+ * the variables its rules read: the {@code double} amount, for example, is never computed when every
+ * amount comparison has been rewritten to {@link AmountComparisons}. Names outside the built-in
+ * variables resolve to configured event attributes, read from the event's attribute slots.
+ * {@code profile.*} variables come from a single {@link ProfileStore} lookup per event.
+ * Not thread-safe; one instance per evaluation.
+ */
+final class EventVariables implements CelVariableResolver {
+
+    /**
+     * Variables resolved from the event itself; configured attributes may not reuse these names.
+     */
+    static final Set<String> BUILT_IN = Set.of(
+            "debitAccount", "creditAccount", "cin", "currency", "amount", "amountMinor",
+            "transactedTimeEpochSeconds", "profile", AmountComparisons.FLOOR, AmountComparisons.CEILING,
+            StringMatchIndex.MATCHES_VARIABLE
+    );
+
+    // Qualified names: the checker resolves profile.avgAmount to a single variable
+    static final String PROFILE_TX_COUNT = "profile.txCount";
+    static final String PROFILE_AVG_AMOUNT = "profile.avgAmount";
+    static final String PROFILE_LAST_TX = "profile.lastTxEpochSeconds";
+    static final String PROFILE_KNOWN_COUNTERPARTY = "profile.knownCounterparty";
+
+    private final TransactionEvent event;
+    private final StringMatchIndex stringMatches;
+    private final AttributeSchema attributes;
+    private final ProfileStore profiles;
+    private Profile profile;
+    private Optional<Object> amount;
+    private Optional<Object> matches;
+
+    EventVariables(TransactionEvent event, StringMatchIndex stringMatches, AttributeSchema attributes,
+                   ProfileStore profiles) {
+        this.event = event;
+        this.stringMatches = stringMatches;
+        this.attributes = attributes;
+        this.profiles = profiles;
+    }
+
+    @Override
+    public Optional<Object> find(String name) {
+        return switch (name) {
+            case "debitAccount" -> Optional.of(event.debitAccount());
+            case "creditAccount" -> Optional.of(event.creditAccount());
+            case "cin" -> Optional.of(event.cin());
+            case "currency" -> Optional.of(event.currency() == null ? "" : event.currency());
+            case "transactedTimeEpochSeconds" -> Optional.of(event.transactedTime().getEpochSecond());
+            case "amount" -> {
+                if (amount == null) {
+                    amount = Optional.of(event.amount().doubleValue());
+                }
+                yield amount;
+            }
+            case "amountMinor" -> Optional.of(event.amountMinor());
+            case AmountComparisons.FLOOR -> Optional.of(event.amountFloor());
+            case AmountComparisons.CEILING -> Optional.of(event.amountCeiling());
+            case StringMatchIndex.MATCHES_VARIABLE -> {
+                if (matches == null) {
+                    matches = Optional.of(stringMatches.match(event));
+                }
+                yield matches;
+            }
+            case PROFILE_TX_COUNT -> Optional.of(profile().txCount());
+            case PROFILE_AVG_AMOUNT -> Optional.of(profile().avgAmount());
+            case PROFILE_LAST_TX -> Optional.of(profile().lastTxEpochSeconds());
+            case PROFILE_KNOWN_COUNTERPARTY -> Optional.of(profile().knownCounterparty());
+            default -> {
+                AttributeSchema.Attribute attribute = attributes.attribute(name);
+                yield attribute == null ? Optional.empty() : Optional.of(event.attributes().value(attribute));
+            }
+        };
+    }
+
+    private Profile profile() {
+        if (profile == null) {
+            profile = profiles.lookup(event.cin(), event.creditAccount());
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,67 @@
+package org.iki.engine;
+
+import dev.cel.common.CelFunctionDecl;
+import dev.cel.common.CelOverloadDecl;
+import dev.cel.common.types.SimpleType;
+import dev.cel.runtime.CelFunctionBinding;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.iki.state.TransactionGraphStore;
+import org.iki.state.WindowDurations;
+
+import java.util.List;
+
+/**
+ * CEL functions over the recent transfer graph.
+ * <ul>
+ *   <li>{@code inDegree(creditAccount, "1h")} - distinct accounts that paid the account</li>
+ *   <li>{@code outDegree(debitAccount, "1h")} - distinct accounts paid by the account</li>
+ *   <li>{@code inCycle(creditAccount, 3, "24h")} - money left the account and returned within 2 to 3 transfers</li>
+ * </ul>
+ * Constant windows are checked when the rule is compiled; a window longer than the graph retention is rejected
+ * rather than answered over the retained edges alone.
+ */
+@ApplicationScoped
+public class GraphFunctions implements RuleFunctionLibrary {
+
+    @Inject
+    TransactionGraphStore graphStore;
+
+    @Override
+    public List<CelFunctionDecl> functionDeclarations() {
+        return List.of(
+                CelFunctionDecl.newFunctionDeclaration("inDegree",
+                        CelOverloadDecl.newGlobalOverload("inDegree_string_string",
+                                SimpleType.INT, SimpleType.STRING, SimpleType.STRING)),
+                CelFunctionDecl.newFunctionDeclaration("outDegree",
+                        CelOverloadDecl.newGlobalOverload("outDegree_string_string",
+                                SimpleType.INT, SimpleType.STRING, SimpleType.STRING)),
+                CelFunctionDecl.newFunctionDeclaration("inCycle",
+                        CelOverloadDecl.newGlobalOverload("inCycle_string_int_string",
+                                SimpleType.BOOL, SimpleType.STRING, SimpleType.INT, SimpleType.STRING))
+        );
+    }
+
+    @Override
+    public List<CelFunctionBinding> functionBindings() {
+        return List.of(
+                CelFunctionBinding.from("inDegree_string_string", String.class, String.class,
+                        (account, window) -> graphStore.inDegree(account, WindowDurations.toMillis(window))),
+                CelFunctionBinding.from("outDegree_string_string", String.class, String.class,
+                        (account, window) -> graphStore.outDegree(account, WindowDurations.toMillis(window))),
+                CelFunctionBinding.from("inCycle_string_int_string",
+                        List.of(String.class, Long.class, String.class),
+                        args -> graphStore.inCycle((String) args[0], (Long) args[1],
+                                WindowDurations.toMillis((String) args[2])))
+        );
+    }
+
+    @Override
+    public void checkCall(String function, List<String> literals) {
+        String window = literals.get(literals.size() - 1);
+        if (window != null && WindowDurations.toMillis(window) > graphStore.maxWindowMillis()) {
+            throw new IllegalArgumentException("Window \"" + window + "\" is longer than the graph retention of "
+                    + graphStore.maxWindowMillis() / 1000 + " s");
+        }
+    }
+}
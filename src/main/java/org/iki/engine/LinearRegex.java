@@ -0,0 +1,87 @@
+package org.iki.engine;
+
+import com.google.re2j.Pattern;
+import com.google.re2j.PatternSyntaxException;
+import dev.cel.common.ast.CelConstant;
+import dev.cel.common.ast.CelExpr;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Linear-time regular expressions for rule {@code matches()} calls, backed by RE2J.
+ * RE2J compiles to an automaton and never backtracks, so matching time is bounded by the input length
+ * regardless of the pattern. Constant patterns are compiled once per rule snapshot, and patterns that
+ * need backtracking (backreferences, lookaround) are rejected when the rule is compiled.
+ */
+final class LinearRegex {
+
+    /**
+     * Internal CEL function that rewritten {@code matches()} calls are routed to.
+     */
+    static final String FUNCTION = "__matchesLinear";
+
+    private LinearRegex() {
+    }
+
+    /**
+     * Compiles a pattern with RE2J.
+     *
+     * @throws IllegalArgumentException if the pattern is invalid or cannot be matched in linear time
+     */
+    static Pattern compile(String pattern) {
+        try {
+            return Pattern.compile(pattern);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException(
+                    "Regex '" + pattern + "' is not supported by the linear-time engine: " + e.getDescription(), e);
+        }
+    }
+
+    /**
+     * CEL {@code matches} semantics: true if the pattern matches any substring of the subject.
+     */
+    static boolean matches(Pattern pattern, String subject) {
+        return pattern.matcher(subject).find();
+    }
+
+    /**
+     * Returns a call to {@link #FUNCTION} for {@code s.matches("re")} or {@code matches(s, "re")} with a
+     * constant pattern, compiling the pattern into {@code patterns}; returns null for any other node.
+     *
+     * @param rewriter Substitution used to print the subject expression
+     * @throws IllegalArgumentException if the constant pattern is rejected
+     */
+    static String substitution(CelExpr expr, Map<String, Pattern> patterns, Function<CelExpr, String> rewriter) {
+        if (expr.exprKind().getKind() != CelExpr.ExprKind.Kind.CALL) {
+            return null;
+        }
+        CelExpr.CelCall call = expr.call();
+        if (!call.function().equals("matches")) {
+            return null;
+        }
+        CelExpr subject;
+        CelExpr pattern;
+        if (call.target().isPresent() && call.args().size() == 1) {
+            subject = call.target().get();
+            pattern = call.args().get(0);
+        } else if (call.target().isEmpty() && call.args().size() == 2) {
+            subject = call.args().get(0);
+            pattern = call.args().get(1);
+        } else {
+            return null;
+        }
+        if (pattern.exprKind().getKind() != CelExpr.ExprKind.Kind.CONSTANT
+                || pattern.constant().getKind() != CelConstant.Kind.STRING_VALUE) {
+            return null;
+        }
+
+        String regex = pattern.constant().stringValue();
+        patterns.computeIfAbsent(regex, LinearRegex::compile);
+
+        StringBuilder out = new StringBuilder(FUNCTION).append('(');
+        out.append(CelExprPrinter.print(subject, rewriter)).append(", ");
+        CelExprPrinter.appendString(out, regex);
+        return out.append(')').toString();
+    }
+}
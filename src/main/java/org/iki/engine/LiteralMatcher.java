@@ -0,0 +1,207 @@
+package org.iki.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Multi-literal matcher compiled into flat primitive arrays.
+ * In prefix mode it is a plain trie answering {@code startsWith}; otherwise it is an Aho-Corasick
+ * automaton answering {@code contains}. Either way a subject string is scanned once, so the cost
+ * grows with the string length and the number of hits, not with the number of literals.
+ * Immutable and safe for concurrent use.
+ */
+final class LiteralMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final boolean prefixOnly;
+    // Outgoing edges of node n are edgeChars/edgeTargets[edgeStart[n] .. edgeStart[n + 1]), sorted by char
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] failure;
+    // Nearest node on the failure chain (including itself) that has outputs, or NONE
+    private final int[] outputLink;
+    // Output slots of node n are outputSlots[outputStart[n] .. outputStart[n + 1])
+    private final int[] outputStart;
+    private final int[] outputSlots;
+
+    private LiteralMatcher(boolean prefixOnly, int[] edgeStart, char[] edgeChars, int[] edgeTargets,
+                           int[] failure, int[] outputLink, int[] outputStart, int[] outputSlots) {
+        this.prefixOnly = prefixOnly;
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.failure = failure;
+        this.outputLink = outputLink;
+        this.outputStart = outputStart;
+        this.outputSlots = outputSlots;
+    }
+
+    /**
+     * Builds a matcher that reports {@code slots[i]} whenever {@code literals[i]} matches.
+     *
+     * @param literals   Literals to match
+     * @param slots      Output slot for each literal
+     * @param prefixOnly true for {@code startsWith} semantics, false for {@code contains}
+     */
+    static LiteralMatcher build(List<String> literals, int[] slots, boolean prefixOnly) {
+        if (literals.size() != slots.length) {
+            throw new IllegalArgumentException("literals and slots must have the same length");
+        }
+
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> outputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        outputs.add(new ArrayList<>());
+        for (int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            int node = ROOT;
+            for (int c = 0; c < literal.length(); c++) {
+                Integer next = children.get(node).get(literal.charAt(c));
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(literal.charAt(c), next);
+                    children.add(new TreeMap<>());
+                    outputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            outputs.get(node).add(slots[i]);
+        }
+
+        int nodes = children.size();
+        int[] edgeStart = new int[nodes + 1];
+        int edges = 0;
+        for (int n = 0; n < nodes; n++) {
+            edgeStart[n] = edges;
+            edges += children.get(n).size();
+        }
+        edgeStart[nodes] = edges;
+        char[] edgeChars = new char[edges];
+        int[] edgeTargets = new int[edges];
+        for (int n = 0; n < nodes; n++) {
+            int e = edgeStart[n];
+            for (Map.Entry<Character, Integer> edge : children.get(n).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+        }
+
+        int[] outputStart = new int[nodes + 1];
+        int outputCount = 0;
+        for (int n = 0; n < nodes; n++) {
+            outputStart[n] = outputCount;
+            outputCount += outputs.get(n).size();
+        }
+        outputStart[nodes] = outputCount;
+        int[] outputSlots = new int[outputCount];
+        for (int n = 0; n < nodes; n++) {
+            int o = outputStart[n];
+            for (int slot : outputs.get(n)) {
+                outputSlots[o++] = slot;
+            }
+        }
+
+        int[] failure = new int[nodes];
+        int[] outputLink = new int[nodes];
+        Arrays.fill(outputLink, NONE);
+        outputLink[ROOT] = outputStart[ROOT] < outputStart[ROOT + 1] ? ROOT : NONE;
+        if (!prefixOnly) {
+            // Breadth-first failure links, as in the classic Aho-Corasick construction
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+                failure[edgeTargets[e]] = ROOT;
+                queue.add(edgeTargets[e]);
+            }
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                boolean hasOutput = outputStart[node] < outputStart[node + 1];
+                outputLink[node] = hasOutput ? node : outputLink[failure[node]];
+                for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                    int child = edgeTargets[e];
+                    char c = edgeChars[e];
+                    int f = failure[node];
+                    int target = step(edgeStart, edgeChars, edgeTargets, f, c);
+                    while (target == NONE && f != ROOT) {
+                        f = failure[f];
+                        target = step(edgeStart, edgeChars, edgeTargets, f, c);
+                    }
+                    failure[child] = target == NONE || target == child ? ROOT : target;
+                    queue.add(child);
+                }
+            }
+        }
+
+        return new LiteralMatcher(prefixOnly, edgeStart, edgeChars, edgeTargets,
+                failure, outputLink, outputStart, outputSlots);
+    }
+
+    /**
+     * Scans {@code subject} once and sets {@code matches[slot]} for every literal it matches.
+     */
+    void match(String subject, boolean[] matches) {
+        emit(ROOT, matches);
+        int node = ROOT;
+        for (int i = 0; i < subject.length(); i++) {
+            char c = subject.charAt(i);
+            int next = step(edgeStart, edgeChars, edgeTargets, node, c);
+            if (prefixOnly) {
+                if (next == NONE) {
+                    return;
+                }
+                node = next;
+                emitOwn(node, matches);
+                continue;
+            }
+            while (next == NONE && node != ROOT) {
+                node = failure[node];
+                next = step(edgeStart, edgeChars, edgeTargets, node, c);
+            }
+            node = next == NONE ? ROOT : next;
+            emit(node, matches);
+        }
+    }
+
+    /**
+     * Returns the number of automaton states.
+     */
+    int stateCount() {
+        return failure.length;
+    }
+
+    private void emit(int node, boolean[] matches) {
+        for (int n = outputLink[node]; n != NONE; n = n == ROOT ? NONE : outputLink[failure[n]]) {
+            emitOwn(n, matches);
+        }
+    }
+
+    private void emitOwn(int node, boolean[] matches) {
+        for (int o = outputStart[node]; o < outputStart[node + 1]; o++) {
+            matches[outputSlots[o]] = true;
+        }
+    }
+
+    private static int step(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int node, char c) {
+        int low = edgeStart[node];
+        int high = edgeStart[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,18 @@
+package org.iki.engine;
+
+import dev.cel.runtime.CelRuntime;
+
+/**
+ * A memoised single-variable sub-expression: the event field it reads, its compiled program and
+ * a per-snapshot cache of results keyed by the field value.
+ *
+ * @see SingleVariableAnalysis
+ */
+record PartialExpression(String variable, CelRuntime.Program program, StripedLruCache<String, Boolean> results) {
+
+    /**
+     * Internal CEL function that memoised sub-expressions are routed to:
+     * {@code __partial("<sub-expression source>", field)}.
+     */
+    static final String FUNCTION = "__partial";
+}
@@ -0,0 +1,60 @@
+package org.iki.engine;
+
+import org.iki.model.TransactionEvent;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Small ring of recently evaluated events, used to warm up newly compiled programs before they are swapped in.
+ * Only one in {@value #SAMPLE_EVERY} events is stored, so recording costs a random number per event and the
+ * shared index is rarely touched.
+ */
+final class RecentEvents {
+
+    static final int SAMPLE_EVERY = 64;
+
+    private final AtomicReferenceArray<TransactionEvent> events;
+    private final AtomicInteger next = new AtomicInteger();
+
+    RecentEvents(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.events = new AtomicReferenceArray<>(capacity);
+    }
+
+    void record(TransactionEvent event) {
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0) {
+            events.lazySet(Math.floorMod(next.getAndIncrement(), events.length()), event);
+        }
+    }
+
+    /**
+     * Returns the stored events, topped up with synthetic events to {@code count} when fewer have been seen.
+     * Synthetic events spread amounts over several orders of magnitude and exercise the prefixes of the string
+     * index, so the common branches of the rules are taken.
+     */
+    List<TransactionEvent> sample(int count, List<String> literals) {
+        List<TransactionEvent> sample = new ArrayList<>(count);
+        for (int i = 0; i < events.length() && sample.size() < count; i++) {
+            TransactionEvent event = events.get(i);
+            if (event != null) {
+                sample.add(event);
+            }
+        }
+        Instant now = Instant.now();
+        for (int i = 0; sample.size() < count; i++) {
+            String literal = literals.isEmpty() ? "" : literals.get(i % literals.size());
+            BigDecimal amount = BigDecimal.valueOf((long) Math.pow(10, i % 6) * (1 + i % 9), 2);
+            sample.add(new TransactionEvent(literal + "WARMUP-D" + i, "WARMUP-C" + (i % 7) + literal,
+                    (i % 3 == 0 ? literal : "") + "WARMUP-CIN-" + (i % 11), amount, now));
+        }
+        return sample;
+    }
+}
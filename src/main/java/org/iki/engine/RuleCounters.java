@@ -0,0 +1,100 @@
+package org.iki.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluation counters of one rule, allocated when the rule is first compiled and carried into every later snapshot
+ * that still holds the rule's id, so the counts only grow and evaluation allocates nothing to update them.
+ * {@link LongAdder} stripes updates across cells under contention, so concurrent events do not serialise on them.
+ * <p>
+ * Evaluation time is sampled: only the events picked by {@code app.metrics.rules.sample-every} are timed, and
+ * {@link #getTimedEvaluations()} counts them, so {@code timedNanos / timedEvaluations} is the mean time per
+ * evaluation. A shared program is timed on the first rule of its group evaluated for the event. Timed evaluations
+ * are also counted in log-linear latency buckets, four per power of two from 128 ns, so percentiles are known to
+ * within a quarter of their value.
+ */
+public final class RuleCounters {
+
+    static final int LATENCY_BUCKETS = 96;
+    private static final int FIRST_EXPONENT = 7;
+
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timedEvaluations = new LongAdder();
+    private final LongAdder timedNanos = new LongAdder();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS);
+
+    void matched() {
+        matches.increment();
+    }
+
+    void failed() {
+        errors.increment();
+    }
+
+    void timed(long nanos) {
+        timedEvaluations.increment();
+        timedNanos.add(nanos);
+        latencyBuckets.incrementAndGet(latencyBucket(nanos));
+    }
+
+    /**
+     * Returns the latency bucket of a duration: 0 below 128 ns, then four buckets per power of two.
+     */
+    static int latencyBucket(long nanos) {
+        if (nanos < 1L << FIRST_EXPONENT) {
+            return 0;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - 2)) & 3;
+        return Math.min(LATENCY_BUCKETS - 1, (exponent - FIRST_EXPONENT) * 4 + sub + 1);
+    }
+
+    /**
+     * Returns the largest duration counted in a latency bucket, in nanoseconds.
+     */
+    static long latencyBucketUpperBound(int bucket) {
+        if (bucket == 0) {
+            return (1L << FIRST_EXPONENT) - 1;
+        }
+        int exponent = (bucket - 1) / 4 + FIRST_EXPONENT;
+        int sub = (bucket - 1) % 4;
+        return ((5L + sub) << (exponent - 2)) - 1;
+    }
+
+    /**
+     * Returns the number of timed evaluations in a latency bucket.
+     */
+    long latencyBucketCount(int bucket) {
+        return latencyBuckets.get(bucket);
+    }
+
+    /**
+     * Returns the number of events the rule matched.
+     */
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    /**
+     * Returns the number of evaluations that failed.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of sampled evaluations that were timed.
+     */
+    public long getTimedEvaluations() {
+        return timedEvaluations.sum();
+    }
+
+    /**
+     * Returns the total time of the sampled evaluations, in nanoseconds.
+     */
+    public long getTimedNanos() {
+        return timedNanos.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package org.iki.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one timed rule evaluation, so slow rules can be lined up with garbage collection,
+ * allocation and safepoints on the same timeline in JDK Mission Control.
+ * <p>
+ * Only the evaluations picked by {@code app.metrics.rules.sample-every} are recorded, and only while a recording
+ * enables the event. It is disabled by default, as a timed event yields one per rule; while disabled
+ * {@link #shouldCommit()} is false and the JIT removes the allocation. Stack traces are off because the evaluating
+ * frames are the same for every rule. Enable it with
+ * {@code -XX:StartFlightRecording:settings=profile,+org.iki.RuleEvaluation#enabled=true} and set a
+ * {@code threshold} to keep only the slow ones.
+ */
+@Name("org.iki.RuleEvaluation")
+@Label("Rule Evaluation")
+@Description("Sampled evaluation of one compiled rule against one event")
+@Category({"Edios", "Rules"})
+@StackTrace(false)
+@Enabled(false)
+final class RuleEvaluationEvent extends Event {
+
+    @Label("Rule Id")
+    long ruleId;
+
+    @Label("Matched")
+    boolean matched;
+}
@@ -0,0 +1,34 @@
+package org.iki.engine;
+
+import dev.cel.common.CelFunctionDecl;
+import dev.cel.runtime.CelFunctionBinding;
+
+import java.util.List;
+
+/**
+ * A set of custom CEL functions contributed to the rule engine.
+ * Declarations are registered on the compiler and bindings on the runtime in {@link CelRuleEngine#init()}.
+ */
+public interface RuleFunctionLibrary {
+
+    /**
+     * Function declarations used by the compiler for type-checking.
+     */
+    List<CelFunctionDecl> functionDeclarations();
+
+    /**
+     * Runtime implementations, one per declared overload id.
+     */
+    List<CelFunctionBinding> functionBindings();
+
+    /**
+     * Checks a call to one of the declared functions when a rule is compiled, so a call that can only fail at
+     * evaluation is rejected up front. The default accepts every call.
+     *
+     * @param function  Function name
+     * @param literals  The call's arguments: the value of each string literal, null for any other argument
+     * @throws IllegalArgumentException if the call can never be evaluated
+     */
+    default void checkCall(String function, List<String> literals) {
+    }
+}
@@ -0,0 +1,404 @@
+package org.iki.engine;
+
+import dev.cel.common.ast.CelExpr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compile-time simplification of a checked rule expression, printed back to normalised CEL source:
+ * <ul>
+ *   <li>constant sub-expressions are folded, and {@code true}/{@code false} operands of logical operators removed</li>
+ *   <li>comparisons are written with the constant on the right and {@code ==}/{@code !=} operands in a fixed order</li>
+ *   <li>{@code &&}/{@code ||} chains are flattened, de-duplicated and ordered by estimated cost, so cheap numeric
+ *       guards run before string and stateful functions</li>
+ * </ul>
+ * CEL's logical operators are commutative (an error on one side is absorbed if the other side decides the result),
+ * so reordering their operands never changes a rule's outcome. Rules that normalise to the same source are
+ * logically identical and can share a program.
+ */
+final class RuleOptimizer {
+
+    static final String CONSTANT_FOLDING = "constant-folding";
+    static final String OPERAND_REORDERING = "operand-reordering";
+    static final String OPERAND_CANONICALISATION = "operand-canonicalisation";
+    static final String DUPLICATE_OPERAND_REMOVAL = "duplicate-operand-removal";
+    static final String DOUBLE_NEGATION_REMOVAL = "double-negation-removal";
+    static final String SHARED_PROGRAM = "shared-program";
+
+    // Operator with its operands swapped, used to move constants to the right-hand side
+    private static final Map<String, String> SWAPPED_COMPARISONS = Map.of(
+            "_<_", "_>_",
+            "_<=_", "_>=_",
+            "_>_", "_<_",
+            "_>=_", "_<=_",
+            "_==_", "_==_",
+            "_!=_", "_!=_"
+    );
+
+    /**
+     * Normalised source and the names of the optimisations that changed it.
+     */
+    record Result(String source, Set<String> optimizations) {}
+
+    /**
+     * Printed sub-expression with its estimated evaluation cost. {@code constant} holds the value of a folded
+     * constant and {@code negated} the operand of a negation.
+     */
+    private record Term(String source, int cost, Object constant, boolean atomic, Term negated) {
+        static Term of(String source, int cost, boolean atomic) {
+            return new Term(source, cost, null, atomic, null);
+        }
+
+        String operand() {
+            return atomic ? source : "(" + source + ")";
+        }
+    }
+
+    private final Set<String> applied = new LinkedHashSet<>();
+
+    private RuleOptimizer() {
+    }
+
+    /**
+     * Optimises a checked expression.
+     *
+     * @throws CelExprPrinter.UnsupportedExpressionException if the expression uses constructs that cannot be printed
+     */
+    static Result optimize(CelExpr expr) {
+        RuleOptimizer optimizer = new RuleOptimizer();
+        Term term = optimizer.emit(expr);
+        return new Result(term.source(), Collections.unmodifiableSet(optimizer.applied));
+    }
+
+    private Term emit(CelExpr expr) {
+        return switch (expr.exprKind().getKind()) {
+            case CONSTANT -> switch (expr.constant().getKind()) {
+                case BOOLEAN_VALUE -> constant(expr.constant().booleanValue());
+                case INT64_VALUE -> constant(expr.constant().int64Value());
+                case DOUBLE_VALUE -> constant(expr.constant().doubleValue());
+                case STRING_VALUE -> constant(expr.constant().stringValue());
+                default -> Term.of(CelExprPrinter.print(expr), 0, true);
+            };
+            case IDENT -> Term.of(expr.ident().name(), 0, true);
+            case SELECT -> Term.of(CelExprPrinter.print(expr), 1, true);
+            case CALL -> emitCall(expr.call());
+            case LIST -> emitList(expr.list().elements());
+            default -> throw new CelExprPrinter.UnsupportedExpressionException(
+                    "Unsupported expression kind: " + expr.exprKind().getKind());
+        };
+    }
+
+    private Term emitCall(CelExpr.CelCall call) {
+        String function = call.function();
+        List<CelExpr> args = call.args();
+        switch (function) {
+            case "_&&_" -> {
+                return logical(call, true);
+            }
+            case "_||_" -> {
+                return logical(call, false);
+            }
+            case "!_" -> {
+                return not(emit(args.get(0)));
+            }
+            case "_?_:_" -> {
+                return conditional(emit(args.get(0)), args.get(1), args.get(2));
+            }
+            default -> {
+            }
+        }
+
+        String binary = CelExprPrinter.binaryOperator(function);
+        if (binary != null && args.size() == 2) {
+            return binary(function, emit(args.get(0)), emit(args.get(1)));
+        }
+        if (function.equals("-_") && args.size() == 1) {
+            Term operand = emit(args.get(0));
+            Object negated = negate(operand.constant());
+            if (negated != null) {
+                applied.add(CONSTANT_FOLDING);
+                return constant(negated);
+            }
+            return Term.of("-" + operand.operand(), operand.cost() + 1, false);
+        }
+        if (function.equals("_[_]") && args.size() == 2) {
+            Term operand = emit(args.get(0));
+            Term index = emit(args.get(1));
+            return Term.of(operand.operand() + "[" + index.source() + "]",
+                    callCost(function) + operand.cost() + index.cost(), true);
+        }
+        if (function.startsWith("_") || function.startsWith("@") || function.startsWith("!")) {
+            throw new CelExprPrinter.UnsupportedExpressionException("Unsupported operator: " + function);
+        }
+
+        StringBuilder out = new StringBuilder();
+        int cost = callCost(function);
+        if (call.target().isPresent()) {
+            Term target = emit(call.target().get());
+            out.append(target.operand()).append('.');
+            cost += target.cost();
+        }
+        out.append(function).append('(');
+        for (int i = 0; i < args.size(); i++) {
+            Term arg = emit(args.get(i));
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(arg.source());
+            cost += arg.cost();
+        }
+        return Term.of(out.append(')').toString(), cost, true);
+    }
+
+    private Term emitList(List<CelExpr> elements) {
+        StringBuilder out = new StringBuilder("[");
+        int cost = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            Term element = emit(elements.get(i));
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(element.source());
+            cost += element.cost();
+        }
+        return Term.of(out.append(']').toString(), cost + 1, true);
+    }
+
+    private Term logical(CelExpr.CelCall call, boolean and) {
+        List<CelExpr> operands = new ArrayList<>();
+        flatten(call, and ? "_&&_" : "_||_", operands);
+
+        List<Term> terms = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (CelExpr operand : operands) {
+            Term term = emit(operand);
+            if (term.constant() instanceof Boolean value) {
+                applied.add(CONSTANT_FOLDING);
+                if (value != and) {
+                    // false && x, true || x
+                    return constant(value);
+                }
+                continue;
+            }
+            if (!seen.add(term.source())) {
+                applied.add(DUPLICATE_OPERAND_REMOVAL);
+                continue;
+            }
+            terms.add(term);
+        }
+        if (terms.isEmpty()) {
+            return constant(and);
+        }
+
+        List<Term> byCost = new ArrayList<>(terms);
+        byCost.sort(Comparator.comparingInt(Term::cost));
+        if (!byCost.equals(terms)) {
+            applied.add(OPERAND_REORDERING);
+        }
+        List<Term> canonical = new ArrayList<>(byCost);
+        canonical.sort(Comparator.comparingInt(Term::cost).thenComparing(Term::source));
+        if (!canonical.equals(byCost)) {
+            applied.add(OPERAND_CANONICALISATION);
+        }
+        if (canonical.size() == 1) {
+            return canonical.get(0);
+        }
+
+        StringBuilder out = new StringBuilder();
+        int cost = 0;
+        for (Term term : canonical) {
+            if (!out.isEmpty()) {
+                out.append(and ? " && " : " || ");
+            }
+            out.append(term.operand());
+            cost += term.cost();
+        }
+        return Term.of(out.toString(), cost + 1, false);
+    }
+
+    private static void flatten(CelExpr.CelCall call, String function, List<CelExpr> operands) {
+        for (CelExpr arg : call.args()) {
+            if (arg.exprKind().getKind() == CelExpr.ExprKind.Kind.CALL && arg.call().function().equals(function)) {
+                flatten(arg.call(), function, operands);
+            } else {
+                operands.add(arg);
+            }
+        }
+    }
+
+    private Term not(Term operand) {
+        if (operand.constant() instanceof Boolean value) {
+            applied.add(CONSTANT_FOLDING);
+            return constant(!value);
+        }
+        if (operand.negated() != null) {
+            applied.add(DOUBLE_NEGATION_REMOVAL);
+            return operand.negated();
+        }
+        return new Term("!" + operand.operand(), operand.cost() + 1, null, false, operand);
+    }
+
+    private Term conditional(Term condition, CelExpr whenTrue, CelExpr whenFalse) {
+        if (condition.constant() instanceof Boolean value) {
+            applied.add(CONSTANT_FOLDING);
+            return emit(value ? whenTrue : whenFalse);
+        }
+        Term left = emit(whenTrue);
+        Term right = emit(whenFalse);
+        return Term.of(condition.operand() + " ? " + left.operand() + " : " + right.operand(),
+                condition.cost() + Math.max(left.cost(), right.cost()) + 1, false);
+    }
+
+    private Term binary(String function, Term left, Term right) {
+        Object folded = fold(function, left.constant(), right.constant());
+        if (folded != null) {
+            applied.add(CONSTANT_FOLDING);
+            return constant(folded);
+        }
+        String swapped = SWAPPED_COMPARISONS.get(function);
+        if (swapped != null && shouldSwap(function, left, right)) {
+            applied.add(OPERAND_CANONICALISATION);
+            function = swapped;
+            Term t = left;
+            left = right;
+            right = t;
+        }
+        return Term.of(left.operand() + " " + CelExprPrinter.binaryOperator(function) + " " + right.operand(),
+                callCost(function) + left.cost() + right.cost(), false);
+    }
+
+    /**
+     * Constants go on the right; otherwise operands are ordered by source so that {@code a == b} and
+     * {@code b == a} normalise identically. Only equality is reordered when neither side is constant.
+     */
+    private static boolean shouldSwap(String function, Term left, Term right) {
+        boolean leftConstant = left.constant() != null;
+        boolean rightConstant = right.constant() != null;
+        if (leftConstant != rightConstant) {
+            return leftConstant;
+        }
+        boolean equality = function.equals("_==_") || function.equals("_!=_");
+        return equality && !leftConstant && left.source().compareTo(right.source()) > 0;
+    }
+
+    private static Object fold(String function, Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        try {
+            if (left instanceof Long a && right instanceof Long b) {
+                return switch (function) {
+                    case "_+_" -> Math.addExact(a, b);
+                    case "_-_" -> Math.subtractExact(a, b);
+                    case "_*_" -> Math.multiplyExact(a, b);
+                    default -> compare(function, Long.compare(a, b));
+                };
+            }
+        } catch (ArithmeticException e) {
+            // Overflow is a runtime error in CEL; leave it for evaluation
+            return null;
+        }
+        if (left instanceof Double a && right instanceof Double b) {
+            return switch (function) {
+                case "_+_" -> finite(a + b);
+                case "_-_" -> finite(a - b);
+                case "_*_" -> finite(a * b);
+                default -> compare(function, a.doubleValue(), b.doubleValue());
+            };
+        }
+        if (left instanceof String a && right instanceof String b) {
+            return function.equals("_+_") ? a + b : compare(function, a.compareTo(b));
+        }
+        if (left instanceof Boolean a && right instanceof Boolean b) {
+            return switch (function) {
+                case "_==_" -> a.equals(b);
+                case "_!=_" -> !a.equals(b);
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    private static Boolean compare(String function, int comparison) {
+        return switch (function) {
+            case "_==_" -> comparison == 0;
+            case "_!=_" -> comparison != 0;
+            case "_<_" -> comparison < 0;
+            case "_<=_" -> comparison <= 0;
+            case "_>_" -> comparison > 0;
+            case "_>=_" -> comparison >= 0;
+            default -> null;
+        };
+    }
+
+    /**
+     * Compares with the primitive operators, as CEL does: {@code -0.0 == 0.0}, and NaN is unequal to everything.
+     * {@link Double#compare} orders both differently.
+     */
+    private static Boolean compare(String function, double a, double b) {
+        return switch (function) {
+            case "_==_" -> a == b;
+            case "_!=_" -> a != b;
+            case "_<_" -> a < b;
+            case "_<=_" -> a <= b;
+            case "_>_" -> a > b;
+            case "_>=_" -> a >= b;
+            default -> null;
+        };
+    }
+
+    private static Double finite(double value) {
+        return Double.isFinite(value) ? value : null;
+    }
+
+    private static Object negate(Object value) {
+        if (value instanceof Long l && l != Long.MIN_VALUE) {
+            return -l;
+        }
+        if (value instanceof Double d) {
+            return -d;
+        }
+        return null;
+    }
+
+    private static Term constant(Object value) {
+        if (value instanceof String s) {
+            StringBuilder out = new StringBuilder();
+            CelExprPrinter.appendString(out, s);
+            return new Term(out.toString(), 0, s, true, null);
+        }
+        if (value instanceof Long l) {
+            return new Term(Long.toString(l), 0, l, l >= 0, null);
+        }
+        if (value instanceof Double d) {
+            return new Term(Double.toString(d), 0, d, Double.doubleToRawLongBits(d) >= 0, null);
+        }
+        return new Term(value.toString(), 0, value, true, null);
+    }
+
+    /**
+     * Rough relative cost of a function call, used only to order logical operands.
+     */
+    private static int callCost(String function) {
+        if (CelExprPrinter.binaryOperator(function) != null || CelExprPrinter.unaryOperator(function) != null) {
+            return 1;
+        }
+        return switch (function) {
+            case "_[_]", "size", "int", "uint", "double", "string", "bool" -> 2;
+            case "isRound", "between", "hourOfDay" -> 2;
+            case "startsWith", "endsWith", "contains", "anyStartsWith" -> 10;
+            case "matches" -> 50;
+            // Bounded graph search over many edges
+            case "inCycle" -> 500;
+            // Custom library functions consult stateful stores
+            default -> 100;
+        };
+    }
+}
@@ -0,0 +1,225 @@
+package org.iki.engine;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Ranks compiled rules by what they cost and how they behave recently: total evaluation time, p99 evaluation
+ * latency, match rate and error rate.
+ * <p>
+ * Evaluation adds nothing for the profiler beyond the sampled {@link RuleCounters} it already keeps. Every
+ * {@code app.rules.profile.interval} the profiler reads each rule's counters, and adds what they grew by to
+ * exponentially decayed totals that halve every {@code app.rules.profile.half-life} without new activity, so a rule
+ * that was slow an hour ago does not outrank one that is slow now. Sampled time is scaled up by the ratio of
+ * evaluated to timed events to estimate each rule's total time. Rates are per event evaluated while the rule was
+ * compiled. Rules with fewer than {@value #MIN_LATENCY_SAMPLES} decayed timed evaluations are left out of the
+ * latency ranking, as their p99 is noise.
+ * <p>
+ * Time is wall-clock time on the evaluating thread; evaluation does not block, so it approximates CPU time without
+ * the cost of reading the thread CPU clock. A rule sharing its program with others is charged only when its group
+ * is evaluated through it.
+ */
+@ApplicationScoped
+public class RuleProfiler {
+
+    static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final Map<Long, Profile> profiles = new HashMap<>();
+    private long lastTickNanos;
+    private long lastEvaluatedEvents;
+    private long lastTimedEvents;
+
+    @Inject
+    CelRuleEngine celRuleEngine;
+
+    @ConfigProperty(name = "app.rules.profile.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.rules.profile.half-life", defaultValue = "5m")
+    Duration halfLife;
+
+    @ConfigProperty(name = "app.rules.profile.top", defaultValue = "10")
+    int top;
+
+    @PostConstruct
+    void init() {
+        if (enabled && (halfLife.isZero() || halfLife.isNegative())) {
+            throw new IllegalArgumentException("app.rules.profile.half-life must be positive");
+        }
+        if (enabled && top < 1) {
+            throw new IllegalArgumentException("app.rules.profile.top must be positive");
+        }
+        lastTickNanos = System.nanoTime();
+    }
+
+    @Scheduled(every = "${app.rules.profile.interval:10s}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void tick() {
+        tick(System.nanoTime());
+    }
+
+    /**
+     * Decays the profiles by the time elapsed since the last tick and adds what each rule's counters grew by.
+     */
+    synchronized void tick(long now) {
+        if (!enabled) {
+            return;
+        }
+        double decay = Math.pow(0.5, (double) (now - lastTickNanos) / halfLife.toNanos());
+        long evaluatedEvents = celRuleEngine.getEvaluatedEvents();
+        long timedEvents = celRuleEngine.getTimedEvents();
+        long events = evaluatedEvents - lastEvaluatedEvents;
+        long timed = timedEvents - lastTimedEvents;
+        double timeScale = timed == 0 ? 0 : (double) events / timed;
+
+        Map<Long, RuleCounters> current = celRuleEngine.getRuleCounters();
+        // A rule removed and added again has new counters, so its profile starts over
+        profiles.entrySet().removeIf(entry -> current.get(entry.getKey()) != entry.getValue().counters);
+        current.forEach((id, counters) -> profiles.computeIfAbsent(id, key -> new Profile(counters))
+                .update(decay, events, timeScale));
+
+        lastTickNanos = now;
+        lastEvaluatedEvents = evaluatedEvents;
+        lastTimedEvents = timedEvents;
+    }
+
+    /**
+     * Returns the rules ranked by each measure.
+     *
+     * @param limit Rules per ranking, or null for {@code app.rules.profile.top}
+     */
+    public synchronized ProfileReport report(Integer limit) {
+        int n = limit == null ? top : limit;
+        if (n < 1) {
+            throw new IllegalArgumentException("top must be positive");
+        }
+        List<RuleProfile> all = new ArrayList<>(profiles.size());
+        double totalNanos = 0;
+        for (Profile profile : profiles.values()) {
+            totalNanos += profile.nanos;
+        }
+        for (Map.Entry<Long, Profile> entry : profiles.entrySet()) {
+            all.add(entry.getValue().toRuleProfile(entry.getKey(), totalNanos));
+        }
+        return new ProfileReport(enabled, halfLife.toSeconds(), all.size(),
+                rank(all, RuleProfile::timeMillis, profile -> profile.timeMillis() > 0, n),
+                rank(all, RuleProfile::p99Micros, profile -> profile.p99Micros() != null, n),
+                rank(all, RuleProfile::matchRate, profile -> profile.matchRate() > 0, n),
+                rank(all, RuleProfile::errorRate, profile -> profile.errorRate() > 0, n));
+    }
+
+    private static List<RuleProfile> rank(List<RuleProfile> profiles, ToDoubleFunction<RuleProfile> measure,
+                                          Predicate<RuleProfile> ranked, int limit) {
+        return profiles.stream()
+                .filter(ranked)
+                .sorted(Comparator.comparingDouble(measure).reversed().thenComparingLong(RuleProfile::ruleId))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Decayed activity of one rule, and the counter values it was last updated from.
+     */
+    private static final class Profile {
+
+        private final RuleCounters counters;
+        private final long[] lastBuckets = new long[RuleCounters.LATENCY_BUCKETS];
+        private final double[] buckets = new double[RuleCounters.LATENCY_BUCKETS];
+        private long lastMatches;
+        private long lastErrors;
+        private long lastTimedNanos;
+        private double events;
+        private double matches;
+        private double errors;
+        private double nanos;
+
+        Profile(RuleCounters counters) {
+            this.counters = counters;
+        }
+
+        void update(double decay, long newEvents, double timeScale) {
+            long matchCount = counters.getMatches();
+            long errorCount = counters.getErrors();
+            long timedNanos = counters.getTimedNanos();
+            events = events * decay + newEvents;
+            matches = matches * decay + (matchCount - lastMatches);
+            errors = errors * decay + (errorCount - lastErrors);
+            nanos = nanos * decay + (timedNanos - lastTimedNanos) * timeScale;
+            for (int i = 0; i < buckets.length; i++) {
+                long count = counters.latencyBucketCount(i);
+                buckets[i] = buckets[i] * decay + (count - lastBuckets[i]);
+                lastBuckets[i] = count;
+            }
+            lastMatches = matchCount;
+            lastErrors = errorCount;
+            lastTimedNanos = timedNanos;
+        }
+
+        RuleProfile toRuleProfile(long id, double totalNanos) {
+            return new RuleProfile(id, nanos / 1_000_000, totalNanos == 0 ? 0 : nanos / totalNanos,
+                    p99Micros(), events, events == 0 ? 0 : matches / events, events == 0 ? 0 : errors / events);
+        }
+
+        private Double p99Micros() {
+            double samples = 0;
+            for (double count : buckets) {
+                samples += count;
+            }
+            if (samples < MIN_LATENCY_SAMPLES) {
+                return null;
+            }
+            double below = samples * 0.99;
+            double seen = 0;
+            int bucket = 0;
+            for (; bucket < buckets.length - 1; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= below) {
+                    break;
+                }
+            }
+            return RuleCounters.latencyBucketUpperBound(bucket) / 1_000.0;
+        }
+    }
+
+    /**
+     * Rule profile report.
+     *
+     * @param enabled         Whether rules are profiled
+     * @param halfLifeSeconds Time over which past activity loses half its weight
+     * @param profiledRules   Compiled rules with a profile
+     * @param byTime          Rules that took the most evaluation time
+     * @param byP99Latency    Rules with the slowest p99 evaluation latency
+     * @param byMatchRate     Rules matching the largest fraction of events
+     * @param byErrorRate     Rules failing on the largest fraction of events
+     */
+    public record ProfileReport(boolean enabled, long halfLifeSeconds, int profiledRules, List<RuleProfile> byTime,
+                                List<RuleProfile> byP99Latency, List<RuleProfile> byMatchRate,
+                                List<RuleProfile> byErrorRate) {}
+
+    /**
+     * Decayed profile of one rule.
+     *
+     * @param ruleId      Rule id
+     * @param timeMillis  Estimated evaluation time
+     * @param timeShare   Fraction of the evaluation time of all rules
+     * @param p99Micros   99th percentile of sampled evaluation latency, to within a quarter; null if too few
+     *                    evaluations were timed
+     * @param events      Events evaluated
+     * @param matchRate   Fraction of events matched
+     * @param errorRate   Fraction of events whose evaluation failed
+     */
+    public record RuleProfile(long ruleId, double timeMillis, double timeShare, Double p99Micros, double events,
+                              double matchRate, double errorRate) {}
+}
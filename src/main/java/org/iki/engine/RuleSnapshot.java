@@ -0,0 +1,38 @@
+package org.iki.engine;
+
+import com.google.re2j.Pattern;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable result of compiling a rule set: the compiled rules plus any per-snapshot indexes and caches they depend on.
+ * Swapped as a single reference so evaluation never mixes programs and indexes from different compilations,
+ * and memoised results are discarded together with the rules that produced them.
+ * <p>
+ * A single-rule update derives a new snapshot from the current one, so after updates {@code groupCount} is an upper
+ * bound on the group indexes in use rather than the number of groups, and the indexes may hold entries that no rule
+ * reads any more until the next full compile.
+ */
+record RuleSnapshot(
+        // Incremented with every swap, including single-rule updates
+        long version,
+        Map<Long, CompiledRule> rules,
+        // Normalised expression -> leader of the rules sharing its program
+        Map<String, CompiledRule> groups,
+        int groupCount,
+        StringMatchIndex stringMatches,
+        Map<String, Pattern> patterns,
+        Map<String, PartialExpression> partials,
+        List<SequenceNfa> sequences
+) {
+    static final RuleSnapshot EMPTY = new RuleSnapshot(0, Map.of(), Map.of(), 0, StringMatchIndex.EMPTY, Map.of(), Map.of(),
+            List.of());
+
+    /**
+     * Returns true if some rules share a program, in which case evaluation memoises results per group.
+     */
+    boolean hasSharedPrograms() {
+        return groups.size() < rules.size();
+    }
+}
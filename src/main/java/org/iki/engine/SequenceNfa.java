@@ -0,0 +1,49 @@
+package org.iki.engine;
+
+import dev.cel.runtime.CelEvaluationException;
+import dev.cel.runtime.CelRuntime;
+import dev.cel.runtime.CelVariableResolver;
+import org.iki.model.SequenceRule;
+import org.iki.model.TransactionEvent;
+import org.iki.state.SequenceStore;
+
+/**
+ * A compiled sequence rule: a linear NFA with one state per step, one CEL program per transition and the
+ * per-customer partial matches it advances. Step 0 is evaluated for every event; later steps only when the
+ * customer has a partial match waiting for them, so customers without partial matches pay one predicate per rule.
+ */
+final class SequenceNfa {
+
+    private final SequenceRule rule;
+    private final CelRuntime.Program[] steps;
+    private final SequenceStore.Partials partials;
+
+    SequenceNfa(SequenceRule rule, CelRuntime.Program[] steps, SequenceStore.Partials partials) {
+        this.rule = rule;
+        this.steps = steps;
+        this.partials = partials;
+    }
+
+    SequenceRule rule() {
+        return rule;
+    }
+
+    /**
+     * Feeds one event to the NFA of the event's customer.
+     *
+     * @return true if the event completed the sequence
+     */
+    boolean advance(TransactionEvent event, CelVariableResolver variables) throws CelEvaluationException {
+        long timeMillis = event.transactedTime().toEpochMilli();
+        long matched = Boolean.TRUE.equals(steps[0].eval(variables)) ? 1 : 0;
+        long waiting = partials.waitingSteps(event.cin(), timeMillis);
+        while (waiting != 0) {
+            int step = Long.numberOfTrailingZeros(waiting);
+            waiting &= waiting - 1;
+            if (Boolean.TRUE.equals(steps[step].eval(variables))) {
+                matched |= 1L << step;
+            }
+        }
+        return matched != 0 && partials.advance(event.cin(), timeMillis, matched);
+    }
+}
@@ -0,0 +1,121 @@
+package org.iki.engine;
+
+import dev.cel.common.ast.CelConstant;
+import dev.cel.common.ast.CelExpr;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Static analysis of a checked rule AST that finds boolean sub-expressions whose value depends on a
+ * single string field of the event and nothing else. Such sub-expressions are pure functions of that
+ * field's value and can be memoised per value across events.
+ * <p>
+ * Only sub-expressions that do string work the {@link StringMatchIndex} does not already answer
+ * ({@code endsWith}, {@code matches}, or {@code startsWith}/{@code contains} with a non-literal argument)
+ * are reported; indexed predicates are cheaper to read from the per-event flags than from a cache.
+ */
+final class SingleVariableAnalysis {
+
+    private static final Set<String> FIELDS = Set.of("debitAccount", "creditAccount", "cin");
+
+    // Functions known to be deterministic and free of side effects; custom library functions are not
+    private static final Set<String> PURE_FUNCTIONS = Set.of(
+            "_&&_", "_||_", "!_", "-_", "_==_", "_!=_", "_<_", "_<=_", "_>_", "_>=_",
+            "_+_", "_-_", "_*_", "_/_", "_%_", "@in", "_?_:_", "_[_]",
+            "startsWith", "endsWith", "contains", "matches", "size", "string", "int", "double",
+            "anyStartsWith", "isRound", "between", "hourOfDay", LinearRegex.FUNCTION
+    );
+
+    private static final Set<String> BOOLEAN_FUNCTIONS = Set.of(
+            "_&&_", "_||_", "!_", "_==_", "_!=_", "_<_", "_<=_", "_>_", "_>=_", "@in",
+            "startsWith", "endsWith", "contains", "matches"
+    );
+
+    /**
+     * Summary of a sub-tree: the single identifier it reads (null if none), whether it reads more than one,
+     * whether every call in it is pure, and whether it contains string work worth memoising.
+     */
+    private record Info(String variable, boolean multipleVariables, boolean pure, boolean stringWork) {
+        static final Info CONSTANT = new Info(null, false, true, false);
+        static final Info OPAQUE = new Info(null, true, false, false);
+
+        Info merge(Info other) {
+            boolean multiple = multipleVariables || other.multipleVariables
+                    || (variable != null && other.variable != null && !variable.equals(other.variable));
+            return new Info(variable != null ? variable : other.variable, multiple,
+                    pure && other.pure, stringWork || other.stringWork);
+        }
+    }
+
+    private final Map<Long, Info> infos = new HashMap<>();
+
+    private SingleVariableAnalysis() {
+    }
+
+    static SingleVariableAnalysis of(CelExpr root) {
+        SingleVariableAnalysis analysis = new SingleVariableAnalysis();
+        analysis.analyze(root);
+        return analysis;
+    }
+
+    /**
+     * Returns the event field {@code expr} depends on if it is a memoisable boolean sub-expression, else null.
+     */
+    String memoizableVariable(CelExpr expr) {
+        if (expr.exprKind().getKind() != CelExpr.ExprKind.Kind.CALL
+                || !BOOLEAN_FUNCTIONS.contains(expr.call().function())) {
+            return null;
+        }
+        Info info = infos.get(expr.id());
+        if (info == null || !info.pure() || !info.stringWork() || info.multipleVariables()
+                || !FIELDS.contains(info.variable())) {
+            return null;
+        }
+        return info.variable();
+    }
+
+    private Info analyze(CelExpr expr) {
+        Info info = switch (expr.exprKind().getKind()) {
+            case CONSTANT -> Info.CONSTANT;
+            case IDENT -> new Info(expr.ident().name(), false, true, false);
+            case SELECT -> analyze(expr.select().operand());
+            case CALL -> analyzeCall(expr.call());
+            default -> Info.OPAQUE;
+        };
+        infos.put(expr.id(), info);
+        return info;
+    }
+
+    private Info analyzeCall(CelExpr.CelCall call) {
+        Info info = new Info(null, false, PURE_FUNCTIONS.contains(call.function()), isUnindexedStringWork(call));
+        if (call.target().isPresent()) {
+            info = info.merge(analyze(call.target().get()));
+        }
+        for (CelExpr arg : call.args()) {
+            info = info.merge(analyze(arg));
+        }
+        return info;
+    }
+
+    private static boolean isUnindexedStringWork(CelExpr.CelCall call) {
+        return switch (call.function()) {
+            case "endsWith", "matches", LinearRegex.FUNCTION -> true;
+            case "startsWith", "contains" -> !isIndexable(call);
+            default -> false;
+        };
+    }
+
+    private static boolean isIndexable(CelExpr.CelCall call) {
+        if (call.target().isEmpty() || call.args().size() != 1) {
+            return false;
+        }
+        CelExpr target = call.target().get();
+        CelExpr arg = call.args().get(0);
+        return target.exprKind().getKind() == CelExpr.ExprKind.Kind.IDENT
+                && FIELDS.contains(target.ident().name())
+                && arg.exprKind().getKind() == CelExpr.ExprKind.Kind.CONSTANT
+                && arg.constant().getKind() == CelConstant.Kind.STRING_VALUE;
+    }
+}
@@ -0,0 +1,207 @@
+package org.iki.engine;
+
+import dev.cel.common.ast.CelConstant;
+import dev.cel.common.ast.CelExpr;
+import org.iki.model.TransactionEvent;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Per-field literal matchers built from the {@code startsWith} and {@code contains} predicates of a rule set.
+ * Each distinct (field, operation, literal) triple gets a slot; rules are rewritten to read
+ * {@code __stringMatches[slot]} instead of scanning the string themselves, and each field is
+ * scanned once per event regardless of how many rules test it.
+ */
+final class StringMatchIndex {
+
+    /**
+     * Name of the CEL variable holding the per-event match flags.
+     */
+    static final String MATCHES_VARIABLE = "__stringMatches";
+
+    private static final String[] FIELDS = {"debitAccount", "creditAccount", "cin"};
+    private static final int DEBIT_ACCOUNT = 0;
+    private static final int CREDIT_ACCOUNT = 1;
+    private static final int CIN = 2;
+
+    // Built after FIELDS, which the builder reads
+    static final StringMatchIndex EMPTY = new Builder().build();
+
+    private final LiteralMatcher[] prefixMatchers;
+    private final LiteralMatcher[] containsMatchers;
+    private final int slotCount;
+    // Slot keys in slot order, so a builder can extend this index without renumbering
+    private final List<String> keys;
+
+    private StringMatchIndex(LiteralMatcher[] prefixMatchers, LiteralMatcher[] containsMatchers, List<String> keys) {
+        this.prefixMatchers = prefixMatchers;
+        this.containsMatchers = containsMatchers;
+        this.slotCount = keys.size();
+        this.keys = keys;
+    }
+
+    boolean isEmpty() {
+        return slotCount == 0;
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the indexed literals in slot order.
+     */
+    List<String> literals() {
+        return keys.stream().map(key -> key.substring(key.indexOf(':', key.indexOf(':') + 1) + 1)).toList();
+    }
+
+    /**
+     * Scans each indexed field of the event once and returns the match flags as a CEL list value.
+     */
+    List<Boolean> match(TransactionEvent event) {
+        boolean[] matches = new boolean[slotCount];
+        matchField(DEBIT_ACCOUNT, event.debitAccount(), matches);
+        matchField(CREDIT_ACCOUNT, event.creditAccount(), matches);
+        matchField(CIN, event.cin(), matches);
+        return new MatchList(matches);
+    }
+
+    private void matchField(int field, String value, boolean[] matches) {
+        if (prefixMatchers[field] != null) {
+            prefixMatchers[field].match(value, matches);
+        }
+        if (containsMatchers[field] != null) {
+            containsMatchers[field].match(value, matches);
+        }
+    }
+
+    /**
+     * Returns the slot-reading CEL source for {@code expr} if it is an indexable string predicate
+     * ({@code field.startsWith("literal")} or {@code field.contains("literal")} on an event field), else null.
+     */
+    static String substitution(Builder builder, CelExpr expr) {
+        if (expr.exprKind().getKind() != CelExpr.ExprKind.Kind.CALL) {
+            return null;
+        }
+        CelExpr.CelCall call = expr.call();
+        boolean prefix = call.function().equals("startsWith");
+        if (!prefix && !call.function().equals("contains")) {
+            return null;
+        }
+        if (call.target().isEmpty() || call.args().size() != 1) {
+            return null;
+        }
+        CelExpr target = call.target().get();
+        CelExpr arg = call.args().get(0);
+        if (target.exprKind().getKind() != CelExpr.ExprKind.Kind.IDENT
+                || arg.exprKind().getKind() != CelExpr.ExprKind.Kind.CONSTANT
+                || arg.constant().getKind() != CelConstant.Kind.STRING_VALUE) {
+            return null;
+        }
+        int field = fieldIndex(target.ident().name());
+        if (field < 0) {
+            return null;
+        }
+        int slot = builder.slotFor(field, prefix, arg.constant().stringValue());
+        return MATCHES_VARIABLE + "[" + slot + "]";
+    }
+
+    private static int fieldIndex(String name) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects literals while rules are compiled. Not thread-safe; one builder per compilation.
+     */
+    static final class Builder {
+        private final Map<String, Integer> slots = new LinkedHashMap<>();
+        private final List<List<String>> prefixLiterals = new ArrayList<>();
+        private final List<List<Integer>> prefixSlots = new ArrayList<>();
+        private final List<List<String>> containsLiterals = new ArrayList<>();
+        private final List<List<Integer>> containsSlots = new ArrayList<>();
+
+        Builder() {
+            for (int i = 0; i < FIELDS.length; i++) {
+                prefixLiterals.add(new ArrayList<>());
+                prefixSlots.add(new ArrayList<>());
+                containsLiterals.add(new ArrayList<>());
+                containsSlots.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * Starts from the slots of {@code base}, so programs rewritten against it read the same flags from the
+         * built index. Slots are only ever added; literals no rule uses any more stay until the next full compile.
+         */
+        Builder(StringMatchIndex base) {
+            this();
+            for (String key : base.keys) {
+                int first = key.indexOf(':');
+                int second = key.indexOf(':', first + 1);
+                slotFor(Integer.parseInt(key.substring(0, first)), key.startsWith("prefix", first + 1),
+                        key.substring(second + 1));
+            }
+        }
+
+        int slotFor(int field, boolean prefix, String literal) {
+            String key = field + (prefix ? ":prefix:" : ":contains:") + literal;
+            Integer existing = slots.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int slot = slots.size();
+            slots.put(key, slot);
+            (prefix ? prefixLiterals : containsLiterals).get(field).add(literal);
+            (prefix ? prefixSlots : containsSlots).get(field).add(slot);
+            return slot;
+        }
+
+        StringMatchIndex build() {
+            LiteralMatcher[] prefixMatchers = new LiteralMatcher[FIELDS.length];
+            LiteralMatcher[] containsMatchers = new LiteralMatcher[FIELDS.length];
+            for (int i = 0; i < FIELDS.length; i++) {
+                prefixMatchers[i] = matcher(prefixLiterals.get(i), prefixSlots.get(i), true);
+                containsMatchers[i] = matcher(containsLiterals.get(i), containsSlots.get(i), false);
+            }
+            return new StringMatchIndex(prefixMatchers, containsMatchers, List.copyOf(slots.keySet()));
+        }
+
+        private static LiteralMatcher matcher(List<String> literals, List<Integer> slots, boolean prefix) {
+            if (literals.isEmpty()) {
+                return null;
+            }
+            return LiteralMatcher.build(literals, slots.stream().mapToInt(Integer::intValue).toArray(), prefix);
+        }
+    }
+
+    /**
+     * Read-only list view over the match flags, passed to CEL without copying.
+     */
+    private static final class MatchList extends AbstractList<Boolean> implements RandomAccess {
+        private final boolean[] matches;
+
+        MatchList(boolean[] matches) {
+            this.matches = matches;
+        }
+
+        @Override
+        public Boolean get(int index) {
+            return matches[index];
+        }
+
+        @Override
+        public int size() {
+            return matches.length;
+        }
+    }
+}
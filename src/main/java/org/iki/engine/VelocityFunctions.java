@@ -0,0 +1,125 @@
+package org.iki.engine;
+
+import dev.cel.common.CelFunctionDecl;
+import dev.cel.common.CelOverloadDecl;
+import dev.cel.common.ast.CelExpr;
+import dev.cel.common.types.SimpleType;
+import dev.cel.runtime.CelFunctionBinding;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.iki.state.VelocityStore;
+import org.iki.state.WindowDurations;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * CEL functions over sliding-window velocity aggregates.
+ * <ul>
+ *   <li>{@code txCount(key, "1h")} - number of transactions for a CIN or debit account</li>
+ *   <li>{@code txSum(key, "24h")} - total amount for a CIN or debit account</li>
+ *   <li>{@code txMax(key, "24h")} - largest single amount for a CIN or debit account</li>
+ * </ul>
+ * A third argument, {@code "cin"} or {@code "account"}, names the kind of the key. Without it the kind is
+ * resolved when the rule is compiled from the key expression (see {@link #substitution}), so a CIN and an account
+ * that share a value are never mixed up. Constant windows are checked when the rule is compiled, and a window
+ * longer than the store keeps is rejected rather than answered for a shorter one.
+ */
+@ApplicationScoped
+public class VelocityFunctions implements RuleFunctionLibrary {
+
+    private static final double MINOR_UNITS = 100.0;
+
+    private static final Set<String> FUNCTIONS = Set.of("txCount", "txSum", "txMax");
+
+    @Inject
+    VelocityStore velocityStore;
+
+    @Override
+    public List<CelFunctionDecl> functionDeclarations() {
+        return List.of(
+                CelFunctionDecl.newFunctionDeclaration("txCount",
+                        CelOverloadDecl.newGlobalOverload("txCount_string_string",
+                                SimpleType.INT, SimpleType.STRING, SimpleType.STRING),
+                        CelOverloadDecl.newGlobalOverload("txCount_string_string_string",
+                                SimpleType.INT, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING)),
+                CelFunctionDecl.newFunctionDeclaration("txSum",
+                        CelOverloadDecl.newGlobalOverload("txSum_string_string",
+                                SimpleType.DOUBLE, SimpleType.STRING, SimpleType.STRING),
+                        CelOverloadDecl.newGlobalOverload("txSum_string_string_string",
+                                SimpleType.DOUBLE, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING)),
+                CelFunctionDecl.newFunctionDeclaration("txMax",
+                        CelOverloadDecl.newGlobalOverload("txMax_string_string",
+                                SimpleType.DOUBLE, SimpleType.STRING, SimpleType.STRING),
+                        CelOverloadDecl.newGlobalOverload("txMax_string_string_string",
+                                SimpleType.DOUBLE, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING))
+        );
+    }
+
+    @Override
+    public List<CelFunctionBinding> functionBindings() {
+        List<Class<?>> kindArgs = List.of(String.class, String.class, String.class);
+        return List.of(
+                CelFunctionBinding.from("txCount_string_string_string", kindArgs,
+                        args -> velocityStore.count(VelocityStore.KeyKind.parse((String) args[2]), (String) args[0],
+                                WindowDurations.toMillis((String) args[1]))),
+                CelFunctionBinding.from("txSum_string_string_string", kindArgs,
+                        args -> velocityStore.sumMinor(VelocityStore.KeyKind.parse((String) args[2]),
+                                (String) args[0], WindowDurations.toMillis((String) args[1])) / MINOR_UNITS),
+                CelFunctionBinding.from("txMax_string_string_string", kindArgs,
+                        args -> velocityStore.maxMinor(VelocityStore.KeyKind.parse((String) args[2]),
+                                (String) args[0], WindowDurations.toMillis((String) args[1])) / MINOR_UNITS)
+        );
+    }
+
+    @Override
+    public void checkCall(String function, List<String> literals) {
+        String window = literals.get(1);
+        if (window != null && WindowDurations.toMillis(window) > velocityStore.maxWindowMillis()) {
+            throw new IllegalArgumentException("Window \"" + window + "\" is longer than the longest velocity window of "
+                    + velocityStore.maxWindowMillis() / 1000 + " s");
+        }
+        if (literals.size() > 2 && literals.get(2) != null) {
+            VelocityStore.KeyKind.parse(literals.get(2));
+        }
+    }
+
+    /**
+     * Returns {@code f(key, window, "kind")} for a velocity call that does not name the kind of its key, or null
+     * for any other node. The two-argument overloads have no bindings: every such call is completed this way.
+     *
+     * @throws IllegalArgumentException if the key is not {@code cin}, {@code debitAccount} or {@code creditAccount}
+     */
+    static String substitution(CelExpr expr) {
+        if (!needsKeyKind(expr)) {
+            return null;
+        }
+        List<CelExpr> args = expr.call().args();
+        return expr.call().function() + "(" + CelExprPrinter.print(args.get(0)) + ", "
+                + CelExprPrinter.print(args.get(1)) + ", \"" + keyKind(expr.call().function(), args.get(0)) + "\")";
+    }
+
+    /**
+     * Returns whether {@code expr} is a two-argument call to {@code txCount}, {@code txSum} or {@code txMax}.
+     */
+    static boolean needsKeyKind(CelExpr expr) {
+        return expr.exprKind().getKind() == CelExpr.ExprKind.Kind.CALL
+                && expr.call().target().isEmpty()
+                && expr.call().args().size() == 2
+                && FUNCTIONS.contains(expr.call().function());
+    }
+
+    private static String keyKind(String function, CelExpr key) {
+        String kind = key.exprKind().getKind() != CelExpr.ExprKind.Kind.IDENT ? null
+                : switch (key.ident().name()) {
+                    case "cin" -> "cin";
+                    case "debitAccount", "creditAccount" -> "account";
+                    default -> null;
+                };
+        if (kind != null) {
+            return kind;
+        }
+        throw new IllegalArgumentException("Cannot tell whether the key of " + function
+                + "() is a CIN or an account; pass \"cin\" or \"account\" as a third argument");
+    }
+}
@@ -0,0 +1,47 @@
+package org.iki.engine;
+
+import dev.cel.common.CelFunctionDecl;
+import dev.cel.common.CelOverloadDecl;
+import dev.cel.common.types.SimpleType;
+import dev.cel.runtime.CelFunctionBinding;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.iki.state.WatchlistStore;
+
+import java.util.List;
+
+/**
+ * CEL function for watchlist membership: {@code inList("sanctions", debitAccount)}.
+ * A constant list name must name a loaded list when the rule is compiled.
+ */
+@ApplicationScoped
+public class WatchlistFunctions implements RuleFunctionLibrary {
+
+    @Inject
+    WatchlistStore watchlistStore;
+
+    @Override
+    public List<CelFunctionDecl> functionDeclarations() {
+        return List.of(
+                CelFunctionDecl.newFunctionDeclaration("inList",
+                        CelOverloadDecl.newGlobalOverload("inList_string_string",
+                                SimpleType.BOOL, SimpleType.STRING, SimpleType.STRING))
+        );
+    }
+
+    @Override
+    public List<CelFunctionBinding> functionBindings() {
+        return List.of(
+                CelFunctionBinding.from("inList_string_string", String.class, String.class,
+                        (list, value) -> watchlistStore.contains(list, value))
+        );
+    }
+
+    @Override
+    public void checkCall(String function, List<String> literals) {
+        String list = literals.get(0);
+        if (list != null && !watchlistStore.getLists().containsKey(list)) {
+            throw new IllegalArgumentException("Unknown watchlist: " + list);
+        }
+    }
+}
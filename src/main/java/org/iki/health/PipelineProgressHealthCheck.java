@@ -0,0 +1,60 @@
+package org.iki.health;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Liveness;
+import org.iki.metrics.PipelineMetrics;
+
+import java.time.Duration;
+
+/**
+ * Liveness health check for the event consumers.
+ * Reports unhealthy when consumers hold events but none has completed for {@code app.health.stall-timeout}, which
+ * means every consumer is stuck and only a restart will help. Load alone never fails liveness: a saturated instance
+ * is taken out of rotation by {@link SaturationHealthCheck} and recovers once drained, whereas restarting it would
+ * lose its in-memory state and push its traffic onto the other replicas.
+ */
+@Liveness
+@ApplicationScoped
+public class PipelineProgressHealthCheck implements HealthCheck {
+
+    private long lastCompleted = -1;
+    private long lastProgress;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @ConfigProperty(name = "app.health.stall-timeout", defaultValue = "60s")
+    Duration stallTimeout;
+
+    @Override
+    public HealthCheckResponse call() {
+        return check(System.nanoTime());
+    }
+
+    /**
+     * Compares the completed events with the previous check, remembering when they last grew.
+     */
+    synchronized HealthCheckResponse check(long now) {
+        PipelineMetrics.Load load = metrics.load();
+        if (load.completed() != lastCompleted || load.inProgress() == 0) {
+            lastCompleted = load.completed();
+            lastProgress = now;
+        }
+        long stalledMillis = (now - lastProgress) / 1_000_000;
+        var builder = HealthCheckResponse.named("pipeline-progress")
+                .withData("inProgress", load.inProgress())
+                .withData("completed", load.completed())
+                .withData("stalledForMillis", stalledMillis);
+        if (now - lastProgress < stallTimeout.toNanos()) {
+            return builder.up().build();
+        }
+        return builder.down()
+                .withData("reason", "No event completed for %d ms while %d are in progress"
+                        .formatted(stalledMillis, load.inProgress()))
+                .build();
+    }
+}
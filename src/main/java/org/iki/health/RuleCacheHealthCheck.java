@@ -12,7 +12,8 @@ import java.time.Instant;
 
 /**
  * Readiness health check for the rule cache.
- * Reports unhealthy if no rules are loaded or compiled.
+ * Reports unhealthy if no rules are loaded or compiled. Rules compiled from the local snapshot file count, so an
+ * instance is ready while its rule source is still unavailable.
  */
 @Readiness
 @ApplicationScoped
@@ -34,7 +35,8 @@ public class RuleCacheHealthCheck implements HealthCheck {
         var builder = HealthCheckResponse.named("rule-cache")
                 .withData("cachedRules", cachedRules)
                 .withData("compiledRules", compiledRules)
-                .withData("lastRefreshSucceeded", refreshOk);
+                .withData("lastRefreshSucceeded", refreshOk)
+                .withData("localSnapshot", ruleCacheService.isServingLocalSnapshot());
 
         if (lastRefresh != null) {
             builder.withData("lastRefreshTime", lastRefresh.toString());
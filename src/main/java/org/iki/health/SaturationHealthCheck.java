@@ -0,0 +1,139 @@
+package org.iki.health;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import org.iki.metrics.PipelineMetrics;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Readiness health check for pipeline saturation.
+ * Reports unhealthy while the instance is taking events faster than it can evaluate them, so the load balancer
+ * drains traffic to other replicas instead of the backlog growing until the heap runs out. The instance is saturated
+ * when any of these reaches its threshold:
+ * <ul>
+ *   <li>events in flight, sent to the event bus and not yet fully processed</li>
+ *   <li>p99 of the wait between an event being sent and its consumer starting (consumer lag)</li>
+ *   <li>p99 of evaluation time</li>
+ *   <li>p99 of alert emission time (sink lag)</li>
+ * </ul>
+ * To keep the check from flapping, a saturated instance stays unhealthy for at least
+ * {@code app.health.saturation.hold} and until every measure is back below its threshold times
+ * {@code app.health.saturation.recovery-ratio}. Percentiles cover Micrometer's recent window, so they recover
+ * within it once traffic has drained.
+ */
+@Readiness
+@ApplicationScoped
+public class SaturationHealthCheck implements HealthCheck {
+
+    private static final Logger LOG = Logger.getLogger(SaturationHealthCheck.class);
+
+    private boolean saturated;
+    private long saturatedSince;
+    private List<String> reasons = List.of();
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @ConfigProperty(name = "app.health.saturation.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.health.saturation.max-in-flight", defaultValue = "10000")
+    long maxInFlight;
+
+    @ConfigProperty(name = "app.health.saturation.max-queue-wait", defaultValue = "1s")
+    Duration maxQueueWait;
+
+    @ConfigProperty(name = "app.health.saturation.max-evaluation", defaultValue = "250ms")
+    Duration maxEvaluation;
+
+    @ConfigProperty(name = "app.health.saturation.max-sink", defaultValue = "250ms")
+    Duration maxSink;
+
+    @ConfigProperty(name = "app.health.saturation.recovery-ratio", defaultValue = "0.5")
+    double recoveryRatio;
+
+    @ConfigProperty(name = "app.health.saturation.hold", defaultValue = "30s")
+    Duration hold;
+
+    @PostConstruct
+    void init() {
+        if (enabled && (recoveryRatio <= 0 || recoveryRatio > 1)) {
+            throw new IllegalArgumentException("app.health.saturation.recovery-ratio must be in (0, 1]");
+        }
+        if (enabled && (maxInFlight < 1 || maxQueueWait.toMillis() < 1 || maxEvaluation.toMillis() < 1
+                || maxSink.toMillis() < 1)) {
+            throw new IllegalArgumentException("app.health.saturation thresholds must be positive");
+        }
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return check(System.nanoTime());
+    }
+
+    /**
+     * Measures the load and moves between saturated and not saturated.
+     */
+    synchronized HealthCheckResponse check(long now) {
+        PipelineMetrics.Load load = metrics.load();
+        var builder = HealthCheckResponse.named("saturation")
+                .withData("inFlight", load.inFlight())
+                .withData("queueWaitP99Millis", Math.round(load.queueWaitP99Millis()))
+                .withData("evaluationP99Millis", Math.round(load.evaluationP99Millis()))
+                .withData("sinkP99Millis", Math.round(load.sinkP99Millis()));
+        if (!enabled) {
+            return builder.up().build();
+        }
+
+        if (!saturated) {
+            List<String> exceeded = exceeded(load, 1);
+            if (!exceeded.isEmpty()) {
+                saturated = true;
+                saturatedSince = now;
+                reasons = exceeded;
+                LOG.warnf("Pipeline saturated, reporting not ready: %s", String.join(", ", exceeded));
+            }
+        } else if (now - saturatedSince >= hold.toNanos() && exceeded(load, recoveryRatio).isEmpty()) {
+            saturated = false;
+            reasons = List.of();
+            LOG.infof("Pipeline recovered after %d ms, reporting ready", (now - saturatedSince) / 1_000_000);
+        }
+
+        if (!saturated) {
+            return builder.up().build();
+        }
+        return builder.down()
+                .withData("saturatedForMillis", (now - saturatedSince) / 1_000_000)
+                .withData("reason", String.join(", ", reasons))
+                .build();
+    }
+
+    /**
+     * Returns the measures at or above their threshold scaled by the given ratio.
+     */
+    private List<String> exceeded(PipelineMetrics.Load load, double ratio) {
+        List<String> exceeded = new ArrayList<>(4);
+        if (load.inFlight() >= maxInFlight * ratio) {
+            exceeded.add("%d events in flight".formatted(load.inFlight()));
+        }
+        if (load.queueWaitP99Millis() >= maxQueueWait.toMillis() * ratio) {
+            exceeded.add("queue wait p99 %.0f ms".formatted(load.queueWaitP99Millis()));
+        }
+        if (load.evaluationP99Millis() >= maxEvaluation.toMillis() * ratio) {
+            exceeded.add("evaluation p99 %.0f ms".formatted(load.evaluationP99Millis()));
+        }
+        if (load.sinkP99Millis() >= maxSink.toMillis() * ratio) {
+            exceeded.add("sink p99 %.0f ms".formatted(load.sinkP99Millis()));
+        }
+        return exceeded;
+    }
+}
@@ -0,0 +1,243 @@
+package org.iki.metrics;
+
+import io.quarkus.scheduler.Scheduled;
+import io.vertx.ext.web.Router;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-stage latency of sampled events, from the HTTP request reaching the server to their alerts being emitted.
+ * <p>
+ * One event in {@code app.metrics.pipeline.sample-every} is traced: the {@link System#nanoTime()} at which its
+ * request arrived travels with it on the event bus in the {@value #RECEIVED_AT_HEADER} header, next to
+ * {@link PipelineMetrics#DISPATCHED_AT_HEADER}, and each stage is measured between consecutive timestamps, so the
+ * stages add up to the end-to-end latency:
+ * <ul>
+ *   <li>{@code parse}: request arrival to the resource method, that is reading and decoding the body</li>
+ *   <li>{@code dispatch}: resource method to the event being sent, including the sends of the events before it
+ *       in the batch</li>
+ *   <li>{@code queue-wait}: send to the consumer starting, including the wait for a virtual thread</li>
+ *   <li>{@code evaluation}: state store updates and rule evaluation</li>
+ *   <li>{@code sink}: emitting the alerts of matched rules</li>
+ * </ul>
+ * Latencies are recorded in microseconds into HdrHistogram {@link Recorder}s, which are wait-free for writers, and
+ * rolled every {@code app.metrics.pipeline.report-interval} into the last interval and the totals since startup.
+ * <p>
+ * End-to-end latency is measured from arrival rather than from the start of processing, so queueing is counted.
+ * A pause that stops the server from accepting requests (a GC or a saturated event loop) still hides the events
+ * that would have arrived during it, so the end-to-end histogram is also reported corrected for coordinated
+ * omission: each interval is corrected with the mean gap between sampled events in it, filling in the samples that
+ * a pause longer than that gap would have delayed. The correction runs on the roll, off the event path.
+ */
+@ApplicationScoped
+public class PipelineLatency {
+
+    /**
+     * Event bus header holding the {@link System#nanoTime()} at which the event's request arrived; set on sampled
+     * events only.
+     */
+    public static final String RECEIVED_AT_HEADER = "received-at";
+
+    /**
+     * Routing context key of the {@link System#nanoTime()} at which a {@code POST /events} request arrived.
+     */
+    public static final String RECEIVED_AT = "edios.received-at";
+
+    // Floor of the expected gap used for the correction, which costs one record per gap in each corrected value
+    private static final long MIN_EXPECTED_INTERVAL_MICROS = 100;
+
+    /**
+     * Pipeline stages, in the order an event passes through them.
+     */
+    public enum Stage {
+        PARSE("parse"),
+        DISPATCH("dispatch"),
+        QUEUE_WAIT("queue-wait"),
+        EVALUATION("evaluation"),
+        SINK("sink"),
+        END_TO_END("end-to-end");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final Recorder[] recorders = new Recorder[STAGES.length];
+    private final Histogram[] totals = new Histogram[STAGES.length];
+    private final Histogram[] lastInterval = new Histogram[STAGES.length];
+    private final Histogram correctedTotal = new Histogram(3);
+    private Histogram correctedLastInterval = new Histogram(3);
+    private long lastRollNanos;
+    private long lastIntervalMillis;
+    private long expectedIntervalMicros;
+
+    @ConfigProperty(name = "app.metrics.pipeline.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.metrics.pipeline.sample-every", defaultValue = "8")
+    int sampleEvery;
+
+    @PostConstruct
+    void init() {
+        if (enabled && sampleEvery < 1) {
+            throw new IllegalArgumentException("app.metrics.pipeline.sample-every must be positive");
+        }
+        for (int i = 0; i < STAGES.length; i++) {
+            recorders[i] = new Recorder(3);
+            totals[i] = new Histogram(3);
+            // Only histograms taken from the recorder can be recycled by it
+            lastInterval[i] = recorders[i].getIntervalHistogram();
+        }
+        lastRollNanos = System.nanoTime();
+    }
+
+    /**
+     * Stamps every {@code POST /events} request with its arrival time before the body is read.
+     */
+    void stampArrivals(@Observes Router router) {
+        router.post("/events").order(-1).handler(context -> {
+            context.put(RECEIVED_AT, System.nanoTime());
+            context.next();
+        });
+    }
+
+    /**
+     * Returns true if the next event is to be traced.
+     */
+    public boolean sample() {
+        return enabled && ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    /**
+     * Records the ingest stages of a sampled event.
+     *
+     * @param receivedAt   Arrival of its request
+     * @param enteredAt    Start of the resource method
+     * @param dispatchedAt Send to the event bus
+     */
+    public void recordIngest(long receivedAt, long enteredAt, long dispatchedAt) {
+        record(Stage.PARSE, enteredAt - receivedAt);
+        record(Stage.DISPATCH, dispatchedAt - enteredAt);
+    }
+
+    /**
+     * Records the processing stages of a sampled event.
+     *
+     * @param receivedAt   Arrival of its request, from {@value #RECEIVED_AT_HEADER}
+     * @param dispatchedAt Send to the event bus
+     * @param consumedAt   Start of the consumer
+     * @param sinkAt       End of evaluation
+     * @param doneAt       Alerts emitted
+     */
+    public void recordProcessing(long receivedAt, long dispatchedAt, long consumedAt, long sinkAt, long doneAt) {
+        record(Stage.QUEUE_WAIT, consumedAt - dispatchedAt);
+        record(Stage.EVALUATION, sinkAt - consumedAt);
+        record(Stage.SINK, doneAt - sinkAt);
+        record(Stage.END_TO_END, doneAt - receivedAt);
+    }
+
+    private void record(Stage stage, long nanos) {
+        recorders[stage.ordinal()].recordValue(Math.max(0, nanos / 1_000));
+    }
+
+    /**
+     * Closes the current interval: its histograms become the last interval and are added to the totals.
+     */
+    @Scheduled(every = "${app.metrics.pipeline.report-interval:10s}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    synchronized void roll() {
+        long now = System.nanoTime();
+        for (int i = 0; i < STAGES.length; i++) {
+            // The previous interval's histogram is recycled for the next one
+            Histogram interval = recorders[i].getIntervalHistogram(lastInterval[i]);
+            totals[i].add(interval);
+            lastInterval[i] = interval;
+        }
+        Histogram endToEnd = lastInterval[Stage.END_TO_END.ordinal()];
+        long count = endToEnd.getTotalCount();
+        long intervalMicros = (now - lastRollNanos) / 1_000;
+        expectedIntervalMicros = count == 0 ? 0 : Math.max(MIN_EXPECTED_INTERVAL_MICROS, intervalMicros / count);
+        correctedLastInterval = count == 0 ? new Histogram(3)
+                : endToEnd.copyCorrectedForCoordinatedOmission(expectedIntervalMicros);
+        correctedTotal.add(correctedLastInterval);
+        lastIntervalMillis = intervalMicros / 1_000;
+        lastRollNanos = now;
+    }
+
+    /**
+     * Returns the stage latencies of the last completed interval and since startup.
+     */
+    public synchronized PipelineReport report() {
+        return new PipelineReport(enabled, sampleEvery, lastIntervalMillis, expectedIntervalMicros,
+                breakdown(lastInterval, correctedLastInterval), breakdown(totals, correctedTotal));
+    }
+
+    private static List<StageLatency> breakdown(Histogram[] stages, Histogram corrected) {
+        double endToEndMean = stages[Stage.END_TO_END.ordinal()].getMean();
+        List<StageLatency> breakdown = new ArrayList<>(STAGES.length + 1);
+        for (Stage stage : STAGES) {
+            Histogram histogram = stages[stage.ordinal()];
+            breakdown.add(latency(stage.label(), histogram,
+                    endToEndMean == 0 ? null : histogram.getMean() / endToEndMean));
+        }
+        breakdown.add(latency("end-to-end-corrected", corrected, null));
+        return breakdown;
+    }
+
+    private static StageLatency latency(String stage, Histogram histogram, Double share) {
+        if (histogram.getTotalCount() == 0) {
+            return new StageLatency(stage, 0, 0, 0, 0, 0, 0, 0, null);
+        }
+        return new StageLatency(stage, histogram.getTotalCount(), histogram.getMean(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue(), share);
+    }
+
+    /**
+     * Pipeline latency report.
+     *
+     * @param enabled                Whether events are traced
+     * @param sampleEvery            One event in this many is traced
+     * @param intervalMillis         Length of the last interval
+     * @param expectedIntervalMicros Mean gap between sampled events in the last interval, floored, used to correct
+     *                               its end-to-end latency for coordinated omission; 0 if nothing was sampled
+     * @param lastInterval           Stage latencies of the last interval
+     * @param sinceStart             Stage latencies since startup
+     */
+    public record PipelineReport(boolean enabled, int sampleEvery, long intervalMillis, long expectedIntervalMicros,
+                                 List<StageLatency> lastInterval, List<StageLatency> sinceStart) {}
+
+    /**
+     * Latency of one stage, in microseconds.
+     *
+     * @param stage           Stage name, or {@code end-to-end-corrected} for end-to-end corrected for coordinated
+     *                        omission
+     * @param count           Sampled events
+     * @param meanMicros      Mean
+     * @param p50Micros       Median
+     * @param p90Micros       90th percentile
+     * @param p99Micros       99th percentile
+     * @param p999Micros      99.9th percentile
+     * @param maxMicros       Maximum
+     * @param shareOfEndToEnd Mean as a fraction of the mean end-to-end latency, or null for the corrected figure
+     */
+    public record StageLatency(String stage, long count, double meanMicros, long p50Micros, long p90Micros,
+                               long p99Micros, long p999Micros, long maxMicros, Double shareOfEndToEnd) {}
+}
@@ -0,0 +1,201 @@
+package org.iki.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micrometer meters of the event pipeline, scraped from {@code /q/metrics}:
+ * <ul>
+ *   <li>{@code edios.events.ingested}: events sent to the event bus by {@code POST /events}, whose rate is the
+ *       ingest rate</li>
+ *   <li>{@code edios.events.dispatch.failures}: events the event bus refused</li>
+ *   <li>{@code edios.events.batch.size}: events per accepted request</li>
+ *   <li>{@code edios.events.queue.wait}: time from sending an event to its consumer starting, including the wait
+ *       for a virtual thread</li>
+ *   <li>{@code edios.events.evaluation}: time to evaluate one event against every rule</li>
+ *   <li>{@code edios.events.sink}: time to emit the alerts of one event</li>
+ *   <li>{@code edios.events.in.flight}: events sent to the event bus and not yet fully processed</li>
+ * </ul>
+ * Percentiles are computed in the process by Micrometer's HdrHistogram recorders, which record without locking or
+ * allocating; histogram buckets are published as well, so percentiles can also be aggregated across instances.
+ * A record costs a few hundred nanoseconds, so the three latency timers record one event in
+ * {@code app.metrics.events.sample-every}; their percentiles are those of a uniform sample, and their counts are
+ * sampled counts, while {@code edios.events.ingested} stays exact.
+ * The in-process percentiles cover a window rotated by Micrometer (two minutes by default), which is what
+ * {@link #load()} reports to the saturation health check.
+ */
+@ApplicationScoped
+public class PipelineMetrics {
+
+    /**
+     * Event bus header holding the {@link System#nanoTime()} at which the event was sent.
+     */
+    public static final String DISPATCHED_AT_HEADER = "dispatched-at";
+
+    private Counter ingested;
+    private Counter dispatchFailures;
+    private DistributionSummary batchSize;
+    private Timer queueWait;
+    private Timer evaluation;
+    private Timer sink;
+    // Events sent, taken by a consumer and fully processed; their differences are the backlog
+    private final LongAdder dispatchedEvents = new LongAdder();
+    private final LongAdder consumedEvents = new LongAdder();
+    private final LongAdder completedEvents = new LongAdder();
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.metrics.events.sample-every", defaultValue = "8")
+    int latencySampleEvery;
+
+    @PostConstruct
+    void init() {
+        ingested = Counter.builder("edios.events.ingested")
+                .description("Events sent to the event bus")
+                .register(registry);
+        dispatchFailures = Counter.builder("edios.events.dispatch.failures")
+                .description("Events the event bus refused")
+                .register(registry);
+        batchSize = DistributionSummary.builder("edios.events.batch.size")
+                .description("Events per ingest request")
+                .baseUnit("events")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        queueWait = latencyTimer(registry, "edios.events.queue.wait",
+                "Time from sending an event to the event bus to its consumer starting");
+        evaluation = latencyTimer(registry, "edios.events.evaluation",
+                "Time to evaluate one event against every rule");
+        sink = latencyTimer(registry, "edios.events.sink", "Time to emit the alerts of one event");
+        Gauge.builder("edios.events.in.flight", this, PipelineMetrics::getInFlight)
+                .description("Events sent to the event bus and not yet fully processed")
+                .baseUnit("events")
+                .register(registry);
+    }
+
+    /**
+     * Builds a latency timer with the percentiles and histogram buckets used for every pipeline latency.
+     */
+    public static Timer latencyTimer(MeterRegistry registry, String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+    }
+
+    /**
+     * Records an accepted ingest request.
+     *
+     * @param size       Events in the request
+     * @param dispatched Events sent to the event bus
+     */
+    public void recordBatch(int size, int dispatched) {
+        batchSize.record(size);
+        ingested.increment(dispatched);
+        dispatchedEvents.add(dispatched);
+        if (dispatched < size) {
+            dispatchFailures.increment(size - dispatched);
+        }
+    }
+
+    /**
+     * Records the time an event waited between being sent and being consumed, if the event is sampled.
+     */
+    public void recordQueueWait(long nanos) {
+        if (sampled()) {
+            queueWait.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the time taken to evaluate one event, if the event is sampled.
+     */
+    public void recordEvaluation(long nanos) {
+        if (sampled()) {
+            evaluation.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the time taken to emit the alerts of one event, if the event is sampled.
+     */
+    public void recordSink(long nanos) {
+        if (sampled()) {
+            sink.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean sampled() {
+        return latencySampleEvery <= 1 || ThreadLocalRandom.current().nextInt(latencySampleEvery) == 0;
+    }
+
+    /**
+     * Records a consumer taking an event; every call is followed by {@link #recordCompleted()}.
+     */
+    public void recordConsumed() {
+        consumedEvents.increment();
+    }
+
+    /**
+     * Records an event fully processed, whether or not its evaluation succeeded.
+     */
+    public void recordCompleted() {
+        completedEvents.increment();
+    }
+
+    /**
+     * Returns the number of events sent to the event bus and not yet fully processed.
+     */
+    public long getInFlight() {
+        // Read completions first, so a concurrent completion cannot make the difference negative
+        long completed = completedEvents.sum();
+        return Math.max(0, dispatchedEvents.sum() - completed);
+    }
+
+    /**
+     * Returns the current load of the pipeline.
+     */
+    public Load load() {
+        long completed = completedEvents.sum();
+        return new Load(Math.max(0, dispatchedEvents.sum() - completed), Math.max(0, consumedEvents.sum() - completed),
+                completed, p99Millis(queueWait), p99Millis(evaluation), p99Millis(sink));
+    }
+
+    private static double p99Millis(Timer timer) {
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == 0.99) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Load of the pipeline.
+     *
+     * @param inFlight            Events sent to the event bus and not yet fully processed
+     * @param inProgress          Events taken by a consumer and not yet fully processed
+     * @param completed           Events fully processed since startup
+     * @param queueWaitP99Millis  99th percentile of the wait between send and consumer, over the recent window
+     * @param evaluationP99Millis 99th percentile of evaluation time, over the recent window
+     * @param sinkP99Millis       99th percentile of alert emission time, over the recent window
+     */
+    public record Load(long inFlight, long inProgress, long completed, double queueWaitP99Millis,
+                       double evaluationP99Millis, double sinkP99Millis) {}
+}
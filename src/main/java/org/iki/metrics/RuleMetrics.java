@@ -0,0 +1,84 @@
+package org.iki.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.engine.CelRuleEngine;
+import org.iki.engine.RuleCounters;
+import org.jboss.logging.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@link RuleCounters} of every compiled rule as Micrometer meters tagged with the rule id:
+ * {@code edios.rule.matches}, {@code edios.rule.errors} and the sampled {@code edios.rule.evaluation} timer.
+ * <p>
+ * The meters read the counters when scraped, so evaluation never touches the registry. Meters are added and
+ * removed as rules come and go, every {@code app.metrics.rules.sync-interval} if the rule snapshot changed.
+ */
+@ApplicationScoped
+public class RuleMetrics {
+
+    private static final Logger LOG = Logger.getLogger(RuleMetrics.class);
+
+    private record Registered(RuleCounters counters, List<Meter> meters) {}
+
+    private final Map<Long, Registered> registered = new HashMap<>();
+    private long syncedVersion = -1;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    CelRuleEngine celRuleEngine;
+
+    @ConfigProperty(name = "app.metrics.rules.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Scheduled(every = "${app.metrics.rules.sync-interval:10s}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    synchronized void sync() {
+        long version = celRuleEngine.getSnapshotVersion();
+        if (!enabled || version == syncedVersion) {
+            return;
+        }
+        Map<Long, RuleCounters> current = celRuleEngine.getRuleCounters();
+        // A rule removed and added again has new counters, so its meters are replaced too
+        registered.entrySet().removeIf(entry -> {
+            if (current.get(entry.getKey()) == entry.getValue().counters()) {
+                return false;
+            }
+            entry.getValue().meters().forEach(registry::remove);
+            return true;
+        });
+        current.forEach((id, counters) -> registered.computeIfAbsent(id, key -> register(key, counters)));
+        syncedVersion = version;
+        LOG.debugf("Rule meters synced with snapshot %d: %d rules", version, registered.size());
+    }
+
+    private Registered register(long id, RuleCounters counters) {
+        String rule = Long.toString(id);
+        return new Registered(counters, List.of(
+                FunctionCounter.builder("edios.rule.matches", counters, RuleCounters::getMatches)
+                        .description("Events the rule matched")
+                        .tag("rule", rule)
+                        .register(registry),
+                FunctionCounter.builder("edios.rule.errors", counters, RuleCounters::getErrors)
+                        .description("Evaluations of the rule that failed")
+                        .tag("rule", rule)
+                        .register(registry),
+                FunctionTimer.builder("edios.rule.evaluation", counters, RuleCounters::getTimedEvaluations,
+                                RuleCounters::getTimedNanos, TimeUnit.NANOSECONDS)
+                        .description("Sampled evaluations of the rule")
+                        .tag("rule", rule)
+                        .register(registry)));
+    }
+}
@@ -0,0 +1,146 @@
+package org.iki.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Ordered set of typed event attributes declared in configuration, e.g.
+ * {@code channel:string,merchantCategory:int}. Each attribute has an ordinal (its position in the schema)
+ * and a slot in the string or numeric array of {@link EventAttributes}, so values are stored without a
+ * per-event map. Immutable.
+ */
+public final class AttributeSchema {
+
+    /**
+     * Upper bound on attributes per schema; presence is tracked in a single {@code long} bit mask.
+     */
+    public static final int MAX_ATTRIBUTES = 64;
+
+    public static final AttributeSchema EMPTY = new AttributeSchema(List.of());
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /**
+     * A declared attribute. {@code slot} indexes the string slots for {@link AttributeType#STRING} attributes
+     * and the numeric slots for every other type.
+     */
+    public record Attribute(String name, AttributeType type, int ordinal, int slot) {}
+
+    private final List<Attribute> attributes;
+    private final Map<String, Attribute> byName;
+    private final int stringSlots;
+    private final int numericSlots;
+
+    private AttributeSchema(List<Attribute> attributes) {
+        this.attributes = attributes;
+        Map<String, Attribute> names = new HashMap<>();
+        int strings = 0;
+        for (Attribute attribute : attributes) {
+            names.put(attribute.name(), attribute);
+            if (!attribute.type().numeric()) {
+                strings++;
+            }
+        }
+        this.byName = Map.copyOf(names);
+        this.stringSlots = strings;
+        this.numericSlots = attributes.size() - strings;
+    }
+
+    /**
+     * Parses a comma-separated list of {@code name:type} declarations. A blank spec yields {@link #EMPTY}.
+     *
+     * @throws IllegalArgumentException if a declaration is malformed, a name is repeated or there are
+     *                                  more than {@link #MAX_ATTRIBUTES} attributes
+     */
+    public static AttributeSchema parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return EMPTY;
+        }
+        List<Attribute> attributes = new ArrayList<>();
+        Map<String, Attribute> seen = new HashMap<>();
+        int strings = 0;
+        int numerics = 0;
+        for (String declaration : spec.split(",")) {
+            int colon = declaration.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Attribute declaration must be name:type: " + declaration.trim());
+            }
+            String name = declaration.substring(0, colon).trim();
+            if (!NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid attribute name: " + name);
+            }
+            AttributeType type = AttributeType.parse(declaration.substring(colon + 1));
+            int slot = type.numeric() ? numerics++ : strings++;
+            Attribute attribute = new Attribute(name, type, attributes.size(), slot);
+            if (seen.putIfAbsent(name, attribute) != null) {
+                throw new IllegalArgumentException("Duplicate attribute: " + name);
+            }
+            attributes.add(attribute);
+        }
+        if (attributes.size() > MAX_ATTRIBUTES) {
+            throw new IllegalArgumentException(
+                    "At most %d attributes are supported, got %d".formatted(MAX_ATTRIBUTES, attributes.size()));
+        }
+        return new AttributeSchema(Collections.unmodifiableList(attributes));
+    }
+
+    /**
+     * Returns the attribute with the given name, or null if it is not declared.
+     */
+    public Attribute attribute(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Attributes in declaration (ordinal) order.
+     */
+    public List<Attribute> attributes() {
+        return attributes;
+    }
+
+    public int size() {
+        return attributes.size();
+    }
+
+    int stringSlots() {
+        return stringSlots;
+    }
+
+    int numericSlots() {
+        return numericSlots;
+    }
+
+    /**
+     * Whether {@code attribute} was declared by this schema, as opposed to another schema with the same name.
+     */
+    boolean declares(Attribute attribute) {
+        int ordinal = attribute.ordinal();
+        return ordinal < attributes.size() && attributes.get(ordinal).equals(attribute);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AttributeSchema other && attributes.equals(other.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return attributes.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Attribute attribute : attributes) {
+            if (!out.isEmpty()) {
+                out.append(',');
+            }
+            out.append(attribute.name()).append(':').append(attribute.type());
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,39 @@
+package org.iki.model;
+
+import java.util.Locale;
+
+/**
+ * Value type of a configured event attribute. Strings occupy a string slot; every other type is stored
+ * unboxed in a {@code long} slot (doubles as their raw IEEE 754 bits, booleans as 0/1).
+ */
+public enum AttributeType {
+    STRING,
+    INT,
+    DOUBLE,
+    BOOL;
+
+    /**
+     * Whether values of this type are stored in a {@code long} slot.
+     */
+    public boolean numeric() {
+        return this != STRING;
+    }
+
+    /**
+     * Parses a type name as written in configuration ({@code string}, {@code int}, {@code double}, {@code bool}).
+     *
+     * @throws IllegalArgumentException if the name is not a known type
+     */
+    public static AttributeType parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown attribute type: " + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
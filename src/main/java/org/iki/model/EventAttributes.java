@@ -0,0 +1,178 @@
+package org.iki.model;
+
+import java.util.Arrays;
+
+/**
+ * Values of the configured {@link AttributeSchema} attributes for one event, held in slot arrays indexed by
+ * {@link AttributeSchema.Attribute#slot()}: strings in a {@code String[]}, every other type unboxed in a
+ * {@code long[]}. Absent attributes read as the zero value of their type ({@code ""}, {@code 0},
+ * {@code 0.0}, {@code false}). Immutable once built.
+ */
+public final class EventAttributes {
+
+    public static final EventAttributes NONE = new EventAttributes(AttributeSchema.EMPTY, new String[0], new long[0], 0L);
+
+    private final AttributeSchema schema;
+    private final String[] strings;
+    private final long[] numbers;
+    private final long present;
+
+    private EventAttributes(AttributeSchema schema, String[] strings, long[] numbers, long present) {
+        this.schema = schema;
+        this.strings = strings;
+        this.numbers = numbers;
+        this.present = present;
+    }
+
+    public static Builder builder(AttributeSchema schema) {
+        return new Builder(schema);
+    }
+
+    public AttributeSchema schema() {
+        return schema;
+    }
+
+    public boolean isPresent(AttributeSchema.Attribute attribute) {
+        return schema.declares(attribute) && (present & (1L << attribute.ordinal())) != 0;
+    }
+
+    public String getString(AttributeSchema.Attribute attribute) {
+        requireType(attribute, AttributeType.STRING);
+        return isPresent(attribute) ? strings[attribute.slot()] : "";
+    }
+
+    public long getLong(AttributeSchema.Attribute attribute) {
+        requireType(attribute, AttributeType.INT);
+        return isPresent(attribute) ? numbers[attribute.slot()] : 0L;
+    }
+
+    public double getDouble(AttributeSchema.Attribute attribute) {
+        requireType(attribute, AttributeType.DOUBLE);
+        return isPresent(attribute) ? Double.longBitsToDouble(numbers[attribute.slot()]) : 0.0;
+    }
+
+    public boolean getBoolean(AttributeSchema.Attribute attribute) {
+        requireType(attribute, AttributeType.BOOL);
+        return isPresent(attribute) && numbers[attribute.slot()] != 0;
+    }
+
+    /**
+     * Boxed value of {@code attribute} for callers that need an {@link Object}, such as CEL variable resolution.
+     */
+    public Object value(AttributeSchema.Attribute attribute) {
+        return switch (attribute.type()) {
+            case STRING -> getString(attribute);
+            case INT -> getLong(attribute);
+            case DOUBLE -> getDouble(attribute);
+            case BOOL -> getBoolean(attribute);
+        };
+    }
+
+    private static void requireType(AttributeSchema.Attribute attribute, AttributeType type) {
+        if (attribute.type() != type) {
+            throw new IllegalArgumentException(
+                    "Attribute %s is of type %s, not %s".formatted(attribute.name(), attribute.type(), type));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EventAttributes other
+                && present == other.present
+                && schema.equals(other.schema)
+                && Arrays.equals(strings, other.strings)
+                && Arrays.equals(numbers, other.numbers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(present) + Arrays.hashCode(strings)) + Arrays.hashCode(numbers);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("{");
+        for (AttributeSchema.Attribute attribute : schema.attributes()) {
+            if (isPresent(attribute)) {
+                if (out.length() > 1) {
+                    out.append(", ");
+                }
+                out.append(attribute.name()).append('=').append(value(attribute));
+            }
+        }
+        return out.append('}').toString();
+    }
+
+    /**
+     * Fills the slots of one event. Setting a null string leaves the attribute absent.
+     * Not thread-safe; {@link #build()} hands the slot arrays to the built instance, after which the builder
+     * must not be reused.
+     */
+    public static final class Builder {
+
+        private final AttributeSchema schema;
+        private String[] strings;
+        private long[] numbers;
+        private long present;
+
+        private Builder(AttributeSchema schema) {
+            this.schema = schema;
+            this.strings = new String[schema.stringSlots()];
+            this.numbers = new long[schema.numericSlots()];
+        }
+
+        public Builder setString(AttributeSchema.Attribute attribute, String value) {
+            require(attribute, AttributeType.STRING);
+            if (value == null) {
+                strings[attribute.slot()] = null;
+                present &= ~(1L << attribute.ordinal());
+                return this;
+            }
+            strings[attribute.slot()] = value;
+            present |= 1L << attribute.ordinal();
+            return this;
+        }
+
+        public Builder setLong(AttributeSchema.Attribute attribute, long value) {
+            require(attribute, AttributeType.INT);
+            return setNumber(attribute, value);
+        }
+
+        public Builder setDouble(AttributeSchema.Attribute attribute, double value) {
+            require(attribute, AttributeType.DOUBLE);
+            return setNumber(attribute, Double.doubleToRawLongBits(value));
+        }
+
+        public Builder setBoolean(AttributeSchema.Attribute attribute, boolean value) {
+            require(attribute, AttributeType.BOOL);
+            return setNumber(attribute, value ? 1L : 0L);
+        }
+
+        private Builder setNumber(AttributeSchema.Attribute attribute, long bits) {
+            numbers[attribute.slot()] = bits;
+            present |= 1L << attribute.ordinal();
+            return this;
+        }
+
+        private void require(AttributeSchema.Attribute attribute, AttributeType type) {
+            if (strings == null) {
+                throw new IllegalStateException("EventAttributes already built");
+            }
+            if (!schema.declares(attribute)) {
+                throw new IllegalArgumentException("Attribute not declared in schema: " + attribute.name());
+            }
+            requireType(attribute, type);
+        }
+
+        public EventAttributes build() {
+            if (strings == null) {
+                throw new IllegalStateException("EventAttributes already built");
+            }
+            // Events without attributes all share NONE, whatever the schema
+            EventAttributes attributes = present == 0 ? NONE : new EventAttributes(schema, strings, numbers, present);
+            strings = null;
+            numbers = null;
+            return attributes;
+        }
+    }
+}
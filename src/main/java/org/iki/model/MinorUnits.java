@@ -0,0 +1,85 @@
+package org.iki.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conversion of decimal amounts to exact {@code long} minor units.
+ * The scale of a currency is its ISO 4217 number of fraction digits (2 for EUR, 0 for JPY, 3 for KWD);
+ * events without a currency use {@link #DEFAULT_SCALE}. Amounts with more fraction digits than the scale
+ * are rounded as the caller asks, and amounts beyond the range of a {@code long} saturate.
+ */
+public final class MinorUnits {
+
+    /**
+     * Scale used when an event has no currency, or for currencies without minor units defined.
+     */
+    public static final int DEFAULT_SCALE = 2;
+
+    /**
+     * Largest scale of any ISO 4217 currency.
+     */
+    public static final int MAX_SCALE = 4;
+
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private static final Map<String, Integer> SCALES = new ConcurrentHashMap<>();
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Returns the number of fraction digits of a currency.
+     *
+     * @param currency ISO 4217 code, or null for the default
+     * @throws IllegalArgumentException if the code is not a known currency
+     */
+    public static int scale(String currency) {
+        if (currency == null) {
+            return DEFAULT_SCALE;
+        }
+        Integer scale = SCALES.get(currency);
+        if (scale == null) {
+            int digits;
+            try {
+                digits = Currency.getInstance(currency).getDefaultFractionDigits();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown currency: " + currency, e);
+            }
+            // Pseudo-currencies such as XAU report -1
+            scale = digits < 0 ? DEFAULT_SCALE : digits;
+            SCALES.put(currency, scale);
+        }
+        return scale;
+    }
+
+    /**
+     * Returns {@code amount} in units of {@code 10^-scale}, rounded with {@code mode} and clamped to the range
+     * of a long.
+     */
+    public static long toSaturatedUnits(BigDecimal amount, int scale, RoundingMode mode) {
+        BigDecimal units = amount.movePointRight(scale).setScale(0, mode);
+        if (units.compareTo(LONG_MAX) >= 0) {
+            return Long.MAX_VALUE;
+        }
+        if (units.compareTo(LONG_MIN) <= 0) {
+            return Long.MIN_VALUE;
+        }
+        return units.longValue();
+    }
+
+    /**
+     * Returns {@code 10^exponent} for {@code 0 <= exponent <= 18}.
+     */
+    public static long powerOfTen(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
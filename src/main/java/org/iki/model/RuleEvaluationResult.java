@@ -2,13 +2,27 @@ package org.iki.model;
 
 /**
  * Result of evaluating a single rule against a transaction event.
+ * Rules and sequence rules are numbered independently, so {@code kind} tells which one {@code ruleId} refers to.
  */
 public record RuleEvaluationResult(
         Long ruleId,
         String expression,
         boolean matched,
-        String error
+        String error,
+        Kind kind
 ) {
+    /**
+     * What {@link #ruleId()} identifies.
+     */
+    public enum Kind { RULE, SEQUENCE }
+
+    /**
+     * Creates the result of a {@link Rule}.
+     */
+    public RuleEvaluationResult(Long ruleId, String expression, boolean matched, String error) {
+        this(ruleId, expression, matched, error, Kind.RULE);
+    }
+
     public static RuleEvaluationResult success(Long ruleId, String expression, boolean matched) {
         return new RuleEvaluationResult(ruleId, expression, matched, null);
     }
@@ -17,7 +31,15 @@ public record RuleEvaluationResult(
         return new RuleEvaluationResult(ruleId, expression, false, error);
     }
 
+    public static RuleEvaluationResult sequenceSuccess(Long sequenceId, String expression, boolean matched) {
+        return new RuleEvaluationResult(sequenceId, expression, matched, null, Kind.SEQUENCE);
+    }
+
+    public static RuleEvaluationResult sequenceFailure(Long sequenceId, String expression, String error) {
+        return new RuleEvaluationResult(sequenceId, expression, false, error, Kind.SEQUENCE);
+    }
+
     public boolean hasError() {
         return error != null && !error.isBlank();
     }
-}
\ No newline at end of file
+}
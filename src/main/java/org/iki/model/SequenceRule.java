@@ -0,0 +1,54 @@
+package org.iki.model;
+
+import java.util.List;
+
+/**
+ * Represents a sequence rule: ordered CEL step predicates that must be satisfied by events of the same customer
+ * ({@code cin}), with the last step no later than {@code within} after the first, e.g. a large incoming credit
+ * followed by a transfer to a new counterparty within {@code "30m"}.
+ * Events between the steps are ignored.
+ */
+public record SequenceRule(
+        Long id,
+        List<String> steps,
+        String within,
+        String description,
+        boolean active
+) {
+    /**
+     * Maximum number of steps; partial matches keep one slot per step after the first.
+     */
+    public static final int MAX_STEPS = 16;
+
+    public SequenceRule {
+        if (id == null) {
+            throw new IllegalArgumentException("id cannot be null");
+        }
+        if (steps == null || steps.size() < 2 || steps.size() > MAX_STEPS) {
+            throw new IllegalArgumentException("steps must contain between 2 and " + MAX_STEPS + " predicates");
+        }
+        for (String step : steps) {
+            if (step == null || step.isBlank()) {
+                throw new IllegalArgumentException("steps cannot contain null or blank predicates");
+            }
+        }
+        if (within == null || within.isBlank()) {
+            throw new IllegalArgumentException("within cannot be null or blank");
+        }
+        steps = List.copyOf(steps);
+    }
+
+    /**
+     * Convenience constructor for active sequence rules without description.
+     */
+    public SequenceRule(Long id, List<String> steps, String within) {
+        this(id, steps, within, null, true);
+    }
+
+    /**
+     * Readable form of the rule, reported as the expression of its evaluation results.
+     */
+    public String expression() {
+        return String.join(" -> ", steps) + " within " + within;
+    }
+}
@@ -1,20 +1,51 @@
 package org.iki.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.Objects;
 
 /**
- * Immutable record representing a financial transaction event.
+ * Immutable financial transaction event.
  * Used for high-throughput event ingestion and rule evaluation.
+ * {@code currency} is an optional ISO 4217 code that determines the scale of {@link #amountMinor()};
+ * {@code attributes} holds the values of the configured {@link AttributeSchema} attributes.
+ * <p>
+ * The integer forms of the amount are computed once, on construction, so rule evaluation reads them as
+ * primitive longs without any {@link BigDecimal} arithmetic.
  */
-public record TransactionEvent(
-        String debitAccount,
-        String creditAccount,
-        String cin,
-        BigDecimal amount,
-        Instant transactedTime
-) {
-    public TransactionEvent {
+public final class TransactionEvent {
+
+    private final String debitAccount;
+    private final String creditAccount;
+    private final String cin;
+    private final BigDecimal amount;
+    private final Instant transactedTime;
+    private final String currency;
+    private final EventAttributes attributes;
+    @Schema(hidden = true)
+    private final long amountMinor;
+    @Schema(hidden = true)
+    private final boolean amountMinorInRange;
+    @Schema(hidden = true)
+    private final long amountFloor;
+    @Schema(hidden = true)
+    private final long amountCeiling;
+
+    @JsonCreator
+    public TransactionEvent(
+            @JsonProperty("debitAccount") String debitAccount,
+            @JsonProperty("creditAccount") String creditAccount,
+            @JsonProperty("cin") String cin,
+            @JsonProperty("amount") BigDecimal amount,
+            @JsonProperty("transactedTime") Instant transactedTime,
+            @JsonProperty("currency") String currency,
+            @JsonProperty("attributes") EventAttributes attributes
+    ) {
         if (debitAccount == null || debitAccount.isBlank()) {
             throw new IllegalArgumentException("debitAccount cannot be null or blank");
         }
@@ -30,5 +61,125 @@ public record TransactionEvent(
         if (transactedTime == null) {
             throw new IllegalArgumentException("transactedTime cannot be null");
         }
+        this.debitAccount = debitAccount;
+        this.creditAccount = creditAccount;
+        this.cin = cin;
+        this.amount = amount;
+        this.transactedTime = transactedTime;
+        this.currency = currency;
+        this.attributes = attributes == null ? EventAttributes.NONE : attributes;
+        // Rejects unknown currency codes
+        int scale = MinorUnits.scale(currency);
+        this.amountMinor = MinorUnits.toSaturatedUnits(amount, scale, RoundingMode.HALF_UP);
+        this.amountMinorInRange = amountMinor != Long.MIN_VALUE && amountMinor != Long.MAX_VALUE;
+        this.amountFloor = MinorUnits.toSaturatedUnits(amount, MinorUnits.MAX_SCALE, RoundingMode.FLOOR);
+        this.amountCeiling = MinorUnits.toSaturatedUnits(amount, MinorUnits.MAX_SCALE, RoundingMode.CEILING);
+    }
+
+    /**
+     * Creates an event in the default currency scale.
+     */
+    public TransactionEvent(String debitAccount, String creditAccount, String cin,
+                            BigDecimal amount, Instant transactedTime) {
+        this(debitAccount, creditAccount, cin, amount, transactedTime, null, EventAttributes.NONE);
+    }
+
+    /**
+     * Creates an event without attributes.
+     */
+    public TransactionEvent(String debitAccount, String creditAccount, String cin,
+                            BigDecimal amount, Instant transactedTime, String currency) {
+        this(debitAccount, creditAccount, cin, amount, transactedTime, currency, EventAttributes.NONE);
+    }
+
+    public String debitAccount() {
+        return debitAccount;
+    }
+
+    public String creditAccount() {
+        return creditAccount;
+    }
+
+    public String cin() {
+        return cin;
+    }
+
+    public BigDecimal amount() {
+        return amount;
+    }
+
+    public Instant transactedTime() {
+        return transactedTime;
+    }
+
+    public String currency() {
+        return currency;
+    }
+
+    public EventAttributes attributes() {
+        return attributes;
+    }
+
+    /**
+     * Number of fraction digits of the event currency.
+     */
+    public int amountScale() {
+        return MinorUnits.scale(currency);
+    }
+
+    /**
+     * Amount in minor units of the event currency (cents for EUR, yen for JPY), rounded half-up.
+     *
+     * @throws ArithmeticException if the amount does not fit in a long in minor units
+     */
+    public long amountMinor() {
+        if (!amountMinorInRange) {
+            throw new ArithmeticException("amount does not fit in a long in minor units");
+        }
+        return amountMinor;
+    }
+
+    /**
+     * Amount in units of {@code 10^-}{@link MinorUnits#MAX_SCALE}, whatever the scale of its currency,
+     * rounded down and clamped to the range of a long.
+     */
+    public long amountFloor() {
+        return amountFloor;
+    }
+
+    /**
+     * Amount in units of {@code 10^-}{@link MinorUnits#MAX_SCALE}, rounded up and clamped to the range of a long.
+     */
+    public long amountCeiling() {
+        return amountCeiling;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TransactionEvent other)) {
+            return false;
+        }
+        return debitAccount.equals(other.debitAccount)
+                && creditAccount.equals(other.creditAccount)
+                && cin.equals(other.cin)
+                && amount.equals(other.amount)
+                && transactedTime.equals(other.transactedTime)
+                && Objects.equals(currency, other.currency)
+                && attributes.equals(other.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(debitAccount, creditAccount, cin, amount, transactedTime, currency, attributes);
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionEvent[debitAccount=" + debitAccount + ", creditAccount=" + creditAccount
+                + ", cin=" + cin + ", amount=" + amount + ", transactedTime=" + transactedTime
+                + ", currency=" + currency + ", attributes=" + attributes + "]";
     }
-}
\ No newline at end of file
+}
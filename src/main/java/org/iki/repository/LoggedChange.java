@@ -0,0 +1,10 @@
+package org.iki.repository;
+
+/**
+ * One entry of a rule change log.
+ *
+ * @param sequence Change sequence; increasing, but a later sequence may commit first and a rolled back one never
+ * @param deletion True if the entry deleted a rule, which a delta load cannot see
+ */
+public record LoggedChange(long sequence, boolean deletion) {
+}
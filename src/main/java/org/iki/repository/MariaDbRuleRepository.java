@@ -0,0 +1,199 @@
+package org.iki.repository;
+
+import io.quarkus.arc.lookup.LookupIfProperty;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.iki.model.Rule;
+import org.iki.model.SequenceRule;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads rules from the {@code rules} table through the reactive MySQL client (MariaDB compatible).
+ * <p>
+ * A full load reads every active rule; later loads read only the rows whose {@code updated_at} is at or after
+ * the previous watermark, including deactivated ones, so their cost follows the number of edits rather than
+ * the size of the table. The comparison is inclusive because {@code updated_at} has one-second resolution: a row
+ * committed later within the watermark's second is still seen, at the price of re-reading that second's rows.
+ * Hard deletes are only seen by a full load or through the change log.
+ * <p>
+ * Writes go straight to {@code rules}; {@code updated_at} is maintained by the table, so the next delta load
+ * reads the written row.
+ * <p>
+ * Triggers on {@code rules} append every insert, update and delete to {@code rule_changes}; polling it is a
+ * primary-key range read that is empty unless rules changed. Pruning compares {@code changed_at} with the
+ * server's {@code NOW()}, so it does not depend on the time zones either.
+ * <p>
+ * {@code updated_at} values are passed through as UTC, so the watermark compares equal to the column whatever
+ * the server's time zone.
+ */
+@ApplicationScoped
+@LookupIfProperty(name = "app.rules.source", stringValue = "database")
+public class MariaDbRuleRepository implements RuleSource {
+
+    private static final Logger LOG = Logger.getLogger(MariaDbRuleRepository.class);
+
+    static final String SELECT_WATERMARK = "SELECT MAX(updated_at) FROM rules";
+    static final String SELECT_ACTIVE =
+            "SELECT id, expression, description, active, updated_at FROM rules WHERE active = TRUE ORDER BY id";
+    static final String SELECT_CHANGED =
+            "SELECT id, expression, description, active, updated_at FROM rules WHERE updated_at >= ? ORDER BY id";
+    static final String INSERT =
+            "INSERT IGNORE INTO rules (id, expression, description, active) VALUES (?, ?, ?, ?)";
+    static final String UPDATE = "UPDATE rules SET expression = ?, description = ?, active = ? WHERE id = ?";
+    static final String DELETE = "DELETE FROM rules WHERE id = ?";
+    static final int LOGGED_BATCH = 1000;
+    static final String SELECT_LOGGED = "SELECT seq, operation = 'D' AS deletion FROM rule_changes WHERE seq > ? "
+            + "ORDER BY seq LIMIT " + LOGGED_BATCH;
+    static final String SELECT_LATEST_LOGGED = "SELECT MAX(seq) FROM rule_changes";
+    // The derived table lets the delete read its own table; keeping the latest entry keeps AUTO_INCREMENT from
+    // restarting below positions instances already hold if the server restarts with an otherwise empty log
+    static final String PRUNE_LOGGED = "DELETE FROM rule_changes WHERE changed_at < NOW() - INTERVAL ? SECOND "
+            + "AND seq < (SELECT seq FROM (SELECT MAX(seq) AS seq FROM rule_changes) AS latest)";
+
+    // Resolved on first use: the pool bean is inactive without a datasource URL, which the memory source runs without
+    @Inject
+    Instance<Pool> clients;
+
+    @Override
+    public Uni<RuleChanges> findChangedRules(Instant since) {
+        if (since == null) {
+            return findAllActiveRules();
+        }
+        return client().preparedQuery(SELECT_CHANGED)
+                .execute(Tuple.of(LocalDateTime.ofInstant(since, ZoneOffset.UTC)))
+                .map(rows -> {
+                    List<Rule> rules = new ArrayList<>(rows.size());
+                    Instant watermark = since;
+                    for (Row row : rows) {
+                        rules.add(toRule(row));
+                        Instant updated = updatedAt(row);
+                        if (updated.isAfter(watermark)) {
+                            watermark = updated;
+                        }
+                    }
+                    LOG.debugf("Loaded %d rules changed since %s", rules.size(), since);
+                    return new RuleChanges(false, rules, watermark);
+                });
+    }
+
+    /**
+     * Reads the watermark before the rows, so an edit made between the two queries is read again by the next
+     * delta rather than missed.
+     */
+    private Uni<RuleChanges> findAllActiveRules() {
+        return client().query(SELECT_WATERMARK).execute()
+                .chain(watermarkRows -> client().query(SELECT_ACTIVE).execute()
+                        .map(rows -> {
+                            List<Rule> rules = new ArrayList<>(rows.size());
+                            for (Row row : rows) {
+                                rules.add(toRule(row));
+                            }
+                            LOG.debugf("Loaded %d active rules from the database", rules.size());
+                            return new RuleChanges(true, rules, watermark(watermarkRows));
+                        }));
+    }
+
+    /**
+     * A duplicate id is ignored rather than failing the insert, and reported as no row inserted.
+     */
+    @Override
+    public Uni<Boolean> insert(Rule rule) {
+        return client().preparedQuery(INSERT)
+                .execute(Tuple.of(rule.id(), rule.expression(), rule.description(), rule.active()))
+                .map(rows -> rows.rowCount() > 0);
+    }
+
+    /**
+     * The MySQL client reports matched rather than changed rows by default, so rewriting a rule unchanged still
+     * counts as found.
+     */
+    @Override
+    public Uni<Boolean> update(Rule rule) {
+        return client().preparedQuery(UPDATE)
+                .execute(Tuple.of(rule.expression(), rule.description(), rule.active(), rule.id()))
+                .map(rows -> rows.rowCount() > 0);
+    }
+
+    @Override
+    public Uni<Boolean> delete(long id) {
+        return client().preparedQuery(DELETE)
+                .execute(Tuple.of(id))
+                .map(rows -> rows.rowCount() > 0);
+    }
+
+    @Override
+    public Uni<List<LoggedChange>> findLoggedChanges(long afterSequence) {
+        return client().preparedQuery(SELECT_LOGGED)
+                .execute(Tuple.of(afterSequence))
+                .map(rows -> {
+                    List<LoggedChange> changes = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        changes.add(new LoggedChange(row.getLong("seq"), row.getInteger("deletion") != 0));
+                    }
+                    return changes;
+                });
+    }
+
+    @Override
+    public Uni<Long> findLatestLoggedSequence() {
+        return client().query(SELECT_LATEST_LOGGED).execute()
+                .map(rows -> {
+                    for (Row row : rows) {
+                        return row.getLong(0);
+                    }
+                    return null;
+                });
+    }
+
+    @Override
+    public Uni<Integer> pruneLoggedChanges(Duration retention) {
+        return client().preparedQuery(PRUNE_LOGGED)
+                .execute(Tuple.of(retention.toSeconds()))
+                .map(RowSet::rowCount);
+    }
+
+    /**
+     * Sequence rules are not stored in the database yet.
+     */
+    @Override
+    public Uni<List<SequenceRule>> findAllActiveSequenceRules() {
+        return Uni.createFrom().item(List.of());
+    }
+
+    private static Rule toRule(Row row) {
+        return new Rule(row.getLong("id"), row.getString("expression"), row.getString("description"),
+                row.getInteger("active") != 0);
+    }
+
+    private static Instant updatedAt(Row row) {
+        return row.getLocalDateTime("updated_at").toInstant(ZoneOffset.UTC);
+    }
+
+    private Pool client() {
+        return clients.get();
+    }
+
+    private static Instant watermark(RowSet<Row> rows) {
+        for (Row row : rows) {
+            LocalDateTime max = row.getLocalDateTime(0);
+            if (max != null) {
+                return max.toInstant(ZoneOffset.UTC);
+            }
+        }
+        // Empty table: the first delta reads every row
+        return Instant.EPOCH;
+    }
+}
@@ -0,0 +1,34 @@
+package org.iki.repository;
+
+import org.iki.model.Rule;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Result of a rule load.
+ *
+ * @param full      True if {@code rules} is the complete set of active rules; false if it only holds the rows
+ *                  changed since the previous watermark, where an inactive rule means the rule was deactivated
+ * @param rules     Loaded rules, ordered by id
+ * @param watermark Value to pass as {@code since} on the next delta load
+ */
+public record RuleChanges(boolean full, List<Rule> rules, Instant watermark) {
+
+    public RuleChanges {
+        if (rules == null) {
+            throw new IllegalArgumentException("rules cannot be null");
+        }
+        if (watermark == null) {
+            throw new IllegalArgumentException("watermark cannot be null");
+        }
+        rules = List.copyOf(rules);
+    }
+
+    /**
+     * Returns true if this is a delta with no changed rows.
+     */
+    public boolean isEmpty() {
+        return !full && rules.isEmpty();
+    }
+}
@@ -1,21 +1,51 @@
 package org.iki.repository;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.arc.lookup.LookupUnlessProperty;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.iki.model.Rule;
+import org.iki.model.SequenceRule;
 import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Repository for loading rules.
- * Currently uses sample in-memory rules for development.
+ * Reads a local JSON rules file when {@code app.rules.file} is set, and sample in-memory rules otherwise;
+ * {@link MariaDbRuleRepository} is used with {@code app.rules.source=database}.
+ * Writes rewrite the rules file, or change the in-memory rules, which start as the sample rules.
  */
 @ApplicationScoped
-public class RuleRepository {
+@LookupUnlessProperty(name = "app.rules.source", stringValue = "database")
+public class RuleRepository implements RuleSource {
 
     private static final Logger LOG = Logger.getLogger(RuleRepository.class);
 
+    @Inject
+    ObjectMapper objectMapper;
+
+    /**
+     * JSON array of rules ({@code id}, {@code expression}, {@code description}, {@code active}).
+     */
+    @ConfigProperty(name = "app.rules.file")
+    Optional<String> file;
+
     /**
      * Sample rules for development/testing (matching init.sql).
      */
@@ -34,24 +64,143 @@ public class RuleRepository {
                     "Large non-VIP inter-account transfer", true)
     );
 
+    // In-memory rules, used when there is no rules file
+    private final Map<Long, Rule> rules = new ConcurrentSkipListMap<>(
+            SAMPLE_RULES.stream().collect(Collectors.toMap(Rule::id, rule -> rule)));
+    // Changes with every write to the in-memory rules, so delta loads see it
+    private volatile Instant version = Instant.now();
+
+    /**
+     * Sample sequence rules for development/testing.
+     */
+    private static final List<SequenceRule> SAMPLE_SEQUENCE_RULES = List.of(
+            new SequenceRule(101L, List.of("amount >= 10000.0", "amount >= 1000.0 && !profile.knownCounterparty"),
+                    "30m", "Large transaction followed by a transfer to a new counterparty (layering)", true)
+    );
+
     /**
-     * Returns all active rules.
-     * Currently returns sample in-memory rules.
+     * Returns all active rules, from the rules file if there is one and from the in-memory rules otherwise.
      *
      * @return Uni containing list of active rules
      */
     public Uni<List<Rule>> findAllActiveRules() {
-        List<Rule> activeRules = SAMPLE_RULES.stream()
+        Optional<Path> rulesFile = rulesFile();
+        if (rulesFile.isPresent()) {
+            return Uni.createFrom().item(() -> readRules(rulesFile.get()));
+        }
+        List<Rule> activeRules = rules.values().stream()
                 .filter(Rule::active)
                 .toList();
-        LOG.debugf("Loaded %d active sample rules", activeRules.size());
+        LOG.debugf("Loaded %d active in-memory rules", activeRules.size());
+        return Uni.createFrom().item(activeRules);
+    }
+
+    /**
+     * The watermark is the rules file's modification time, or the time of the last write to the in-memory rules:
+     * a delta load reloads every rule if it changed and is empty otherwise.
+     */
+    @Override
+    public Uni<RuleChanges> findChangedRules(Instant since) {
+        Instant watermark = rulesFile().map(RuleRepository::lastModified).orElse(version);
+        if (since != null && since.equals(watermark)) {
+            return Uni.createFrom().item(new RuleChanges(false, List.of(), since));
+        }
+        return findAllActiveRules().map(active -> new RuleChanges(true, active, watermark));
+    }
+
+    @Override
+    public Uni<Boolean> insert(Rule rule) {
+        return Uni.createFrom().item(() -> write(all -> all.putIfAbsent(rule.id(), rule) == null));
+    }
+
+    @Override
+    public Uni<Boolean> update(Rule rule) {
+        return Uni.createFrom().item(() -> write(all -> all.replace(rule.id(), rule) != null));
+    }
+
+    @Override
+    public Uni<Boolean> delete(long id) {
+        return Uni.createFrom().item(() -> write(all -> all.remove(id) != null));
+    }
+
+    /**
+     * Applies a change to every stored rule, including inactive ones, and stores the result if it returns true.
+     * The rules file is replaced atomically, so a concurrent load reads either the old or the new file.
+     */
+    private synchronized boolean write(Predicate<Map<Long, Rule>> change) {
+        Optional<Path> rulesFile = rulesFile();
+        if (rulesFile.isEmpty()) {
+            boolean changed = change.test(rules);
+            if (changed) {
+                version = Instant.now();
+            }
+            return changed;
+        }
+        Path path = rulesFile.get();
+        try {
+            Map<Long, Rule> all = new TreeMap<>();
+            for (Rule rule : objectMapper.readValue(Files.readAllBytes(path), Rule[].class)) {
+                all.put(rule.id(), rule);
+            }
+            if (!change.test(all)) {
+                return false;
+            }
+            Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            Files.write(temp, objectMapper.writeValueAsBytes(all.values()));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debugf("Wrote %d rules to %s", all.size(), path);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write rules file " + path, e);
+        }
+    }
+
+    /**
+     * Returns the rules file, if one is configured and exists.
+     */
+    public Optional<Path> rulesFile() {
+        return file.map(Path::of).filter(Files::isRegularFile);
+    }
+
+    private List<Rule> readRules(Path path) {
+        try {
+            List<Rule> activeRules = Arrays.stream(objectMapper.readValue(Files.readAllBytes(path), Rule[].class))
+                    .filter(Rule::active)
+                    .toList();
+            LOG.debugf("Loaded %d active rules from %s", activeRules.size(), path);
+            return activeRules;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read rules file " + path, e);
+        }
+    }
+
+    private static Instant lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read rules file " + path, e);
+        }
+    }
+
+    /**
+     * Returns all active sequence rules.
+     * Currently returns sample in-memory sequence rules.
+     *
+     * @return Uni containing list of active sequence rules
+     */
+    @Override
+    public Uni<List<SequenceRule>> findAllActiveSequenceRules() {
+        List<SequenceRule> activeRules = SAMPLE_SEQUENCE_RULES.stream()
+                .filter(SequenceRule::active)
+                .toList();
+        LOG.debugf("Loaded %d active sample sequence rules", activeRules.size());
         return Uni.createFrom().item(activeRules);
     }
 
     /**
-     * Returns the total number of sample rules (including inactive).
+     * Returns the total number of in-memory rules (including inactive).
      */
     public int getTotalRuleCount() {
-        return SAMPLE_RULES.size();
+        return rules.size();
     }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package org.iki.repository;
+
+import io.smallrye.mutiny.Uni;
+import org.iki.model.Rule;
+import org.iki.model.SequenceRule;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Where {@link org.iki.service.RuleCacheService} loads rules from, selected by {@code app.rules.source}.
+ */
+public interface RuleSource {
+
+    /**
+     * Returns the rules changed since {@code since}, or every active rule when {@code since} is null.
+     *
+     * @param since Watermark of the previous {@link RuleChanges}, or null for a full load
+     */
+    Uni<RuleChanges> findChangedRules(Instant since);
+
+    /**
+     * Returns all active sequence rules.
+     */
+    Uni<List<SequenceRule>> findAllActiveSequenceRules();
+
+    /**
+     * Stores a new rule.
+     *
+     * @return false if a rule with the same id already exists, in which case nothing is stored
+     */
+    Uni<Boolean> insert(Rule rule);
+
+    /**
+     * Replaces the stored rule with the same id.
+     *
+     * @return false if there is no rule with that id
+     */
+    Uni<Boolean> update(Rule rule);
+
+    /**
+     * Deletes a rule.
+     *
+     * @return false if there is no rule with that id
+     */
+    Uni<Boolean> delete(long id);
+
+    /**
+     * Reads a change log of the rules, if the source keeps one. Polled frequently, so it must be cheap.
+     *
+     * @param afterSequence Sequence to read after; entries are returned in sequence order, a bounded number at a time
+     * @return entries after {@code afterSequence}, empty if there are none or the source has no change log
+     */
+    default Uni<List<LoggedChange>> findLoggedChanges(long afterSequence) {
+        return Uni.createFrom().item(List.of());
+    }
+
+    /**
+     * @return highest change log sequence, or null if the log is empty or the source has no change log
+     */
+    default Uni<Long> findLatestLoggedSequence() {
+        return Uni.createFrom().nullItem();
+    }
+
+    /**
+     * Deletes change log entries older than {@code retention}, always keeping the latest one.
+     *
+     * @return number of entries deleted
+     */
+    default Uni<Integer> pruneLoggedChanges(Duration retention) {
+        return Uni.createFrom().item(0);
+    }
+}
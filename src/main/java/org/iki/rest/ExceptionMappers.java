@@ -2,10 +2,14 @@ package org.iki.rest;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import jakarta.ws.rs.core.Response;
+import org.iki.service.RuleCompilationException;
+import org.iki.service.RuleValidationException;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestResponse;
 import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
 
+import java.util.List;
+
 /**
  * Global exception mappers for REST endpoints.
  */
@@ -20,6 +24,20 @@ public class ExceptionMappers {
                 new ErrorResponse("BAD_REQUEST", e.getMessage()));
     }
 
+    @ServerExceptionMapper
+    public RestResponse<RuleErrorResponse> mapRuleValidationException(RuleValidationException e) {
+        LOG.warnf("Invalid rule: %s", e.getMessage());
+        return RestResponse.status(Response.Status.BAD_REQUEST,
+                new RuleErrorResponse("INVALID_RULE", e.getMessage(), e.getErrors()));
+    }
+
+    @ServerExceptionMapper
+    public RestResponse<ErrorResponse> mapRuleCompilationException(RuleCompilationException e) {
+        LOG.error(e.getMessage());
+        return RestResponse.status(Response.Status.INTERNAL_SERVER_ERROR,
+                new ErrorResponse("RULE_NOT_COMPILED", e.getMessage()));
+    }
+
     @ServerExceptionMapper
     public RestResponse<ErrorResponse> mapJsonProcessingException(JsonProcessingException e) {
         LOG.warnf("Malformed JSON: %s", e.getOriginalMessage());
@@ -42,4 +60,5 @@ public class ExceptionMappers {
     }
 
     public record ErrorResponse(String code, String message) {}
+    public record RuleErrorResponse(String code, String message, List<String> errors) {}
 }
\ No newline at end of file
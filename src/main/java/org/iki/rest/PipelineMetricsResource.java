@@ -0,0 +1,40 @@
+package org.iki.rest;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.iki.metrics.PipelineLatency;
+
+/**
+ * REST endpoint for the latency breakdown of the event pipeline.
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Pipeline Metrics", description = "Latency of each stage from ingest to alert")
+public class PipelineMetricsResource {
+
+    @Inject
+    PipelineLatency latency;
+
+    @GET
+    @Path("/pipeline")
+    @Operation(summary = "Get pipeline latency",
+            description = "Returns percentiles of each pipeline stage (parse, dispatch, queue wait, evaluation, sink) "
+                    + "and end to end, for sampled events, over the last interval and since startup")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Latency per stage",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = PipelineLatency.PipelineReport.class)))
+    })
+    public PipelineLatency.PipelineReport getPipeline() {
+        return latency.report();
+    }
+}
@@ -1,9 +1,15 @@
 package org.iki.rest;
 
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
+import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -14,9 +20,14 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.iki.engine.CelRuleEngine;
+import org.iki.engine.RuleProfiler;
 import org.iki.model.Rule;
+import org.iki.model.SequenceRule;
+import org.iki.service.RefreshResult;
 import org.iki.service.RuleCacheService;
+import org.iki.state.EventTimeClock;
 
+import java.net.URI;
 import java.time.Instant;
 import java.util.List;
 
@@ -34,6 +45,12 @@ public class RuleManagementResource {
     @Inject
     CelRuleEngine celRuleEngine;
 
+    @Inject
+    EventTimeClock eventTimeClock;
+
+    @Inject
+    RuleProfiler ruleProfiler;
+
     @GET
     @Operation(summary = "Get cached rules", description = "Returns all currently cached CEL rules")
     @APIResponses({
@@ -58,26 +75,156 @@ public class RuleManagementResource {
                 ruleCacheService.getCachedRules().size(),
                 celRuleEngine.getCachedRuleCount(),
                 ruleCacheService.getLastRefreshTime(),
-                ruleCacheService.isLastRefreshSucceeded()
+                ruleCacheService.isLastRefreshSucceeded(),
+                celRuleEngine.getPartialCacheStats(),
+                celRuleEngine.getSequenceStats(),
+                eventTimeClock.getStats(),
+                ruleCacheService.getLastRefresh()
         );
     }
 
+    @GET
+    @Path("/sequences")
+    @Operation(summary = "Get cached sequence rules",
+            description = "Returns all currently cached sequence rules (ordered CEL steps within a time window)")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "List of cached sequence rules",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = SequenceRule.class)))
+    })
+    public List<SequenceRule> getCachedSequenceRules() {
+        return ruleCacheService.getCachedSequenceRules();
+    }
+
+    @GET
+    @Path("/optimizations")
+    @Operation(summary = "Get rule optimisations",
+            description = "Returns the normalised expression of each compiled rule and the optimisations applied to it")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Optimisations per compiled rule",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = CelRuleEngine.RuleOptimization.class)))
+    })
+    public List<CelRuleEngine.RuleOptimization> getOptimizations() {
+        return celRuleEngine.getRuleOptimizations();
+    }
+
+    @GET
+    @Path("/profile")
+    @Operation(summary = "Get rule profile",
+            description = "Returns the rules with the most evaluation time, the slowest p99 evaluation latency and "
+                    + "the highest match and error rates, from sampled evaluations decayed over time")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Top rules by each measure",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = RuleProfiler.ProfileReport.class))),
+            @APIResponse(responseCode = "400", description = "top is not positive")
+    })
+    public RuleProfiler.ProfileReport getProfile(@QueryParam("top") Integer top) {
+        return ruleProfiler.report(top);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Create a rule",
+            description = "Type-checks the expression, stores the rule and compiles it into the cached rules "
+                    + "without recompiling the others")
+    @APIResponses({
+            @APIResponse(responseCode = "201", description = "Rule stored and compiled",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = Rule.class))),
+            @APIResponse(responseCode = "400", description = "Expression does not compile",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = ExceptionMappers.RuleErrorResponse.class))),
+            @APIResponse(responseCode = "409", description = "A rule with this id already exists")
+    })
+    public Response createRule(Rule rule) {
+        if (rule == null) {
+            throw new IllegalArgumentException("rule cannot be null");
+        }
+        if (!ruleCacheService.createRule(rule).await().indefinitely()) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ExceptionMappers.ErrorResponse("CONFLICT", "Rule " + rule.id() + " already exists"))
+                    .build();
+        }
+        return Response.created(URI.create("/rules/" + rule.id())).entity(rule).build();
+    }
+
+    @PUT
+    @Path("/{id}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Update a rule",
+            description = "Type-checks the expression, replaces the stored rule and recompiles only this rule; "
+                    + "an inactive rule is removed from the cached rules")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Rule stored and compiled",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = Rule.class))),
+            @APIResponse(responseCode = "400", description = "Expression does not compile or the ids differ",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = ExceptionMappers.RuleErrorResponse.class))),
+            @APIResponse(responseCode = "404", description = "No rule with this id")
+    })
+    public Response updateRule(@PathParam("id") long id, Rule rule) {
+        if (rule == null) {
+            throw new IllegalArgumentException("rule cannot be null");
+        }
+        if (rule.id() != id) {
+            throw new IllegalArgumentException("Rule id " + rule.id() + " does not match the path id " + id);
+        }
+        if (!ruleCacheService.updateRule(rule).await().indefinitely()) {
+            return notFound(id);
+        }
+        return Response.ok(rule).build();
+    }
+
+    @DELETE
+    @Path("/{id}")
+    @Operation(summary = "Delete a rule", description = "Deletes the stored rule and removes it from the cached rules")
+    @APIResponses({
+            @APIResponse(responseCode = "204", description = "Rule deleted"),
+            @APIResponse(responseCode = "404", description = "No rule with this id")
+    })
+    public Response deleteRule(@PathParam("id") long id) {
+        if (!ruleCacheService.deleteRule(id).await().indefinitely()) {
+            return notFound(id);
+        }
+        return Response.noContent().build();
+    }
+
+    private static Response notFound(long id) {
+        return Response.status(Response.Status.NOT_FOUND)
+                .entity(new ExceptionMappers.ErrorResponse("NOT_FOUND", "Rule " + id + " not found"))
+                .build();
+    }
+
     @POST
     @Path("/refresh")
-    @Operation(summary = "Refresh rules", description = "Forces a refresh of the rules cache from the source")
+    @Operation(summary = "Refresh rules",
+            description = "Forces a refresh of the rules cache from the source. Refreshes are single-flight: a call "
+                    + "made while one runs shares a single follow-up refresh. With wait=true the call returns "
+                    + "once its refresh has completed")
     @APIResponses({
             @APIResponse(responseCode = "202", description = "Rule refresh initiated",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
-                            schema = @Schema(implementation = RefreshResponse.class)))
+                            schema = @Schema(implementation = RefreshResponse.class))),
+            @APIResponse(responseCode = "200", description = "Rule refresh completed (wait=true)",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = RefreshResult.class)))
     })
-    public Response refreshRules() {
-        ruleCacheService.forceRefresh();
+    public Response refreshRules(@QueryParam("wait") boolean wait) {
+        Uni<RefreshResult> refresh = ruleCacheService.forceRefresh();
+        if (wait) {
+            return Response.ok(refresh.await().indefinitely()).build();
+        }
         return Response.accepted()
                 .entity(new RefreshResponse("Rule refresh initiated"))
                 .build();
     }
 
     public record RuleStats(int cachedRules, int compiledRules, Instant lastRefreshTime,
-                            boolean lastRefreshSucceeded) {}
+                            boolean lastRefreshSucceeded, CelRuleEngine.PartialCacheStats partialCache,
+                            CelRuleEngine.SequenceStats sequences, EventTimeClock.Stats eventTime,
+                            RefreshResult lastRefresh) {}
     public record RefreshResponse(String message) {}
 }
\ No newline at end of file
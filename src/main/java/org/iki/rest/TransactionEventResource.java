@@ -2,11 +2,13 @@ package org.iki.rest;
 
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.ext.web.RoutingContext;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -17,6 +19,8 @@ import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.iki.metrics.PipelineLatency;
+import org.iki.metrics.PipelineMetrics;
 import org.iki.model.TransactionEvent;
 import org.jboss.logging.Logger;
 
@@ -41,6 +45,12 @@ public class TransactionEventResource {
     @Inject
     EventBus eventBus;
 
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    PipelineLatency latency;
+
     @POST
     @Operation(summary = "Ingest transaction events",
             description = "Accepts a batch of transaction events and dispatches each to the event bus for CEL rule evaluation. Returns immediately without waiting for processing to complete.")
@@ -56,7 +66,8 @@ public class TransactionEventResource {
                     content = @Content(mediaType = MediaType.APPLICATION_JSON,
                             schema = @Schema(implementation = ErrorResponse.class)))
     })
-    public Response ingestEvents(List<TransactionEvent> events) {
+    public Response ingestEvents(List<TransactionEvent> events, @Context RoutingContext routingContext) {
+        long enteredAt = System.nanoTime();
         if (events == null || events.isEmpty()) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Events list cannot be null or empty"))
@@ -76,10 +87,23 @@ public class TransactionEventResource {
                 .setLocalOnly(true)
                 .setSendTimeout(5000);
 
+        Long stampedArrival = routingContext == null ? null : routingContext.get(PipelineLatency.RECEIVED_AT);
+        long receivedAt = stampedArrival == null ? enteredAt : stampedArrival;
         int dispatched = 0;
         for (TransactionEvent event : events) {
             try {
-                eventBus.send(EVENT_BUS_ADDRESS, event, options);
+                // Headers are shared by every message sent with the same options, so each event gets a copy
+                long dispatchedAt = System.nanoTime();
+                DeliveryOptions stamped = new DeliveryOptions(options)
+                        .addHeader(PipelineMetrics.DISPATCHED_AT_HEADER, Long.toString(dispatchedAt));
+                boolean traced = latency.sample();
+                if (traced) {
+                    stamped.addHeader(PipelineLatency.RECEIVED_AT_HEADER, Long.toString(receivedAt));
+                }
+                eventBus.send(EVENT_BUS_ADDRESS, event, stamped);
+                if (traced) {
+                    latency.recordIngest(receivedAt, enteredAt, dispatchedAt);
+                }
                 dispatched++;
             } catch (Exception e) {
                 LOG.errorf(e, "Failed to dispatch event for CIN: %s", event.cin());
@@ -87,6 +111,7 @@ public class TransactionEventResource {
         }
 
         LOG.infof("Dispatched %d/%d events to event bus", dispatched, events.size());
+        metrics.recordBatch(events.size(), dispatched);
 
         return Response.accepted()
                 .entity(new AcceptedResponse(dispatched, events.size()))
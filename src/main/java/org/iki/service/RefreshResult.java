@@ -0,0 +1,16 @@
+package org.iki.service;
+
+import org.iki.engine.CelRuleEngine;
+
+/**
+ * Outcome of a rule refresh, shared by every caller that joined it.
+ *
+ * @param snapshotVersion Version of the compiled snapshot after the refresh
+ * @param full            True if every active rule was loaded, false for a delta load
+ * @param rowsRead        Rules read from the source
+ * @param cachedRules     Rules cached after the refresh
+ * @param compile         Statistics of the recompile, or null if the rules were unchanged and not recompiled
+ * @param durationMillis  Time from the start of the load until the new snapshot was swapped in
+ */
+public record RefreshResult(long snapshotVersion, boolean full, int rowsRead, int cachedRules,
+                            CelRuleEngine.CompileStats compile, long durationMillis) {}
@@ -2,21 +2,53 @@ package org.iki.service;
 
 import io.quarkus.runtime.StartupEvent;
 import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.iki.engine.CelRuleEngine;
 import org.iki.model.Rule;
-import org.iki.repository.RuleRepository;
+import org.iki.model.SequenceRule;
+import org.iki.repository.RuleChanges;
+import org.iki.repository.RuleSource;
+import org.iki.state.CheckpointService;
 import org.jboss.logging.Logger;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Service responsible for caching rules in-memory and periodically refreshing them.
+ * <p>
+ * Startup and forced refreshes load every active rule; scheduled refreshes load only the rules changed since
+ * the previous load and merge them into the cache. Either way rules are only recompiled when they differ from the
+ * cached ones. Every {@code app.rules.full-refresh-every}-th scheduled refresh is a full load, which also picks up
+ * deleted rows.
+ * <p>
+ * Refreshes are single-flight: at most one load and compile runs at a time. Requests made while one runs share a
+ * single follow-up refresh, and the scheduled refresh joins the running one, so a burst of admin calls or pushed
+ * changes costs at most two loads.
+ * <p>
+ * Every applied rule set is saved to a {@link RuleSnapshotFile}; on startup that file is compiled before the
+ * source is asked, so an instance whose source is slow or down still serves the last rules it knew.
+ * <p>
+ * Rules written through this service are type-checked before they are stored and then compiled on their own into
+ * the live snapshot, so a write does not recompile the other rules; the refresh that follows the write finds the
+ * rules unchanged. A load may read the source before a concurrent write is stored and be applied after it, so the
+ * writes numbered after a load started are replayed on top of what it read.
  */
 @ApplicationScoped
 public class RuleCacheService {
@@ -24,53 +56,307 @@ public class RuleCacheService {
     private static final Logger LOG = Logger.getLogger(RuleCacheService.class);
 
     private final AtomicReference<List<Rule>> cachedRules = new AtomicReference<>(Collections.emptyList());
+    private final AtomicReference<List<SequenceRule>> cachedSequenceRules = new AtomicReference<>(Collections.emptyList());
     private volatile Instant lastRefreshTime;
     private volatile boolean lastRefreshSucceeded;
+    private volatile RefreshResult lastRefresh;
+    // True from loading the local snapshot file until the first load from the source
+    private volatile boolean servingLocalSnapshot;
+    private final SingleFlight<RefreshResult> refreshes = new SingleFlight<>(this::load);
+    // Watermark of the last applied load; null until the first full load succeeds
+    private Instant watermark;
+    private int deltasSinceFull;
+    // Writes applied since the running load started, numbered by writeSequence; guarded by this
+    private final List<Write> writes = new ArrayList<>();
+    private long writeSequence;
+    private RuleSource ruleSource;
 
     @Inject
-    RuleRepository ruleRepository;
+    Instance<RuleSource> ruleSources;
 
     @Inject
     CelRuleEngine celRuleEngine;
 
+    @Inject
+    CheckpointService checkpointService;
+
+    @Inject
+    RuleSnapshotFile snapshotFile;
+
+    @ConfigProperty(name = "app.rules.full-refresh-every", defaultValue = "60")
+    int fullRefreshEvery;
+
+    @PostConstruct
+    void init() {
+        ruleSource = ruleSources.get();
+        LOG.infof("Loading rules from %s", ruleSource.getClass().getSimpleName());
+    }
+
     /**
-     * Load rules on application startup.
+     * Restore the stateful stores from the latest checkpoint and load rules on application startup.
      */
     void onStart(@Observes StartupEvent event) {
+        checkpointService.restoreLatest();
+        loadLocalSnapshot();
         LOG.info("Loading rules on application startup");
-        refreshRules();
+        forceRefresh();
+    }
+
+    /**
+     * Compiles the rule set saved by the previous run, if there is one, so rules are served even if the source is
+     * slow or down. The startup refresh replaces it once the source answers, recompiling only if the rules changed.
+     */
+    private synchronized void loadLocalSnapshot() {
+        Optional<RuleSnapshotFile.RuleSet> local = snapshotFile.read();
+        if (local.isEmpty()) {
+            return;
+        }
+        RuleSnapshotFile.RuleSet ruleSet = local.get();
+        cachedRules.set(List.copyOf(ruleSet.rules()));
+        cachedSequenceRules.set(List.copyOf(ruleSet.sequences()));
+        CelRuleEngine.CompileStats compile = celRuleEngine.compile(cachedRules.get(), cachedSequenceRules.get());
+        servingLocalSnapshot = true;
+        LOG.infof("Serving %d rules from local snapshot %d written at %s (compiled in %d ms) until %s answers",
+                compile.compiled(), ruleSet.version(), Instant.ofEpochMilli(ruleSet.writtenMillis()),
+                compile.durationMillis(), ruleSource.getClass().getSimpleName());
     }
 
     /**
      * Periodically refresh rules from the source.
-     * Default: every 60 seconds.
+     * Default: every 60 seconds. Joins a refresh already in progress instead of queueing another one.
      */
     @Scheduled(every = "${app.rules.refresh-interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
     void scheduledRefresh() {
         LOG.debug("Scheduled rule refresh triggered");
-        refreshRules();
+        refreshes.join(false);
+    }
+
+    /**
+     * Refresh rules changed since the previous load and recompile CEL expressions if any changed.
+     * Single-flight: while a refresh is running, callers share one follow-up refresh.
+     *
+     * @return completes with the result of a refresh started after this call
+     */
+    public Uni<RefreshResult> refreshRules() {
+        return Uni.createFrom().completionStage(refreshes.request(false));
+    }
+
+    /**
+     * Loads every active rule and recompiles if they changed. Single-flight like {@link #refreshRules()};
+     * a shared follow-up refresh is full if any of its callers forced it.
+     *
+     * @return completes with the result of a refresh started after this call
+     */
+    public Uni<RefreshResult> forceRefresh() {
+        LOG.info("Forcing rules cache refresh");
+        return Uni.createFrom().completionStage(refreshes.request(true));
+    }
+
+    private CompletionStage<RefreshResult> load(boolean full) {
+        long started = System.nanoTime();
+        long startSequence = startLoad();
+        Instant since = full ? null : deltaSince();
+        return Uni.combine().all().unis(ruleSource.findChangedRules(since), ruleSource.findAllActiveSequenceRules())
+                .asTuple()
+                // The rule sources may complete on the event loop; compiling and warming up block
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .map(loaded -> apply(loaded.getItem1(), loaded.getItem2(), started, startSequence))
+                .onFailure().invoke(error -> {
+                    lastRefreshSucceeded = false;
+                    LOG.error("Failed to refresh rules cache", error);
+                })
+                .subscribeAsCompletionStage();
     }
 
     /**
-     * Refresh rules from the repository and recompile CEL expressions.
+     * Returns the number of the last write applied before a load reads the source. Earlier writes are already
+     * stored, and loads are single-flight, so their record is no longer needed.
      */
-    public void refreshRules() {
-        ruleRepository.findAllActiveRules()
-                .subscribe().with(
-                        rules -> {
-                            List<Rule> immutableRules = List.copyOf(rules);
-                            cachedRules.set(immutableRules);
-                            int compiled = celRuleEngine.compileAndCacheRules(immutableRules);
-                            lastRefreshTime = Instant.now();
-                            lastRefreshSucceeded = true;
-                            LOG.infof("Rules cache refreshed: %d rules loaded, %d compiled",
-                                    immutableRules.size(), compiled);
-                        },
-                        error -> {
-                            lastRefreshSucceeded = false;
-                            LOG.error("Failed to refresh rules cache", error);
-                        }
-                );
+    private synchronized long startLoad() {
+        writes.clear();
+        return writeSequence;
+    }
+
+    /**
+     * Returns the watermark for a delta load, or null when the next load must be full.
+     */
+    private synchronized Instant deltaSince() {
+        if (watermark == null || ++deltasSinceFull >= fullRefreshEvery) {
+            return null;
+        }
+        return watermark;
+    }
+
+    /**
+     * Applies a load to the cache, replaying the writes applied after it started: the load may have read their rows
+     * before they were stored, and would otherwise bring back the previous version of the rule.
+     */
+    private synchronized RefreshResult apply(RuleChanges changes, List<SequenceRule> sequences, long startedNanos,
+                                             long startSequence) {
+        List<Rule> current = cachedRules.get();
+        List<Rule> loaded = changes.full() ? changes.rules() : merge(current, changes.rules());
+        List<Rule> immutableRules = replay(loaded, writes, startSequence);
+        List<SequenceRule> immutableSequences = List.copyOf(sequences);
+        if (changes.full()) {
+            deltasSinceFull = 0;
+            watermark = changes.watermark();
+        } else if (changes.watermark().isAfter(watermark)) {
+            watermark = changes.watermark();
+        }
+        lastRefreshTime = Instant.now();
+        lastRefreshSucceeded = true;
+        servingLocalSnapshot = false;
+        CelRuleEngine.CompileStats compile = null;
+        if (immutableRules.equals(current) && immutableSequences.equals(cachedSequenceRules.get())) {
+            LOG.debugf("Rules unchanged (%d rows read since the previous load)", changes.rules().size());
+        } else {
+            cachedRules.set(immutableRules);
+            cachedSequenceRules.set(immutableSequences);
+            compile = celRuleEngine.compile(immutableRules, immutableSequences);
+            snapshotFile.save(immutableRules, immutableSequences);
+            LOG.infof("Rules cache refreshed (%s, %d rows): %d rules loaded, %d compiled, %d sequence rules",
+                    changes.full() ? "full" : "delta", changes.rules().size(), immutableRules.size(),
+                    compile.compiled(), compile.sequences());
+        }
+        RefreshResult result = new RefreshResult(celRuleEngine.getSnapshotVersion(), changes.full(),
+                changes.rules().size(), immutableRules.size(), compile, (System.nanoTime() - startedNanos) / 1_000_000);
+        lastRefresh = result;
+        return result;
+    }
+
+    /**
+     * Type-checks a new rule, stores it and compiles it into the cached rules.
+     *
+     * @return false if a rule with the same id already exists
+     * @throws RuleValidationException (through the Uni) if the expression does not compile
+     * @throws RuleCompilationException (through the Uni) if the stored rule could not be compiled
+     */
+    public Uni<Boolean> createRule(Rule rule) {
+        return write(rule, () -> ruleSource.insert(rule));
+    }
+
+    /**
+     * Type-checks a rule, replaces the stored rule with the same id and recompiles only that rule.
+     * An inactive rule is removed from the cached rules.
+     *
+     * @return false if there is no rule with that id
+     * @throws RuleValidationException (through the Uni) if the expression does not compile
+     * @throws RuleCompilationException (through the Uni) if the stored rule could not be compiled
+     */
+    public Uni<Boolean> updateRule(Rule rule) {
+        return write(rule, () -> ruleSource.update(rule));
+    }
+
+    /**
+     * Deletes a stored rule and removes it from the cached rules.
+     *
+     * @return false if there is no rule with that id
+     */
+    public Uni<Boolean> deleteRule(long id) {
+        return ruleSource.delete(id).emitOn(Infrastructure.getDefaultWorkerPool()).invoke(deleted -> {
+            if (deleted) {
+                applyDeletion(id);
+            }
+        });
+    }
+
+    private Uni<Boolean> write(Rule rule, Supplier<Uni<Boolean>> store) {
+        List<String> errors = celRuleEngine.validate(rule.expression());
+        if (!errors.isEmpty()) {
+            return Uni.createFrom().failure(new RuleValidationException(rule.id(), errors));
+        }
+        return store.get().emitOn(Infrastructure.getDefaultWorkerPool()).invoke(stored -> {
+            if (stored) {
+                applyWrite(rule);
+            }
+        });
+    }
+
+    /**
+     * Applies a stored write as a one-row delta. Synchronized with {@link #apply}, so a refresh and a write
+     * never interleave their updates of the cache and the compiled rules.
+     */
+    private synchronized void applyWrite(Rule rule) {
+        writes.add(new Write(++writeSequence, rule.id(), rule));
+        cachedRules.set(merge(cachedRules.get(), List.of(rule)));
+        boolean compiled = true;
+        if (rule.active()) {
+            compiled = celRuleEngine.upsertRule(rule);
+        } else {
+            celRuleEngine.removeRule(rule.id());
+        }
+        compactIfNeeded();
+        snapshotFile.save(cachedRules.get(), cachedSequenceRules.get());
+        LOG.infof("Rule %d written, %d rules cached", rule.id(), cachedRules.get().size());
+        if (!compiled) {
+            throw new RuleCompilationException(rule.id());
+        }
+    }
+
+    private synchronized void applyDeletion(long id) {
+        writes.add(new Write(++writeSequence, id, null));
+        cachedRules.set(cachedRules.get().stream().filter(rule -> rule.id() != id).toList());
+        celRuleEngine.removeRule(id);
+        compactIfNeeded();
+        snapshotFile.save(cachedRules.get(), cachedSequenceRules.get());
+        LOG.infof("Rule %d deleted, %d rules cached", id, cachedRules.get().size());
+    }
+
+    /**
+     * Recompiles the cached rules once single-rule writes have left enough unused index slots, patterns and
+     * memoised sub-expressions in the snapshot, which a refresh would not reclaim while the rules are unchanged.
+     */
+    private void compactIfNeeded() {
+        if (celRuleEngine.needsCompaction()) {
+            CelRuleEngine.CompileStats compile = celRuleEngine.compile(cachedRules.get(), cachedSequenceRules.get());
+            LOG.infof("Compacted the compiled rules: %d programs in %d ms", compile.programs(),
+                    compile.durationMillis());
+        }
+    }
+
+    /**
+     * Applies changed rows to the cached rules: active rows replace or add the rule with their id, inactive
+     * rows remove it. The result stays ordered by id.
+     */
+    static List<Rule> merge(List<Rule> current, List<Rule> changed) {
+        if (changed.isEmpty()) {
+            return current;
+        }
+        Map<Long, Rule> byId = new LinkedHashMap<>();
+        for (Rule rule : current) {
+            byId.put(rule.id(), rule);
+        }
+        for (Rule rule : changed) {
+            if (rule.active()) {
+                byId.put(rule.id(), rule);
+            } else {
+                byId.remove(rule.id());
+            }
+        }
+        return byId.values().stream().sorted(Comparator.comparing(Rule::id)).toList();
+    }
+
+    /**
+     * Applies the writes numbered after {@code afterSequence} to loaded rules, in order. Replaying a write the
+     * load already read changes nothing.
+     */
+    static List<Rule> replay(List<Rule> rules, List<Write> writes, long afterSequence) {
+        List<Rule> result = rules;
+        for (Write write : writes) {
+            if (write.sequence() <= afterSequence) {
+                continue;
+            }
+            result = write.rule() != null
+                    ? merge(result, List.of(write.rule()))
+                    : result.stream().filter(rule -> rule.id() != write.id()).toList();
+        }
+        return result;
+    }
+
+    /**
+     * A rule written or, with a null rule, deleted through this service.
+     */
+    record Write(long sequence, long id, Rule rule) {
     }
 
     /**
@@ -83,11 +369,12 @@ public class RuleCacheService {
     }
 
     /**
-     * Force an immediate refresh of the rules cache.
+     * Get the currently cached sequence rules (unmodifiable).
+     *
+     * @return List of cached sequence rules
      */
-    public void forceRefresh() {
-        LOG.info("Forcing rules cache refresh");
-        refreshRules();
+    public List<SequenceRule> getCachedSequenceRules() {
+        return cachedSequenceRules.get();
     }
 
     /**
@@ -103,4 +390,39 @@ public class RuleCacheService {
     public boolean isLastRefreshSucceeded() {
         return lastRefreshSucceeded;
     }
+
+    /**
+     * Returns the result of the last successful refresh, or null before the first one.
+     */
+    public RefreshResult getLastRefresh() {
+        return lastRefresh;
+    }
+
+    /**
+     * Returns true if the cached rules come from the local snapshot file because the source has not answered yet.
+     */
+    public boolean isServingLocalSnapshot() {
+        return servingLocalSnapshot;
+    }
+
+    /**
+     * Returns true if a refresh is running.
+     */
+    public boolean isRefreshing() {
+        return refreshes.isRunning();
+    }
+
+    /**
+     * Returns the number of refresh requests, including scheduled ones.
+     */
+    public long getRefreshRequestCount() {
+        return refreshes.getRequestCount();
+    }
+
+    /**
+     * Returns the number of refreshes run for those requests.
+     */
+    public long getRefreshRunCount() {
+        return refreshes.getRunCount();
+    }
 }
\ No newline at end of file
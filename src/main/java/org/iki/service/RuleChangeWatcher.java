@@ -0,0 +1,238 @@
+package org.iki.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.repository.LoggedChange;
+import org.iki.repository.RuleSource;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Pushes rule changes to the {@link RuleRefreshTrigger} instead of waiting for the scheduled refresh:
+ * <ul>
+ *   <li>the rule source's change log is polled every {@code app.rules.push.change-log-interval}; with the database
+ *       source this is a primary-key range read of {@code rule_changes} that is empty unless a rule changed</li>
+ *   <li>the {@code app.rules.file} rules file, if set, is watched with a {@link WatchService} on its directory</li>
+ * </ul>
+ * The change log is read from its end at startup, before the rules are loaded, so history is neither replayed
+ * nor turned into a full reload. Sequences are allocated before their transactions commit, so a lower sequence
+ * can appear after a higher one: the position only advances over contiguous sequences, entries above a gap are
+ * remembered so they trigger once, and a gap still open after {@code app.rules.push.gap-timeout} is taken to be a
+ * rolled back insert and skipped. Entries older than {@code app.rules.push.change-log-retention} are pruned.
+ */
+@ApplicationScoped
+public class RuleChangeWatcher {
+
+    private static final Logger LOG = Logger.getLogger(RuleChangeWatcher.class);
+
+    private static final long UNPOSITIONED = -1;
+    private static final Duration POSITION_TIMEOUT = Duration.ofSeconds(10);
+
+    // Every change log entry up to this sequence has been handled; UNPOSITIONED until the log's end is known
+    private long sequence = UNPOSITIONED;
+    // Entries already handled above a gap, which a transaction that has not committed yet may still fill
+    private final TreeSet<Long> handledAboveGap = new TreeSet<>();
+    private boolean gapOpen;
+    private long gapOpenedNanos;
+    private WatchService watchService;
+
+    @Inject
+    Instance<RuleSource> ruleSources;
+
+    @Inject
+    RuleRefreshTrigger trigger;
+
+    @ConfigProperty(name = "app.rules.push.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.rules.push.gap-timeout", defaultValue = "10s")
+    Duration gapTimeout;
+
+    @ConfigProperty(name = "app.rules.push.change-log-retention", defaultValue = "24h")
+    Duration changeLogRetention;
+
+    @ConfigProperty(name = "app.rules.file")
+    Optional<String> file;
+
+    void onStart(@Observes StartupEvent event) {
+        if (enabled && file.isPresent()) {
+            watch(Path.of(file.get()).toAbsolutePath());
+        }
+    }
+
+    /**
+     * Runs before {@link RuleCacheService} loads the rules, so a change committed after the log's end was read is
+     * either in the load or read by the first poll. If the source cannot be read now, the first poll positions.
+     */
+    void positionChangeLog(@Observes @Priority(Interceptor.Priority.LIBRARY_BEFORE) StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            onPositioned(ruleSources.get().findLatestLoggedSequence().await().atMost(POSITION_TIMEOUT));
+        } catch (RuntimeException e) {
+            LOG.warnf("Could not read the end of the rule change log, positioning on the first poll: %s",
+                    e.getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.debugf("Could not close the rules file watcher: %s", e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(every = "${app.rules.push.change-log-interval:1s}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void pollChangeLog() {
+        if (!enabled) {
+            return;
+        }
+        long after = position();
+        if (after == UNPOSITIONED) {
+            ruleSources.get().findLatestLoggedSequence()
+                    .subscribe().with(
+                            this::onPositioned,
+                            error -> LOG.debugf("Rule change log position read failed: %s", error.getMessage())
+                    );
+            return;
+        }
+        ruleSources.get().findLoggedChanges(after)
+                .subscribe().with(
+                        changes -> onLoggedChanges(changes, System.nanoTime()),
+                        error -> LOG.debugf("Rule change log poll failed: %s", error.getMessage())
+                );
+    }
+
+    @Scheduled(every = "${app.rules.push.change-log-prune-interval:1h}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void pruneChangeLog() {
+        if (!enabled) {
+            return;
+        }
+        ruleSources.get().pruneLoggedChanges(changeLogRetention)
+                .subscribe().with(
+                        deleted -> {
+                            if (deleted > 0) {
+                                LOG.infof("Pruned %d rule change log entries older than %s", deleted,
+                                        changeLogRetention);
+                            }
+                        },
+                        error -> LOG.warnf("Rule change log prune failed: %s", error.getMessage())
+                );
+    }
+
+    synchronized long position() {
+        return sequence;
+    }
+
+    synchronized void onPositioned(Long latest) {
+        if (sequence == UNPOSITIONED) {
+            sequence = latest == null ? 0 : latest;
+            LOG.debugf("Reading the rule change log after sequence %d", sequence);
+        }
+    }
+
+    synchronized void onLoggedChanges(List<LoggedChange> changes, long nowNanos) {
+        if (sequence == UNPOSITIONED) {
+            return;
+        }
+        long newest = 0;
+        boolean deletions = false;
+        for (LoggedChange change : changes) {
+            if (change.sequence() > sequence && handledAboveGap.add(change.sequence())) {
+                newest = Math.max(newest, change.sequence());
+                deletions |= change.deletion();
+            }
+        }
+        advance(nowNanos);
+        if (newest > 0) {
+            trigger.request("change log at " + newest, deletions);
+        }
+    }
+
+    private void advance(long nowNanos) {
+        while (!handledAboveGap.isEmpty()) {
+            if (handledAboveGap.first() == sequence + 1) {
+                sequence = handledAboveGap.pollFirst();
+                gapOpen = false;
+            } else if (!gapOpen) {
+                gapOpen = true;
+                gapOpenedNanos = nowNanos;
+                return;
+            } else if (nowNanos - gapOpenedNanos >= gapTimeout.toNanos()) {
+                LOG.debugf("Skipping rule change log sequences %d to %d, not committed within %s", sequence + 1,
+                        handledAboveGap.first() - 1, gapTimeout);
+                sequence = handledAboveGap.first() - 1;
+                gapOpen = false;
+            } else {
+                return;
+            }
+        }
+        gapOpen = false;
+    }
+
+    private void watch(Path rulesFile) {
+        Path directory = rulesFile.getParent();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            LOG.errorf(e, "Cannot watch %s, rules file changes are picked up by the scheduled refresh", directory);
+            return;
+        }
+        Thread thread = new Thread(() -> watchLoop(rulesFile.getFileName()), "rules-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        LOG.infof("Watching rules file %s", rulesFile);
+    }
+
+    private void watchLoop(Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // Overflow means events were lost; the file may have changed
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                }
+                if (changed) {
+                    trigger.request("rules file", false);
+                }
+                if (!key.reset()) {
+                    LOG.warn("Rules file directory is no longer accessible, stopped watching");
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOG.debug("Rules file watcher closed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
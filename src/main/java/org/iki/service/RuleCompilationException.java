@@ -0,0 +1,12 @@
+package org.iki.service;
+
+/**
+ * Thrown when a rule written through {@link RuleCacheService} was stored but could not be compiled into the
+ * cached rules; the previously compiled version of the rule, if any, keeps being evaluated.
+ */
+public class RuleCompilationException extends IllegalStateException {
+
+    public RuleCompilationException(long ruleId) {
+        super("Rule " + ruleId + " was stored but could not be compiled into the cached rules");
+    }
+}
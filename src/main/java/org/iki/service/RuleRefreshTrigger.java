@@ -0,0 +1,118 @@
+package org.iki.service;
+
+import io.quarkus.vertx.ConsumeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces push notifications of rule changes into rule refreshes.
+ * <p>
+ * The first request after a refresh schedules one {@code app.rules.push.debounce} later, and requests arriving in
+ * the meantime join it, so a burst of edits produces one recompile and a change takes effect within the debounce
+ * plus one refresh. A request for a full reload upgrades the pending refresh.
+ * <p>
+ * Requests come from the change log and rules file watched by {@link RuleChangeWatcher}, and from any component
+ * that sends to the {@value #ADDRESS} event bus address.
+ */
+@ApplicationScoped
+public class RuleRefreshTrigger {
+
+    private static final Logger LOG = Logger.getLogger(RuleRefreshTrigger.class);
+
+    /**
+     * Event bus address for rule change notifications; the message body is a short reason for the logs.
+     */
+    public static final String ADDRESS = "rules.changed";
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicBoolean fullPending = new AtomicBoolean();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    RuleCacheService ruleCacheService;
+
+    @ConfigProperty(name = "app.rules.push.debounce", defaultValue = "250ms")
+    Duration debounce;
+
+    @PostConstruct
+    void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rule-refresh-trigger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @ConsumeEvent(ADDRESS)
+    void onRulesChanged(String reason) {
+        request(reason, false);
+    }
+
+    /**
+     * Requests a rule refresh, coalesced with other requests within the debounce.
+     *
+     * @param reason Source of the change, for the logs
+     * @param full   True if the change cannot be seen by a delta load, such as a deleted rule
+     */
+    public void request(String reason, boolean full) {
+        requests.increment();
+        if (full) {
+            fullPending.set(true);
+        }
+        if (pending.compareAndSet(false, true)) {
+            LOG.debugf("Rule refresh requested (%s), running in %d ms", reason, debounce.toMillis());
+            scheduler.schedule(this::fire, debounce.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            LOG.debugf("Rule refresh requested (%s), joined the pending refresh", reason);
+        }
+    }
+
+    private void fire() {
+        // Cleared before refreshing, so a change made during the refresh schedules another one
+        pending.set(false);
+        boolean full = fullPending.getAndSet(false);
+        refreshes.increment();
+        try {
+            // Failures are logged by the cache service; the refresh runs whether or not it is awaited
+            if (full) {
+                ruleCacheService.forceRefresh();
+            } else {
+                ruleCacheService.refreshRules();
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Pushed rule refresh failed", e);
+        }
+    }
+
+    /**
+     * Returns the number of refresh requests received.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of refreshes run for those requests.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+}
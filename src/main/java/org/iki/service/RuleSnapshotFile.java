@@ -0,0 +1,217 @@
+package org.iki.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.Rule;
+import org.iki.model.SequenceRule;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Local copy of the last applied rule set, so that a restarting instance can serve rules before the rule source
+ * answers.
+ * <p>
+ * File layout: a header line {@code EDIOS-RULES <format> <version> <payload length> <SHA-256 of the payload>}
+ * followed by the JSON payload. The file is written to a temporary name, forced to disk and renamed, and a file
+ * whose header, length or checksum does not match is ignored. {@code version} increases with every write, across
+ * restarts.
+ * <p>
+ * Only rule definitions are stored: compiled CEL programs cannot be serialised, and recompiling from source is the
+ * cheap part of a start without the source.
+ */
+@ApplicationScoped
+public class RuleSnapshotFile {
+
+    private static final Logger LOG = Logger.getLogger(RuleSnapshotFile.class);
+
+    static final String MAGIC = "EDIOS-RULES";
+    static final int FORMAT = 1;
+
+    /**
+     * Contents of the file.
+     *
+     * @param version       Write sequence number
+     * @param writtenMillis Time of the write
+     * @param rules         Active rules, ordered by id
+     * @param sequences     Active sequence rules
+     */
+    public record RuleSet(long version, long writtenMillis, List<Rule> rules, List<SequenceRule> sequences) {}
+
+    private record Pending(List<Rule> rules, List<SequenceRule> sequences) {}
+
+    private final AtomicReference<Pending> pending = new AtomicReference<>();
+    private ExecutorService writer;
+    private long version;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "app.rules.snapshot.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.rules.snapshot.path", defaultValue = "${java.io.tmpdir}/edios-state/rules.snapshot")
+    String path;
+
+    @PostConstruct
+    void init() {
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rule-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writer.shutdown();
+    }
+
+    /**
+     * Saves a rule set in the background. Saves made while a write is in progress are coalesced, and only the
+     * latest one is written.
+     */
+    public void save(List<Rule> rules, List<SequenceRule> sequences) {
+        if (!enabled) {
+            return;
+        }
+        if (pending.getAndSet(new Pending(rules, sequences)) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    private void writePending() {
+        Pending next = pending.getAndSet(null);
+        if (next == null) {
+            return;
+        }
+        try {
+            write(next.rules(), next.sequences());
+        } catch (IOException | RuntimeException e) {
+            LOG.errorf(e, "Cannot write the local rule snapshot %s", path);
+        }
+    }
+
+    /**
+     * Writes a rule set and returns its version.
+     */
+    synchronized long write(List<Rule> rules, List<SequenceRule> sequences) throws IOException {
+        long start = System.currentTimeMillis();
+        long next = version + 1;
+        byte[] payload = objectMapper.writeValueAsBytes(new RuleSet(next, start, rules, sequences));
+        byte[] header = (MAGIC + " " + FORMAT + " " + next + " " + payload.length + " " + sha256(payload) + "\n")
+                .getBytes(StandardCharsets.US_ASCII);
+
+        Path target = Path.of(path);
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(new ByteBuffer[]{ByteBuffer.wrap(header), ByteBuffer.wrap(payload)});
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        version = next;
+        LOG.debugf("Wrote local rule snapshot %d: %d rules, %d sequence rules, %d KB in %d ms", next, rules.size(),
+                sequences.size(), (header.length + payload.length) / 1024, System.currentTimeMillis() - start);
+        return next;
+    }
+
+    /**
+     * Reads the rule set, if the file exists and is intact. Later writes continue from its version.
+     */
+    public synchronized Optional<RuleSet> read() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(Path.of(path));
+        } catch (NoSuchFileException e) {
+            LOG.debugf("No local rule snapshot at %s", path);
+            return Optional.empty();
+        } catch (IOException e) {
+            LOG.errorf(e, "Cannot read the local rule snapshot %s", path);
+            return Optional.empty();
+        }
+        try {
+            RuleSet ruleSet = parse(bytes);
+            version = Math.max(version, ruleSet.version());
+            return Optional.of(ruleSet);
+        } catch (IOException | RuntimeException e) {
+            LOG.warnf("Ignoring the local rule snapshot %s: %s", path, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private RuleSet parse(byte[] bytes) throws IOException {
+        int newline = -1;
+        for (int i = 0; i < bytes.length && i < 256; i++) {
+            if (bytes[i] == '\n') {
+                newline = i;
+                break;
+            }
+        }
+        if (newline < 0) {
+            throw new IOException("no header");
+        }
+        String[] header = new String(bytes, 0, newline, StandardCharsets.US_ASCII).split(" ");
+        if (header.length != 5 || !MAGIC.equals(header[0])) {
+            throw new IOException("not a rule snapshot");
+        }
+        if (Integer.parseInt(header[1]) != FORMAT) {
+            throw new IOException("unsupported format " + header[1]);
+        }
+        int length = Integer.parseInt(header[3]);
+        if (bytes.length - newline - 1 != length) {
+            throw new IOException("expected " + length + " payload bytes, found " + (bytes.length - newline - 1));
+        }
+        byte[] payload = new byte[length];
+        System.arraycopy(bytes, newline + 1, payload, 0, length);
+        if (!sha256(payload).equals(header[4])) {
+            throw new IOException("checksum mismatch");
+        }
+        RuleSet ruleSet = objectMapper.readerFor(RuleSet.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readValue(payload);
+        if (ruleSet.version() != Long.parseLong(header[2]) || ruleSet.rules() == null || ruleSet.sequences() == null) {
+            throw new IOException("header does not match the payload");
+        }
+        return ruleSet;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.iki.service;
+
+import java.util.List;
+
+/**
+ * Thrown when a rule written through {@link RuleCacheService} does not compile; nothing is stored.
+ */
+public class RuleValidationException extends IllegalArgumentException {
+
+    private final List<String> errors;
+
+    public RuleValidationException(long ruleId, List<String> errors) {
+        super("Rule " + ruleId + " does not compile: " + String.join("; ", errors));
+        this.errors = List.copyOf(errors);
+    }
+
+    /**
+     * Returns the compiler errors.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
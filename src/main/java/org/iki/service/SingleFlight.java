@@ -0,0 +1,127 @@
+package org.iki.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Runs an asynchronous task at most once at a time, sharing each run between the callers that asked for it.
+ * <p>
+ * A {@link #request} while a run is in progress does not start another run: it joins a single queued follow-up,
+ * started when the current run completes, so the caller still sees a run that began after its request. A
+ * {@link #join} is satisfied by the run in progress. The task takes a {@code full} flag; a queued follow-up is
+ * full if any of its callers asked for a full run, and a full join does not join a run that is not full.
+ *
+ * @param <T> Result of a run
+ */
+final class SingleFlight<T> {
+
+    private final Function<Boolean, CompletionStage<T>> task;
+    private Flight<T> running;
+    private Flight<T> queued;
+    private long requests;
+    private long runs;
+
+    SingleFlight(Function<Boolean, CompletionStage<T>> task) {
+        this.task = task;
+    }
+
+    /**
+     * Starts a run, or joins the follow-up of the run in progress.
+     *
+     * @return completes with the result of a run started after this call
+     */
+    CompletableFuture<T> request(boolean full) {
+        Flight<T> start = null;
+        CompletableFuture<T> result;
+        synchronized (this) {
+            requests++;
+            if (running == null) {
+                running = start = new Flight<>(full);
+                result = running.result;
+            } else {
+                if (queued == null) {
+                    queued = new Flight<>(full);
+                } else {
+                    queued.full |= full;
+                }
+                result = queued.result;
+            }
+        }
+        if (start != null) {
+            start(start);
+        }
+        return result;
+    }
+
+    /**
+     * Joins the run in progress if it covers {@code full}, and behaves like {@link #request} otherwise.
+     */
+    CompletableFuture<T> join(boolean full) {
+        synchronized (this) {
+            if (running != null && (running.full || !full)) {
+                requests++;
+                return running.result;
+            }
+        }
+        return request(full);
+    }
+
+    private void start(Flight<T> flight) {
+        synchronized (this) {
+            runs++;
+        }
+        CompletionStage<T> stage;
+        try {
+            stage = task.apply(flight.full);
+        } catch (RuntimeException e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((value, error) -> {
+            Flight<T> next;
+            synchronized (this) {
+                next = queued;
+                queued = null;
+                running = next;
+            }
+            if (error != null) {
+                flight.result.completeExceptionally(error);
+            } else {
+                flight.result.complete(value);
+            }
+            if (next != null) {
+                start(next);
+            }
+        });
+    }
+
+    /**
+     * Returns true if a run is in progress.
+     */
+    synchronized boolean isRunning() {
+        return running != null;
+    }
+
+    /**
+     * Returns the number of {@link #request} and {@link #join} calls.
+     */
+    synchronized long getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of runs started for those calls.
+     */
+    synchronized long getRunCount() {
+        return runs;
+    }
+
+    private static final class Flight<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        boolean full;
+
+        Flight(boolean full) {
+            this.full = full;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.iki.state;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.TransactionEvent;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distinct-counterparty estimates per account using windowed HyperLogLog sketches.
+ * Outbound sketches are keyed by debit account and count distinct credit accounts (fan-out);
+ * inbound sketches are keyed by credit account and count distinct debit accounts (fan-in).
+ * Sketches are bucketed by event time and windows end at the {@link EventTimeClock}.
+ * <p>
+ * With the default precision of 9 the relative standard error is about 4.6%, and each sketch holds
+ * {@code 512 * buckets} bytes of registers (4 KB for the default 8 x 3h buckets). An account that both pays and
+ * is paid has an outbound and an inbound sketch, about 8 KB. {@code app.state.cardinality.max-keys} caps the
+ * sketches of both directions together, so the registers never exceed {@code max-keys * bytesPerKey()}.
+ */
+@ApplicationScoped
+public class CardinalityStore implements EventStateStore, CheckpointableStore {
+
+    private static final Logger LOG = Logger.getLogger(CardinalityStore.class);
+
+    // Checkpoint record markers
+    private static final byte OUTBOUND = 1;
+    private static final byte INBOUND = 2;
+
+    private final ConcurrentHashMap<String, Sketch> outbound = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Sketch> inbound = new ConcurrentHashMap<>();
+    private final LongAdder droppedKeys = new LongAdder();
+
+    @Inject
+    EventTimeClock clock;
+
+    @ConfigProperty(name = "app.state.cardinality.precision", defaultValue = "9")
+    int precision;
+
+    @ConfigProperty(name = "app.state.cardinality.bucket-seconds", defaultValue = "10800")
+    long bucketSeconds;
+
+    @ConfigProperty(name = "app.state.cardinality.buckets", defaultValue = "8")
+    int buckets;
+
+    @ConfigProperty(name = "app.state.cardinality.max-keys", defaultValue = "100000")
+    int maxKeys;
+
+    @Override
+    public String name() {
+        return "cardinality";
+    }
+
+    @Override
+    public void record(TransactionEvent event) {
+        long time = event.transactedTime().toEpochMilli();
+        add(outbound, event.debitAccount(), event.creditAccount(), time);
+        add(inbound, event.creditAccount(), event.debitAccount(), time);
+        clock.advance(time);
+    }
+
+    /**
+     * Estimated number of distinct credit accounts paid by the account within the window ending now.
+     *
+     * @throws IllegalArgumentException if the window is longer than {@link #maxWindowMillis()}
+     */
+    public long distinctCounterparties(String account, long windowMillis) {
+        return estimate(outbound, account, clock.now(), checkWindow(windowMillis));
+    }
+
+    /**
+     * Estimated number of distinct debit accounts that paid the account within the window ending now.
+     *
+     * @throws IllegalArgumentException if the window is longer than {@link #maxWindowMillis()}
+     */
+    public long distinctSenders(String account, long windowMillis) {
+        return estimate(inbound, account, clock.now(), checkWindow(windowMillis));
+    }
+
+    /**
+     * Returns the longest window that can be answered, in milliseconds.
+     */
+    public long maxWindowMillis() {
+        return bucketSeconds * 1000 * buckets;
+    }
+
+    private long checkWindow(long windowMillis) {
+        if (windowMillis > maxWindowMillis()) {
+            // Checked before the sketch lookup, so unknown accounts fail the same way as known ones
+            throw new IllegalArgumentException("Window of " + windowMillis / 1000
+                    + " s is longer than the longest cardinality window of " + maxWindowMillis() / 1000 + " s");
+        }
+        return windowMillis;
+    }
+
+    @Override
+    public int evictIdle(long nowMillis) {
+        long cutoff = nowMillis - maxWindowMillis();
+        int before = outbound.size() + inbound.size();
+        outbound.values().removeIf(sketch -> sketch.lastUpdateMillis < cutoff);
+        inbound.values().removeIf(sketch -> sketch.lastUpdateMillis < cutoff);
+        return before - outbound.size() - inbound.size();
+    }
+
+    @Scheduled(every = "${app.state.eviction-interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledEviction() {
+        long watermark = clock.lowWatermark();
+        if (watermark == Long.MIN_VALUE) {
+            return;
+        }
+        int evicted = evictIdle(watermark);
+        if (evicted > 0) {
+            LOG.debugf("Evicted %d idle cardinality keys, %d remaining", evicted, keyCount());
+        }
+    }
+
+    @Override
+    public int keyCount() {
+        return outbound.size() + inbound.size();
+    }
+
+    /**
+     * Returns the register memory held by a single sketch, in bytes; an account has up to two.
+     */
+    public int bytesPerKey() {
+        return (1 << precision) * buckets + buckets * Long.BYTES;
+    }
+
+    /**
+     * Returns the number of observations dropped because the key cap was reached.
+     */
+    public long getDroppedKeys() {
+        return droppedKeys.sum();
+    }
+
+    @Override
+    public long writeCheckpoint(CheckpointWriter out, long sinceMillis) throws IOException {
+        out.putInt(precision);
+        out.putLong(bucketSeconds);
+        out.putInt(buckets);
+        long written = writeSketches(out, OUTBOUND, outbound, sinceMillis)
+                + writeSketches(out, INBOUND, inbound, sinceMillis);
+        out.putByte(CheckpointWriter.END);
+        return written;
+    }
+
+    private static long writeSketches(CheckpointWriter out, byte direction, ConcurrentHashMap<String, Sketch> sketches,
+                                      long sinceMillis) throws IOException {
+        long written = 0;
+        for (Map.Entry<String, Sketch> entry : sketches.entrySet()) {
+            Sketch sketch = entry.getValue();
+            if (sketch.modifiedMillis < sinceMillis) {
+                continue;
+            }
+            out.putByte(direction);
+            out.putString(entry.getKey());
+            synchronized (sketch) {
+                out.putLong(sketch.lastUpdateMillis);
+                sketch.hll.writeTo(out);
+            }
+            written++;
+        }
+        return written;
+    }
+
+    @Override
+    public long restoreCheckpoint(CheckpointReader in) throws IOException {
+        if (in.getInt() != precision || in.getLong() != bucketSeconds || in.getInt() != buckets) {
+            LOG.warn("Cardinality checkpoint was written with a different precision or buckets, not restored");
+            return 0;
+        }
+        long restored = 0;
+        for (byte direction = in.getByte(); direction != CheckpointWriter.END; direction = in.getByte()) {
+            ConcurrentHashMap<String, Sketch> sketches = direction == INBOUND ? inbound : outbound;
+            String key = in.getString();
+            Sketch sketch = new Sketch(new WindowedHyperLogLog(precision, bucketSeconds * 1000, buckets));
+            sketch.lastUpdateMillis = in.getLong();
+            sketch.hll.readFrom(in);
+            if (keyCount() < maxKeys || sketches.containsKey(key)) {
+                sketches.put(key, sketch);
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    void add(ConcurrentHashMap<String, Sketch> sketches, String key, String counterparty, long timestampMillis) {
+        Sketch sketch = sketches.get(key);
+        if (sketch == null) {
+            if (keyCount() >= maxKeys) {
+                droppedKeys.increment();
+                return;
+            }
+            sketch = sketches.computeIfAbsent(key, k -> new Sketch(
+                    new WindowedHyperLogLog(precision, bucketSeconds * 1000, buckets)));
+        }
+        long hash = Hashing.hash64(counterparty);
+        synchronized (sketch) {
+            sketch.hll.add(timestampMillis, hash);
+            sketch.lastUpdateMillis = Math.max(sketch.lastUpdateMillis, timestampMillis);
+            sketch.modifiedMillis = System.currentTimeMillis();
+        }
+    }
+
+    private static long estimate(ConcurrentHashMap<String, Sketch> sketches, String key, long nowMillis,
+                                 long windowMillis) {
+        Sketch sketch = sketches.get(key);
+        if (sketch == null) {
+            return 0;
+        }
+        synchronized (sketch) {
+            return sketch.hll.estimate(nowMillis, windowMillis);
+        }
+    }
+
+    static final class Sketch {
+        final WindowedHyperLogLog hll;
+        // Latest event time recorded
+        volatile long lastUpdateMillis;
+        // Wall-clock time of the last change, for incremental checkpoints
+        volatile long modifiedMillis;
+
+        Sketch(WindowedHyperLogLog hll) {
+            this.hll = hll;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.iki.state;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader of a checkpoint file through a sliding read-only memory-mapped window.
+ * Not thread-safe.
+ *
+ * @see CheckpointWriter
+ */
+public final class CheckpointReader implements Closeable {
+
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    CheckpointReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    public byte getByte() throws IOException {
+        return ensure(Byte.BYTES).get();
+    }
+
+    public int getInt() throws IOException {
+        return ensure(Integer.BYTES).getInt();
+    }
+
+    public long getLong() throws IOException {
+        return ensure(Long.BYTES).getLong();
+    }
+
+    public String getString() throws IOException {
+        return new String(getBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length-prefixed array of longs into {@code target}, which must have the written length.
+     *
+     * @throws IOException if the lengths differ
+     */
+    public void getLongs(long[] target) throws IOException {
+        int length = getInt();
+        if (length != target.length) {
+            throw new IOException("Expected %d longs, found %d".formatted(target.length, length));
+        }
+        MappedByteBuffer in = ensure((long) length * Long.BYTES);
+        for (int i = 0; i < length; i++) {
+            target[i] = in.getLong();
+        }
+    }
+
+    /**
+     * Reads a length-prefixed byte array into {@code target}, which must have the written length.
+     *
+     * @throws IOException if the lengths differ
+     */
+    public void getBytes(byte[] target) throws IOException {
+        int length = getInt();
+        if (length != target.length) {
+            throw new IOException("Expected %d bytes, found %d".formatted(target.length, length));
+        }
+        ensure(length).get(target);
+    }
+
+    private byte[] getBytes() throws IOException {
+        int length = getInt();
+        if (length < 0 || length > size - position()) {
+            throw new IOException("Corrupt length " + length);
+        }
+        byte[] bytes = new byte[length];
+        ensure(length).get(bytes);
+        return bytes;
+    }
+
+    long position() {
+        return window == null ? 0 : windowStart + window.position();
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Moves to an absolute position, e.g. past a section that was not restored.
+     */
+    void seek(long position) throws IOException {
+        if (window != null && position >= windowStart && position <= windowStart + window.limit()) {
+            window.position((int) (position - windowStart));
+        } else {
+            map(position, 0);
+        }
+    }
+
+    /**
+     * Reads the long stored at an absolute position without moving the read position.
+     */
+    long getLongAt(long position) throws IOException {
+        if (position < 0 || position + Long.BYTES > size) {
+            throw new IOException("Position %d outside file of %d bytes".formatted(position, size));
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Long.BYTES).getLong(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer ensure(long bytes) throws IOException {
+        if (window == null || window.remaining() < bytes) {
+            map(position(), bytes);
+        }
+        return window;
+    }
+
+    private void map(long start, long bytes) throws IOException {
+        if (start + bytes > size) {
+            throw new IOException("Unexpected end of checkpoint at " + start);
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(Math.max(WINDOW_BYTES, bytes), size - start));
+        windowStart = start;
+    }
+}
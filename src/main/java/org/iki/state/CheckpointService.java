@@ -0,0 +1,340 @@
+package org.iki.state;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Periodic incremental checkpoints of the {@link CheckpointableStore}s to a local directory, and restore
+ * of the latest checkpoint chain on startup.
+ * <p>
+ * Every {@code full-every}-th checkpoint is a full one; the others are deltas holding only the keys changed
+ * since the previous checkpoint started. Stores keep recording events while a checkpoint is written.
+ * Files are written sequentially through memory-mapped windows to a temporary name, forced to disk
+ * and renamed, so a crash never leaves a partial checkpoint under a valid name.
+ * <p>
+ * File layout: {@code int magic, int version, long sequence, long baseSequence, byte kind, long createdMillis,
+ * int sectionCount}, then per store {@code string name, long length, data}, then a trailer
+ * {@code long (TRAILER ^ sequence)} that marks the file complete.
+ */
+@ApplicationScoped
+public class CheckpointService {
+
+    private static final Logger LOG = Logger.getLogger(CheckpointService.class);
+
+    private static final int MAGIC = 0x45444350;
+    private static final int VERSION = 1;
+    private static final long TRAILER = 0x4544435045444350L;
+    private static final byte FULL = 1;
+    private static final byte DELTA = 2;
+    private static final Pattern FILE_NAME = Pattern.compile("checkpoint-(\\d{16})\\.(full|delta)");
+
+    /**
+     * Outcome of one checkpoint.
+     */
+    public record CheckpointResult(long sequence, boolean full, long records, long bytes, long durationMillis) {}
+
+    /**
+     * Outcome of a restore: the last file applied and the number of files and keys read.
+     */
+    public record RestoreResult(long sequence, int files, long records, long durationMillis) {
+        public static final RestoreResult NONE = new RestoreResult(-1, 0, 0, 0);
+    }
+
+    private record CheckpointFile(long sequence, boolean full, Path path) {}
+
+    @Inject
+    Instance<CheckpointableStore> storeInstances;
+
+    @ConfigProperty(name = "app.state.checkpoint.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.state.checkpoint.directory", defaultValue = "${java.io.tmpdir}/edios-state/checkpoints")
+    String directory;
+
+    @ConfigProperty(name = "app.state.checkpoint.full-every", defaultValue = "10")
+    int fullEvery;
+
+    List<CheckpointableStore> stores = List.of();
+
+    private long nextSequence;
+    private long baseSequence = -1;
+    private int deltasSinceFull;
+    private long lastStartMillis;
+    private volatile CheckpointResult lastCheckpoint;
+
+    @PostConstruct
+    void init() {
+        stores = storeInstances.stream().toList();
+    }
+
+    @Scheduled(every = "${app.state.checkpoint.interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledCheckpoint() {
+        if (enabled) {
+            checkpointQuietly();
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (enabled) {
+            checkpointQuietly();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            LOG.errorf(e, "State checkpoint failed");
+        }
+    }
+
+    /**
+     * Writes a checkpoint: a full one if none has been written yet, the previous one failed or
+     * {@code full-every} deltas have been written since the last full one; a delta otherwise.
+     */
+    public synchronized CheckpointResult checkpoint() throws IOException {
+        long start = System.currentTimeMillis();
+        boolean full = baseSequence < 0 || deltasSinceFull + 1 >= fullEvery;
+        long sequence = nextSequence;
+        Path dir = Path.of(directory);
+        Files.createDirectories(dir);
+        Path target = dir.resolve(fileName(sequence, full));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        long records = 0;
+        long bytes;
+        try {
+            try (CheckpointWriter out = new CheckpointWriter(temp)) {
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putLong(sequence);
+                out.putLong(full ? sequence : baseSequence);
+                out.putByte(full ? FULL : DELTA);
+                out.putLong(start);
+                out.putInt(stores.size());
+                for (CheckpointableStore store : stores) {
+                    out.putString(store.name());
+                    long lengthAt = out.position();
+                    out.putLong(0);
+                    long begin = out.position();
+                    records += store.writeCheckpoint(out, full ? 0 : lastStartMillis);
+                    out.putLongAt(lengthAt, out.position() - begin);
+                }
+                out.putLong(TRAILER ^ sequence);
+                bytes = out.position();
+                out.finish();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            // Delta tracking may already have been reset by the stores; only a full checkpoint is safe next
+            baseSequence = -1;
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        nextSequence = sequence + 1;
+        lastStartMillis = start;
+        if (full) {
+            baseSequence = sequence;
+            deltasSinceFull = 0;
+            deleteOlderThan(sequence);
+        } else {
+            deltasSinceFull++;
+        }
+        CheckpointResult result = new CheckpointResult(sequence, full, records, bytes,
+                System.currentTimeMillis() - start);
+        lastCheckpoint = result;
+        LOG.infof("Wrote %s checkpoint %d: %d keys, %d KB in %d ms", full ? "full" : "delta", sequence,
+                records, bytes / 1024, result.durationMillis());
+        return result;
+    }
+
+    /**
+     * Restores the newest complete full checkpoint and the complete deltas that follow it.
+     * Later checkpoints continue the restored chain; files after the last one applied are deleted.
+     */
+    public synchronized RestoreResult restoreLatest() {
+        if (!enabled) {
+            return RestoreResult.NONE;
+        }
+        long start = System.currentTimeMillis();
+        List<CheckpointFile> files;
+        try {
+            files = listFiles(Path.of(directory));
+        } catch (IOException e) {
+            LOG.errorf(e, "Cannot list checkpoints in %s", directory);
+            return RestoreResult.NONE;
+        }
+
+        CheckpointFile base = null;
+        for (int i = files.size() - 1; i >= 0 && base == null; i--) {
+            CheckpointFile file = files.get(i);
+            if (file.full() && isComplete(file)) {
+                base = file;
+            }
+        }
+        if (base == null) {
+            LOG.info("No complete state checkpoint found, starting with empty stores");
+            return RestoreResult.NONE;
+        }
+
+        Map<String, CheckpointableStore> byName = new HashMap<>();
+        for (CheckpointableStore store : stores) {
+            byName.put(store.name(), store);
+        }
+        long records = 0;
+        int applied = 0;
+        long last = base.sequence();
+        try {
+            records += apply(base, byName);
+            applied++;
+            for (CheckpointFile file : files) {
+                if (file.full() || file.sequence() <= base.sequence()) {
+                    continue;
+                }
+                if (file.sequence() != last + 1 || !isComplete(file) || baseOf(file) != base.sequence()) {
+                    break;
+                }
+                records += apply(file, byName);
+                applied++;
+                last = file.sequence();
+            }
+        } catch (IOException e) {
+            LOG.errorf(e, "State restore failed after %d checkpoint files", applied);
+            nextSequence = last + 1;
+            baseSequence = -1;
+            return new RestoreResult(last, applied, records, System.currentTimeMillis() - start);
+        }
+
+        for (CheckpointFile file : files) {
+            if (file.sequence() > last) {
+                deleteQuietly(file.path());
+            }
+        }
+        nextSequence = last + 1;
+        baseSequence = base.sequence();
+        deltasSinceFull = applied - 1;
+        lastStartMillis = start;
+        RestoreResult result = new RestoreResult(last, applied, records, System.currentTimeMillis() - start);
+        LOG.infof("Restored state checkpoint %d from %d files: %d keys in %d ms",
+                last, applied, records, result.durationMillis());
+        return result;
+    }
+
+    /**
+     * Returns the most recent successful checkpoint, or null if none was written by this process.
+     */
+    public CheckpointResult getLastCheckpoint() {
+        return lastCheckpoint;
+    }
+
+    private long apply(CheckpointFile file, Map<String, CheckpointableStore> byName) throws IOException {
+        long records = 0;
+        try (CheckpointReader in = new CheckpointReader(file.path())) {
+            in.getInt();
+            in.getInt();
+            in.getLong();
+            in.getLong();
+            in.getByte();
+            in.getLong();
+            int sections = in.getInt();
+            for (int i = 0; i < sections; i++) {
+                String name = in.getString();
+                long length = in.getLong();
+                long begin = in.position();
+                CheckpointableStore store = byName.get(name);
+                if (store != null) {
+                    records += store.restoreCheckpoint(in);
+                } else {
+                    LOG.warnf("Checkpoint section for unknown store '%s' skipped", name);
+                }
+                in.seek(begin + length);
+            }
+        }
+        return records;
+    }
+
+    private static boolean isComplete(CheckpointFile file) {
+        try (CheckpointReader in = new CheckpointReader(file.path())) {
+            return in.size() > Integer.BYTES * 2 + Long.BYTES * 2
+                    && in.getInt() == MAGIC
+                    && in.getInt() == VERSION
+                    && in.getLong() == file.sequence()
+                    && in.getLongAt(in.size() - Long.BYTES) == (TRAILER ^ file.sequence());
+        } catch (IOException e) {
+            LOG.warnf("Unreadable checkpoint %s: %s", file.path(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static long baseOf(CheckpointFile file) throws IOException {
+        try (CheckpointReader in = new CheckpointReader(file.path())) {
+            in.getInt();
+            in.getInt();
+            in.getLong();
+            return in.getLong();
+        }
+    }
+
+    private static List<CheckpointFile> listFiles(Path dir) throws IOException {
+        List<CheckpointFile> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "checkpoint-*")) {
+            for (Path path : stream) {
+                Matcher matcher = FILE_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.add(new CheckpointFile(Long.parseLong(matcher.group(1)),
+                            matcher.group(2).equals("full"), path));
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(CheckpointFile::sequence));
+        return files;
+    }
+
+    private void deleteOlderThan(long sequence) {
+        try {
+            for (CheckpointFile file : listFiles(Path.of(directory))) {
+                if (file.sequence() < sequence) {
+                    deleteQuietly(file.path());
+                }
+            }
+        } catch (IOException e) {
+            LOG.warnf("Cannot prune old checkpoints: %s", e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warnf("Cannot delete checkpoint %s: %s", path, e.getMessage());
+        }
+    }
+
+    private static String fileName(long sequence, boolean full) {
+        return "checkpoint-%016d.%s".formatted(sequence, full ? "full" : "delta");
+    }
+}
@@ -0,0 +1,118 @@
+package org.iki.state;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential writer of a checkpoint file through a sliding memory-mapped window.
+ * The file grows as the window advances and is truncated to the bytes written by {@link #finish()}.
+ * Not thread-safe.
+ */
+public final class CheckpointWriter implements Closeable {
+
+    /** Marks a record in a store section. */
+    static final byte RECORD = 1;
+    /** Ends the records of a store section. */
+    static final byte END = 0;
+
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    CheckpointWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void putByte(byte value) throws IOException {
+        ensure(Byte.BYTES).put(value);
+    }
+
+    public void putInt(int value) throws IOException {
+        ensure(Integer.BYTES).putInt(value);
+    }
+
+    public void putLong(long value) throws IOException {
+        ensure(Long.BYTES).putLong(value);
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     */
+    public void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putBytes(bytes);
+    }
+
+    /**
+     * Writes a length-prefixed array of longs.
+     */
+    public void putLongs(long[] values) throws IOException {
+        MappedByteBuffer out = ensure(Integer.BYTES + (long) values.length * Long.BYTES);
+        out.putInt(values.length);
+        for (long value : values) {
+            out.putLong(value);
+        }
+    }
+
+    /**
+     * Writes a length-prefixed byte array.
+     */
+    public void putBytes(byte[] values) throws IOException {
+        ensure(Integer.BYTES + (long) values.length).putInt(values.length).put(values);
+    }
+
+    /**
+     * Absolute position of the next byte to be written.
+     */
+    long position() {
+        return window == null ? 0 : windowStart + window.position();
+    }
+
+    /**
+     * Overwrites a long written earlier, e.g. a section length reserved before its contents were known.
+     */
+    void putLongAt(long position, long value) throws IOException {
+        if (window != null && position >= windowStart && position + Long.BYTES <= windowStart + window.position()) {
+            window.putLong((int) (position - windowStart), value);
+        } else {
+            channel.map(FileChannel.MapMode.READ_WRITE, position, Long.BYTES).putLong(0, value);
+        }
+    }
+
+    /**
+     * Flushes the written bytes to disk and truncates the file to them.
+     */
+    void finish() throws IOException {
+        long size = position();
+        if (window != null) {
+            window.force();
+        }
+        channel.truncate(size);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer ensure(long bytes) throws IOException {
+        if (window == null || window.remaining() < bytes) {
+            long start = position();
+            if (window != null) {
+                window.force();
+            }
+            window = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.max(WINDOW_BYTES, bytes));
+            windowStart = start;
+        }
+        return window;
+    }
+}
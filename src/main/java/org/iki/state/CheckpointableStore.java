@@ -0,0 +1,32 @@
+package org.iki.state;
+
+import java.io.IOException;
+
+/**
+ * A stateful store that can be written to and restored from local checkpoints by {@link CheckpointService}.
+ * Checkpoints are taken while events keep being recorded: each key is copied under its own lock, so a
+ * checkpoint is consistent per key rather than a point-in-time image of the whole store.
+ */
+public interface CheckpointableStore {
+
+    /**
+     * Section name in checkpoint files; must be stable across releases.
+     */
+    String name();
+
+    /**
+     * Writes the keys changed at or after {@code sinceMillis}, or every key when {@code sinceMillis} is 0.
+     * Changes are tracked in wall-clock time, independently of the event times the store is keyed on.
+     *
+     * @return number of keys written
+     */
+    long writeCheckpoint(CheckpointWriter out, long sinceMillis) throws IOException;
+
+    /**
+     * Restores keys written by {@link #writeCheckpoint}, replacing the in-memory state of each key read.
+     * Sections written with an incompatible configuration are skipped.
+     *
+     * @return number of keys restored
+     */
+    long restoreCheckpoint(CheckpointReader in) throws IOException;
+}
@@ -0,0 +1,52 @@
+package org.iki.state;
+
+import org.iki.model.TransactionEvent;
+
+/**
+ * A store of per-key state that is updated by every transaction event, before or after rule evaluation.
+ * Implementations must be thread-safe: events are processed concurrently on virtual threads.
+ */
+public interface EventStateStore {
+
+    /**
+     * When a store records an event relative to rule evaluation.
+     */
+    enum Phase {
+        /** Rules see state that includes the current event (windowed aggregates). */
+        BEFORE_EVALUATION,
+        /** Rules see state up to the previous event (history such as profiles). */
+        AFTER_EVALUATION
+    }
+
+    /**
+     * Short name used in logs and statistics.
+     */
+    String name();
+
+    /**
+     * When this store records events; defaults to {@link Phase#BEFORE_EVALUATION}.
+     */
+    default Phase phase() {
+        return Phase.BEFORE_EVALUATION;
+    }
+
+    /**
+     * Records a transaction event into the store.
+     *
+     * @param event The transaction event being processed
+     */
+    void record(TransactionEvent event);
+
+    /**
+     * Removes keys that have not been updated recently.
+     *
+     * @param nowMillis Current time in epoch milliseconds
+     * @return number of keys evicted
+     */
+    int evictIdle(long nowMillis);
+
+    /**
+     * Returns the number of keys currently tracked.
+     */
+    int keyCount();
+}
@@ -0,0 +1,186 @@
+package org.iki.state;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.TransactionEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event-time clock of the windowed stores, driven by {@code transactedTime} rather than the wall clock.
+ * <p>
+ * Events are partitioned by CIN hash. Each partition tracks the latest event time it has seen, and its watermark
+ * trails that by the allowed lateness: an event older than its partition's watermark is late, and is counted
+ * rather than recorded into windowed state. Windows end at {@link #now()}: while an event is evaluated, that is the
+ * event's own time, so a customer in a lagging partition is not compared against windows that other partitions have
+ * already moved past; otherwise it is the latest event time seen by any store. Either way, replayed or delayed
+ * streams are aggregated by when transactions happened.
+ * <p>
+ * State is retired against the {@link #lowWatermark()}, the smallest watermark of the partitions that have
+ * received events recently; idle partitions do not hold back retirement for the others.
+ */
+@ApplicationScoped
+public class EventTimeClock {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    // Time of the event evaluated on the current thread, or NONE
+    private static final ThreadLocal<long[]> EVALUATION_TIME = ThreadLocal.withInitial(() -> new long[] {NONE});
+
+    private final AtomicLong latest = new AtomicLong(NONE);
+    private final LongAdder lateEvents = new LongAdder();
+    private final LongAdder futureEvents = new LongAdder();
+    private AtomicLongArray partitionTimes;
+    private AtomicLongArray partitionSeen;
+
+    @ConfigProperty(name = "app.state.event-time.allowed-lateness-seconds", defaultValue = "300")
+    long allowedLatenessSeconds;
+
+    @ConfigProperty(name = "app.state.event-time.max-future-seconds", defaultValue = "300")
+    long maxFutureSeconds;
+
+    @ConfigProperty(name = "app.state.event-time.partitions", defaultValue = "64")
+    int partitions;
+
+    @ConfigProperty(name = "app.state.event-time.idle-partition-seconds", defaultValue = "60")
+    long idlePartitionSeconds;
+
+    @PostConstruct
+    void init() {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("app.state.event-time.partitions must be positive: " + partitions);
+        }
+        partitionTimes = new AtomicLongArray(partitions);
+        partitionSeen = new AtomicLongArray(partitions);
+        for (int i = 0; i < partitions; i++) {
+            partitionTimes.set(i, NONE);
+        }
+    }
+
+    /**
+     * Advances the event's partition and decides whether the event may be recorded into windowed state.
+     *
+     * @return false if the event is older than its partition's watermark, or further ahead of the wall clock
+     *         than {@code app.state.event-time.max-future-seconds}
+     */
+    public boolean admit(TransactionEvent event) {
+        long time = event.transactedTime().toEpochMilli();
+        long wallClock = System.currentTimeMillis();
+        if (time > wallClock + maxFutureSeconds * 1000) {
+            futureEvents.increment();
+            return false;
+        }
+        int partition = partition(event.cin());
+        partitionSeen.lazySet(partition, wallClock);
+        long previous = partitionTimes.getAndAccumulate(partition, time, Math::max);
+        if (previous != NONE && time < previous - allowedLatenessSeconds * 1000) {
+            lateEvents.increment();
+            return false;
+        }
+        advance(time);
+        return true;
+    }
+
+    /**
+     * Moves {@link #now()} forward to {@code timeMillis} if it is later.
+     */
+    public void advance(long timeMillis) {
+        long current = latest.get();
+        // Most events are not the newest seen, so read before attempting a write
+        while (timeMillis > current && !latest.compareAndSet(current, timeMillis)) {
+            current = latest.get();
+        }
+    }
+
+    /**
+     * Makes {@link #now()} on the current thread answer the time of {@code event} until {@link #endEvaluation()},
+     * capped at the latest event time so an event rejected as too far ahead does not query empty future windows.
+     */
+    public void beginEvaluation(TransactionEvent event) {
+        EVALUATION_TIME.get()[0] = Math.min(event.transactedTime().toEpochMilli(), latestOrWallClock());
+    }
+
+    /**
+     * Ends the evaluation started on the current thread by {@link #beginEvaluation}.
+     */
+    public void endEvaluation() {
+        EVALUATION_TIME.get()[0] = NONE;
+    }
+
+    /**
+     * End of the windows answered by the stores: the time of the event evaluated on the current thread, else the
+     * latest event time seen, or the wall clock before any event.
+     */
+    public long now() {
+        long time = EVALUATION_TIME.get()[0];
+        return time == NONE ? latestOrWallClock() : time;
+    }
+
+    private long latestOrWallClock() {
+        long time = latest.get();
+        return time == NONE ? System.currentTimeMillis() : time;
+    }
+
+    /**
+     * Watermark of the partition of {@code cin}, or {@link Long#MIN_VALUE} if it has received no events.
+     */
+    public long watermark(String cin) {
+        long time = partitionTimes.get(partition(cin));
+        return time == NONE ? NONE : time - allowedLatenessSeconds * 1000;
+    }
+
+    /**
+     * Smallest watermark of the partitions that received an event within
+     * {@code app.state.event-time.idle-partition-seconds}, or {@link Long#MIN_VALUE} if none did.
+     * State whose windows end before the low watermark can no longer change and may be retired.
+     */
+    public long lowWatermark() {
+        return lowWatermark(System.currentTimeMillis());
+    }
+
+    long lowWatermark(long wallClockMillis) {
+        long activeSince = wallClockMillis - idlePartitionSeconds * 1000;
+        long low = Long.MAX_VALUE;
+        for (int i = 0; i < partitions; i++) {
+            long time = partitionTimes.get(i);
+            if (time != NONE && partitionSeen.get(i) >= activeSince) {
+                low = Math.min(low, time);
+            }
+        }
+        return low == Long.MAX_VALUE ? NONE : low - allowedLatenessSeconds * 1000;
+    }
+
+    /**
+     * Returns the number of events not recorded because they arrived behind their partition's watermark.
+     */
+    public long getLateEvents() {
+        return lateEvents.sum();
+    }
+
+    /**
+     * Returns the number of events not recorded because their time was too far ahead of the wall clock.
+     */
+    public long getFutureEvents() {
+        return futureEvents.sum();
+    }
+
+    public Stats getStats() {
+        long time = latest.get();
+        return new Stats(time == NONE ? 0 : time, lowWatermark(), allowedLatenessSeconds, getLateEvents(),
+                getFutureEvents());
+    }
+
+    private int partition(String cin) {
+        return Math.floorMod(cin.hashCode(), partitions);
+    }
+
+    /**
+     * Event-time statistics; {@code lowWatermarkMillis} is {@link Long#MIN_VALUE} when every partition is idle.
+     */
+    public record Stats(long latestEventMillis, long lowWatermarkMillis, long allowedLatenessSeconds,
+                        long lateEvents, long futureEvents) {
+    }
+}
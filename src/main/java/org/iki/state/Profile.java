@@ -0,0 +1,14 @@
+package org.iki.state;
+
+/**
+ * Snapshot of a customer's profile as seen by rules, taken before the current event is recorded.
+ *
+ * @param txCount            transactions recorded for the CIN
+ * @param avgAmount          rolling average amount (see {@link ProfileTable})
+ * @param lastTxEpochSeconds transacted time of the latest recorded event, 0 if none
+ * @param knownCounterparty  whether the queried counterparty has been paid by this CIN before (approximate)
+ */
+public record Profile(long txCount, double avgAmount, long lastTxEpochSeconds, boolean knownCounterparty) {
+
+    public static final Profile NONE = new Profile(0, 0.0, 0, false);
+}
@@ -0,0 +1,102 @@
+package org.iki.state;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.TransactionEvent;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-lived per-CIN profiles (transaction count, rolling average amount, last transaction time and
+ * counterparties paid) held off-heap in a memory-mapped {@link ProfileTable}.
+ * Profiles are recorded after rule evaluation, so rules compare the current event with the customer's history.
+ * Profiles are not evicted; the table capacity bounds the number of customers.
+ */
+@ApplicationScoped
+public class ProfileStore implements EventStateStore, CheckpointableStore {
+
+    private static final Logger LOG = Logger.getLogger(ProfileStore.class);
+
+    private final LongAdder droppedKeys = new LongAdder();
+    private ProfileTable table;
+
+    @ConfigProperty(name = "app.state.profile.file", defaultValue = "${java.io.tmpdir}/edios-state/profiles.dat")
+    String file;
+
+    @ConfigProperty(name = "app.state.profile.capacity", defaultValue = "1048576")
+    int capacity;
+
+    @ConfigProperty(name = "app.state.profile.average-weight", defaultValue = "0.05")
+    double averageWeight;
+
+    @PostConstruct
+    void init() {
+        try {
+            table = ProfileTable.create(Path.of(file), capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create profile table " + file, e);
+        }
+        LOG.infof("Profile store mapped %s: %d slots, %d MB", file, table.capacity(),
+                table.sizeInBytes() / (1024 * 1024));
+    }
+
+    @Override
+    public String name() {
+        return "profile";
+    }
+
+    @Override
+    public Phase phase() {
+        return Phase.AFTER_EVALUATION;
+    }
+
+    @Override
+    public void record(TransactionEvent event) {
+        if (!table.update(event.cin(), event.creditAccount(), event.amount().doubleValue(),
+                event.transactedTime().toEpochMilli(), averageWeight)) {
+            droppedKeys.increment();
+        }
+    }
+
+    /**
+     * Profile of {@code cin} before the event being evaluated, with {@code counterparty} checked against
+     * the counterparties it has paid.
+     */
+    public Profile lookup(String cin, String counterparty) {
+        return table.lookup(cin, counterparty);
+    }
+
+    @Override
+    public int evictIdle(long nowMillis) {
+        // Profiles describe a customer's whole history and are kept for as long as the table has room
+        return 0;
+    }
+
+    @Override
+    public int keyCount() {
+        return table.size();
+    }
+
+    @Override
+    public long writeCheckpoint(CheckpointWriter out, long sinceMillis) throws IOException {
+        // Updated slots are tracked by dirty flags rather than timestamps; any delta covers all updates since the last
+        return table.writeTo(out, sinceMillis == 0);
+    }
+
+    @Override
+    public long restoreCheckpoint(CheckpointReader in) throws IOException {
+        return table.readFrom(in);
+    }
+
+    /**
+     * Returns the number of events not recorded because the table was full.
+     */
+    public long getDroppedKeys() {
+        return droppedKeys.sum();
+    }
+}
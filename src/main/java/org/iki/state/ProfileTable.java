@@ -0,0 +1,336 @@
+package org.iki.state;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size per-CIN profile records in a memory-mapped file, addressed by open addressing
+ * (linear probing) on the 64-bit hash of the CIN. Records live off-heap, so millions of profiles add
+ * nothing to the Java heap or to GC work.
+ * <p>
+ * Record layout ({@value #RECORD_BYTES} bytes, native byte order):
+ * <pre>
+ *   0  long   key hash (0 = empty slot, claimed with CAS)
+ *   8  long   transaction count
+ *  16  double rolling average amount
+ *  24  long   latest transacted time, epoch millis
+ *  32  long[8] 512-bit Bloom filter of counterparties paid
+ * </pre>
+ * Updated slots are flagged in an on-heap dirty bitmap (one bit per slot) for incremental checkpoints.
+ * Slots are never freed. Keys are identified by hash alone; with 64-bit hashes a collision is
+ * negligible below a billion keys. Updates and reads of one record hold one of {@value #LOCK_STRIPES}
+ * lock stripes chosen by key hash, so readers never see a torn record.
+ * <p>
+ * The rolling average is the exact mean for the first {@code 1 / weight} transactions and an
+ * exponentially weighted average with that weight afterwards.
+ */
+public final class ProfileTable {
+
+    static final int RECORD_BYTES = 96;
+    private static final int RECORD_LONGS = RECORD_BYTES / Long.BYTES;
+
+    private static final int KEY = 0;
+    private static final int COUNT = 8;
+    private static final int AVERAGE = 16;
+    private static final int LAST_TX = 24;
+    private static final int COUNTERPARTIES = 32;
+    private static final int COUNTERPARTY_BITS = 512;
+
+    private static final int LOCK_STRIPES = 256;
+    private static final int CHUNK_SHIFT = 20;
+    private static final double MAX_LOAD = 0.75;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer[] chunks;
+    private final int chunkShift;
+    private final int capacity;
+    private final int maxKeys;
+    private final Path file;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLongArray dirty;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private ProfileTable(MappedByteBuffer[] chunks, int chunkShift, int capacity, Path file) {
+        this.chunks = chunks;
+        this.chunkShift = chunkShift;
+        this.capacity = capacity;
+        this.maxKeys = (int) (capacity * MAX_LOAD);
+        this.file = file;
+        this.dirty = new AtomicLongArray(Math.max(1, capacity >>> 6));
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Creates an empty table in {@code file} (overwritten) with room for {@code capacity} slots,
+     * rounded up to a power of two. At most 75% of the slots are filled.
+     */
+    public static ProfileTable create(Path file, int capacity) throws IOException {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, got " + capacity);
+        }
+        int slots = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        int chunkShift = Math.min(CHUNK_SHIFT, Integer.numberOfTrailingZeros(slots));
+        int chunkCount = slots >>> chunkShift;
+        long chunkBytes = (long) RECORD_BYTES << chunkShift;
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.deleteIfExists(file);
+        MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+             FileChannel channel = raf.getChannel()) {
+            // Sparse file: pages are only backed by memory or disk once a record in them is written
+            raf.setLength(chunkBytes * chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, chunkBytes * i, chunkBytes);
+                chunks[i].order(ByteOrder.nativeOrder());
+            }
+        }
+        return new ProfileTable(chunks, chunkShift, slots, file);
+    }
+
+    /**
+     * Records one transaction for {@code cin}.
+     *
+     * @return false if the CIN is new and the table is full, in which case nothing is recorded
+     */
+    public boolean update(String cin, String counterparty, double amount, long transactedMillis, double weight) {
+        long key = keyHash(cin);
+        int slot = findOrClaim(key);
+        if (slot < 0) {
+            return false;
+        }
+        MappedByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        long counterpartyHash = Hashing.hash64(counterparty);
+        ReentrantLock lock = lock(key);
+        lock.lock();
+        try {
+            long count = chunk.getLong(base + COUNT);
+            double average = chunk.getDouble(base + AVERAGE);
+            double step = Math.max(weight, 1.0 / (count + 1));
+            chunk.putDouble(base + AVERAGE, count == 0 ? amount : average + step * (amount - average));
+            chunk.putLong(base + COUNT, count + 1);
+            if (transactedMillis > chunk.getLong(base + LAST_TX)) {
+                chunk.putLong(base + LAST_TX, transactedMillis);
+            }
+            for (int i = 0; i < 3; i++) {
+                int bit = counterpartyBit(counterpartyHash, i);
+                int word = base + COUNTERPARTIES + (bit >>> 6) * Long.BYTES;
+                chunk.putLong(word, chunk.getLong(word) | 1L << bit);
+            }
+            markDirty(slot);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the profile of {@code cin}, or {@link Profile#NONE} if it has none.
+     * {@code counterparty} is checked against the counterparties recorded so far.
+     */
+    public Profile lookup(String cin, String counterparty) {
+        long key = keyHash(cin);
+        int slot = find(key);
+        if (slot < 0) {
+            return Profile.NONE;
+        }
+        MappedByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        long counterpartyHash = Hashing.hash64(counterparty);
+        ReentrantLock lock = lock(key);
+        lock.lock();
+        try {
+            boolean known = true;
+            for (int i = 0; i < 3 && known; i++) {
+                int bit = counterpartyBit(counterpartyHash, i);
+                known = (chunk.getLong(base + COUNTERPARTIES + (bit >>> 6) * Long.BYTES) & 1L << bit) != 0;
+            }
+            return new Profile(chunk.getLong(base + COUNT), chunk.getDouble(base + AVERAGE),
+                    Math.floorDiv(chunk.getLong(base + LAST_TX), 1000), known);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of CINs with a profile.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Number of slots; at most 75% of them are used.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Bytes of the memory-mapped file.
+     */
+    public long sizeInBytes() {
+        return (long) capacity * RECORD_BYTES;
+    }
+
+    /**
+     * Writes every used slot ({@code full}) or the slots updated since the previous call, clearing their
+     * dirty flags. Each record is written as {@value #RECORD_LONGS} longs, key hash first.
+     *
+     * @return number of records written
+     */
+    long writeTo(CheckpointWriter out, boolean full) throws IOException {
+        long[] record = new long[RECORD_LONGS];
+        long written = 0;
+        for (int word = 0; word < dirty.length(); word++) {
+            long bits = dirty.getAndSet(word, 0);
+            int first = word << 6;
+            int last = Math.min(first + 64, capacity);
+            for (int slot = first; slot < last; slot++) {
+                if ((full || (bits & 1L << (slot - first)) != 0) && copyRecord(slot, record)) {
+                    out.putByte(CheckpointWriter.RECORD);
+                    out.putLongs(record);
+                    written++;
+                }
+            }
+        }
+        out.putByte(CheckpointWriter.END);
+        return written;
+    }
+
+    /**
+     * Restores records written by {@link #writeTo}, replacing existing records with the same key.
+     *
+     * @return number of records restored; records of new keys are skipped once the table is full
+     */
+    long readFrom(CheckpointReader in) throws IOException {
+        long[] record = new long[RECORD_LONGS];
+        long restored = 0;
+        while (in.getByte() == CheckpointWriter.RECORD) {
+            in.getLongs(record);
+            int slot = findOrClaim(record[0]);
+            if (slot < 0) {
+                continue;
+            }
+            MappedByteBuffer chunk = chunk(slot);
+            int base = offset(slot);
+            ReentrantLock lock = lock(record[0]);
+            lock.lock();
+            try {
+                for (int i = 1; i < RECORD_LONGS; i++) {
+                    chunk.putLong(base + i * Long.BYTES, record[i]);
+                }
+            } finally {
+                lock.unlock();
+            }
+            restored++;
+        }
+        return restored;
+    }
+
+    private boolean copyRecord(int slot, long[] record) {
+        MappedByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        long key = (long) LONGS.getVolatile(chunk, base + KEY);
+        if (key == 0) {
+            return false;
+        }
+        ReentrantLock lock = lock(key);
+        lock.lock();
+        try {
+            record[0] = key;
+            for (int i = 1; i < RECORD_LONGS; i++) {
+                record[i] = chunk.getLong(base + i * Long.BYTES);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private void markDirty(int slot) {
+        int word = slot >>> 6;
+        long bit = 1L << (slot & 63);
+        if ((dirty.get(word) & bit) == 0) {
+            dirty.getAndAccumulate(word, bit, (current, mask) -> current | mask);
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    private int find(long key) {
+        int mask = capacity - 1;
+        for (int slot = (int) key & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+            long current = (long) LONGS.getVolatile(chunk(slot), offset(slot) + KEY);
+            if (current == key) {
+                return slot;
+            }
+            if (current == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int findOrClaim(long key) {
+        int mask = capacity - 1;
+        for (int slot = (int) key & mask, probes = 0; probes < capacity; probes++) {
+            MappedByteBuffer chunk = chunk(slot);
+            int keyOffset = offset(slot) + KEY;
+            long current = (long) LONGS.getVolatile(chunk, keyOffset);
+            if (current == key) {
+                return slot;
+            }
+            if (current == 0) {
+                if (size.get() >= maxKeys) {
+                    return -1;
+                }
+                if (LONGS.compareAndSet(chunk, keyOffset, 0L, key)) {
+                    size.incrementAndGet();
+                    return slot;
+                }
+                // Lost the race for this slot: re-read it, the winner may have claimed it for the same key
+                continue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private MappedByteBuffer chunk(int slot) {
+        return chunks[slot >>> chunkShift];
+    }
+
+    private int offset(int slot) {
+        return (slot & ((1 << chunkShift) - 1)) * RECORD_BYTES;
+    }
+
+    private ReentrantLock lock(long key) {
+        return locks[(int) (key >>> 32) & (LOCK_STRIPES - 1)];
+    }
+
+    private static long keyHash(String cin) {
+        long hash = Hashing.hash64(cin);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int counterpartyBit(long hash, int i) {
+        return (int) (hash >>> (i * 9)) & (COUNTERPARTY_BITS - 1);
+    }
+}
@@ -0,0 +1,112 @@
+package org.iki.state;
+
+import java.io.IOException;
+
+/**
+ * Time-bucketed ring of count/sum/max counters backed by a single {@code long[]}.
+ * Each slot holds the absolute bucket number it belongs to, so stale slots are detected and
+ * reset lazily instead of being cleared by a background task. Not thread-safe; callers synchronize.
+ */
+final class RingCounter {
+
+    private static final int STRIDE = 4;
+    private static final int BUCKET = 0;
+    private static final int COUNT = 1;
+    private static final int SUM = 2;
+    private static final int MAX = 3;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final long[] slots;
+
+    RingCounter(long bucketMillis, int bucketCount) {
+        if (bucketMillis <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("bucketMillis and bucketCount must be positive");
+        }
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.slots = new long[bucketCount * STRIDE];
+        for (int i = 0; i < slots.length; i += STRIDE) {
+            slots[i + BUCKET] = EMPTY;
+        }
+    }
+
+    /**
+     * Adds a value at the given timestamp.
+     *
+     * @return false if the timestamp is older than the ring can hold and was dropped
+     */
+    boolean add(long timestampMillis, long value) {
+        long bucket = Math.floorDiv(timestampMillis, bucketMillis);
+        int base = slotOf(bucket);
+        long current = slots[base + BUCKET];
+        if (current != bucket) {
+            if (current != EMPTY && current > bucket) {
+                return false;
+            }
+            slots[base + BUCKET] = bucket;
+            slots[base + COUNT] = 0;
+            slots[base + SUM] = 0;
+            slots[base + MAX] = Long.MIN_VALUE;
+        }
+        slots[base + COUNT]++;
+        slots[base + SUM] += value;
+        if (value > slots[base + MAX]) {
+            slots[base + MAX] = value;
+        }
+        return true;
+    }
+
+    long count(long nowMillis, long windowMillis) {
+        return aggregate(nowMillis, windowMillis, COUNT);
+    }
+
+    long sum(long nowMillis, long windowMillis) {
+        return aggregate(nowMillis, windowMillis, SUM);
+    }
+
+    long max(long nowMillis, long windowMillis) {
+        return aggregate(nowMillis, windowMillis, MAX);
+    }
+
+    /**
+     * Returns the total time span covered by the ring.
+     */
+    long spanMillis() {
+        return bucketMillis * bucketCount;
+    }
+
+    private long aggregate(long nowMillis, long windowMillis, int field) {
+        long nowBucket = Math.floorDiv(nowMillis, bucketMillis);
+        long buckets = Math.min((windowMillis + bucketMillis - 1) / bucketMillis, bucketCount);
+        long result = field == MAX ? Long.MIN_VALUE : 0;
+        boolean seen = false;
+        for (long bucket = nowBucket - buckets + 1; bucket <= nowBucket; bucket++) {
+            int base = slotOf(bucket);
+            if (slots[base + BUCKET] != bucket) {
+                continue;
+            }
+            seen = true;
+            long value = slots[base + field];
+            if (field == MAX) {
+                result = Math.max(result, value);
+            } else {
+                result += value;
+            }
+        }
+        return field == MAX && !seen ? 0 : result;
+    }
+
+    void writeTo(CheckpointWriter out) throws IOException {
+        out.putLongs(slots);
+    }
+
+    void readFrom(CheckpointReader in) throws IOException {
+        in.getLongs(slots);
+    }
+
+    private int slotOf(long bucket) {
+        return (int) Math.floorMod(bucket, (long) bucketCount) * STRIDE;
+    }
+}
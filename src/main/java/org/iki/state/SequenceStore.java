@@ -0,0 +1,253 @@
+package org.iki.state;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Partial matches of sequence rules, per rule and customer.
+ * <p>
+ * Each (rule, CIN) pair owns one {@code long[]} with a slot per step after the first. Slot {@code k - 1} holds the
+ * start time of the most recent partial match waiting for step {@code k}, or 0. Keeping only the latest start per
+ * step is exact for "last step within T of the first": a later start expires later and accepts every continuation
+ * an earlier one would. Arrays are removed as soon as they are empty and evicted once every slot has expired, and
+ * their total number is capped by {@code app.state.sequence.max-keys}. Expiry is judged against the low watermark
+ * of the {@link EventTimeClock}, so a partial match is kept while a late event could still continue it.
+ */
+@ApplicationScoped
+public class SequenceStore {
+
+    private static final Logger LOG = Logger.getLogger(SequenceStore.class);
+
+    // Hash map node, array header and amortised table slot; keys are the events' CIN strings
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final ConcurrentHashMap<Long, Partials> byRule = new ConcurrentHashMap<>();
+    private final AtomicLong keys = new AtomicLong();
+    private final LongAdder droppedKeys = new LongAdder();
+
+    @Inject
+    EventTimeClock clock;
+
+    @ConfigProperty(name = "app.state.sequence.max-keys", defaultValue = "1000000")
+    int maxKeys;
+
+    /**
+     * Returns the partial matches of a sequence rule. Partial matches survive recompilation as long as
+     * the rule keeps its number of steps and window; otherwise they start empty.
+     *
+     * @param ruleId       Sequence rule id
+     * @param steps        Number of steps of the rule
+     * @param windowMillis Maximum time between the first and the last step
+     */
+    public Partials partials(long ruleId, int steps, long windowMillis) {
+        return byRule.compute(ruleId, (id, existing) -> {
+            if (existing != null && existing.slots == steps - 1 && existing.windowMillis == windowMillis) {
+                return existing;
+            }
+            if (existing != null) {
+                keys.addAndGet(-existing.starts.size());
+            }
+            return new Partials(steps - 1, windowMillis);
+        });
+    }
+
+    /**
+     * Drops the partial matches of rules not in {@code ruleIds}.
+     */
+    public void retain(Set<Long> ruleIds) {
+        byRule.entrySet().removeIf(entry -> {
+            if (ruleIds.contains(entry.getKey())) {
+                return false;
+            }
+            keys.addAndGet(-entry.getValue().starts.size());
+            return true;
+        });
+    }
+
+    /**
+     * Removes partial matches whose every step has expired.
+     *
+     * @param nowMillis Current time in epoch milliseconds
+     * @return number of (rule, CIN) entries evicted
+     */
+    public int evictIdle(long nowMillis) {
+        int evicted = 0;
+        long remaining = 0;
+        for (Partials partials : byRule.values()) {
+            int before = partials.starts.size();
+            partials.starts.values().removeIf(slots -> partials.expired(slots, nowMillis));
+            evicted += before - partials.starts.size();
+            remaining += partials.starts.size();
+        }
+        // Resynchronise the cap counter with the tables, which drifts when rules are replaced mid-update
+        keys.set(remaining);
+        return evicted;
+    }
+
+    @Scheduled(every = "${app.state.eviction-interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledEviction() {
+        long watermark = clock.lowWatermark();
+        if (watermark == Long.MIN_VALUE) {
+            return;
+        }
+        int evicted = evictIdle(watermark);
+        if (evicted > 0) {
+            LOG.debugf("Evicted %d expired sequence partial matches, %d remaining", evicted, keys.get());
+        }
+    }
+
+    /**
+     * Returns the number of (rule, CIN) pairs with at least one partial match.
+     */
+    public long keyCount() {
+        long count = 0;
+        for (Partials partials : byRule.values()) {
+            count += partials.starts.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the estimated heap used by partial matches, in bytes.
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Partials partials : byRule.values()) {
+            bytes += (long) partials.starts.size() * (ENTRY_OVERHEAD_BYTES + (long) partials.slots * Long.BYTES);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the maximum number of (rule, CIN) pairs tracked.
+     */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Returns the number of partial matches not started because the key cap was reached.
+     */
+    public long getDroppedKeys() {
+        return droppedKeys.sum();
+    }
+
+    /**
+     * Partial matches of one sequence rule, keyed by CIN.
+     */
+    public final class Partials {
+
+        private final ConcurrentHashMap<String, long[]> starts = new ConcurrentHashMap<>();
+        private final int slots;
+        private final long windowMillis;
+
+        private Partials(int slots, long windowMillis) {
+            this.slots = slots;
+            this.windowMillis = windowMillis;
+        }
+
+        /**
+         * Returns a bit mask of the steps {@code k >= 1} that have a partial match waiting for them at
+         * {@code timeMillis}. Read without locking, as a hint of which step predicates are worth evaluating;
+         * {@link #advance} re-checks every slot atomically.
+         */
+        public long waitingSteps(String cin, long timeMillis) {
+            long[] current = starts.get(cin);
+            if (current == null) {
+                return 0;
+            }
+            long mask = 0;
+            for (int k = 1; k <= slots; k++) {
+                long start = current[k - 1];
+                if (start != 0 && timeMillis >= start && timeMillis - start <= windowMillis) {
+                    mask |= 1L << k;
+                }
+            }
+            return mask;
+        }
+
+        /**
+         * Advances the NFA of {@code cin} by one event. Steps are taken from the last to the first, so one event
+         * moves a partial match by at most one step, and a partial match that takes a step leaves its slot.
+         *
+         * @param cin        Customer of the event
+         * @param timeMillis Event time
+         * @param matched    Bit {@code k} set if the event satisfies step {@code k}
+         * @return true if the event completed a sequence
+         */
+        public boolean advance(String cin, long timeMillis, long matched) {
+            boolean[] completed = {false};
+            starts.compute(cin, (key, current) -> {
+                if (current == null) {
+                    if ((matched & 1) == 0) {
+                        return null;
+                    }
+                    if (keys.incrementAndGet() > maxKeys) {
+                        keys.decrementAndGet();
+                        droppedKeys.increment();
+                        return null;
+                    }
+                    current = new long[slots];
+                }
+                for (int k = slots; k >= 1; k--) {
+                    long start = current[k - 1];
+                    if (start == 0) {
+                        continue;
+                    }
+                    if (timeMillis - start > windowMillis) {
+                        current[k - 1] = 0;
+                    } else if (timeMillis >= start && (matched & (1L << k)) != 0) {
+                        current[k - 1] = 0;
+                        if (k == slots) {
+                            completed[0] = true;
+                        } else {
+                            current[k] = Math.max(current[k], start);
+                        }
+                    }
+                }
+                if ((matched & 1) != 0) {
+                    current[0] = Math.max(current[0], timeMillis);
+                }
+                if (isEmpty(current)) {
+                    keys.decrementAndGet();
+                    return null;
+                }
+                return current;
+            });
+            return completed[0];
+        }
+
+        /**
+         * Returns the number of customers with a partial match.
+         */
+        public int size() {
+            return starts.size();
+        }
+
+        private boolean expired(long[] current, long nowMillis) {
+            for (long start : current) {
+                if (start != 0 && nowMillis - start <= windowMillis) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isEmpty(long[] current) {
+            for (long start : current) {
+                if (start != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package org.iki.state;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Directed transfer graph between accounts, with a timestamp per edge.
+ * <p>
+ * Account names are interned to dense int ids. Each account owns an outgoing and an incoming edge list of
+ * three parallel {@code int[]} arrays (neighbour id, seconds since {@link #EPOCH_SECONDS}, and the time of the
+ * previous edge to the same neighbour), kept in time order, so expired edges are always at the head of a list and
+ * are dropped there as new edges are appended. The previous times let a degree query count distinct neighbours in
+ * one pass over the window without allocating.
+ * Out-of-order edges are inserted at their event time, which costs a shift of the newer edges.
+ * Ids of accounts left without edges are recycled by {@link #prune}.
+ * <p>
+ * Thread-safe. Appends and queries share the read side of a structure lock and lock only the edge lists they
+ * touch, one at a time, so transfers between different accounts do not wait for each other. Interning a new
+ * account and pruning change the id tables and take the write side.
+ */
+final class TransactionGraph {
+
+    /**
+     * Edge times are stored as int seconds since 2020-01-01T00:00:00Z, which lasts until 2088.
+     */
+    static final long EPOCH_SECONDS = 1_577_836_800L;
+
+    /**
+     * Outcome of a cycle search.
+     */
+    enum CycleSearch { FOUND, NOT_FOUND, BUDGET_EXHAUSTED }
+
+    private static final int INITIAL_NODES = 1024;
+    private static final int INITIAL_EDGES = 4;
+    // Per account: two list objects, their arrays' headers, the name reference and the map entry
+    private static final int NODE_OVERHEAD_BYTES = 192;
+
+    private final StampedLock structure = new StampedLock();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[INITIAL_NODES];
+    private EdgeList[] outgoing = new EdgeList[INITIAL_NODES];
+    private EdgeList[] incoming = new EdgeList[INITIAL_NODES];
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+    private final LongAdder edgeCount = new LongAdder();
+    private final LongAdder edgeCapacity = new LongAdder();
+
+    /**
+     * Records a transfer from {@code from} to {@code to}, dropping edges of both accounts older than
+     * {@code retentionMillis} first. Self-transfers are ignored.
+     *
+     * @return false if the edge was not recorded because the graph holds {@code maxEdges} edges
+     */
+    boolean add(String from, String to, long timestampMillis, long retentionMillis, long maxEdges) {
+        if (from.equals(to)) {
+            return true;
+        }
+        int time = toSeconds(timestampMillis);
+        int cutoff = toSeconds(timestampMillis - retentionMillis);
+        long stamp = structure.readLock();
+        try {
+            Integer fromId = ids.get(from);
+            Integer toId = ids.get(to);
+            if (fromId != null && toId != null) {
+                return add(fromId, toId, from, to, time, cutoff, maxEdges);
+            }
+        } finally {
+            structure.unlockRead(stamp);
+        }
+        stamp = structure.writeLock();
+        try {
+            return add(ids.get(from), ids.get(to), from, to, time, cutoff, maxEdges);
+        } finally {
+            structure.unlockWrite(stamp);
+        }
+    }
+
+    // A null id is interned, which the caller only allows under the write lock
+    private boolean add(Integer fromId, Integer toId, String from, String to, int time, int cutoff, long maxEdges) {
+        // Every edge is counted once, through the outgoing list that holds it
+        if (fromId != null) {
+            EdgeList list = outgoing[fromId];
+            synchronized (list) {
+                edgeCount.add(-list.dropBefore(cutoff));
+            }
+        }
+        if (toId != null) {
+            EdgeList list = incoming[toId];
+            synchronized (list) {
+                list.dropBefore(cutoff);
+            }
+        }
+        if (edgeCount.sum() >= maxEdges) {
+            return false;
+        }
+        int source = fromId != null ? fromId : intern(from);
+        int target = toId != null ? toId : intern(to);
+        append(outgoing[source], target, time);
+        append(incoming[target], source, time);
+        edgeCount.increment();
+        return true;
+    }
+
+    private void append(EdgeList list, int node, int time) {
+        synchronized (list) {
+            int capacity = list.capacity();
+            list.append(node, time);
+            edgeCapacity.add(list.capacity() - capacity);
+        }
+    }
+
+    /**
+     * Number of distinct accounts paid by ({@code outbound}) or paying into the account within the window.
+     */
+    int degree(String account, boolean outbound, long nowMillis, long windowMillis) {
+        long stamp = structure.readLock();
+        try {
+            Integer id = ids.get(account);
+            if (id == null) {
+                return 0;
+            }
+            EdgeList list = outbound ? outgoing[id] : incoming[id];
+            synchronized (list) {
+                return list.distinctSince(toSeconds(nowMillis - windowMillis));
+            }
+        } finally {
+            structure.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Searches for a time-respecting cycle through the account: a path of 2 to {@code maxDepth} transfers that
+     * starts and ends at the account, each transfer no earlier than the previous one and all within the window.
+     * The search is breadth-first and keeps, per account, the earliest arrival time seen, since an earlier
+     * arrival can continue along every edge a later one can.
+     *
+     * @param maxVisits Maximum number of edges examined before giving up
+     */
+    CycleSearch findCycle(String account, int maxDepth, long nowMillis, long windowMillis, int maxVisits) {
+        long stamp = structure.readLock();
+        try {
+            return search(account, maxDepth, nowMillis, windowMillis, maxVisits);
+        } finally {
+            structure.unlockRead(stamp);
+        }
+    }
+
+    private CycleSearch search(String account, int maxDepth, long nowMillis, long windowMillis, int maxVisits) {
+        Integer id = ids.get(account);
+        if (id == null) {
+            return CycleSearch.NOT_FOUND;
+        }
+        int start = id;
+        IntIntMap earliest = new IntIntMap();
+        int[] frontier = {start};
+        int[] arrivals = {toSeconds(nowMillis - windowMillis)};
+        int frontierSize = 1;
+        int visits = 0;
+        for (int hop = 1; hop <= maxDepth && frontierSize > 0; hop++) {
+            int[] nextFrontier = new int[Math.max(4, frontierSize * 2)];
+            int[] nextArrivals = new int[nextFrontier.length];
+            int nextSize = 0;
+            for (int f = 0; f < frontierSize; f++) {
+                EdgeList list = outgoing[frontier[f]];
+                int arrival = arrivals[f];
+                synchronized (list) {
+                    // Newest first; edges before the arrival time cannot continue the path
+                    for (int i = list.tail - 1; i >= list.head && list.times[i] >= arrival; i--) {
+                        if (++visits > maxVisits) {
+                            return CycleSearch.BUDGET_EXHAUSTED;
+                        }
+                        int target = list.nodes[i];
+                        int time = list.times[i];
+                        if (target == start) {
+                            if (hop >= 2) {
+                                return CycleSearch.FOUND;
+                            }
+                            continue;
+                        }
+                        if (hop == maxDepth || earliest.getOrDefault(target, Integer.MAX_VALUE) <= time) {
+                            continue;
+                        }
+                        earliest.put(target, time);
+                        if (nextSize == nextFrontier.length) {
+                            nextFrontier = Arrays.copyOf(nextFrontier, nextSize * 2);
+                            nextArrivals = Arrays.copyOf(nextArrivals, nextSize * 2);
+                        }
+                        nextFrontier[nextSize] = target;
+                        nextArrivals[nextSize++] = time;
+                    }
+                }
+            }
+            frontier = nextFrontier;
+            arrivals = nextArrivals;
+            frontierSize = nextSize;
+        }
+        return CycleSearch.NOT_FOUND;
+    }
+
+    /**
+     * Drops every edge older than the retention and recycles the ids of accounts left without edges.
+     *
+     * @return number of accounts removed
+     */
+    int prune(long nowMillis, long retentionMillis) {
+        int cutoff = toSeconds(nowMillis - retentionMillis);
+        int removed = 0;
+        // Exclusive, so the edge lists need no locks of their own
+        long stamp = structure.writeLock();
+        try {
+            for (int id = 0; id < nextId; id++) {
+                if (names[id] == null) {
+                    continue;
+                }
+                edgeCount.add(-outgoing[id].dropBefore(cutoff));
+                incoming[id].dropBefore(cutoff);
+                long capacity = outgoing[id].capacity() + incoming[id].capacity();
+                outgoing[id].compact();
+                incoming[id].compact();
+                edgeCapacity.add(outgoing[id].capacity() + incoming[id].capacity() - capacity);
+                if (outgoing[id].isEmpty() && incoming[id].isEmpty()) {
+                    release(id);
+                    removed++;
+                }
+            }
+        } finally {
+            structure.unlockWrite(stamp);
+        }
+        return removed;
+    }
+
+    int nodeCount() {
+        long stamp = structure.readLock();
+        try {
+            return ids.size();
+        } finally {
+            structure.unlockRead(stamp);
+        }
+    }
+
+    long edgeCount() {
+        return edgeCount.sum();
+    }
+
+    /**
+     * Estimated heap used by accounts and edge lists, in bytes.
+     */
+    long sizeInBytes() {
+        long stamp = structure.readLock();
+        try {
+            return (long) ids.size() * NODE_OVERHEAD_BYTES + edgeCapacity.sum() * 3 * Integer.BYTES
+                    + (long) names.length * 3 * 4;
+        } finally {
+            structure.unlockRead(stamp);
+        }
+    }
+
+    private int intern(String account) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == names.length) {
+                int capacity = names.length * 2;
+                names = Arrays.copyOf(names, capacity);
+                outgoing = Arrays.copyOf(outgoing, capacity);
+                incoming = Arrays.copyOf(incoming, capacity);
+            }
+        }
+        names[id] = account;
+        outgoing[id] = new EdgeList();
+        incoming[id] = new EdgeList();
+        edgeCapacity.add(2 * INITIAL_EDGES);
+        ids.put(account, id);
+        return id;
+    }
+
+    private void release(int id) {
+        ids.remove(names[id]);
+        edgeCapacity.add(-(outgoing[id].capacity() + incoming[id].capacity()));
+        names[id] = null;
+        outgoing[id] = null;
+        incoming[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    private static int toSeconds(long millis) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, Math.floorDiv(millis, 1000) - EPOCH_SECONDS));
+    }
+
+    /**
+     * Time-ordered edges of one account: {@code nodes[i]} is the neighbour and {@code times[i]} the time of
+     * edge {@code i}, for {@code head <= i < tail}. {@code previous[i]} is the time of the nearest earlier edge to
+     * the same neighbour, or {@link #NONE}.
+     */
+    private static final class EdgeList {
+        static final int NONE = Integer.MIN_VALUE;
+
+        int[] nodes = new int[INITIAL_EDGES];
+        int[] times = new int[INITIAL_EDGES];
+        int[] previous = new int[INITIAL_EDGES];
+        int head;
+        int tail;
+
+        void append(int node, int time) {
+            if (tail == nodes.length) {
+                compact();
+                if (tail == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    times = Arrays.copyOf(times, times.length * 2);
+                    previous = Arrays.copyOf(previous, previous.length * 2);
+                }
+            }
+            // Late edges are shifted into place; in-order edges skip the loop
+            int i = tail;
+            while (i > head && times[i - 1] > time) {
+                nodes[i] = nodes[i - 1];
+                times[i] = times[i - 1];
+                previous[i] = previous[i - 1];
+                i--;
+            }
+            nodes[i] = node;
+            times[i] = time;
+            previous[i] = NONE;
+            for (int j = i - 1; j >= head; j--) {
+                if (nodes[j] == node) {
+                    previous[i] = times[j];
+                    break;
+                }
+            }
+            tail++;
+            // A late edge becomes the previous edge of the next one to the same neighbour
+            for (int j = i + 1; j < tail; j++) {
+                if (nodes[j] == node) {
+                    previous[j] = time;
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Counts the distinct neighbours of the edges at or after {@code cutoff}: an edge is the first to its
+         * neighbour in the window when the previous edge to that neighbour is older than the window, or was dropped.
+         */
+        int distinctSince(int cutoff) {
+            if (head == tail) {
+                return 0;
+            }
+            // Dropped edges are all older than the head, and the live ones are no older
+            int since = Math.max(cutoff, times[head]);
+            int distinct = 0;
+            for (int i = firstAtOrAfter(cutoff); i < tail; i++) {
+                if (previous[i] < since) {
+                    distinct++;
+                }
+            }
+            return distinct;
+        }
+
+        /**
+         * Drops edges older than {@code cutoff}; returns the number dropped.
+         */
+        int dropBefore(int cutoff) {
+            int dropped = 0;
+            while (head < tail && times[head] < cutoff) {
+                head++;
+                dropped++;
+            }
+            if (head == tail) {
+                head = 0;
+                tail = 0;
+            }
+            return dropped;
+        }
+
+        int firstAtOrAfter(int cutoff) {
+            int low = head;
+            int high = tail;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < cutoff) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Moves live edges to the front, and shrinks the arrays when at most a quarter is used.
+         */
+        void compact() {
+            int size = tail - head;
+            int capacity = nodes.length;
+            while (capacity > INITIAL_EDGES && size <= capacity / 4) {
+                capacity /= 2;
+            }
+            if (head == 0 && capacity == nodes.length) {
+                return;
+            }
+            int[] newNodes = capacity == nodes.length ? nodes : new int[capacity];
+            int[] newTimes = capacity == times.length ? times : new int[capacity];
+            int[] newPrevious = capacity == previous.length ? previous : new int[capacity];
+            System.arraycopy(nodes, head, newNodes, 0, size);
+            System.arraycopy(times, head, newTimes, 0, size);
+            System.arraycopy(previous, head, newPrevious, 0, size);
+            nodes = newNodes;
+            times = newTimes;
+            previous = newPrevious;
+            head = 0;
+            tail = size;
+        }
+
+        int capacity() {
+            return nodes.length;
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+
+    /**
+     * Open-addressing int-to-int map holding the earliest arrival per account during one cycle search.
+     */
+    private static final class IntIntMap {
+        private static final int EMPTY = -1;
+        private int[] keys = filled(16);
+        private int[] values = new int[16];
+        private int size;
+
+        int getOrDefault(int key, int defaultValue) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                if (keys[i] == EMPTY) {
+                    return defaultValue;
+                }
+            }
+        }
+
+        void put(int key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = filled(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            return key * 0x9E3779B9 >>> 7;
+        }
+
+        private static int[] filled(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, EMPTY);
+            return array;
+        }
+    }
+}
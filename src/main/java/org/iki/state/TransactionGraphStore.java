@@ -0,0 +1,183 @@
+package org.iki.state;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.TransactionEvent;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recent transfer graph between debit and credit accounts, for fan-in/fan-out and cycle features.
+ * Recording locks the two edge lists it appends to, one at a time, so transfers between different accounts proceed
+ * in parallel; see {@link TransactionGraph} for the locking.
+ * Edges carry their event time and windows end at the {@link EventTimeClock}. Memory is bounded by an edge cap
+ * and by dropping edges older than the retention window, incrementally on every append and for all accounts
+ * against the low watermark on the eviction schedule.
+ */
+@ApplicationScoped
+public class TransactionGraphStore implements EventStateStore {
+
+    private static final Logger LOG = Logger.getLogger(TransactionGraphStore.class);
+
+    /**
+     * Longest cycle searched for; deeper searches grow exponentially with the fan-out of the accounts.
+     */
+    public static final int MAX_DEPTH = 6;
+
+    private final TransactionGraph graph = new TransactionGraph();
+    private final LongAdder droppedEdges = new LongAdder();
+    private final LongAdder exhaustedSearches = new LongAdder();
+
+    @Inject
+    EventTimeClock clock;
+
+    @ConfigProperty(name = "app.state.graph.retention-seconds", defaultValue = "86400")
+    long retentionSeconds;
+
+    @ConfigProperty(name = "app.state.graph.max-edges", defaultValue = "5000000")
+    long maxEdges;
+
+    @ConfigProperty(name = "app.state.graph.max-visits", defaultValue = "20000")
+    int maxVisits;
+
+    @Override
+    public String name() {
+        return "graph";
+    }
+
+    @Override
+    public void record(TransactionEvent event) {
+        long time = event.transactedTime().toEpochMilli();
+        addTransfer(event.debitAccount(), event.creditAccount(), time);
+        clock.advance(time);
+    }
+
+    /**
+     * Records a transfer edge at the given time.
+     */
+    public void addTransfer(String from, String to, long timestampMillis) {
+        if (!graph.add(from, to, timestampMillis, retentionMillis(), maxEdges)) {
+            droppedEdges.increment();
+        }
+    }
+
+    /**
+     * Number of distinct accounts that paid the account within the window ending now.
+     *
+     * @throws IllegalArgumentException if the window is longer than {@link #maxWindowMillis()}
+     */
+    public long inDegree(String account, long windowMillis) {
+        return degree(account, false, clock.now(), windowMillis);
+    }
+
+    /**
+     * Number of distinct accounts paid by the account within the window ending now.
+     *
+     * @throws IllegalArgumentException if the window is longer than {@link #maxWindowMillis()}
+     */
+    public long outDegree(String account, long windowMillis) {
+        return degree(account, true, clock.now(), windowMillis);
+    }
+
+    /**
+     * Returns true if money left the account and came back to it through 2 to {@code depth} transfers,
+     * in time order and within the window ending now. Searches that examine more than
+     * {@code app.state.graph.max-visits} edges stop and return false.
+     *
+     * @throws IllegalArgumentException if depth is not between 2 and {@link #MAX_DEPTH}, or the window is longer
+     *                                  than {@link #maxWindowMillis()}
+     */
+    public boolean inCycle(String account, long depth, long windowMillis) {
+        return inCycle(account, depth, clock.now(), windowMillis);
+    }
+
+    boolean inCycle(String account, long depth, long nowMillis, long windowMillis) {
+        if (depth < 2 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Cycle depth must be between 2 and " + MAX_DEPTH + ": " + depth);
+        }
+        TransactionGraph.CycleSearch result = graph.findCycle(account, (int) depth, nowMillis,
+                checkWindow(windowMillis), maxVisits);
+        if (result == TransactionGraph.CycleSearch.BUDGET_EXHAUSTED) {
+            exhaustedSearches.increment();
+            LOG.debugf("Cycle search for %s stopped after %d edges", account, maxVisits);
+        }
+        return result == TransactionGraph.CycleSearch.FOUND;
+    }
+
+    long degree(String account, boolean outbound, long nowMillis, long windowMillis) {
+        return graph.degree(account, outbound, nowMillis, checkWindow(windowMillis));
+    }
+
+    @Override
+    public int evictIdle(long nowMillis) {
+        return graph.prune(nowMillis, retentionMillis());
+    }
+
+    @Scheduled(every = "${app.state.eviction-interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledEviction() {
+        long watermark = clock.lowWatermark();
+        if (watermark == Long.MIN_VALUE) {
+            return;
+        }
+        int evicted = evictIdle(watermark);
+        if (evicted > 0) {
+            LOG.debugf("Evicted %d idle graph accounts, %d edges remaining", evicted, getEdgeCount());
+        }
+    }
+
+    @Override
+    public int keyCount() {
+        return graph.nodeCount();
+    }
+
+    /**
+     * Returns the number of edges currently held, including expired edges not yet pruned.
+     */
+    public long getEdgeCount() {
+        return graph.edgeCount();
+    }
+
+    /**
+     * Returns the estimated heap used by the graph, in bytes.
+     */
+    public long sizeInBytes() {
+        return graph.sizeInBytes();
+    }
+
+    /**
+     * Returns the number of transfers not recorded because the edge cap was reached.
+     */
+    public long getDroppedEdges() {
+        return droppedEdges.sum();
+    }
+
+    /**
+     * Returns the number of cycle searches stopped by the visit budget.
+     */
+    public long getExhaustedSearches() {
+        return exhaustedSearches.sum();
+    }
+
+    /**
+     * Returns the longest window that can be answered, in milliseconds: the edge retention.
+     */
+    public long maxWindowMillis() {
+        return retentionMillis();
+    }
+
+    private long retentionMillis() {
+        return retentionSeconds * 1000;
+    }
+
+    private long checkWindow(long windowMillis) {
+        if (windowMillis > maxWindowMillis()) {
+            // Older edges are gone; an answer over the retention alone would be silently short
+            throw new IllegalArgumentException("Window of " + windowMillis / 1000
+                    + " s is longer than the graph retention of " + maxWindowMillis() / 1000 + " s");
+        }
+        return windowMillis;
+    }
+}
@@ -0,0 +1,67 @@
+package org.iki.state;
+
+import java.io.IOException;
+
+/**
+ * Per-key velocity counters: a fine-grained ring for short windows and a coarse ring for long ones.
+ * Queries pick the finest ring that covers the requested window.
+ */
+final class VelocityCounter {
+
+    private final RingCounter fine;
+    private final RingCounter coarse;
+    private volatile long lastUpdateMillis;
+    // Wall-clock time of the last change, for incremental checkpoints
+    private volatile long modifiedMillis;
+
+    VelocityCounter(long fineBucketMillis, int fineBuckets, long coarseBucketMillis, int coarseBuckets) {
+        this.fine = new RingCounter(fineBucketMillis, fineBuckets);
+        this.coarse = new RingCounter(coarseBucketMillis, coarseBuckets);
+    }
+
+    synchronized void add(long timestampMillis, long amountMinor) {
+        fine.add(timestampMillis, amountMinor);
+        coarse.add(timestampMillis, amountMinor);
+        lastUpdateMillis = Math.max(lastUpdateMillis, timestampMillis);
+        modifiedMillis = System.currentTimeMillis();
+    }
+
+    synchronized long count(long nowMillis, long windowMillis) {
+        return ringFor(windowMillis).count(nowMillis, windowMillis);
+    }
+
+    synchronized long sum(long nowMillis, long windowMillis) {
+        return ringFor(windowMillis).sum(nowMillis, windowMillis);
+    }
+
+    synchronized long max(long nowMillis, long windowMillis) {
+        return ringFor(windowMillis).max(nowMillis, windowMillis);
+    }
+
+    /**
+     * Returns the latest event time recorded.
+     */
+    long lastUpdateMillis() {
+        return lastUpdateMillis;
+    }
+
+    long modifiedMillis() {
+        return modifiedMillis;
+    }
+
+    synchronized void writeTo(CheckpointWriter out) throws IOException {
+        out.putLong(lastUpdateMillis);
+        fine.writeTo(out);
+        coarse.writeTo(out);
+    }
+
+    synchronized void readFrom(CheckpointReader in) throws IOException {
+        lastUpdateMillis = in.getLong();
+        fine.readFrom(in);
+        coarse.readFrom(in);
+    }
+
+    private RingCounter ringFor(long windowMillis) {
+        return windowMillis <= fine.spanMillis() ? fine : coarse;
+    }
+}
@@ -0,0 +1,267 @@
+package org.iki.state;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iki.model.MinorUnits;
+import org.iki.model.TransactionEvent;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding-window transaction velocity per key (CIN and debit account).
+ * CINs and accounts are kept apart, so a CIN that equals some account number never shares its counters; checkpoints
+ * prefix each key with its {@link KeyKind}.
+ * Each key owns two fixed-size ring counters, so recording an event never allocates once the key exists.
+ * Observations are bucketed by event time and windows end at the {@link EventTimeClock}.
+ * Memory is bounded by a key cap and by periodic eviction of keys whose newest observation has fallen
+ * a coarse window behind the low watermark.
+ */
+@ApplicationScoped
+public class VelocityStore implements EventStateStore, CheckpointableStore {
+
+    private static final Logger LOG = Logger.getLogger(VelocityStore.class);
+
+    /**
+     * Amounts are accumulated in minor units (cents) to keep sums exact on primitive longs.
+     */
+    static final int AMOUNT_SCALE = 2;
+
+    private final ConcurrentHashMap<String, VelocityCounter> cinCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, VelocityCounter> accountCounters = new ConcurrentHashMap<>();
+    private final LongAdder droppedKeys = new LongAdder();
+
+    @Inject
+    EventTimeClock clock;
+
+    @ConfigProperty(name = "app.state.velocity.fine-bucket-seconds", defaultValue = "60")
+    long fineBucketSeconds;
+
+    @ConfigProperty(name = "app.state.velocity.fine-buckets", defaultValue = "60")
+    int fineBuckets;
+
+    @ConfigProperty(name = "app.state.velocity.coarse-bucket-seconds", defaultValue = "3600")
+    long coarseBucketSeconds;
+
+    @ConfigProperty(name = "app.state.velocity.coarse-buckets", defaultValue = "24")
+    int coarseBuckets;
+
+    @ConfigProperty(name = "app.state.velocity.max-keys", defaultValue = "1000000")
+    int maxKeys;
+
+    @Override
+    public String name() {
+        return "velocity";
+    }
+
+    @Override
+    public void record(TransactionEvent event) {
+        long time = event.transactedTime().toEpochMilli();
+        long amountMinor = toMinorUnits(event.amount());
+        add(KeyKind.CIN, event.cin(), time, amountMinor);
+        add(KeyKind.ACCOUNT, event.debitAccount(), time, amountMinor);
+        clock.advance(time);
+    }
+
+    /**
+     * Records a single observation for a key.
+     */
+    public void add(KeyKind kind, String key, long timestampMillis, long amountMinor) {
+        Map<String, VelocityCounter> counters = counters(kind);
+        VelocityCounter counter = counters.get(key);
+        if (counter == null) {
+            if (keyCount() >= maxKeys) {
+                droppedKeys.increment();
+                return;
+            }
+            counter = counters.computeIfAbsent(key, k -> newCounter());
+        }
+        counter.add(timestampMillis, amountMinor);
+    }
+
+    /**
+     * Number of transactions recorded for the key within the window ending now.
+     *
+     * @throws IllegalArgumentException if the window is longer than {@link #maxWindowMillis()}
+     */
+    public long count(KeyKind kind, String key, long windowMillis) {
+        VelocityCounter counter = counter(kind, key, windowMillis);
+        return counter == null ? 0 : counter.count(clock.now(), windowMillis);
+    }
+
+    /**
+     * Sum of amounts, in minor units, recorded for the key within the window ending now.
+     *
+     * @throws IllegalArgumentException if the window is longer than {@link #maxWindowMillis()}
+     */
+    public long sumMinor(KeyKind kind, String key, long windowMillis) {
+        VelocityCounter counter = counter(kind, key, windowMillis);
+        return counter == null ? 0 : counter.sum(clock.now(), windowMillis);
+    }
+
+    /**
+     * Largest single amount, in minor units, recorded for the key within the window ending now.
+     *
+     * @throws IllegalArgumentException if the window is longer than {@link #maxWindowMillis()}
+     */
+    public long maxMinor(KeyKind kind, String key, long windowMillis) {
+        VelocityCounter counter = counter(kind, key, windowMillis);
+        return counter == null ? 0 : counter.max(clock.now(), windowMillis);
+    }
+
+    private VelocityCounter counter(KeyKind kind, String key, long windowMillis) {
+        if (windowMillis > maxWindowMillis()) {
+            // The rings cannot answer it; a shorter answer would be silently wrong
+            throw new IllegalArgumentException("Window of " + windowMillis / 1000
+                    + " s is longer than the longest velocity window of " + maxWindowMillis() / 1000 + " s");
+        }
+        return counters(kind).get(key);
+    }
+
+    private Map<String, VelocityCounter> counters(KeyKind kind) {
+        return kind == KeyKind.CIN ? cinCounters : accountCounters;
+    }
+
+    /**
+     * Returns the longest window that can be answered, in milliseconds.
+     */
+    public long maxWindowMillis() {
+        return coarseBucketSeconds * 1000 * coarseBuckets;
+    }
+
+    @Override
+    public int evictIdle(long nowMillis) {
+        long cutoff = nowMillis - maxWindowMillis();
+        int before = keyCount();
+        cinCounters.values().removeIf(counter -> counter.lastUpdateMillis() < cutoff);
+        accountCounters.values().removeIf(counter -> counter.lastUpdateMillis() < cutoff);
+        return before - keyCount();
+    }
+
+    @Scheduled(every = "${app.state.eviction-interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledEviction() {
+        long watermark = clock.lowWatermark();
+        if (watermark == Long.MIN_VALUE) {
+            return;
+        }
+        int evicted = evictIdle(watermark);
+        if (evicted > 0) {
+            LOG.debugf("Evicted %d idle velocity keys, %d remaining", evicted, keyCount());
+        }
+    }
+
+    @Override
+    public int keyCount() {
+        return cinCounters.size() + accountCounters.size();
+    }
+
+    /**
+     * Returns the number of observations dropped because the key cap was reached.
+     */
+    public long getDroppedKeys() {
+        return droppedKeys.sum();
+    }
+
+    @Override
+    public long writeCheckpoint(CheckpointWriter out, long sinceMillis) throws IOException {
+        out.putLong(fineBucketSeconds);
+        out.putInt(fineBuckets);
+        out.putLong(coarseBucketSeconds);
+        out.putInt(coarseBuckets);
+        long written = 0;
+        for (KeyKind kind : KeyKind.values()) {
+            for (Map.Entry<String, VelocityCounter> entry : counters(kind).entrySet()) {
+                if (entry.getValue().modifiedMillis() < sinceMillis) {
+                    continue;
+                }
+                out.putByte(CheckpointWriter.RECORD);
+                out.putString(kind.prefix + entry.getKey());
+                entry.getValue().writeTo(out);
+                written++;
+            }
+        }
+        out.putByte(CheckpointWriter.END);
+        return written;
+    }
+
+    @Override
+    public long restoreCheckpoint(CheckpointReader in) throws IOException {
+        if (in.getLong() != fineBucketSeconds || in.getInt() != fineBuckets
+                || in.getLong() != coarseBucketSeconds || in.getInt() != coarseBuckets) {
+            LOG.warn("Velocity checkpoint was written with different windows, not restored");
+            return 0;
+        }
+        long restored = 0;
+        while (in.getByte() == CheckpointWriter.RECORD) {
+            String prefixedKey = in.getString();
+            VelocityCounter counter = newCounter();
+            counter.readFrom(in);
+            KeyKind kind = KeyKind.ofPrefixed(prefixedKey);
+            if (kind == null) {
+                // Written before keys carried their kind; it cannot be told apart
+                continue;
+            }
+            Map<String, VelocityCounter> counters = counters(kind);
+            String key = prefixedKey.substring(kind.prefix.length());
+            if (keyCount() < maxKeys || counters.containsKey(key)) {
+                counters.put(key, counter);
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    static long toMinorUnits(BigDecimal amount) {
+        return MinorUnits.toSaturatedUnits(amount, AMOUNT_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private VelocityCounter newCounter() {
+        return new VelocityCounter(fineBucketSeconds * 1000, fineBuckets, coarseBucketSeconds * 1000, coarseBuckets);
+    }
+
+    /**
+     * What a velocity key identifies.
+     */
+    public enum KeyKind {
+        CIN("cin"),
+        ACCOUNT("account");
+
+        private final String name;
+        private final String prefix;
+
+        KeyKind(String name) {
+            this.name = name;
+            this.prefix = name + ":";
+        }
+
+        /**
+         * Parses the name used in rules, {@code "cin"} or {@code "account"}.
+         *
+         * @throws IllegalArgumentException if the name is neither
+         */
+        public static KeyKind parse(String name) {
+            for (KeyKind kind : values()) {
+                if (kind.name.equals(name)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Invalid key kind, expected \"cin\" or \"account\": " + name);
+        }
+
+        static KeyKind ofPrefixed(String key) {
+            for (KeyKind kind : values()) {
+                if (key.startsWith(kind.prefix)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.iki.state;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Immutable named list of identifiers: an on-heap Bloom filter in front of a sorted,
+ * memory-mapped string table used for exact confirmation.
+ * <p>
+ * Table layout: {@code int count}, {@code count + 1} int char offsets, then the UTF-16 chars of all
+ * entries in {@link String#compareTo} order. Lookups binary-search the mapped buffer with absolute
+ * reads and never allocate. The mapping limits a single list to 2 GB of table data.
+ */
+public final class Watchlist {
+
+    private static final int HEADER_BYTES = Integer.BYTES;
+
+    private final String name;
+    private final int size;
+    private final BloomFilter bloom;
+    private final MappedByteBuffer table;
+    private final int dataStart;
+    private final Path tableFile;
+
+    private Watchlist(String name, int size, BloomFilter bloom, MappedByteBuffer table, Path tableFile) {
+        this.name = name;
+        this.size = size;
+        this.bloom = bloom;
+        this.table = table;
+        this.dataStart = HEADER_BYTES + (size + 1) * Integer.BYTES;
+        this.tableFile = tableFile;
+    }
+
+    /**
+     * Builds a watchlist from entries, writing its string table to {@code tableFile} and mapping it.
+     *
+     * @param name              List name used by {@code inList(name, value)}
+     * @param entries           Entries; duplicates are removed
+     * @param tableFile         File to hold the sorted string table (overwritten)
+     * @param falsePositiveRate Target Bloom filter false-positive rate
+     */
+    public static Watchlist build(String name, List<String> entries, Path tableFile, double falsePositiveRate)
+            throws IOException {
+        String[] sorted = entries.stream().distinct().sorted().toArray(String[]::new);
+
+        long chars = 0;
+        for (String entry : sorted) {
+            chars += entry.length();
+        }
+        long bytes = HEADER_BYTES + (sorted.length + 1L) * Integer.BYTES + chars * Character.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Watchlist '" + name + "' exceeds 2 GB table limit");
+        }
+
+        BloomFilter bloom = new BloomFilter(sorted.length, falsePositiveRate);
+        Files.deleteIfExists(tableFile);
+        MappedByteBuffer table;
+        try (RandomAccessFile file = new RandomAccessFile(tableFile.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+
+        table.putInt(0, sorted.length);
+        int offsetPos = HEADER_BYTES;
+        int charPos = HEADER_BYTES + (sorted.length + 1) * Integer.BYTES;
+        int charOffset = 0;
+        for (String entry : sorted) {
+            table.putInt(offsetPos, charOffset);
+            offsetPos += Integer.BYTES;
+            for (int i = 0; i < entry.length(); i++) {
+                table.putChar(charPos, entry.charAt(i));
+                charPos += Character.BYTES;
+            }
+            charOffset += entry.length();
+            bloom.put(Hashing.hash64(entry));
+        }
+        table.putInt(offsetPos, charOffset);
+
+        return new Watchlist(name, sorted.length, bloom, table, tableFile);
+    }
+
+    /**
+     * Returns whether the value is on the list. Exact: Bloom filter hits are confirmed against the table.
+     */
+    public boolean contains(String value) {
+        if (size == 0 || !bloom.mightContain(Hashing.hash64(value))) {
+            return false;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareEntry(mid, value);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bytes held on-heap by the Bloom filter.
+     */
+    public long bloomSizeInBytes() {
+        return bloom.sizeInBytes();
+    }
+
+    /**
+     * Bytes of the memory-mapped string table.
+     */
+    public long tableSizeInBytes() {
+        return table.capacity();
+    }
+
+    Path tableFile() {
+        return tableFile;
+    }
+
+    private int compareEntry(int index, String value) {
+        int start = table.getInt(HEADER_BYTES + index * Integer.BYTES);
+        int end = table.getInt(HEADER_BYTES + (index + 1) * Integer.BYTES);
+        int length = end - start;
+        int limit = Math.min(length, value.length());
+        int base = dataStart + start * Character.BYTES;
+        for (int i = 0; i < limit; i++) {
+            char c = table.getChar(base + i * Character.BYTES);
+            char v = value.charAt(i);
+            if (c != v) {
+                return c - v;
+            }
+        }
+        return length - value.length();
+    }
+
+    @Override
+    public String toString() {
+        return "Watchlist[" + name + ", size=" + size + "]";
+    }
+}
+
@@ -0,0 +1,167 @@
+package org.iki.state;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.interceptor.Interceptor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named watchlists (sanctions, PEP, internal blocklists) loaded from {@code <name>.txt} files in a local directory.
+ * Files hold one identifier per line; blank lines and lines starting with {@code #} are ignored.
+ * Changed files are rebuilt off the hot path and swapped in atomically, so readers see either
+ * the old or the new list, never a partially loaded one.
+ */
+@ApplicationScoped
+public class WatchlistStore {
+
+    private static final Logger LOG = Logger.getLogger(WatchlistStore.class);
+    private static final String LIST_SUFFIX = ".txt";
+
+    // Volatile reference for atomic swap during reload
+    private volatile Map<String, Watchlist> lists = Map.of();
+    private final Map<String, FileTime> loadedVersions = new HashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @ConfigProperty(name = "app.watchlists.directory", defaultValue = "watchlists")
+    String directory;
+
+    @ConfigProperty(name = "app.watchlists.index-directory", defaultValue = "${java.io.tmpdir}/edios-watchlists")
+    String indexDirectory;
+
+    @ConfigProperty(name = "app.watchlists.false-positive-rate", defaultValue = "0.01")
+    double falsePositiveRate;
+
+    /**
+     * Loads the lists before the rules are compiled on startup, as rules naming an unknown list are rejected.
+     */
+    void onStart(@Observes @Priority(Interceptor.Priority.LIBRARY_BEFORE) StartupEvent event) {
+        reload();
+    }
+
+    @Scheduled(every = "${app.watchlists.reload-interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * Returns whether {@code value} is on the named list.
+     *
+     * @throws IllegalArgumentException if no list with that name is loaded
+     */
+    public boolean contains(String listName, String value) {
+        Watchlist list = lists.get(listName);
+        if (list == null) {
+            throw new IllegalArgumentException("Unknown watchlist: " + listName);
+        }
+        return list.contains(value);
+    }
+
+    /**
+     * Returns the currently loaded lists by name.
+     */
+    public Map<String, Watchlist> getLists() {
+        return lists;
+    }
+
+    /**
+     * Rebuilds lists whose source file changed, drops lists whose file was removed, and swaps the result in.
+     *
+     * @return number of lists rebuilt or removed
+     */
+    public synchronized int reload() {
+        Path dir = Path.of(directory);
+        if (!Files.isDirectory(dir)) {
+            LOG.debugf("Watchlist directory %s does not exist, no lists loaded", dir);
+            return 0;
+        }
+
+        Map<String, Watchlist> current = lists;
+        Map<String, Watchlist> next = new HashMap<>();
+        // Versions of the rebuilt lists, recorded only once they are swapped in
+        Map<String, FileTime> versions = new HashMap<>();
+        int changed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + LIST_SUFFIX)) {
+            Files.createDirectories(Path.of(indexDirectory));
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                name = name.substring(0, name.length() - LIST_SUFFIX.length());
+                FileTime modified = Files.getLastModifiedTime(file);
+                Watchlist existing = current.get(name);
+                if (existing != null && modified.equals(loadedVersions.get(name))) {
+                    next.put(name, existing);
+                    continue;
+                }
+                next.put(name, load(name, file));
+                versions.put(name, modified);
+                changed++;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOG.errorf(e, "Failed to reload watchlists from %s, keeping previous lists", dir);
+            for (String name : versions.keySet()) {
+                deleteQuietly(next.get(name).tableFile());
+            }
+            return 0;
+        }
+
+        for (String name : current.keySet()) {
+            if (!next.containsKey(name)) {
+                loadedVersions.remove(name);
+                changed++;
+            }
+        }
+        if (changed == 0) {
+            return 0;
+        }
+
+        lists = Map.copyOf(next);
+        loadedVersions.putAll(versions);
+        for (Watchlist old : current.values()) {
+            if (next.get(old.name()) != old) {
+                deleteQuietly(old.tableFile());
+            }
+        }
+        LOG.infof("Watchlists reloaded: %d lists, %d changed", next.size(), changed);
+        return changed;
+    }
+
+    private Watchlist load(String name, Path file) throws IOException {
+        long start = System.nanoTime();
+        List<String> entries;
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            entries = lines.map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .toList();
+        }
+        Path tableFile = Path.of(indexDirectory, name + "-" + generation.incrementAndGet() + ".idx");
+        Watchlist list = Watchlist.build(name, entries, tableFile, falsePositiveRate);
+        LOG.infof("Loaded watchlist '%s': %d entries, bloom %d KB, table %d KB in %d ms",
+                name, list.size(), list.bloomSizeInBytes() / 1024, list.tableSizeInBytes() / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+        return list;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            // The old mapping stays valid until unreachable; on POSIX the file can be unlinked immediately
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.debugf("Could not delete old watchlist table %s: %s", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.iki.state;
+
+/**
+ * Parses compact window literals used by rule functions, such as {@code "30m"}, {@code "1h"} or {@code "7d"}.
+ * Parsing is done with a character scan so it can be called on every evaluation without allocating.
+ */
+public final class WindowDurations {
+
+    private WindowDurations() {
+    }
+
+    /**
+     * Parses a window literal into milliseconds.
+     * Supported units are {@code s}, {@code m}, {@code h} and {@code d}.
+     *
+     * @param window Window literal, for example {@code "24h"}
+     * @return window length in milliseconds
+     * @throws IllegalArgumentException if the literal is malformed or not positive
+     */
+    public static long toMillis(String window) {
+        if (window == null || window.length() < 2) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        int last = window.length() - 1;
+        long value = 0;
+        for (int i = 0; i < last; i++) {
+            char c = window.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid window: " + window);
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Window too large: " + window);
+            }
+        }
+        if (value == 0) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        return switch (window.charAt(last)) {
+            case 's' -> value * 1_000L;
+            case 'm' -> value * 60_000L;
+            case 'h' -> value * 3_600_000L;
+            case 'd' -> value * 86_400_000L;
+            default -> throw new IllegalArgumentException("Invalid window unit: " + window);
+        };
+    }
+}
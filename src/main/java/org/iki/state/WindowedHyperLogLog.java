@@ -0,0 +1,143 @@
+package org.iki.state;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Ring of HyperLogLog sketches, one per time bucket, stored in a single {@code byte[]}.
+ * A windowed estimate merges the registers of the buckets that cover the window on the fly,
+ * so neither updates nor queries allocate. Not thread-safe; callers synchronize.
+ * <p>
+ * Relative standard error is {@code 1.04 / sqrt(2^precision)}; memory is
+ * {@code 2^precision * bucketCount} bytes of registers plus one long per bucket.
+ */
+final class WindowedHyperLogLog {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int precision;
+    private final int registerCount;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final byte[] registers;
+    private final long[] bucketIds;
+    private final double alpha;
+
+    WindowedHyperLogLog(int precision, long bucketMillis, int bucketCount) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("precision must be between 4 and 16");
+        }
+        if (bucketMillis <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("bucketMillis and bucketCount must be positive");
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.registers = new byte[registerCount * bucketCount];
+        this.bucketIds = new long[bucketCount];
+        Arrays.fill(bucketIds, EMPTY);
+        this.alpha = alpha(registerCount);
+    }
+
+    /**
+     * Adds a pre-hashed element at the given timestamp.
+     *
+     * @return false if the timestamp is older than the ring can hold and was dropped
+     */
+    boolean add(long timestampMillis, long hash) {
+        long bucket = Math.floorDiv(timestampMillis, bucketMillis);
+        int slot = (int) Math.floorMod(bucket, (long) bucketCount);
+        long current = bucketIds[slot];
+        if (current != bucket) {
+            if (current != EMPTY && current > bucket) {
+                return false;
+            }
+            bucketIds[slot] = bucket;
+            Arrays.fill(registers, slot * registerCount, (slot + 1) * registerCount, (byte) 0);
+        }
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first set bit in the remaining bits; the sentinel bit caps it at 64 - precision + 1
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        int offset = slot * registerCount + index;
+        if (rank > registers[offset]) {
+            registers[offset] = rank;
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the number of distinct elements seen in the window ending at {@code nowMillis}.
+     *
+     * @throws IllegalArgumentException if the window spans more buckets than the ring holds
+     */
+    long estimate(long nowMillis, long windowMillis) {
+        long nowBucket = Math.floorDiv(nowMillis, bucketMillis);
+        long buckets = (windowMillis + bucketMillis - 1) / bucketMillis;
+        if (buckets > bucketCount) {
+            // The older buckets are gone; an estimate over the ring alone would be silently short
+            throw new IllegalArgumentException("Window of " + windowMillis + " ms spans more than "
+                    + bucketCount + " buckets of " + bucketMillis + " ms");
+        }
+        long firstBucket = nowBucket - buckets + 1;
+
+        double sum = 0;
+        int zeros = 0;
+        boolean seen = false;
+        for (int index = 0; index < registerCount; index++) {
+            int max = 0;
+            for (int slot = 0; slot < bucketCount; slot++) {
+                long bucket = bucketIds[slot];
+                if (bucket < firstBucket || bucket > nowBucket) {
+                    continue;
+                }
+                seen = true;
+                int value = registers[slot * registerCount + index];
+                if (value > max) {
+                    max = value;
+                }
+            }
+            if (max == 0) {
+                zeros++;
+            }
+            sum += 1.0 / (1L << max);
+        }
+        if (!seen) {
+            return 0;
+        }
+
+        double estimate = alpha * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            // Small-range correction: linear counting is more accurate for sparse sketches
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Bytes of register and bucket storage held by this sketch.
+     */
+    int sizeInBytes() {
+        return registers.length + bucketIds.length * Long.BYTES;
+    }
+
+    void writeTo(CheckpointWriter out) throws IOException {
+        out.putLongs(bucketIds);
+        out.putBytes(registers);
+    }
+
+    void readFrom(CheckpointReader in) throws IOException {
+        in.getLongs(bucketIds);
+        in.getBytes(registers);
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
@@ -2,13 +2,20 @@ package org.iki.verticle;
 
 import io.quarkus.vertx.ConsumeEvent;
 import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.vertx.core.eventbus.Message;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 import org.iki.engine.CelRuleEngine;
+import org.iki.metrics.PipelineLatency;
+import org.iki.metrics.PipelineMetrics;
 import org.iki.model.Rule;
 import org.iki.model.RuleEvaluationResult;
 import org.iki.model.TransactionEvent;
 import org.iki.service.RuleCacheService;
+import org.iki.state.EventStateStore;
+import org.iki.state.EventTimeClock;
 import org.jboss.logging.Logger;
 
 import java.util.List;
@@ -28,28 +35,113 @@ public class RuleEvaluatorVerticle {
     @Inject
     RuleCacheService ruleCacheService;
 
+    @Inject
+    Instance<EventStateStore> stateStoreInstances;
+
+    @Inject
+    EventTimeClock eventTimeClock;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    PipelineLatency latency;
+
+    private EventStateStore[] stateStores;
+    private EventStateStore[] historyStores;
+
+    @PostConstruct
+    void init() {
+        stateStores = stateStoreInstances.stream()
+                .filter(store -> store.phase() == EventStateStore.Phase.BEFORE_EVALUATION)
+                .toArray(EventStateStore[]::new);
+        historyStores = stateStoreInstances.stream()
+                .filter(store -> store.phase() == EventStateStore.Phase.AFTER_EVALUATION)
+                .toArray(EventStateStore[]::new);
+        LOG.infof("Registered %d stateful rule stores (%d recorded after evaluation)",
+                stateStores.length + historyStores.length, historyStores.length);
+    }
+
     /**
-     * Consumes transaction events from the event bus and evaluates them against all rules.
+     * Consumes transaction events from the event bus, evaluates them against all rules and emits alerts for the
+     * matches, recording how long each event waited since it was sent, how long its alerts took and, for traced
+     * events, the latency of each stage since its request arrived. Every event is counted as consumed and completed,
+     * so the pipeline's backlog is known.
      *
-     * @param event The transaction event to process
+     * @param message Event bus message carrying the transaction event
      */
     @ConsumeEvent(value = "transaction.process", blocking = true)
     @RunOnVirtualThread
-    public void processTransaction(TransactionEvent event) {
+    public void onTransaction(Message<TransactionEvent> message) {
+        long consumedAt = System.nanoTime();
+        metrics.recordConsumed();
+        try {
+            String dispatchedAt = message.headers().get(PipelineMetrics.DISPATCHED_AT_HEADER);
+            if (dispatchedAt != null) {
+                metrics.recordQueueWait(consumedAt - Long.parseLong(dispatchedAt));
+            }
+            TransactionEvent event = message.body();
+            List<RuleEvaluationResult> results = processTransaction(event);
+            long sinkAt = System.nanoTime();
+            handleMatchedRules(event, results);
+            long doneAt = System.nanoTime();
+            metrics.recordSink(doneAt - sinkAt);
+
+            String receivedAt = message.headers().get(PipelineLatency.RECEIVED_AT_HEADER);
+            if (receivedAt != null && dispatchedAt != null) {
+                latency.recordProcessing(Long.parseLong(receivedAt), Long.parseLong(dispatchedAt), consumedAt, sinkAt,
+                        doneAt);
+            }
+        } finally {
+            // Counted even if processing threw, so the in-flight count cannot drift upwards
+            metrics.recordCompleted();
+        }
+    }
+
+    /**
+     * Updates the stateful stores with a transaction event and evaluates it against all rules.
+     *
+     * @param event The transaction event to process
+     * @return evaluation results, empty if there are no rules or the evaluation failed
+     */
+    public List<RuleEvaluationResult> processTransaction(TransactionEvent event) {
         long startTime = System.nanoTime();
 
         try {
             LOG.debugf("Processing transaction for CIN: %s, Amount: %s",
                     event.cin(), event.amount());
 
+            // Update stateful stores first so windowed functions include the current event.
+            // Late events are still evaluated, but are kept out of windows the watermark has closed.
+            if (eventTimeClock.admit(event)) {
+                for (EventStateStore store : stateStores) {
+                    store.record(event);
+                }
+            } else {
+                LOG.debugf("Event for CIN %s at %s is outside the event-time watermark; windows not updated",
+                        event.cin(), event.transactedTime());
+            }
+
             List<Rule> rules = ruleCacheService.getCachedRules();
 
-            if (rules.isEmpty()) {
+            if (rules.isEmpty() && celRuleEngine.getCachedSequenceCount() == 0) {
                 LOG.warn("No rules available for evaluation");
-                return;
+                recordHistory(event);
+                return List.of();
             }
 
-            List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(event, rules);
+            long evaluationStart = System.nanoTime();
+            // Windowed functions answer for windows ending at this event, not at the newest event of any partition
+            eventTimeClock.beginEvaluation(event);
+            List<RuleEvaluationResult> results;
+            try {
+                results = celRuleEngine.evaluateEvent(event, rules);
+            } finally {
+                eventTimeClock.endEvaluation();
+            }
+            metrics.recordEvaluation(System.nanoTime() - evaluationStart);
+            // History stores record after evaluation so rules compare the event with prior state only
+            recordHistory(event);
 
             // Single-pass counting
             long matchedCount = 0;
@@ -65,12 +157,18 @@ public class RuleEvaluatorVerticle {
             long durationMs = (System.nanoTime() - startTime) / 1_000_000;
 
             LOG.infof("Processed CIN %s: %d/%d rules matched, %d errors, took %d ms",
-                    event.cin(), matchedCount, rules.size(), errorCount, durationMs);
-
-            handleMatchedRules(event, results);
+                    event.cin(), matchedCount, results.size(), errorCount, durationMs);
+            return results;
 
         } catch (Exception e) {
             LOG.errorf(e, "Error processing transaction for CIN: %s", event.cin());
+            return List.of();
+        }
+    }
+
+    private void recordHistory(TransactionEvent event) {
+        for (EventStateStore store : historyStores) {
+            store.record(event);
         }
     }
 
@@ -81,7 +179,9 @@ public class RuleEvaluatorVerticle {
     private void handleMatchedRules(TransactionEvent event, List<RuleEvaluationResult> results) {
         for (RuleEvaluationResult result : results) {
             if (result.matched()) {
-                LOG.infof("ALERT: Rule %d matched for transaction - CIN: %s, Debit: %s, Credit: %s, Amount: %s",
+                // Sequence rules are numbered apart from rules, so the kind tells the two ids apart
+                LOG.infof("ALERT: %s %d matched for transaction - CIN: %s, Debit: %s, Credit: %s, Amount: %s",
+                        result.kind() == RuleEvaluationResult.Kind.SEQUENCE ? "Sequence rule" : "Rule",
                         result.ruleId(),
                         event.cin(),
                         event.debitAccount(),
@@ -52,3 +52,28 @@ INSERT INTO rules (expression, description, active) VALUES
 -- Inactive rule iki
 INSERT INTO rules (expression, description, active) VALUES
 ('amount < 0', 'Negative amount detection (disabled)', false);
+
+-- =============================================================================
+-- Rule change log: one row per insert, update or delete, appended by triggers.
+-- Instances read it from MAX(seq) at startup and poll new entries to refresh
+-- as soon as a rule changes; deletes, which the updated_at delta cannot see,
+-- make them reload every rule. Entries past the retention are pruned through
+-- the changed_at index.
+-- =============================================================================
+
+CREATE TABLE IF NOT EXISTS rule_changes (
+    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+    rule_id BIGINT NOT NULL,
+    operation CHAR(1) NOT NULL,
+    changed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_rule_changes_changed_at (changed_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TRIGGER rules_after_insert AFTER INSERT ON rules FOR EACH ROW
+    INSERT INTO rule_changes (rule_id, operation) VALUES (NEW.id, 'I');
+
+CREATE TRIGGER rules_after_update AFTER UPDATE ON rules FOR EACH ROW
+    INSERT INTO rule_changes (rule_id, operation) VALUES (NEW.id, 'U');
+
+CREATE TRIGGER rules_after_delete AFTER DELETE ON rules FOR EACH ROW
+    INSERT INTO rule_changes (rule_id, operation) VALUES (OLD.id, 'D');
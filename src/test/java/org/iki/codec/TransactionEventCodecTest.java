@@ -1,6 +1,8 @@
 package org.iki.codec;
 
 import io.vertx.core.buffer.Buffer;
+import org.iki.model.AttributeSchema;
+import org.iki.model.EventAttributes;
 import org.iki.model.TransactionEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -34,6 +36,57 @@ class TransactionEventCodecTest {
         assertEquals(original.cin(), decoded.cin());
         assertEquals(0, original.amount().compareTo(decoded.amount()));
         assertEquals(original.transactedTime(), decoded.transactedTime());
+        assertNull(decoded.currency());
+    }
+
+    @Test
+    void currencyRoundTrip() {
+        TransactionEvent original = new TransactionEvent(
+                "ACC-001", "ACC-002", "CIN-123",
+                new BigDecimal("1500"), Instant.parse("2024-06-15T10:30:00Z"), "JPY");
+
+        Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, original);
+
+        TransactionEvent decoded = codec.decodeFromWire(0, buffer);
+        assertEquals("JPY", decoded.currency());
+        assertEquals(1500, decoded.amountMinor());
+    }
+
+    @Test
+    void attributesRoundTrip() {
+        AttributeSchema schema = AttributeSchema.parse(
+                "channel:string,merchantCategory:int,score:double,trusted:bool,deviceId:string");
+        TransactionEventCodec attributeCodec = new TransactionEventCodec(schema);
+        EventAttributes attributes = EventAttributes.builder(schema)
+                .setString(schema.attribute("channel"), "mobile-äpp")
+                .setLong(schema.attribute("merchantCategory"), 5411)
+                .setDouble(schema.attribute("score"), -0.25)
+                .setBoolean(schema.attribute("trusted"), true)
+                .build();
+        TransactionEvent original = new TransactionEvent(
+                "ACC-ü01", "ACC-002", "CIN-123",
+                new BigDecimal("10.00"), Instant.parse("2024-06-15T10:30:00Z"), "EUR", attributes);
+
+        Buffer buffer = Buffer.buffer();
+        attributeCodec.encodeToWire(buffer, original);
+
+        TransactionEvent decoded = attributeCodec.decodeFromWire(0, buffer);
+        assertEquals("ACC-ü01", decoded.debitAccount());
+        assertEquals(attributes, decoded.attributes());
+        assertFalse(decoded.attributes().isPresent(schema.attribute("deviceId")));
+    }
+
+    @Test
+    void eventWithoutAttributesDecodesToNone() {
+        TransactionEventCodec attributeCodec = new TransactionEventCodec(AttributeSchema.parse("channel:string"));
+        TransactionEvent event = new TransactionEvent(
+                "ACC-001", "ACC-002", "CIN-123", BigDecimal.ONE, Instant.EPOCH);
+
+        Buffer buffer = Buffer.buffer();
+        attributeCodec.encodeToWire(buffer, event);
+
+        assertSame(EventAttributes.NONE, attributeCodec.decodeFromWire(0, buffer).attributes());
     }
 
     @Test
@@ -111,11 +164,9 @@ class TransactionEventCodecTest {
 
     @Test
     void encodeUnicodeInAccounts() {
-        // The codec uses appendInt(encoded.length()) which stores character count,
-        // but getString needs byte offsets. Multi-byte chars cause mismatch.
-        // This test verifies ASCII-safe accounts work via the standard encode/decode path.
+        // The JSON length prefix is a byte count, so multi-byte characters decode correctly
         TransactionEvent event = new TransactionEvent(
-                "ACC-INTL-001", "ACC-INTL-002", "CIN-INTL",
+                "ACC-INTL-001", "KONTO-ÄÖÜ-002", "CIN-日本",
                 BigDecimal.TEN, Instant.now());
 
         Buffer buffer = Buffer.buffer();
@@ -123,6 +174,8 @@ class TransactionEventCodecTest {
 
         TransactionEvent decoded = codec.decodeFromWire(0, buffer);
         assertEquals("ACC-INTL-001", decoded.debitAccount());
+        assertEquals("KONTO-ÄÖÜ-002", decoded.creditAccount());
+        assertEquals("CIN-日本", decoded.cin());
     }
 
     @Test
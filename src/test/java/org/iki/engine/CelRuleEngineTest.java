@@ -2,14 +2,22 @@ package org.iki.engine;
 
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
+import org.iki.model.AttributeSchema;
+import org.iki.model.EventAttributes;
 import org.iki.model.Rule;
 import org.iki.model.RuleEvaluationResult;
+import org.iki.model.SequenceRule;
 import org.iki.model.TransactionEvent;
+import org.iki.state.CardinalityStore;
+import org.iki.state.ProfileStore;
+import org.iki.state.TransactionGraphStore;
+import org.iki.state.VelocityStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,6 +29,21 @@ class CelRuleEngineTest {
     @Inject
     CelRuleEngine celRuleEngine;
 
+    @Inject
+    VelocityStore velocityStore;
+
+    @Inject
+    CardinalityStore cardinalityStore;
+
+    @Inject
+    AttributeSchema attributeSchema;
+
+    @Inject
+    ProfileStore profileStore;
+
+    @Inject
+    TransactionGraphStore graphStore;
+
     private List<Rule> testRules;
 
     @BeforeEach
@@ -369,4 +392,730 @@ class CelRuleEngineTest {
         celRuleEngine.compileAndCacheRules(null);
         assertEquals(0, celRuleEngine.getCachedRuleCount());
     }
-}
\ No newline at end of file
+
+    // --- Velocity functions ---
+
+    @Test
+    void velocityFunctionsSeeRecordedEvents() {
+        List<Rule> rules = List.of(
+                new Rule(200L, "txCount(cin, \"1h\") >= 2"),
+                new Rule(201L, "txSum(debitAccount, \"24h\") > 1000.0"));
+        assertEquals(2, celRuleEngine.compileAndCacheRules(rules));
+
+        TransactionEvent first = event("VEL-ACC-1", "ACC-002", "VEL-CIN-1", "600.00");
+        velocityStore.record(first);
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(first, rules);
+        assertFalse(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+
+        TransactionEvent second = event("VEL-ACC-1", "ACC-002", "VEL-CIN-1", "500.00");
+        velocityStore.record(second);
+        results = celRuleEngine.evaluateEvent(second, rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+    }
+
+    @Test
+    void invalidVelocityWindowIsRejectedAtCompileTime() {
+        List<Rule> rules = List.of(new Rule(202L, "txCount(cin, \"1w\") > 0"));
+        assertEquals(0, celRuleEngine.compileAndCacheRules(rules));
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("ACC-001", "ACC-002", "CIN-123", "100.00"), rules);
+        assertTrue(results.get(0).hasError());
+        // Longer than the 24 x 1h coarse ring: rejected rather than answered for 24h
+        assertEquals(List.of("Window \"7d\" is longer than the longest velocity window of 86400 s"),
+                celRuleEngine.validate("txSum(debitAccount, \"7d\") > 1000.0"));
+        assertFalse(celRuleEngine.validate("txCount(cin, \"1h\", \"customer\") > 0").isEmpty());
+    }
+
+    @Test
+    void velocityKeyKindCanBeNamed() {
+        List<Rule> rules = List.of(
+                new Rule(203L, "txCount(cin, \"1h\", \"cin\") >= 1"),
+                new Rule(204L, "txCount(cin, \"1h\", \"account\") >= 1"));
+        assertEquals(2, celRuleEngine.compileAndCacheRules(rules));
+
+        TransactionEvent event = event("KIND-ACC-1", "ACC-002", "KIND-CIN-1", "10.00");
+        velocityStore.record(event);
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(event, rules);
+        assertTrue(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+    }
+
+    @Test
+    void velocityKeyKindIsResolvedFromTheKeyExpression() {
+        // The account shares its value with a recorded CIN; the rule still reads the account
+        TransactionEvent customer = event("ACC-X", "ACC-002", "SHARED-1", "10.00");
+        velocityStore.record(customer);
+        List<Rule> rules = List.of(new Rule(205L, "txCount(debitAccount, \"1h\") >= 1"));
+        assertEquals(1, celRuleEngine.compileAndCacheRules(rules));
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("SHARED-1", "ACC-002", "CIN-OTHER", "10.00"), rules);
+        assertFalse(results.get(0).matched());
+
+        assertEquals(List.of("Cannot tell whether the key of txSum() is a CIN or an account; "
+                        + "pass \"cin\" or \"account\" as a third argument"),
+                celRuleEngine.validate("txSum(\"SHARED-1\", \"1h\") > 0.0"));
+        assertTrue(celRuleEngine.validate("txSum(\"SHARED-1\", \"1h\", \"cin\") > 0.0").isEmpty());
+    }
+
+    // --- Cardinality functions ---
+
+    @Test
+    void distinctCounterpartiesDetectsFanOut() {
+        List<Rule> rules = List.of(new Rule(210L, "distinctCounterparties(debitAccount, \"24h\") >= 20"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        TransactionEvent last = null;
+        for (int i = 0; i < 30; i++) {
+            last = event("FAN-ACC-1", "MULE-" + i, "CIN-123", "100.00");
+            cardinalityStore.record(last);
+        }
+        assertTrue(celRuleEngine.evaluateEvent(last, rules).get(0).matched());
+
+        TransactionEvent quiet = event("QUIET-ACC-1", "ACC-002", "CIN-123", "100.00");
+        cardinalityStore.record(quiet);
+        assertFalse(celRuleEngine.evaluateEvent(quiet, rules).get(0).matched());
+    }
+
+    @Test
+    void cardinalityWindowLongerThanTheSketchesIsRejectedAtCompileTime() {
+        // Longer than the 8 x 3h buckets: rejected rather than estimated over 24h
+        assertEquals(List.of("Window \"7d\" is longer than the longest cardinality window of 86400 s"),
+                celRuleEngine.validate("distinctCounterparties(debitAccount, \"7d\") >= 20"));
+        assertTrue(celRuleEngine.validate("distinctSenders(creditAccount, \"24h\") >= 20").isEmpty());
+    }
+
+    @Test
+    void graphFunctionsDetectFanInAndRoundTrips() {
+        List<Rule> rules = List.of(
+                new Rule(215L, "inDegree(creditAccount, \"1h\") >= 5"),
+                new Rule(216L, "inCycle(creditAccount, 3, \"24h\")"),
+                new Rule(217L, "outDegree(debitAccount, \"1h\") == 1"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        for (int i = 0; i < 5; i++) {
+            graphStore.record(event("GRAPH-SRC-" + i, "GRAPH-MULE", "CIN-123", "100.00"));
+        }
+        graphStore.record(event("GRAPH-A", "GRAPH-B", "CIN-123", "100.00"));
+        graphStore.record(event("GRAPH-B", "GRAPH-C", "CIN-123", "100.00"));
+        TransactionEvent closing = event("GRAPH-C", "GRAPH-A", "CIN-123", "100.00");
+        graphStore.record(closing);
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("GRAPH-SRC-0", "GRAPH-MULE", "CIN-123", "100.00"), rules);
+        assertTrue(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+        assertTrue(results.get(2).matched());
+
+        results = celRuleEngine.evaluateEvent(closing, rules);
+        assertFalse(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+    }
+
+    @Test
+    void graphWindowLongerThanTheRetentionIsRejectedAtCompileTime() {
+        assertEquals(List.of("Window \"7d\" is longer than the graph retention of 86400 s"),
+                celRuleEngine.validate("inDegree(creditAccount, \"7d\") >= 5"));
+        assertEquals(List.of("Window \"7d\" is longer than the graph retention of 86400 s"),
+                celRuleEngine.validate("inCycle(creditAccount, 3, \"7d\")"));
+        assertTrue(celRuleEngine.validate("outDegree(debitAccount, \"24h\") == 1").isEmpty());
+    }
+
+    @Test
+    void inCycleRejectsUnsupportedDepth() {
+        List<Rule> rules = List.of(new Rule(218L, "inCycle(debitAccount, 9, \"24h\")"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        assertTrue(celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-123", "10.00"), rules)
+                .get(0).hasError());
+    }
+
+    // --- Indexed string predicates ---
+
+    @Test
+    void indexedStringPredicatesAgreeWithStringMethods() {
+        List<Rule> rules = List.of(
+                new Rule(220L, "debitAccount.startsWith(\"SUSP-\") && !cin.startsWith(\"VIP-\")"),
+                new Rule(221L, "creditAccount.contains(\"OFF\") || creditAccount.contains(\"SHORE\")"),
+                new Rule(222L, "cin.contains(\"\\\"q\\\"\") || debitAccount.endsWith(\"-9\")"),
+                new Rule(223L, "amount > 100.0 && debitAccount.contains(\"OFF\")"));
+        assertEquals(4, celRuleEngine.compileAndCacheRules(rules));
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("SUSP-1", "ACC-SHORE", "CIN-\"q\"", "50.00"), rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+        assertTrue(results.get(2).matched());
+        assertFalse(results.get(3).matched());
+
+        results = celRuleEngine.evaluateEvent(event("OFF-9", "ACC-2", "VIP-1", "150.00"), rules);
+        assertFalse(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+        assertTrue(results.get(2).matched());
+        assertTrue(results.get(3).matched());
+    }
+
+    // --- Linear-time regex ---
+
+    @Test
+    void constantRegexMatchesUseLinearEngine() {
+        List<Rule> rules = List.of(
+                new Rule(230L, "cin.matches(\"^CIN-[0-9]{3}$\")"),
+                new Rule(231L, "matches(debitAccount, \"OFF\") && amount > 10.0"));
+        assertEquals(2, celRuleEngine.compileAndCacheRules(rules));
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("ACC-OFF-1", "ACC-002", "CIN-123", "100.00"), rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+
+        results = celRuleEngine.evaluateEvent(event("ACC-001", "ACC-002", "CIN-1234", "100.00"), rules);
+        assertFalse(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+    }
+
+    @Test
+    void backtrackingRegexIsRejectedAtCompileTime() {
+        int compiled = celRuleEngine.compileAndCacheRules(List.of(
+                new Rule(232L, "cin.matches(\"(a+)\\\\1\")"),
+                new Rule(233L, "cin.matches(\"^VIP-(?=[0-9])\")"),
+                new Rule(234L, "cin.matches(\"^VIP-\")")));
+        assertEquals(1, compiled);
+    }
+
+    @Test
+    void adversarialRegexInputCompletesQuickly() {
+        List<Rule> rules = List.of(new Rule(235L, "cin.matches(\"^(a+)+$\")"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        long start = System.nanoTime();
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("ACC-001", "ACC-002", "a".repeat(5000) + "!", "100.00"), rules);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertFalse(results.get(0).matched());
+        assertTrue(elapsedMs < 1000, "adversarial input took " + elapsedMs + " ms");
+    }
+
+    // --- Partial-result cache ---
+
+    @Test
+    void singleVariableSubExpressionsAreMemoisedPerValue() {
+        List<Rule> rules = List.of(
+                new Rule(240L, "amount > 100.0 && (cin.endsWith(\"-X\") || cin.matches(\"^TMP-\"))"),
+                new Rule(241L, "debitAccount.endsWith(\"-9\") && creditAccount != debitAccount"),
+                new Rule(242L, "cin.endsWith(\"-X\") || cin.matches(\"^TMP-\")"));
+        assertEquals(3, celRuleEngine.compileAndCacheRules(rules));
+        assertEquals(2, celRuleEngine.getPartialCacheStats().expressions());
+
+        TransactionEvent first = event("ACC-9", "ACC-2", "CIN-X", "150.00");
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(first, rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+        assertTrue(results.get(2).matched());
+
+        results = celRuleEngine.evaluateEvent(event("ACC-9", "ACC-9", "CIN-X", "50.00"), rules);
+        assertFalse(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+        assertTrue(results.get(2).matched());
+
+        results = celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "TMP-1", "150.00"), rules);
+        assertTrue(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+        assertTrue(results.get(2).matched());
+
+        CelRuleEngine.PartialCacheStats stats = celRuleEngine.getPartialCacheStats();
+        assertEquals(4, stats.entries());
+        assertTrue(stats.hits() > 0);
+        assertTrue(stats.hitRate() > 0.0);
+    }
+
+    @Test
+    void partialCacheIsResetWhenRulesAreRecompiled() {
+        List<Rule> rules = List.of(new Rule(243L, "cin.endsWith(\"-X\")"));
+        celRuleEngine.compileAndCacheRules(rules);
+        celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-X", "10.00"), rules);
+        celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-X", "10.00"), rules);
+        assertEquals(1, celRuleEngine.getPartialCacheStats().hits());
+
+        celRuleEngine.compileAndCacheRules(rules);
+        CelRuleEngine.PartialCacheStats stats = celRuleEngine.getPartialCacheStats();
+        assertEquals(0, stats.entries());
+        assertEquals(0, stats.hits());
+    }
+
+    @Test
+    void indexedAndStatefulPredicatesAreNotMemoised() {
+        celRuleEngine.compileAndCacheRules(List.of(
+                new Rule(244L, "debitAccount.startsWith(\"SUSP-\") || debitAccount.contains(\"OFF\")"),
+                new Rule(245L, "txCount(cin, \"1h\") > 3 && cin.endsWith(\"-X\")")));
+        // Only cin.endsWith("-X") qualifies: the first rule is served by the string index, txCount is stateful
+        assertEquals(1, celRuleEngine.getPartialCacheStats().expressions());
+    }
+
+    // --- Optimisation pass ---
+
+    @Test
+    void cheapNumericGuardsAreMovedFirst() {
+        celRuleEngine.compileAndCacheRules(List.of(new Rule(250L, "amount == double(int(amount)) && amount >= 1000.0")));
+
+        CelRuleEngine.RuleOptimization optimization = celRuleEngine.getRuleOptimizations().get(0);
+        assertEquals("(amount >= 1000.0) && (amount == double(int(amount)))", optimization.optimizedExpression());
+        assertTrue(optimization.optimizations().contains("operand-reordering"));
+        assertNull(optimization.sharesProgramWith());
+    }
+
+    @Test
+    void constantsAreFoldedAndComparisonsCanonicalised() {
+        List<Rule> rules = List.of(new Rule(251L, "1000.0 <= amount && (2 + 3 > 4)"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        CelRuleEngine.RuleOptimization optimization = celRuleEngine.getRuleOptimizations().get(0);
+        assertEquals("amount >= 1000.0", optimization.optimizedExpression());
+        assertTrue(optimization.optimizations().contains("constant-folding"));
+        assertTrue(optimization.optimizations().contains("operand-canonicalisation"));
+
+        assertTrue(celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "1000.00"), rules).get(0).matched());
+        assertFalse(celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "999.99"), rules).get(0).matched());
+    }
+
+    @Test
+    void doubleComparisonsAreFoldedWithIeeeEquality() {
+        // 0.0 * -1.0 is -0.0, which CEL compares equal to 0.0
+        List<Rule> rules = List.of(new Rule(255L, "amount > 10.0 && 0.0 * -1.0 == 0.0 && -0.0 >= 0.0"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        assertEquals("amount > 10.0", celRuleEngine.getRuleOptimizations().get(0).optimizedExpression());
+        assertTrue(celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "20.00"), rules).get(0).matched());
+    }
+
+    @Test
+    void rulesWithIdenticalNormalisedExpressionsShareAProgram() {
+        List<Rule> rules = List.of(
+                new Rule(252L, "debitAccount == creditAccount"),
+                new Rule(253L, "true && creditAccount == debitAccount"),
+                new Rule(254L, "amount > 10.0"));
+        assertEquals(3, celRuleEngine.compileAndCacheRules(rules));
+
+        List<CelRuleEngine.RuleOptimization> optimizations = celRuleEngine.getRuleOptimizations();
+        assertNull(optimizations.get(0).sharesProgramWith());
+        assertEquals(252L, optimizations.get(1).sharesProgramWith());
+        assertTrue(optimizations.get(1).optimizations().contains("shared-program"));
+        assertNull(optimizations.get(2).sharesProgramWith());
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(event("ACC-1", "ACC-1", "CIN-1", "5.00"), rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+        assertFalse(results.get(2).matched());
+        assertEquals(253L, results.get(1).ruleId());
+    }
+
+    // --- Single-rule updates ---
+
+    @Test
+    void validateReturnsCompilerErrors() {
+        assertTrue(celRuleEngine.validate("amount > 10.0 && cin.startsWith(\"VIP-\")").isEmpty());
+        assertFalse(celRuleEngine.validate("amount >").isEmpty());
+        assertFalse(celRuleEngine.validate("unknownField > 1").isEmpty());
+        assertTrue(celRuleEngine.validate("amount + 1.0").get(0).contains("bool"));
+    }
+
+    @Test
+    void unknownWatchlistIsRejectedAtCompileTime() {
+        assertEquals(List.of("Unknown watchlist: no-such-list"),
+                celRuleEngine.validate("inList(\"no-such-list\", debitAccount)"));
+        // A list name computed at evaluation cannot be checked up front
+        assertTrue(celRuleEngine.validate("inList(cin, debitAccount)").isEmpty());
+        assertFalse(celRuleEngine.upsertRule(new Rule(9L, "inList(\"no-such-list\", debitAccount)")));
+    }
+
+    @Test
+    void upsertedRuleIsCompiledAlongsideTheCachedRules() {
+        Rule added = new Rule(9L, "debitAccount.startsWith(\"NEW-\")");
+        assertTrue(celRuleEngine.upsertRule(added));
+        List<Rule> rules = new ArrayList<>(testRules);
+        rules.add(added);
+
+        assertEquals(9, celRuleEngine.getCachedRuleCount());
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("NEW-001", "SUSP-002", "VIP-1", "10.00"), rules);
+        // Existing indexed prefixes keep their slots next to the new one
+        assertTrue(results.get(3).matched());
+        assertTrue(results.get(6).matched());
+        assertTrue(results.get(8).matched());
+        assertFalse(celRuleEngine.evaluateEvent(event("OLD-001", "ACC-002", "CIN-1", "10.00"), rules)
+                .get(8).matched());
+    }
+
+    @Test
+    void upsertReplacesTheRuleWithTheSameId() {
+        Rule replaced = new Rule(1L, "amount > 100.0");
+        assertTrue(celRuleEngine.upsertRule(replaced));
+
+        assertEquals(8, celRuleEngine.getCachedRuleCount());
+        assertTrue(celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "500.00"), List.of(replaced))
+                .get(0).matched());
+    }
+
+    @Test
+    void upsertOfAnInvalidRuleKeepsTheCompiledRules() {
+        assertFalse(celRuleEngine.upsertRule(new Rule(1L, "amount >")));
+
+        assertEquals(8, celRuleEngine.getCachedRuleCount());
+        assertTrue(celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "15000.00"), testRules)
+                .get(0).matched());
+    }
+
+    @Test
+    void repeatedUpsertsReuseGroupIndexesUntilCompaction() {
+        celRuleEngine.compileAndCacheRules(testRules);
+        int groupCount = celRuleEngine.getGroupCount();
+
+        for (int write = 0; write < 40; write++) {
+            assertTrue(celRuleEngine.upsertRule(new Rule(9L, "amount > " + write + ".5")));
+            assertEquals(groupCount + 1, celRuleEngine.getGroupCount());
+            // Each write after the first drops the previous program of rule 9
+            assertEquals(write >= 32, celRuleEngine.needsCompaction());
+        }
+        assertTrue(celRuleEngine.removeRule(9L));
+        assertEquals(groupCount, celRuleEngine.getGroupCount());
+
+        celRuleEngine.compileAndCacheRules(testRules);
+        assertFalse(celRuleEngine.needsCompaction());
+    }
+
+    @Test
+    void removingAGroupLeaderHandsItsProgramToTheNextRule() {
+        List<Rule> rules = List.of(
+                new Rule(255L, "debitAccount == creditAccount"),
+                new Rule(256L, "true && creditAccount == debitAccount"),
+                new Rule(257L, "debitAccount == creditAccount"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        assertTrue(celRuleEngine.removeRule(255L));
+        assertFalse(celRuleEngine.removeRule(255L));
+
+        List<CelRuleEngine.RuleOptimization> optimizations = celRuleEngine.getRuleOptimizations();
+        assertEquals(2, optimizations.size());
+        assertNull(optimizations.get(0).sharesProgramWith());
+        assertFalse(optimizations.get(0).optimizations().contains("shared-program"));
+        assertEquals(256L, optimizations.get(1).sharesProgramWith());
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("ACC-1", "ACC-1", "CIN-1", "5.00"), rules.subList(1, 3));
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+    }
+
+    @Test
+    void ruleCountersCountMatchesAndErrorsAcrossSnapshots() {
+        List<Rule> rules = List.of(
+                new Rule(258L, "amount > 100.0"),
+                new Rule(259L, "hourOfDay(transactedTimeEpochSeconds, \"Mars/Olympus\") > 3"));
+        celRuleEngine.compileAndCacheRules(rules);
+        RuleCounters matching = celRuleEngine.getRuleCounters().get(258L);
+        RuleCounters failing = celRuleEngine.getRuleCounters().get(259L);
+
+        celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "500.00"), rules);
+        celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "50.00"), rules);
+        assertEquals(1, matching.getMatches());
+        assertEquals(0, matching.getErrors());
+        assertEquals(2, failing.getErrors());
+
+        // Recompiles and single-rule updates keep the counters of rule ids they keep
+        celRuleEngine.compileAndCacheRules(rules);
+        assertTrue(celRuleEngine.upsertRule(new Rule(258L, "amount > 10.0")));
+        assertSame(matching, celRuleEngine.getRuleCounters().get(258L));
+        assertSame(failing, celRuleEngine.getRuleCounters().get(259L));
+
+        assertTrue(celRuleEngine.removeRule(258L));
+        assertTrue(celRuleEngine.upsertRule(rules.get(0)));
+        assertNotSame(matching, celRuleEngine.getRuleCounters().get(258L));
+        assertEquals(0, celRuleEngine.getRuleCounters().get(258L).getMatches());
+    }
+
+    @Test
+    void optimisedSampleRulesKeepTheirResults() {
+        // Same events as the per-rule tests above; the optimiser reorders rules 5, 6 and 8
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("OFF-001", "ACC-002", "CIN-1", "25001.00"), testRules);
+        assertTrue(results.get(4).matched());
+        assertTrue(results.get(5).matched());
+        assertTrue(results.get(7).matched());
+    }
+
+    // --- Domain functions ---
+
+    @Test
+    void domainFunctionsAgreeWithPureCelEquivalents() {
+        List<Rule> rules = List.of(
+                new Rule(260L, "isRound(amount, 1000)"),
+                new Rule(261L, "amount == double(int(amount)) && int(amount) % 1000 == 0"),
+                new Rule(262L, "between(amount, 1000.0, 5000.0)"),
+                new Rule(263L, "anyStartsWith([debitAccount, creditAccount], \"SUSP-\")"),
+                new Rule(264L, "between(hourOfDay(transactedTimeEpochSeconds, \"UTC\"), 0, 23)"));
+        assertEquals(5, celRuleEngine.compileAndCacheRules(rules));
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("ACC-001", "SUSP-002", "CIN-123", "3000.00"), rules);
+        results.forEach(result -> assertTrue(result.matched(), "rule " + result.ruleId()));
+
+        results = celRuleEngine.evaluateEvent(event("ACC-001", "ACC-002", "CIN-123", "5000.50"), rules);
+        assertFalse(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+        assertFalse(results.get(2).matched());
+        assertFalse(results.get(3).matched());
+        assertTrue(results.get(4).matched());
+    }
+
+    @Test
+    void unknownTimeZoneReturnsError() {
+        List<Rule> rules = List.of(new Rule(265L, "hourOfDay(transactedTimeEpochSeconds, \"Mars/Olympus\") > 3"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        assertTrue(celRuleEngine.evaluateEvent(event("ACC-001", "ACC-002", "CIN-123", "10.00"), rules)
+                .get(0).hasError());
+    }
+
+    // --- Fixed-point amounts ---
+
+    @Test
+    void amountMinorUsesCurrencyScale() {
+        List<Rule> rules = List.of(new Rule(270L, "amountMinor >= 100000"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        assertTrue(celRuleEngine.evaluateEvent(new TransactionEvent("ACC-1", "ACC-2", "CIN-1",
+                new BigDecimal("1000.00"), Instant.now(), "EUR"), rules).get(0).matched());
+        assertFalse(celRuleEngine.evaluateEvent(new TransactionEvent("ACC-1", "ACC-2", "CIN-1",
+                new BigDecimal("1000"), Instant.now(), "JPY"), rules).get(0).matched());
+    }
+
+    @Test
+    void amountLiteralComparisonsAreExact() {
+        // 70368744177664.0001 is 70368744177664.0 as a double; the rewritten comparison sees the fourth decimal
+        List<Rule> rules = List.of(
+                new Rule(271L, "amount > 70368744177664.0"),
+                new Rule(272L, "70368744177664.0 != amount"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("ACC-1", "ACC-2", "CIN-1", "70368744177664.0001"), rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+    }
+
+    @Test
+    void amountComparisonsWorkAcrossCurrencyScales() {
+        List<Rule> rules = List.of(new Rule(273L, "amount >= 1000.5"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        assertTrue(celRuleEngine.evaluateEvent(new TransactionEvent("ACC-1", "ACC-2", "CIN-1",
+                new BigDecimal("1001"), Instant.now(), "JPY"), rules).get(0).matched());
+        assertTrue(celRuleEngine.evaluateEvent(new TransactionEvent("ACC-1", "ACC-2", "CIN-1",
+                new BigDecimal("1000.500"), Instant.now(), "KWD"), rules).get(0).matched());
+        assertFalse(celRuleEngine.evaluateEvent(new TransactionEvent("ACC-1", "ACC-2", "CIN-1",
+                new BigDecimal("1000.49"), Instant.now(), "EUR"), rules).get(0).matched());
+    }
+
+    @Test
+    void amountComparisonsDoNotRoundToTheCurrencyScale() {
+        List<Rule> rules = List.of(
+                new Rule(274L, "amount > 1000.0"),
+                new Rule(275L, "amount >= 1000.0"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        // Just above the threshold, with more fraction digits than the default scale of 2
+        List<RuleEvaluationResult> above = celRuleEngine.evaluateEvent(
+                event("ACC-1", "ACC-2", "CIN-1", "1000.004"), rules);
+        assertTrue(above.get(0).matched());
+        assertTrue(above.get(1).matched());
+
+        // A JPY fraction below the threshold would round up to 1000 yen
+        List<RuleEvaluationResult> yen = celRuleEngine.evaluateEvent(new TransactionEvent("ACC-1", "ACC-2",
+                "CIN-1", new BigDecimal("999.5"), Instant.now(), "JPY"), rules);
+        assertFalse(yen.get(0).matched());
+        assertFalse(yen.get(1).matched());
+    }
+
+    @Test
+    void amountComparisonsKeepDigitsBeyondTheMaxScale() {
+        // Both amounts are 70368744177664.0 as doubles; the fifth decimal still decides
+        List<Rule> rules = List.of(
+                new Rule(276L, "amount > 70368744177664.0"),
+                new Rule(277L, "amount >= 70368744177664.0"),
+                new Rule(278L, "amount == 70368744177664.0"),
+                new Rule(279L, "amount <= 70368744177664.0"),
+                new Rule(266L, "70368744177664.0 > amount"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        List<Boolean> above = celRuleEngine.evaluateEvent(
+                event("ACC-1", "ACC-2", "CIN-1", "70368744177664.00004"), rules)
+                .stream().map(RuleEvaluationResult::matched).toList();
+        assertEquals(List.of(true, true, false, false, false), above);
+        List<Boolean> below = celRuleEngine.evaluateEvent(
+                event("ACC-1", "ACC-2", "CIN-1", "70368744177663.99996"), rules)
+                .stream().map(RuleEvaluationResult::matched).toList();
+        assertEquals(List.of(false, false, false, true, true), below);
+    }
+
+    @Test
+    void amountsBeyondLongMinorUnitsOnlyFailAmountMinor() {
+        List<Rule> rules = List.of(
+                new Rule(267L, "amount > 1000.0"),
+                new Rule(268L, "amountMinor > 0"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(
+                event("ACC-1", "ACC-2", "CIN-1", "100000000000000000"), rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).hasError());
+    }
+
+    // --- Event attributes ---
+
+    @Test
+    void configuredAttributesAreTypedVariables() {
+        List<Rule> rules = List.of(
+                new Rule(280L, "channel == \"atm\" && merchantCategory == 6011"),
+                new Rule(281L, "country != \"DE\" && currency == \"EUR\""));
+        assertEquals(2, celRuleEngine.compileAndCacheRules(rules));
+
+        EventAttributes attributes = EventAttributes.builder(attributeSchema)
+                .setString(attributeSchema.attribute("channel"), "atm")
+                .setString(attributeSchema.attribute("country"), "FR")
+                .setLong(attributeSchema.attribute("merchantCategory"), 6011)
+                .build();
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(new TransactionEvent("ACC-1", "ACC-2",
+                "CIN-1", new BigDecimal("200.00"), Instant.now(), "EUR", attributes), rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+    }
+
+    @Test
+    void absentAttributesReadAsZeroValues() {
+        List<Rule> rules = List.of(new Rule(282L, "channel == \"\" && merchantCategory == 0 && currency == \"\""));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        RuleEvaluationResult result = celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-1", "10.00"), rules).get(0);
+        assertFalse(result.hasError());
+        assertTrue(result.matched());
+    }
+
+    @Test
+    void attributeTypesAreChecked() {
+        assertEquals(0, celRuleEngine.compileAndCacheRules(List.of(new Rule(283L, "merchantCategory == \"6011\""))));
+    }
+
+    // --- Customer profiles ---
+
+    @Test
+    void profileVariablesReflectHistoryBeforeTheCurrentEvent() {
+        List<Rule> rules = List.of(
+                new Rule(290L, "profile.txCount >= 3 && amount > 10.0 * profile.avgAmount"),
+                new Rule(291L, "profile.txCount > 0 && !profile.knownCounterparty"),
+                new Rule(292L, "transactedTimeEpochSeconds - profile.lastTxEpochSeconds < 60"));
+        assertEquals(3, celRuleEngine.compileAndCacheRules(rules));
+
+        Instant start = Instant.parse("2024-06-15T10:00:00Z");
+        for (int i = 0; i < 3; i++) {
+            profileStore.record(new TransactionEvent("ACC-PRF", "ACC-KNOWN", "CIN-PROFILE-1",
+                    new BigDecimal("100.00"), start.plusSeconds(i * 3600)));
+        }
+
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(new TransactionEvent("ACC-PRF", "ACC-NEW",
+                "CIN-PROFILE-1", new BigDecimal("1500.00"), start.plusSeconds(2 * 3600 + 30)), rules);
+        assertTrue(results.get(0).matched());
+        assertTrue(results.get(1).matched());
+        assertTrue(results.get(2).matched());
+
+        results = celRuleEngine.evaluateEvent(new TransactionEvent("ACC-PRF", "ACC-KNOWN",
+                "CIN-PROFILE-1", new BigDecimal("150.00"), start.plusSeconds(5 * 3600)), rules);
+        assertFalse(results.get(0).matched());
+        assertFalse(results.get(1).matched());
+        assertFalse(results.get(2).matched());
+    }
+
+    @Test
+    void customerWithoutProfileReadsZeroValues() {
+        List<Rule> rules = List.of(new Rule(293L, "profile.txCount == 0 && profile.avgAmount == 0.0"));
+        celRuleEngine.compileAndCacheRules(rules);
+
+        assertTrue(celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-PROFILE-NONE", "10.00"), rules)
+                .get(0).matched());
+    }
+
+    // --- Sequence rules ---
+
+    @Test
+    void sequenceRuleMatchesWhenStepsFollowWithinWindow() {
+        List<Rule> rules = List.of(new Rule(300L, "amount > 1000000.0"));
+        SequenceRule layering = new SequenceRule(301L,
+                List.of("amount >= 10000.0", "amount >= 1000.0 && creditAccount.startsWith(\"NEW-\")"), "30m");
+        celRuleEngine.compileAndCacheRules(rules, List.of(layering));
+
+        Instant start = Instant.parse("2024-06-15T10:00:00Z");
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(new TransactionEvent("ACC-SEQ", "ACC-1",
+                "CIN-SEQ-1", new BigDecimal("20000.00"), start), rules);
+        assertEquals(2, results.size());
+        assertEquals(RuleEvaluationResult.Kind.RULE, results.get(0).kind());
+        assertEquals(301L, results.get(1).ruleId());
+        assertEquals(RuleEvaluationResult.Kind.SEQUENCE, results.get(1).kind());
+        assertFalse(results.get(1).matched());
+
+        // Intermediate events that satisfy no step are skipped
+        assertFalse(celRuleEngine.evaluateEvent(new TransactionEvent("ACC-SEQ", "ACC-2", "CIN-SEQ-1",
+                new BigDecimal("50.00"), start.plusSeconds(300)), rules).get(1).matched());
+        // Another customer's transfer does not continue this customer's sequence
+        assertFalse(celRuleEngine.evaluateEvent(new TransactionEvent("ACC-OTHER", "NEW-9", "CIN-SEQ-2",
+                new BigDecimal("5000.00"), start.plusSeconds(600)), rules).get(1).matched());
+
+        RuleEvaluationResult completed = celRuleEngine.evaluateEvent(new TransactionEvent("ACC-SEQ", "NEW-1",
+                "CIN-SEQ-1", new BigDecimal("5000.00"), start.plusSeconds(900)), rules).get(1);
+        assertTrue(completed.matched());
+        assertEquals(layering.expression(), completed.expression());
+    }
+
+    @Test
+    void sequenceRuleDoesNotMatchOutsideWindow() {
+        SequenceRule layering = new SequenceRule(302L,
+                List.of("amount >= 10000.0", "creditAccount.startsWith(\"NEW-\")"), "30m");
+        celRuleEngine.compileAndCacheRules(List.of(), List.of(layering));
+
+        Instant start = Instant.parse("2024-06-15T10:00:00Z");
+        celRuleEngine.evaluateEvent(new TransactionEvent("ACC-SEQ", "ACC-1", "CIN-SEQ-3",
+                new BigDecimal("20000.00"), start), List.of());
+        List<RuleEvaluationResult> results = celRuleEngine.evaluateEvent(new TransactionEvent("ACC-SEQ", "NEW-1",
+                "CIN-SEQ-3", new BigDecimal("5000.00"), start.plusSeconds(31 * 60)), List.of());
+
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).matched());
+    }
+
+    @Test
+    void sequenceRuleWithInvalidStepOrWindowIsSkipped() {
+        celRuleEngine.compileAndCacheRules(testRules, List.of(
+                new SequenceRule(303L, List.of("amount >", "amount > 1.0"), "30m"),
+                new SequenceRule(304L, List.of("amount > 1.0", "amount > 2.0"), "30x"),
+                new SequenceRule(305L, List.of("amount > 1.0", "amount > 2.0"), "1h")));
+
+        assertEquals(1, celRuleEngine.getCachedSequenceCount());
+        assertEquals(1, celRuleEngine.getSequenceStats().rules());
+    }
+
+    @Test
+    void partialMatchMemoryIsReported() {
+        SequenceRule rule = new SequenceRule(306L, List.of("amount >= 10000.0", "amount >= 1000.0"), "30m");
+        celRuleEngine.compileAndCacheRules(List.of(), List.of(rule));
+
+        for (int i = 0; i < 10; i++) {
+            celRuleEngine.evaluateEvent(event("ACC-1", "ACC-2", "CIN-SEQ-MEM-" + i, "20000.00"), List.of());
+        }
+
+        CelRuleEngine.SequenceStats stats = celRuleEngine.getSequenceStats();
+        assertEquals(10, stats.partialMatches());
+        assertTrue(stats.memoryBytes() > 0);
+        assertTrue(stats.partialMatches() <= stats.maxPartialMatches());
+    }
+}
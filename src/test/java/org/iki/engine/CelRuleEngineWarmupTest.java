@@ -0,0 +1,59 @@
+package org.iki.engine;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.iki.model.Rule;
+import org.iki.model.TransactionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@TestProfile(CelRuleEngineWarmupTest.WarmupProfile.class)
+class CelRuleEngineWarmupTest {
+
+    public static class WarmupProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "app.rules.warmup.enabled", "true",
+                    "app.rules.warmup.events", "32",
+                    "app.rules.warmup.passes", "3",
+                    "app.rules.warmup.max-duration", "5s");
+        }
+    }
+
+    @Inject
+    CelRuleEngine celRuleEngine;
+
+    @Test
+    void compileWarmsUpProgramsBeforeTheSwap() {
+        List<Rule> rules = List.of(
+                new Rule(1L, "amount > 10000.0"),
+                new Rule(2L, "debitAccount.startsWith(\"SUSP-\") && debitAccount.matches(\"^SUSP-[0-9]+$\")"));
+        CelRuleEngine.CompileStats stats = celRuleEngine.compile(rules, List.of());
+
+        CelRuleEngine.WarmupStats warmup = stats.warmup();
+        assertNotNull(warmup);
+        assertEquals(32, warmup.events());
+        assertEquals(3, warmup.passes());
+        assertTrue(warmup.coldMicrosPerEvent() > 0);
+        assertEquals(warmup.coldMicrosPerEvent() - warmup.warmMicrosPerEvent(), warmup.latencyDeltaMicros(), 1e-9);
+
+        TransactionEvent event = new TransactionEvent("SUSP-42", "ACC-1", "CIN-1", new BigDecimal("20000.00"),
+                Instant.now());
+        assertTrue(celRuleEngine.evaluateEvent(event, rules).stream().allMatch(result -> result.matched()));
+    }
+
+    @Test
+    void emptyRuleSetIsNotWarmedUp() {
+        assertNull(celRuleEngine.compile(List.of(), List.of()).warmup());
+    }
+}
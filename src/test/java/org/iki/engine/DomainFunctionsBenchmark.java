@@ -0,0 +1,121 @@
+package org.iki.engine;
+
+import dev.cel.common.types.SimpleType;
+import dev.cel.compiler.CelCompiler;
+import dev.cel.compiler.CelCompilerFactory;
+import dev.cel.runtime.CelRuntime;
+import dev.cel.runtime.CelRuntimeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Native {@link DomainFunctions} versus the pure-CEL expressions analysts write for the same checks.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=DomainFunctionsBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class DomainFunctionsBenchmark {
+
+    private Map<String, Object> variables;
+    private CelRuntime.Program roundCel;
+    private CelRuntime.Program roundNative;
+    private CelRuntime.Program rangeCel;
+    private CelRuntime.Program rangeNative;
+    private CelRuntime.Program prefixCel;
+    private CelRuntime.Program prefixNative;
+    private CelRuntime.Program hourCel;
+    private CelRuntime.Program hourNative;
+
+    @Setup
+    public void setUp() throws Exception {
+        DomainFunctions functions = new DomainFunctions();
+        CelCompiler compiler = CelCompilerFactory.standardCelCompilerBuilder()
+                .addVar("debitAccount", SimpleType.STRING)
+                .addVar("creditAccount", SimpleType.STRING)
+                .addVar("amount", SimpleType.DOUBLE)
+                .addVar("transactedTimeEpochSeconds", SimpleType.INT)
+                .addFunctionDeclarations(functions.functionDeclarations())
+                .build();
+        CelRuntime runtime = CelRuntimeFactory.standardCelRuntimeBuilder()
+                .addFunctionBindings(functions.functionBindings())
+                .build();
+
+        roundCel = program(compiler, runtime, "amount == double(int(amount)) && int(amount) % 1000 == 0");
+        roundNative = program(compiler, runtime, "isRound(amount, 1000)");
+        rangeCel = program(compiler, runtime, "amount >= 1000.0 && amount <= 5000.0");
+        rangeNative = program(compiler, runtime, "between(amount, 1000.0, 5000.0)");
+        prefixCel = program(compiler, runtime,
+                "debitAccount.startsWith(\"SUSP-\") || creditAccount.startsWith(\"SUSP-\")");
+        prefixNative = program(compiler, runtime, "anyStartsWith([debitAccount, creditAccount], \"SUSP-\")");
+        // Pure CEL can only do fixed offsets; the native version applies the zone's rules
+        hourCel = program(compiler, runtime, "transactedTimeEpochSeconds % 86400 / 3600");
+        hourNative = program(compiler, runtime, "hourOfDay(transactedTimeEpochSeconds, \"UTC\")");
+
+        variables = Map.of(
+                "debitAccount", "ACC-0000012345",
+                "creditAccount", "SUSP-0000067890",
+                "amount", 3000.0,
+                "transactedTimeEpochSeconds", 1_718_447_400L
+        );
+    }
+
+    private static CelRuntime.Program program(CelCompiler compiler, CelRuntime runtime, String expression)
+            throws Exception {
+        return runtime.createProgram(compiler.compile(expression).getAst());
+    }
+
+    @Benchmark
+    public Object isRoundPureCel() throws Exception {
+        return roundCel.eval(variables);
+    }
+
+    @Benchmark
+    public Object isRoundNative() throws Exception {
+        return roundNative.eval(variables);
+    }
+
+    @Benchmark
+    public Object betweenPureCel() throws Exception {
+        return rangeCel.eval(variables);
+    }
+
+    @Benchmark
+    public Object betweenNative() throws Exception {
+        return rangeNative.eval(variables);
+    }
+
+    @Benchmark
+    public Object anyStartsWithPureCel() throws Exception {
+        return prefixCel.eval(variables);
+    }
+
+    @Benchmark
+    public Object anyStartsWithNative() throws Exception {
+        return prefixNative.eval(variables);
+    }
+
+    @Benchmark
+    public Object hourOfDayPureCel() throws Exception {
+        return hourCel.eval(variables);
+    }
+
+    @Benchmark
+    public Object hourOfDayNative() throws Exception {
+        return hourNative.eval(variables);
+    }
+}
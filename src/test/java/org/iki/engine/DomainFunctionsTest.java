@@ -0,0 +1,60 @@
+package org.iki.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DomainFunctionsTest {
+
+    @Test
+    void isRoundDetectsWholeMultiples() {
+        assertTrue(DomainFunctions.isRound(5000.0, 1000));
+        assertTrue(DomainFunctions.isRound(0.0, 1000));
+        assertFalse(DomainFunctions.isRound(5000.5, 1000));
+        assertFalse(DomainFunctions.isRound(5500.0, 1000));
+        assertTrue(DomainFunctions.isRound(5500.0, 100));
+    }
+
+    @Test
+    void isRoundRejectsNonPositiveUnit() {
+        assertThrows(IllegalArgumentException.class, () -> DomainFunctions.isRound(1000.0, 0));
+    }
+
+    @Test
+    void betweenIsInclusive() {
+        assertTrue(DomainFunctions.between(1000.0, 1000.0, 5000.0));
+        assertTrue(DomainFunctions.between(5000.0, 1000.0, 5000.0));
+        assertFalse(DomainFunctions.between(5000.01, 1000.0, 5000.0));
+        assertTrue(DomainFunctions.between(3L, 0L, 5L));
+        assertFalse(DomainFunctions.between(-1L, 0L, 5L));
+    }
+
+    @Test
+    void anyStartsWithChecksEveryValue() {
+        assertTrue(DomainFunctions.anyStartsWith(List.of("ACC-1", "SUSP-2"), "SUSP-"));
+        assertFalse(DomainFunctions.anyStartsWith(List.of("ACC-1", "ACC-2"), "SUSP-"));
+        assertFalse(DomainFunctions.anyStartsWith(List.of(), "SUSP-"));
+    }
+
+    @Test
+    void hourOfDayUsesZoneRulesIncludingDaylightSaving() {
+        DomainFunctions functions = new DomainFunctions();
+        ZoneId vilnius = ZoneId.of("Europe/Vilnius");
+        long winter = ZonedDateTime.of(2024, 1, 15, 23, 30, 0, 0, vilnius).toEpochSecond();
+        long summer = ZonedDateTime.of(2024, 7, 15, 2, 5, 0, 0, vilnius).toEpochSecond();
+
+        assertEquals(23, functions.hourOfDay(winter, "Europe/Vilnius"));
+        assertEquals(2, functions.hourOfDay(summer, "Europe/Vilnius"));
+        assertEquals(21, functions.hourOfDay(winter, "UTC"));
+        assertEquals(23, functions.hourOfDay(-3600, "UTC"));
+    }
+
+    @Test
+    void hourOfDayRejectsUnknownZone() {
+        assertThrows(IllegalArgumentException.class, () -> new DomainFunctions().hourOfDay(0, "Mars/Olympus"));
+    }
+}
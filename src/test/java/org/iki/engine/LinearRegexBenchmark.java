@@ -0,0 +1,61 @@
+package org.iki.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adversarial input ({@code "aaa...a!"} against {@code ^(a+)+$}) on the backtracking JDK engine versus
+ * RE2J with and without the per-snapshot compiled-pattern cache.
+ * The JDK engine is exponential in the input length, so keep {@code length} small for it.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=LinearRegexBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class LinearRegexBenchmark {
+
+    private static final String ADVERSARIAL = "^(a+)+$";
+
+    @Param({"16", "24"})
+    int length;
+
+    private String input;
+    private com.google.re2j.Pattern cachedRe2;
+    private java.util.regex.Pattern cachedJdk;
+
+    @Setup
+    public void setUp() {
+        input = "a".repeat(length) + "!";
+        cachedRe2 = LinearRegex.compile(ADVERSARIAL);
+        cachedJdk = java.util.regex.Pattern.compile(ADVERSARIAL);
+    }
+
+    @Benchmark
+    public boolean jdkBacktracking() {
+        return cachedJdk.matcher(input).find();
+    }
+
+    @Benchmark
+    public boolean re2Cached() {
+        return LinearRegex.matches(cachedRe2, input);
+    }
+
+    @Benchmark
+    public boolean re2CompiledPerEvaluation() {
+        return LinearRegex.matches(LinearRegex.compile(ADVERSARIAL), input);
+    }
+}
@@ -0,0 +1,83 @@
+package org.iki.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiteralMatcherTest {
+
+    private static boolean[] match(LiteralMatcher matcher, String subject, int slots) {
+        boolean[] matches = new boolean[slots];
+        matcher.match(subject, matches);
+        return matches;
+    }
+
+    @Test
+    void prefixMatcherReportsAllMatchingPrefixes() {
+        LiteralMatcher matcher = LiteralMatcher.build(List.of("SUSP-", "SU", "VIP-"), new int[]{0, 1, 2}, true);
+
+        boolean[] matches = match(matcher, "SUSP-001", 3);
+        assertTrue(matches[0]);
+        assertTrue(matches[1]);
+        assertFalse(matches[2]);
+    }
+
+    @Test
+    void prefixMatcherIgnoresInnerOccurrences() {
+        LiteralMatcher matcher = LiteralMatcher.build(List.of("SUSP-"), new int[]{0}, true);
+        assertFalse(match(matcher, "ACC-SUSP-001", 1)[0]);
+        assertFalse(match(matcher, "SUS", 1)[0]);
+    }
+
+    @Test
+    void containsMatcherFindsOverlappingLiterals() {
+        LiteralMatcher matcher = LiteralMatcher.build(
+                List.of("he", "she", "his", "hers", "OFF"), new int[]{0, 1, 2, 3, 4}, false);
+
+        boolean[] matches = match(matcher, "ushers", 5);
+        assertTrue(matches[0]);
+        assertTrue(matches[1]);
+        assertFalse(matches[2]);
+        assertTrue(matches[3]);
+        assertFalse(matches[4]);
+    }
+
+    @Test
+    void containsMatcherFollowsFailureLinks() {
+        LiteralMatcher matcher = LiteralMatcher.build(List.of("OFFSHORE", "FSH"), new int[]{0, 1}, false);
+
+        boolean[] matches = match(matcher, "ACC-OFFSH", 2);
+        assertFalse(matches[0]);
+        assertTrue(matches[1]);
+    }
+
+    @Test
+    void emptyLiteralAlwaysMatches() {
+        LiteralMatcher prefix = LiteralMatcher.build(List.of(""), new int[]{0}, true);
+        LiteralMatcher contains = LiteralMatcher.build(List.of(""), new int[]{0}, false);
+        assertTrue(match(prefix, "anything", 1)[0]);
+        assertTrue(match(contains, "", 1)[0]);
+    }
+
+    @Test
+    void agreesWithStringMethodsOnManyLiterals() {
+        List<String> literals = List.of("A", "AB", "ABC", "BC", "C", "CA", "OFF", "FF", "F-1", "-");
+        int[] slots = new int[literals.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = i;
+        }
+        LiteralMatcher prefix = LiteralMatcher.build(literals, slots, true);
+        LiteralMatcher contains = LiteralMatcher.build(literals, slots, false);
+
+        for (String subject : List.of("ABCA", "CAB", "OFF-1", "XOFFF-1", "", "BCBCA", "F-")) {
+            boolean[] prefixMatches = match(prefix, subject, slots.length);
+            boolean[] containsMatches = match(contains, subject, slots.length);
+            for (int i = 0; i < slots.length; i++) {
+                assertEquals(subject.startsWith(literals.get(i)), prefixMatches[i], subject + " startsWith " + literals.get(i));
+                assertEquals(subject.contains(literals.get(i)), containsMatches[i], subject + " contains " + literals.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.iki.engine;
+
+import org.iki.model.TransactionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentEventsTest {
+
+    private static TransactionEvent event(int i) {
+        return new TransactionEvent("ACC-" + i, "ACC-X", "CIN-" + i, new BigDecimal("10.00"), Instant.now());
+    }
+
+    @Test
+    void sampleIsToppedUpWithSyntheticEvents() {
+        List<TransactionEvent> sample = new RecentEvents(16).sample(10, List.of("SUSP-"));
+
+        assertEquals(10, sample.size());
+        assertTrue(sample.stream().anyMatch(event -> event.debitAccount().startsWith("SUSP-")));
+        assertTrue(sample.stream().map(TransactionEvent::amount).distinct().count() > 1);
+    }
+
+    @Test
+    void recordedEventsComeFirstAndTheRingIsBounded() {
+        RecentEvents recent = new RecentEvents(8);
+        for (int i = 0; i < 100 * RecentEvents.SAMPLE_EVERY; i++) {
+            recent.record(event(i));
+        }
+
+        List<TransactionEvent> sample = recent.sample(8, List.of());
+        assertEquals(8, sample.size());
+        assertTrue(sample.stream().allMatch(event -> event.debitAccount().startsWith("ACC-")));
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new RecentEvents(0));
+    }
+}
@@ -0,0 +1,115 @@
+package org.iki.engine;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iki.metrics.PipelineMetrics;
+import org.iki.model.AttributeSchema;
+import org.iki.model.Rule;
+import org.iki.model.RuleEvaluationResult;
+import org.iki.model.TransactionEvent;
+import org.iki.state.SequenceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the evaluation metrics: {@link CelRuleEngine#evaluateEvent} over {@code rules} distinct rules with the
+ * per-rule counters and sampled timing on or off, plus the sampled per-event latency timer when on, at the default
+ * sampling rates. Runs on four threads so the counters are updated concurrently. The budget is for the two
+ * {@code metrics} results to be within 2% of each other; the README records the measured overhead.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=RuleMetricsBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@Threads(4)
+public class RuleMetricsBenchmark {
+
+    private static final int EVENT_SAMPLE_EVERY = 8;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    @Param({"50", "500"})
+    int rules;
+
+    private CelRuleEngine engine;
+    private List<Rule> ruleList;
+    private TransactionEvent[] events;
+    private Timer evaluation;
+
+    @Setup
+    public void setUp() {
+        engine = new CelRuleEngine();
+        engine.attributeSchema = AttributeSchema.EMPTY;
+        engine.sequenceStore = new SequenceStore();
+        engine.partialCacheEnabled = true;
+        engine.partialCacheMaxEntries = 10_000;
+        engine.ruleMetricsEnabled = metrics;
+        engine.ruleTimingSampleEvery = 64;
+        engine.init(List.of(new DomainFunctions()));
+
+        // Thresholds and prefixes differ per rule, so no two rules share a program
+        ruleList = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            String expression = switch (i % 4) {
+                case 0 -> "amount > " + (1000 + i) + ".0";
+                case 1 -> "debitAccount.startsWith(\"SUSP-" + i + "\") || creditAccount.startsWith(\"SUSP-" + i + "\")";
+                case 2 -> "isRound(amount, " + (100 + i) + ") && amount >= 1000.0";
+                default -> "amount > " + (5000 + i) + ".0 && debitAccount != creditAccount";
+            };
+            ruleList.add(new Rule((long) i, expression, "Benchmark rule " + i, true));
+        }
+        engine.compile(ruleList, List.of());
+
+        events = new TransactionEvent[1024];
+        Instant now = Instant.now();
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new TransactionEvent("ACC-" + i, (i % 7 == 0 ? "SUSP-" : "ACC-") + (i % 97),
+                    "CIN-" + i, BigDecimal.valueOf(500 + i * 37L), now);
+        }
+        evaluation = metrics
+                ? PipelineMetrics.latencyTimer(new SimpleMeterRegistry(), "bench.evaluation", "Benchmark")
+                : null;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public List<RuleEvaluationResult> evaluateEvent(Cursor cursor) {
+        TransactionEvent event = events[cursor.next++ & (events.length - 1)];
+        if (evaluation == null) {
+            return engine.evaluateEvent(event, ruleList);
+        }
+        long started = System.nanoTime();
+        List<RuleEvaluationResult> results = engine.evaluateEvent(event, ruleList);
+        long nanos = System.nanoTime() - started;
+        // As PipelineMetrics.recordEvaluation with the default app.metrics.events.sample-every
+        if (ThreadLocalRandom.current().nextInt(EVENT_SAMPLE_EVERY) == 0) {
+            evaluation.record(nanos, TimeUnit.NANOSECONDS);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,157 @@
+package org.iki.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleProfilerTest {
+
+    private static final long MINUTE = 60_000_000_000L;
+
+    private final Map<Long, RuleCounters> counters = new HashMap<>();
+    private long evaluatedEvents;
+    private long timedEvents;
+    private RuleProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        profiler = new RuleProfiler();
+        profiler.celRuleEngine = new CelRuleEngine() {
+            @Override
+            public Map<Long, RuleCounters> getRuleCounters() {
+                return new HashMap<>(counters);
+            }
+
+            @Override
+            long getEvaluatedEvents() {
+                return evaluatedEvents;
+            }
+
+            @Override
+            long getTimedEvents() {
+                return timedEvents;
+            }
+        };
+        profiler.enabled = true;
+        profiler.halfLife = Duration.ofMinutes(1);
+        profiler.top = 2;
+        profiler.init();
+    }
+
+    private RuleCounters rule(long id) {
+        return counters.computeIfAbsent(id, key -> new RuleCounters());
+    }
+
+    /**
+     * Evaluates 100 events, one in four timed: rule 1 takes 1 µs and matches every event, rule 2 takes 50 µs and
+     * fails on every fifth event, rule 3 takes 200 ns and never matches.
+     */
+    private void evaluate() {
+        for (int event = 0; event < 100; event++) {
+            evaluatedEvents++;
+            if (event % 4 == 0) {
+                timedEvents++;
+                rule(1).timed(1_000);
+                rule(2).timed(50_000);
+                rule(3).timed(200);
+            }
+            rule(1).matched();
+            if (event % 5 == 0) {
+                rule(2).failed();
+            }
+        }
+    }
+
+    @Test
+    void ranksRulesByEachMeasure() {
+        evaluate();
+        profiler.tick(MINUTE / 60);
+
+        RuleProfiler.ProfileReport report = profiler.report(null);
+        assertEquals(3, report.profiledRules());
+        assertEquals(2, report.byTime().size());
+        assertEquals(2, report.byTime().get(0).ruleId());
+        assertEquals(1, report.byTime().get(1).ruleId());
+        // 25 timed evaluations of 50 µs scaled up to 100 events
+        assertEquals(5.0, report.byTime().get(0).timeMillis(), 0.1);
+        assertEquals(2, report.byP99Latency().get(0).ruleId());
+        assertEquals(50.0, report.byP99Latency().get(0).p99Micros(), 12.5);
+        assertEquals(1, report.byMatchRate().size());
+        assertEquals(1.0, report.byMatchRate().get(0).matchRate(), 0.01);
+        assertEquals(1, report.byErrorRate().size());
+        assertEquals(2, report.byErrorRate().get(0).ruleId());
+        assertEquals(0.2, report.byErrorRate().get(0).errorRate(), 0.01);
+    }
+
+    @Test
+    void pastActivityDecaysWithTheHalfLife() {
+        evaluate();
+        profiler.tick(MINUTE / 60);
+        double before = profiler.report(1).byTime().get(0).timeMillis();
+
+        profiler.tick(MINUTE / 60 + MINUTE);
+        RuleProfiler.RuleProfile after = profiler.report(1).byTime().get(0);
+        assertEquals(before / 2, after.timeMillis(), 0.01);
+        assertEquals(0.2, profiler.report(1).byErrorRate().get(0).errorRate(), 0.01);
+    }
+
+    @Test
+    void recentlySlowRuleOutranksOneSlowInThePast() {
+        evaluate();
+        profiler.tick(MINUTE / 60);
+        counters.remove(2L);
+        for (int event = 0; event < 100; event++) {
+            evaluatedEvents++;
+            timedEvents++;
+            rule(3).timed(20_000);
+        }
+        profiler.tick(MINUTE / 60 + 10 * MINUTE);
+
+        RuleProfiler.ProfileReport report = profiler.report(null);
+        assertEquals(2, report.profiledRules());
+        assertEquals(3, report.byTime().get(0).ruleId());
+        assertEquals(3, report.byP99Latency().get(0).ruleId());
+    }
+
+    @Test
+    void rareTimingsAreLeftOutOfTheLatencyRanking() {
+        rule(1).timed(1_000_000);
+        evaluatedEvents++;
+        timedEvents++;
+        profiler.tick(MINUTE / 60);
+
+        RuleProfiler.ProfileReport report = profiler.report(null);
+        assertEquals(1, report.byTime().size());
+        assertNull(report.byTime().get(0).p99Micros());
+        assertTrue(report.byP99Latency().isEmpty());
+    }
+
+    @Test
+    void rejectsNonPositiveTop() {
+        assertThrows(IllegalArgumentException.class, () -> profiler.report(0));
+    }
+
+    @Test
+    void latencyBucketsBoundTheirDurations() {
+        assertEquals(0, RuleCounters.latencyBucket(0));
+        assertEquals(0, RuleCounters.latencyBucket(127));
+        assertEquals(1, RuleCounters.latencyBucket(128));
+        long previous = -1;
+        for (int bucket = 0; bucket < RuleCounters.LATENCY_BUCKETS - 1; bucket++) {
+            long upper = RuleCounters.latencyBucketUpperBound(bucket);
+            assertTrue(upper > previous);
+            assertEquals(bucket, RuleCounters.latencyBucket(upper));
+            assertEquals(bucket + 1, RuleCounters.latencyBucket(upper + 1));
+            if (bucket > 0) {
+                assertTrue(upper - previous <= (previous + 1) / 4 + 1);
+            }
+            previous = upper;
+        }
+        assertEquals(RuleCounters.LATENCY_BUCKETS - 1, RuleCounters.latencyBucket(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,44 @@
+package org.iki.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedLruCacheTest {
+
+    @Test
+    void countsHitsAndMisses() {
+        StripedLruCache<String, Boolean> cache = new StripedLruCache<>(100, 4);
+        assertNull(cache.get("CIN-1"));
+        cache.put("CIN-1", true);
+        assertEquals(Boolean.TRUE, cache.get("CIN-1"));
+        assertEquals(Boolean.TRUE, cache.get("CIN-1"));
+
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWithinStripe() {
+        StripedLruCache<String, Boolean> cache = new StripedLruCache<>(2, 1);
+        cache.put("a", true);
+        cache.put("b", true);
+        cache.get("a");
+        cache.put("c", true);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    void sizeIsBoundedByCapacity() {
+        StripedLruCache<Integer, Boolean> cache = new StripedLruCache<>(64, 8);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, true);
+        }
+        assertTrue(cache.size() <= 64);
+    }
+}
@@ -0,0 +1,56 @@
+package org.iki.health;
+
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.iki.metrics.PipelineMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineProgressHealthCheckTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private PipelineMetrics.Load load;
+    private PipelineProgressHealthCheck check;
+
+    @BeforeEach
+    void setUp() {
+        check = new PipelineProgressHealthCheck();
+        check.metrics = new PipelineMetrics() {
+            @Override
+            public Load load() {
+                return load;
+            }
+        };
+        check.stallTimeout = Duration.ofSeconds(60);
+    }
+
+    private HealthCheckResponse.Status status(long inProgress, long completed, long now) {
+        load = new PipelineMetrics.Load(inProgress, inProgress, completed, 0, 0, 0);
+        return check.check(now).getStatus();
+    }
+
+    @Test
+    void idlePipelineIsAlive() {
+        assertEquals(HealthCheckResponse.Status.UP, status(0, 100, 0));
+        assertEquals(HealthCheckResponse.Status.UP, status(0, 100, 600 * SECOND));
+    }
+
+    @Test
+    void progressingPipelineIsAlive() {
+        assertEquals(HealthCheckResponse.Status.UP, status(16, 100, 0));
+        assertEquals(HealthCheckResponse.Status.UP, status(16, 101, 59 * SECOND));
+        assertEquals(HealthCheckResponse.Status.UP, status(16, 102, 118 * SECOND));
+    }
+
+    @Test
+    void stuckConsumersFailLiveness() {
+        assertEquals(HealthCheckResponse.Status.UP, status(16, 100, 0));
+        assertEquals(HealthCheckResponse.Status.UP, status(16, 100, 59 * SECOND));
+        assertEquals(HealthCheckResponse.Status.DOWN, status(16, 100, 60 * SECOND));
+        assertEquals(HealthCheckResponse.Status.UP, status(16, 101, 61 * SECOND));
+    }
+}
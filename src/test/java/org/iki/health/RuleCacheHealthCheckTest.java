@@ -41,6 +41,23 @@ class RuleCacheHealthCheckTest {
             .body("checks.find { it.name == 'rule-cache' }.data.compiledRules", greaterThan(0));
     }
 
+    @Test
+    void pipelineChecksAreReported() {
+        given()
+            .when()
+            .get("/health/ready")
+            .then()
+            .statusCode(200)
+            .body("checks.find { it.name == 'saturation' }.status", is("UP"));
+
+        given()
+            .when()
+            .get("/health/live")
+            .then()
+            .statusCode(200)
+            .body("checks.find { it.name == 'pipeline-progress' }.status", is("UP"));
+    }
+
     @Test
     void overallHealthIsUp() {
         given()
@@ -0,0 +1,110 @@
+package org.iki.health;
+
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.iki.metrics.PipelineMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaturationHealthCheckTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private PipelineMetrics.Load load = idle();
+    private SaturationHealthCheck check;
+
+    private static PipelineMetrics.Load idle() {
+        return new PipelineMetrics.Load(0, 0, 0, 1, 1, 0);
+    }
+
+    @BeforeEach
+    void setUp() {
+        check = new SaturationHealthCheck();
+        check.metrics = new PipelineMetrics() {
+            @Override
+            public Load load() {
+                return load;
+            }
+        };
+        check.enabled = true;
+        check.maxInFlight = 1000;
+        check.maxQueueWait = Duration.ofSeconds(1);
+        check.maxEvaluation = Duration.ofMillis(250);
+        check.maxSink = Duration.ofMillis(250);
+        check.recoveryRatio = 0.5;
+        check.hold = Duration.ofSeconds(30);
+        check.init();
+    }
+
+    private HealthCheckResponse.Status status(long now) {
+        return check.check(now).getStatus();
+    }
+
+    @Test
+    void upWhileBelowThresholds() {
+        load = new PipelineMetrics.Load(999, 8, 50_000, 900, 200, 100);
+        assertEquals(HealthCheckResponse.Status.UP, status(0));
+    }
+
+    @Test
+    void downWhenAnyMeasureReachesItsThreshold() {
+        load = new PipelineMetrics.Load(1000, 8, 50_000, 10, 10, 1);
+        assertEquals(HealthCheckResponse.Status.DOWN, status(0));
+
+        setUp();
+        load = new PipelineMetrics.Load(10, 8, 50_000, 1000, 10, 1);
+        assertEquals(HealthCheckResponse.Status.DOWN, status(0));
+
+        setUp();
+        load = new PipelineMetrics.Load(10, 8, 50_000, 10, 250, 1);
+        HealthCheckResponse response = check.check(0);
+        assertEquals(HealthCheckResponse.Status.DOWN, response.getStatus());
+        assertEquals("evaluation p99 250 ms", response.getData().orElseThrow().get("reason"));
+
+        setUp();
+        load = new PipelineMetrics.Load(10, 8, 50_000, 10, 10, 300);
+        assertEquals(HealthCheckResponse.Status.DOWN, status(0));
+    }
+
+    @Test
+    void staysDownForTheHoldTime() {
+        load = new PipelineMetrics.Load(5000, 8, 50_000, 10, 10, 1);
+        assertEquals(HealthCheckResponse.Status.DOWN, status(0));
+
+        load = idle();
+        assertEquals(HealthCheckResponse.Status.DOWN, status(29 * SECOND));
+        assertEquals(HealthCheckResponse.Status.UP, status(30 * SECOND));
+    }
+
+    @Test
+    void recoversOnlyBelowTheRecoveryRatio() {
+        load = new PipelineMetrics.Load(1200, 8, 50_000, 10, 10, 1);
+        assertEquals(HealthCheckResponse.Status.DOWN, status(0));
+
+        // Below the threshold but above half of it: still draining
+        load = new PipelineMetrics.Load(700, 8, 50_000, 10, 10, 1);
+        assertEquals(HealthCheckResponse.Status.DOWN, status(60 * SECOND));
+
+        load = new PipelineMetrics.Load(400, 8, 50_000, 10, 10, 1);
+        assertEquals(HealthCheckResponse.Status.UP, status(61 * SECOND));
+        // Back up, it takes the full threshold to go down again
+        load = new PipelineMetrics.Load(900, 8, 50_000, 10, 10, 1);
+        assertEquals(HealthCheckResponse.Status.UP, status(62 * SECOND));
+    }
+
+    @Test
+    void disabledCheckIsAlwaysUp() {
+        check.enabled = false;
+        load = new PipelineMetrics.Load(1_000_000, 8, 50_000, 10_000, 10_000, 10_000);
+        assertEquals(HealthCheckResponse.Status.UP, status(0));
+    }
+
+    @Test
+    void rejectsRecoveryRatioOutsideUnitInterval() {
+        check.recoveryRatio = 1.5;
+        assertThrows(IllegalArgumentException.class, check::init);
+    }
+}
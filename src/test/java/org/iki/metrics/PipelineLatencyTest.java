@@ -0,0 +1,96 @@
+package org.iki.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineLatencyTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private PipelineLatency latency;
+
+    @BeforeEach
+    void setUp() {
+        latency = new PipelineLatency();
+        latency.enabled = true;
+        latency.sampleEvery = 1;
+        latency.init();
+    }
+
+    private void trace(long endToEndNanos) {
+        // parse 1 ms, dispatch 0.5 ms, queue wait 0.5 ms, sink 0.1 ms; evaluation takes the rest
+        latency.recordIngest(0, MILLIS, 3 * MILLIS / 2);
+        latency.recordProcessing(0, 3 * MILLIS / 2, 2 * MILLIS, endToEndNanos - MILLIS / 10, endToEndNanos);
+    }
+
+    private static PipelineLatency.StageLatency stage(List<PipelineLatency.StageLatency> stages, String name) {
+        return stages.stream().filter(stage -> stage.stage().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void stagesAddUpToEndToEnd() {
+        trace(5 * MILLIS);
+        latency.roll();
+
+        List<PipelineLatency.StageLatency> stages = latency.report().lastInterval();
+        assertEquals(7, stages.size());
+        assertEquals(1000, stage(stages, "parse").p50Micros());
+        assertEquals(500, stage(stages, "dispatch").p50Micros());
+        assertEquals(500, stage(stages, "queue-wait").p50Micros());
+        assertEquals(2900, stage(stages, "evaluation").p50Micros(), 5);
+        assertEquals(100, stage(stages, "sink").p50Micros());
+        assertEquals(5000, stage(stages, "end-to-end").p50Micros(), 5);
+        double shares = stages.stream()
+                .filter(stage -> !stage.stage().startsWith("end-to-end"))
+                .mapToDouble(PipelineLatency.StageLatency::shareOfEndToEnd)
+                .sum();
+        assertEquals(1.0, shares, 0.01);
+    }
+
+    @Test
+    void intervalsAreAddedToTheTotals() {
+        trace(5 * MILLIS);
+        latency.roll();
+        trace(5 * MILLIS);
+        trace(5 * MILLIS);
+        latency.roll();
+
+        PipelineLatency.PipelineReport report = latency.report();
+        assertEquals(2, stage(report.lastInterval(), "end-to-end").count());
+        assertEquals(3, stage(report.sinceStart(), "end-to-end").count());
+
+        latency.roll();
+        assertEquals(0, stage(latency.report().lastInterval(), "end-to-end").count());
+        assertEquals(0, latency.report().expectedIntervalMicros());
+    }
+
+    @Test
+    void stallIsCorrectedForCoordinatedOmission() {
+        for (int i = 0; i < 100; i++) {
+            trace(5 * MILLIS);
+        }
+        // One event delayed by a one-second stall: the events that would have arrived during it are missing
+        trace(1_000 * MILLIS);
+        latency.roll();
+
+        PipelineLatency.PipelineReport report = latency.report();
+        PipelineLatency.StageLatency raw = stage(report.lastInterval(), "end-to-end");
+        PipelineLatency.StageLatency corrected = stage(report.lastInterval(), "end-to-end-corrected");
+        assertEquals(101, raw.count());
+        assertTrue(report.expectedIntervalMicros() >= 100);
+        assertTrue(corrected.count() > raw.count());
+        assertTrue(corrected.p99Micros() > raw.p99Micros());
+        assertNull(corrected.shareOfEndToEnd());
+    }
+
+    @Test
+    void disabledTracingSamplesNothing() {
+        assertTrue(latency.sample());
+        latency.enabled = false;
+        assertFalse(latency.sample());
+    }
+}
@@ -0,0 +1,96 @@
+package org.iki.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributeSchemaTest {
+
+    private static final AttributeSchema SCHEMA =
+            AttributeSchema.parse("channel:string, merchantCategory:int, score:double, trusted:bool, deviceId:string");
+
+    @Test
+    void parseAssignsOrdinalsAndPerTypeSlots() {
+        assertEquals(5, SCHEMA.size());
+        assertEquals(new AttributeSchema.Attribute("channel", AttributeType.STRING, 0, 0), SCHEMA.attribute("channel"));
+        assertEquals(new AttributeSchema.Attribute("merchantCategory", AttributeType.INT, 1, 0),
+                SCHEMA.attribute("merchantCategory"));
+        assertEquals(new AttributeSchema.Attribute("trusted", AttributeType.BOOL, 3, 2), SCHEMA.attribute("trusted"));
+        assertEquals(new AttributeSchema.Attribute("deviceId", AttributeType.STRING, 4, 1), SCHEMA.attribute("deviceId"));
+        assertNull(SCHEMA.attribute("country"));
+        assertEquals("channel:string,merchantCategory:int,score:double,trusted:bool,deviceId:string", SCHEMA.toString());
+    }
+
+    @Test
+    void blankSpecIsEmpty() {
+        assertSame(AttributeSchema.EMPTY, AttributeSchema.parse(""));
+        assertSame(AttributeSchema.EMPTY, AttributeSchema.parse(null));
+    }
+
+    @Test
+    void malformedDeclarationsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AttributeSchema.parse("channel"));
+        assertThrows(IllegalArgumentException.class, () -> AttributeSchema.parse("channel:text"));
+        assertThrows(IllegalArgumentException.class, () -> AttributeSchema.parse("device-id:string"));
+        assertThrows(IllegalArgumentException.class, () -> AttributeSchema.parse("channel:string,channel:int"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AttributeSchema.parse("a0:int" + buildNames(AttributeSchema.MAX_ATTRIBUTES)));
+    }
+
+    @Test
+    void valuesAreStoredInTypedSlots() {
+        EventAttributes attributes = EventAttributes.builder(SCHEMA)
+                .setString(SCHEMA.attribute("channel"), "web")
+                .setLong(SCHEMA.attribute("merchantCategory"), 5411)
+                .setDouble(SCHEMA.attribute("score"), 0.75)
+                .setBoolean(SCHEMA.attribute("trusted"), true)
+                .build();
+
+        assertEquals("web", attributes.getString(SCHEMA.attribute("channel")));
+        assertEquals(5411L, attributes.getLong(SCHEMA.attribute("merchantCategory")));
+        assertEquals(0.75, attributes.getDouble(SCHEMA.attribute("score")));
+        assertTrue(attributes.getBoolean(SCHEMA.attribute("trusted")));
+        assertEquals(5411L, attributes.value(SCHEMA.attribute("merchantCategory")));
+        assertEquals("{channel=web, merchantCategory=5411, score=0.75, trusted=true}", attributes.toString());
+    }
+
+    @Test
+    void absentAttributesReadAsZeroValues() {
+        EventAttributes attributes = EventAttributes.builder(SCHEMA)
+                .setString(SCHEMA.attribute("channel"), "atm")
+                .build();
+
+        assertFalse(attributes.isPresent(SCHEMA.attribute("deviceId")));
+        assertEquals("", attributes.getString(SCHEMA.attribute("deviceId")));
+        assertEquals(0L, attributes.getLong(SCHEMA.attribute("merchantCategory")));
+        assertEquals(0.0, attributes.getDouble(SCHEMA.attribute("score")));
+        assertFalse(attributes.getBoolean(SCHEMA.attribute("trusted")));
+        assertEquals("", EventAttributes.NONE.value(SCHEMA.attribute("channel")));
+        assertSame(EventAttributes.NONE, EventAttributes.builder(SCHEMA).build());
+    }
+
+    @Test
+    void typeMismatchesAreRejected() {
+        EventAttributes.Builder builder = EventAttributes.builder(SCHEMA);
+        assertThrows(IllegalArgumentException.class, () -> builder.setLong(SCHEMA.attribute("channel"), 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.setString(AttributeSchema.parse("other:string").attribute("other"), "x"));
+    }
+
+    @Test
+    void equalityComparesValues() {
+        EventAttributes a = EventAttributes.builder(SCHEMA).setString(SCHEMA.attribute("channel"), "web").build();
+        EventAttributes b = EventAttributes.builder(SCHEMA).setString(SCHEMA.attribute("channel"), "web").build();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, EventAttributes.NONE);
+    }
+
+    private static String buildNames(int count) {
+        StringBuilder spec = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            spec.append(",a").append(i).append(":int");
+        }
+        return spec.toString();
+    }
+}
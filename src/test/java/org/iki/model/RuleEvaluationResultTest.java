@@ -31,6 +31,18 @@ class RuleEvaluationResultTest {
         assertTrue(result.hasError());
     }
 
+    @Test
+    void sequenceResultsAreToldApartFromRuleResultsWithTheSameId() {
+        RuleEvaluationResult rule = RuleEvaluationResult.success(101L, "amount > 100", true);
+        RuleEvaluationResult sequence = RuleEvaluationResult.sequenceSuccess(101L, "amount > 100", true);
+
+        assertEquals(RuleEvaluationResult.Kind.RULE, rule.kind());
+        assertEquals(RuleEvaluationResult.Kind.SEQUENCE, sequence.kind());
+        assertNotEquals(rule, sequence);
+        assertEquals(RuleEvaluationResult.Kind.SEQUENCE,
+                RuleEvaluationResult.sequenceFailure(101L, "a -> b within 1h", "error").kind());
+    }
+
     @Test
     void failureWithBlankErrorIsNotError() {
         RuleEvaluationResult result = new RuleEvaluationResult(1L, "expr", false, "  ");
@@ -0,0 +1,59 @@
+package org.iki.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceRuleTest {
+
+    @Test
+    void validSequenceRuleCreation() {
+        SequenceRule rule = new SequenceRule(1L, List.of("amount >= 10000.0", "amount >= 1000.0"), "30m",
+                "Layering", true);
+        assertEquals(1L, rule.id());
+        assertEquals(2, rule.steps().size());
+        assertEquals("30m", rule.within());
+        assertEquals("amount >= 10000.0 -> amount >= 1000.0 within 30m", rule.expression());
+    }
+
+    @Test
+    void convenienceConstructorSetsDefaults() {
+        SequenceRule rule = new SequenceRule(1L, List.of("amount > 1.0", "amount > 2.0"), "1h");
+        assertNull(rule.description());
+        assertTrue(rule.active());
+    }
+
+    @Test
+    void stepsAreCopied() {
+        List<String> steps = new ArrayList<>(List.of("amount > 1.0", "amount > 2.0"));
+        SequenceRule rule = new SequenceRule(1L, steps, "1h");
+        steps.add("amount > 3.0");
+        assertEquals(2, rule.steps().size());
+    }
+
+    @Test
+    void singleStepThrows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SequenceRule(1L, List.of("amount > 1.0"), "1h"));
+    }
+
+    @Test
+    void tooManyStepsThrows() {
+        List<String> steps = Collections.nCopies(SequenceRule.MAX_STEPS + 1, "amount > 1.0");
+        assertThrows(IllegalArgumentException.class, () -> new SequenceRule(1L, steps, "1h"));
+    }
+
+    @Test
+    void blankStepOrWindowThrows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SequenceRule(1L, List.of("amount > 1.0", " "), "1h"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SequenceRule(1L, List.of("amount > 1.0", "amount > 2.0"), ""));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SequenceRule(null, List.of("amount > 1.0", "amount > 2.0"), "1h"));
+    }
+}
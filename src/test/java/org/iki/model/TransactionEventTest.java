@@ -127,4 +127,52 @@ class TransactionEventTest {
                 BigDecimal.ONE, Instant.EPOCH);
         assertEquals(Instant.EPOCH, event.transactedTime());
     }
-}
\ No newline at end of file
+
+    @Test
+    void amountMinorUsesCurrencyScale() {
+        assertEquals(1_500_050, new TransactionEvent("A", "B", "C", new BigDecimal("15000.50"), NOW).amountMinor());
+        assertEquals(1_500_050, new TransactionEvent("A", "B", "C", new BigDecimal("15000.5"), NOW, "EUR").amountMinor());
+        assertEquals(15_000, new TransactionEvent("A", "B", "C", new BigDecimal("15000"), NOW, "JPY").amountMinor());
+        assertEquals(1_234, new TransactionEvent("A", "B", "C", new BigDecimal("1.234"), NOW, "KWD").amountMinor());
+    }
+
+    @Test
+    void amountMinorRoundsExcessDigitsHalfUp() {
+        assertEquals(1_001, new TransactionEvent("A", "B", "C", new BigDecimal("10.005"), NOW).amountMinor());
+        assertEquals(-1_001, new TransactionEvent("A", "B", "C", new BigDecimal("-10.005"), NOW).amountMinor());
+        assertEquals(11, new TransactionEvent("A", "B", "C", new BigDecimal("10.5"), NOW, "JPY").amountMinor());
+    }
+
+    @Test
+    void scaledAmountIgnoresCurrencyScale() {
+        TransactionEvent yen = new TransactionEvent("A", "B", "C", new BigDecimal("1000.4"), NOW, "JPY");
+        assertEquals(10_004_000, yen.amountFloor());
+        assertEquals(10_004_000, yen.amountCeiling());
+    }
+
+    @Test
+    void scaledAmountBoundsDigitsBeyondMaxScale() {
+        TransactionEvent above = new TransactionEvent("A", "B", "C", new BigDecimal("1000.00004"), NOW);
+        assertEquals(10_000_000, above.amountFloor());
+        assertEquals(10_000_001, above.amountCeiling());
+        TransactionEvent negative = new TransactionEvent("A", "B", "C", new BigDecimal("-1000.00004"), NOW);
+        assertEquals(-10_000_001, negative.amountFloor());
+        assertEquals(-10_000_000, negative.amountCeiling());
+    }
+
+    @Test
+    void unknownCurrencyThrows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransactionEvent("A", "B", "C", BigDecimal.ONE, NOW, "XYZ1"));
+    }
+
+    @Test
+    void amountBeyondLongMinorUnitsIsOnlyRejectedByAmountMinor() {
+        TransactionEvent event = new TransactionEvent("A", "B", "C", new BigDecimal("1e17"), NOW);
+        assertEquals(Long.MAX_VALUE, event.amountFloor());
+        assertEquals(Long.MIN_VALUE, new TransactionEvent("A", "B", "C", new BigDecimal("-1e17"), NOW).amountCeiling());
+        assertThrows(ArithmeticException.class, event::amountMinor);
+        assertEquals(10_000_000_000_000_000L,
+                new TransactionEvent("A", "B", "C", new BigDecimal("1e14"), NOW).amountMinor());
+    }
+}
@@ -0,0 +1,27 @@
+package org.iki.repository;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Loads rules from a MariaDB dev-services container initialised with {@code db/init.sql}.
+ */
+public class DatabaseRuleSourceProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        return Map.of(
+                "app.rules.source", "database",
+                "quarkus.datasource.devservices.enabled", "true");
+    }
+
+    /**
+     * Dev services need a container runtime; tests using this profile are skipped without one.
+     */
+    public static boolean dockerAvailable() {
+        return System.getenv("DOCKER_HOST") != null || Files.exists(Path.of("/var/run/docker.sock"));
+    }
+}
@@ -0,0 +1,132 @@
+package org.iki.repository;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.iki.model.Rule;
+import org.iki.service.RuleCacheService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@TestProfile(DatabaseRuleSourceProfile.class)
+@EnabledIf("org.iki.repository.DatabaseRuleSourceProfile#dockerAvailable")
+class MariaDbRuleRepositoryTest {
+
+    @Inject
+    MariaDbRuleRepository repository;
+
+    @Inject
+    RuleCacheService ruleCacheService;
+
+    @Inject
+    Instance<Pool> clients;
+
+    private void execute(String sql, Object... args) {
+        Tuple tuple = Tuple.tuple();
+        for (Object arg : args) {
+            tuple.addValue(arg);
+        }
+        clients.get().preparedQuery(sql).execute(tuple).await().indefinitely();
+    }
+
+    @Test
+    void fullLoadReturnsActiveRulesFromInitScript() {
+        RuleChanges changes = repository.findChangedRules(null).await().indefinitely();
+
+        assertTrue(changes.full());
+        assertTrue(changes.rules().size() >= 8);
+        assertTrue(changes.rules().stream().allMatch(Rule::active));
+        assertTrue(changes.rules().stream().noneMatch(rule -> rule.expression().equals("amount < 0")));
+    }
+
+    @Test
+    void deltaReturnsInsertedUpdatedAndDeactivatedRows() {
+        RuleChanges full = repository.findChangedRules(null).await().indefinitely();
+        // updated_at has one-second resolution; step past the watermark's second
+        execute("UPDATE rules SET updated_at = updated_at - INTERVAL 1 HOUR");
+
+        execute("INSERT INTO rules (expression, description, active) VALUES (?, ?, TRUE)",
+                "amount > 77777.0", "Inserted by test");
+        execute("UPDATE rules SET active = FALSE WHERE expression = ?", "cin.startsWith(\"VIP-\")");
+        RuleChanges delta = repository.findChangedRules(full.watermark()).await().indefinitely();
+
+        assertFalse(delta.full());
+        assertEquals(2, delta.rules().size());
+        assertTrue(delta.rules().stream().anyMatch(rule -> rule.expression().equals("amount > 77777.0")
+                && rule.active()));
+        assertTrue(delta.rules().stream().anyMatch(rule -> rule.expression().equals("cin.startsWith(\"VIP-\")")
+                && !rule.active()));
+        assertFalse(delta.watermark().isBefore(full.watermark()));
+    }
+
+    @Test
+    void changeLogRecordsEditsAndDeletes() {
+        Long latest = repository.findLatestLoggedSequence().await().indefinitely();
+        long position = latest == null ? 0 : latest;
+        assertTrue(repository.findLoggedChanges(position).await().indefinitely().isEmpty());
+
+        execute("INSERT INTO rules (expression, description, active) VALUES (?, ?, TRUE)",
+                "amount > 66666.0", "Logged by test");
+        execute("DELETE FROM rules WHERE expression = ?", "amount > 66666.0");
+        List<LoggedChange> changes = repository.findLoggedChanges(position).await().indefinitely();
+
+        assertEquals(2, changes.size());
+        assertFalse(changes.get(0).deletion());
+        assertTrue(changes.get(1).deletion());
+        assertTrue(changes.get(1).sequence() > changes.get(0).sequence());
+        assertEquals(changes.get(1).sequence(), repository.findLatestLoggedSequence().await().indefinitely());
+    }
+
+    @Test
+    void pruneKeepsRecentEntriesAndTheLatest() {
+        execute("INSERT INTO rules (expression, description, active) VALUES (?, ?, FALSE)",
+                "amount > 55555.0", "Pruned by test");
+        execute("UPDATE rules SET description = ? WHERE expression = ?", "Pruned by test, edited", "amount > 55555.0");
+        execute("UPDATE rule_changes SET changed_at = NOW() - INTERVAL 2 DAY");
+        Long latest = repository.findLatestLoggedSequence().await().indefinitely();
+
+        assertTrue(repository.pruneLoggedChanges(Duration.ofDays(1)).await().indefinitely() > 0);
+
+        assertEquals(latest, repository.findLatestLoggedSequence().await().indefinitely());
+        assertTrue(repository.findLoggedChanges(0).await().indefinitely().stream()
+                .allMatch(change -> change.sequence() == latest));
+    }
+
+    @Test
+    void cacheAppliesDatabaseDeltas() {
+        ruleCacheService.forceRefresh();
+        await(() -> !ruleCacheService.getCachedRules().isEmpty());
+
+        execute("INSERT INTO rules (expression, description, active) VALUES (?, ?, TRUE)",
+                "amount > 88888.0", "Delta by test");
+        ruleCacheService.refreshRules();
+
+        await(() -> ruleCacheService.getCachedRules().stream()
+                .anyMatch(rule -> rule.expression().equals("amount > 88888.0")));
+        List<Rule> rules = ruleCacheService.getCachedRules();
+        assertEquals(rules.stream().map(Rule::id).sorted().toList(), rules.stream().map(Rule::id).toList());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 10s");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
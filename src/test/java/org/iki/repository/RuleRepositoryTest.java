@@ -3,8 +3,10 @@ package org.iki.repository;
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
 import org.iki.model.Rule;
+import org.iki.model.SequenceRule;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -77,4 +79,28 @@ class RuleRepositoryTest {
         assertEquals(first.size(), second.size());
         assertEquals(first, second);
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllActiveSequenceRulesReturnsOrderedSteps() {
+        List<SequenceRule> sequences = ruleRepository.findAllActiveSequenceRules().await().indefinitely();
+        assertFalse(sequences.isEmpty());
+        assertTrue(sequences.stream().allMatch(SequenceRule::active));
+        assertTrue(sequences.stream().allMatch(s -> s.steps().size() >= 2));
+    }
+
+    @Test
+    void fullLoadReturnsEveryActiveRule() {
+        RuleChanges changes = ruleRepository.findChangedRules(null).await().indefinitely();
+        assertTrue(changes.full());
+        assertEquals(8, changes.rules().size());
+        assertNotNull(changes.watermark());
+    }
+
+    @Test
+    void deltaOfSampleRulesIsEmpty() {
+        Instant since = ruleRepository.findChangedRules(null).await().indefinitely().watermark();
+        RuleChanges changes = ruleRepository.findChangedRules(since).await().indefinitely();
+        assertTrue(changes.isEmpty());
+        assertEquals(since, changes.watermark());
+    }
+}
@@ -0,0 +1,25 @@
+package org.iki.rest;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasItems;
+
+@QuarkusTest
+class PipelineMetricsResourceTest {
+
+    @Test
+    void pipelineReportListsEveryStage() {
+        given()
+            .when()
+            .get("/metrics/pipeline")
+            .then()
+            .statusCode(200)
+            .body("enabled", is(true))
+            .body("lastInterval.size()", is(7))
+            .body("sinceStart.stage", hasItems("parse", "dispatch", "queue-wait", "evaluation", "sink",
+                    "end-to-end", "end-to-end-corrected"));
+    }
+}
@@ -1,11 +1,15 @@
 package org.iki.rest;
 
 import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
 import org.junit.jupiter.api.Test;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 
 @QuarkusTest
@@ -40,7 +44,42 @@ class RuleManagementResourceTest {
             .then()
             .statusCode(200)
             .body("cachedRules", greaterThan(0))
-            .body("compiledRules", greaterThan(0));
+            .body("compiledRules", greaterThan(0))
+            .body("partialCache.hitRate", notNullValue())
+            .body("sequences.memoryBytes", notNullValue())
+            .body("eventTime.lateEvents", notNullValue());
+    }
+
+    @Test
+    void getProfileReturnsRankings() {
+        given()
+            .queryParam("top", 3)
+            .when()
+            .get("/rules/profile")
+            .then()
+            .statusCode(200)
+            .body("enabled", is(true))
+            .body("byTime.size()", lessThanOrEqualTo(3))
+            .body("byErrorRate", notNullValue());
+
+        given()
+            .queryParam("top", 0)
+            .when()
+            .get("/rules/profile")
+            .then()
+            .statusCode(400);
+    }
+
+    @Test
+    void getSequenceRulesReturnsSteps() {
+        given()
+            .when()
+            .get("/rules/sequences")
+            .then()
+            .statusCode(200)
+            .body("[0].id", notNullValue())
+            .body("[0].steps.size()", greaterThan(1))
+            .body("[0].within", notNullValue());
     }
 
     @Test
@@ -58,6 +97,17 @@ class RuleManagementResourceTest {
             .body("cachedRules", is(ruleCount));
     }
 
+    @Test
+    void optimizationsAreReportedPerCompiledRule() {
+        given()
+            .when()
+            .get("/rules/optimizations")
+            .then()
+            .statusCode(200)
+            .body("size()", greaterThan(0))
+            .body("[0].optimizedExpression", notNullValue());
+    }
+
     @Test
     void refreshRulesReturns202() {
         given()
@@ -68,6 +118,18 @@ class RuleManagementResourceTest {
             .body("message", is("Rule refresh initiated"));
     }
 
+    @Test
+    void refreshWithWaitReturnsTheResult() {
+        given()
+            .when()
+            .post("/rules/refresh?wait=true")
+            .then()
+            .statusCode(200)
+            .body("full", is(true))
+            .body("snapshotVersion", greaterThan(0))
+            .body("cachedRules", greaterThan(0));
+    }
+
     @Test
     void rulesStillAvailableAfterRefresh() {
         given().when().post("/rules/refresh").then().statusCode(202);
@@ -80,4 +142,70 @@ class RuleManagementResourceTest {
             .statusCode(200)
             .body("cachedRules", greaterThan(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void ruleCanBeCreatedUpdatedAndDeleted() {
+        String rule = "{\"id\": 9001, \"expression\": \"amount > 123.0\", \"description\": \"CRUD\", \"active\": true}";
+        given()
+            .contentType(ContentType.JSON)
+            .body(rule)
+            .when()
+            .post("/rules")
+            .then()
+            .statusCode(201)
+            .body("id", is(9001));
+
+        given().contentType(ContentType.JSON).body(rule).when().post("/rules").then().statusCode(409);
+        given().when().get("/rules").then().body("id", hasItem(9001));
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"id\": 9001, \"expression\": \"amount > 456.0\", \"active\": true}")
+            .when()
+            .put("/rules/9001")
+            .then()
+            .statusCode(200)
+            .body("expression", is("amount > 456.0"));
+
+        given().when().delete("/rules/9001").then().statusCode(204);
+        given().when().delete("/rules/9001").then().statusCode(404);
+        given().when().get("/rules").then().body("id", not(hasItem(9001)));
+    }
+
+    @Test
+    void ruleThatDoesNotCompileIsRejectedWithCompilerErrors() {
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"id\": 9002, \"expression\": \"amount >\", \"active\": true}")
+            .when()
+            .post("/rules")
+            .then()
+            .statusCode(400)
+            .body("code", is("INVALID_RULE"))
+            .body("errors.size()", greaterThan(0));
+
+        given().when().delete("/rules/9002").then().statusCode(404);
+    }
+
+    @Test
+    void updateOfAnUnknownRuleReturns404() {
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"id\": 9003, \"expression\": \"amount > 1.0\", \"active\": true}")
+            .when()
+            .put("/rules/9003")
+            .then()
+            .statusCode(404);
+    }
+
+    @Test
+    void updateWithADifferentIdIsRejected() {
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"id\": 1, \"expression\": \"amount > 1.0\", \"active\": true}")
+            .when()
+            .put("/rules/2")
+            .then()
+            .statusCode(400);
+    }
+}
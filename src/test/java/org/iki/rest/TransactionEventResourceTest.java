@@ -37,6 +37,38 @@ class TransactionEventResourceTest {
             .body("total", is(1));
     }
 
+    @Test
+    void ingestIsReportedInPrometheusMetrics() {
+        String payload = """
+            [
+                {
+                    "debitAccount": "ACC-001",
+                    "creditAccount": "ACC-002",
+                    "cin": "CIN-METRICS",
+                    "amount": 150.00,
+                    "transactedTime": "2024-01-15T10:30:00Z"
+                }
+            ]
+            """;
+
+        given()
+            .contentType(ContentType.JSON)
+            .body(payload)
+            .when()
+            .post("/events")
+            .then()
+            .statusCode(202);
+
+        given()
+            .when()
+            .get("/q/metrics")
+            .then()
+            .statusCode(200)
+            .body(containsString("edios_events_ingested_total"))
+            .body(containsString("edios_events_batch_size_events_count"))
+            .body(containsString("edios_events_evaluation_seconds"));
+    }
+
     @Test
     void ingestEmptyListReturns400() {
         given()
@@ -242,4 +274,53 @@ class TransactionEventResourceTest {
 
         assertTrue(status >= 400, "Wrong content type should cause an error, got " + status);
     }
-}
\ No newline at end of file
+
+    @Test
+    void ingestEventWithAttributes() {
+        String payload = """
+            [
+                {
+                    "debitAccount": "ACC-001",
+                    "creditAccount": "ACC-002",
+                    "cin": "CIN-12345",
+                    "amount": 150.00,
+                    "transactedTime": "2024-01-15T10:30:00Z",
+                    "attributes": { "channel": "web", "merchantCategory": 5411, "unknown": [1, 2], "deviceId": null }
+                }
+            ]
+            """;
+
+        given()
+            .contentType(ContentType.JSON)
+            .body(payload)
+            .when()
+            .post("/events")
+            .then()
+            .statusCode(202)
+            .body("dispatched", is(1));
+    }
+
+    @Test
+    void attributeOfWrongTypeReturns400() {
+        String payload = """
+            [
+                {
+                    "debitAccount": "ACC-001",
+                    "creditAccount": "ACC-002",
+                    "cin": "CIN-12345",
+                    "amount": 150.00,
+                    "transactedTime": "2024-01-15T10:30:00Z",
+                    "attributes": { "merchantCategory": "grocery" }
+                }
+            ]
+            """;
+
+        given()
+            .contentType(ContentType.JSON)
+            .body(payload)
+            .when()
+            .post("/events")
+            .then()
+            .statusCode(400);
+    }
+}
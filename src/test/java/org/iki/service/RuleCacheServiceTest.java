@@ -60,4 +60,65 @@ class RuleCacheServiceTest {
     void cachedRulesContainExpectedCount() {
         assertEquals(8, ruleCacheService.getCachedRules().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void deltaRowsReplaceAddAndRemoveRulesById() {
+        List<Rule> current = List.of(new Rule(1L, "amount > 1.0"), new Rule(2L, "amount > 2.0"),
+                new Rule(3L, "amount > 3.0"));
+        List<Rule> merged = RuleCacheService.merge(current, List.of(
+                new Rule(2L, "amount > 20.0"),
+                new Rule(3L, "amount > 3.0", null, false),
+                new Rule(0L, "amount > 0.0")));
+
+        assertEquals(List.of(0L, 1L, 2L), merged.stream().map(Rule::id).toList());
+        assertEquals("amount > 20.0", merged.get(2).expression());
+    }
+
+    @Test
+    void writesAfterTheLoadStartedAreReplayedOverIt() {
+        // The load read rules 1 and 2 before the writes numbered 2 and 3 were stored
+        List<Rule> loaded = List.of(new Rule(1L, "amount > 1.0"), new Rule(2L, "amount > 2.0"));
+        List<RuleCacheService.Write> writes = List.of(
+                new RuleCacheService.Write(1, 1L, new Rule(1L, "amount > 10.0")),
+                new RuleCacheService.Write(2, 2L, new Rule(2L, "amount > 20.0")),
+                new RuleCacheService.Write(3, 1L, null),
+                new RuleCacheService.Write(4, 3L, new Rule(3L, "amount > 3.0")));
+
+        List<Rule> replayed = RuleCacheService.replay(loaded, writes, 1);
+        assertEquals(List.of(new Rule(2L, "amount > 20.0"), new Rule(3L, "amount > 3.0")), replayed);
+        assertSame(loaded, RuleCacheService.replay(loaded, writes, 4));
+    }
+
+    @Test
+    void emptyDeltaKeepsTheCachedList() {
+        List<Rule> current = ruleCacheService.getCachedRules();
+        assertSame(current, RuleCacheService.merge(current, List.of()));
+    }
+
+    @Test
+    void deltaRefreshWithoutChangesKeepsCachedRules() {
+        List<Rule> before = ruleCacheService.getCachedRules();
+        ruleCacheService.refreshRules();
+        assertSame(before, ruleCacheService.getCachedRules());
+        assertTrue(ruleCacheService.isLastRefreshSucceeded());
+    }
+
+    @Test
+    void forceRefreshCompletesWithTheSnapshotVersion() {
+        RefreshResult result = ruleCacheService.forceRefresh().await().indefinitely();
+
+        assertTrue(result.full());
+        assertEquals(ruleCacheService.getCachedRules().size(), result.cachedRules());
+        assertTrue(result.snapshotVersion() > 0);
+        assertSame(result, ruleCacheService.getLastRefresh());
+    }
+
+    @Test
+    void unchangedRulesAreNotRecompiled() {
+        ruleCacheService.forceRefresh().await().indefinitely();
+        RefreshResult result = ruleCacheService.refreshRules().await().indefinitely();
+
+        assertNull(result.compile());
+        assertTrue(ruleCacheService.getRefreshRunCount() <= ruleCacheService.getRefreshRequestCount());
+    }
+}
@@ -0,0 +1,170 @@
+package org.iki.service;
+
+import io.smallrye.mutiny.Uni;
+import org.iki.repository.LoggedChange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleRefreshTriggerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicInteger deltaRefreshes = new AtomicInteger();
+    private final AtomicInteger fullRefreshes = new AtomicInteger();
+    private RuleRefreshTrigger trigger;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        trigger = new RuleRefreshTrigger();
+        trigger.debounce = Duration.ofMillis(100);
+        trigger.ruleCacheService = new RuleCacheService() {
+            @Override
+            public Uni<RefreshResult> refreshRules() {
+                deltaRefreshes.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public Uni<RefreshResult> forceRefresh() {
+                fullRefreshes.incrementAndGet();
+                return null;
+            }
+        };
+        trigger.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        trigger.shutdown();
+    }
+
+    @Test
+    void burstOfRequestsRunsOneRefresh() {
+        for (int i = 0; i < 50; i++) {
+            trigger.request("edit " + i, false);
+        }
+        await(() -> deltaRefreshes.get() == 1);
+
+        assertEquals(50, trigger.getRequestCount());
+        assertEquals(1, trigger.getRefreshCount());
+        assertEquals(0, fullRefreshes.get());
+    }
+
+    @Test
+    void requestAfterARefreshSchedulesAnother() {
+        trigger.request("first", false);
+        await(() -> deltaRefreshes.get() == 1);
+        trigger.request("second", false);
+        await(() -> deltaRefreshes.get() == 2);
+
+        assertEquals(2, trigger.getRefreshCount());
+    }
+
+    @Test
+    void fullRequestUpgradesThePendingRefresh() {
+        trigger.request("update", false);
+        trigger.request("delete", true);
+        await(() -> fullRefreshes.get() == 1);
+
+        assertEquals(0, deltaRefreshes.get());
+    }
+
+    @Test
+    void changeLogEntriesRequestOneRefreshPerNewSequence() {
+        RuleChangeWatcher watcher = watcher();
+        watcher.onLoggedChanges(List.of(new LoggedChange(3, true)), 0);
+        watcher.onPositioned(6L);
+        watcher.onLoggedChanges(List.of(), 0);
+        watcher.onLoggedChanges(List.of(new LoggedChange(7, false)), 0);
+        watcher.onLoggedChanges(List.of(new LoggedChange(7, false)), 0);
+        watcher.onLoggedChanges(List.of(new LoggedChange(8, false), new LoggedChange(9, true)), 0);
+        await(() -> fullRefreshes.get() == 1);
+
+        assertEquals(2, trigger.getRequestCount());
+        assertEquals(9, watcher.position());
+    }
+
+    @Test
+    void lateCommitBelowARereadEntryIsNotMissed() {
+        RuleChangeWatcher watcher = watcher();
+        watcher.onPositioned(5L);
+        watcher.onLoggedChanges(List.of(new LoggedChange(7, false)), 0);
+        watcher.onLoggedChanges(List.of(new LoggedChange(7, false)), SECOND);
+        assertEquals(1, trigger.getRequestCount());
+        assertEquals(5, watcher.position());
+
+        watcher.onLoggedChanges(List.of(new LoggedChange(6, true), new LoggedChange(7, false)), 2 * SECOND);
+        await(() -> fullRefreshes.get() == 1);
+
+        assertEquals(2, trigger.getRequestCount());
+        assertEquals(7, watcher.position());
+    }
+
+    @Test
+    void gapStillOpenAfterTheTimeoutIsSkipped() {
+        RuleChangeWatcher watcher = watcher();
+        watcher.onPositioned(null);
+        watcher.onLoggedChanges(List.of(new LoggedChange(2, false)), 0);
+        watcher.onLoggedChanges(List.of(new LoggedChange(2, false)), 9 * SECOND);
+        assertEquals(0, watcher.position());
+
+        watcher.onLoggedChanges(List.of(new LoggedChange(2, false)), 10 * SECOND);
+
+        assertEquals(2, watcher.position());
+        assertEquals(1, trigger.getRequestCount());
+    }
+
+    private RuleChangeWatcher watcher() {
+        RuleChangeWatcher watcher = new RuleChangeWatcher();
+        watcher.trigger = trigger;
+        watcher.gapTimeout = Duration.ofSeconds(10);
+        return watcher;
+    }
+
+    @Test
+    void rulesFileChangesRequestARefresh() throws IOException {
+        Path rules = directory.resolve("rules.json");
+        Files.writeString(rules, "[]");
+        RuleChangeWatcher watcher = new RuleChangeWatcher();
+        watcher.trigger = trigger;
+        watcher.enabled = true;
+        watcher.file = Optional.of(rules.toString());
+        watcher.onStart(null);
+        try {
+            Files.writeString(directory.resolve("unrelated.txt"), "x");
+            Files.writeString(rules, "[{\"id\": 1, \"expression\": \"amount > 1.0\", \"active\": true}]");
+            await(() -> deltaRefreshes.get() >= 1);
+        } finally {
+            watcher.onStop(null);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 10s");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
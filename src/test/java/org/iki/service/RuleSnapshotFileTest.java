@@ -0,0 +1,126 @@
+package org.iki.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.iki.model.Rule;
+import org.iki.model.SequenceRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleSnapshotFileTest {
+
+    private static final List<Rule> RULES = List.of(
+            new Rule(1L, "amount > 10000.0", "Large", true),
+            new Rule(2L, "cin.startsWith(\"VIP-\")", null, true));
+    private static final List<SequenceRule> SEQUENCES = List.of(
+            new SequenceRule(101L, List.of("amount >= 10000.0", "amount >= 1000.0"), "30m"));
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private RuleSnapshotFile snapshotFile;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("rules.snapshot");
+        snapshotFile = snapshotFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        snapshotFile.shutdown();
+    }
+
+    private RuleSnapshotFile snapshotFile() {
+        RuleSnapshotFile snapshot = new RuleSnapshotFile();
+        snapshot.objectMapper = new ObjectMapper();
+        snapshot.enabled = true;
+        snapshot.path = file.toString();
+        snapshot.init();
+        return snapshot;
+    }
+
+    @Test
+    void writtenRuleSetIsReadBack() throws IOException {
+        snapshotFile.write(RULES, SEQUENCES);
+
+        RuleSnapshotFile.RuleSet ruleSet = snapshotFile().read().orElseThrow();
+        assertEquals(1, ruleSet.version());
+        assertEquals(RULES, ruleSet.rules());
+        assertEquals(SEQUENCES, ruleSet.sequences());
+        assertTrue(Files.readString(file, StandardCharsets.US_ASCII).startsWith("EDIOS-RULES 1 1 "));
+    }
+
+    @Test
+    void versionContinuesAcrossRestarts() throws IOException {
+        snapshotFile.write(RULES, SEQUENCES);
+        snapshotFile.write(RULES.subList(0, 1), SEQUENCES);
+
+        RuleSnapshotFile restarted = snapshotFile();
+        assertEquals(2, restarted.read().orElseThrow().version());
+        assertEquals(3, restarted.write(RULES, List.of()));
+        restarted.shutdown();
+    }
+
+    @Test
+    void corruptedPayloadIsIgnored() throws IOException {
+        snapshotFile.write(RULES, SEQUENCES);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(file, bytes);
+
+        assertTrue(snapshotFile().read().isEmpty());
+    }
+
+    @Test
+    void truncatedFileIsIgnored() throws IOException {
+        snapshotFile.write(RULES, SEQUENCES);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertTrue(snapshotFile().read().isEmpty());
+    }
+
+    @Test
+    void missingFileOrDisabledSnapshotReadsNothing() throws IOException {
+        assertTrue(snapshotFile.read().isEmpty());
+
+        snapshotFile.write(RULES, SEQUENCES);
+        snapshotFile.enabled = false;
+        assertTrue(snapshotFile.read().isEmpty());
+    }
+
+    @Test
+    void saveWritesTheLatestRuleSetInTheBackground() {
+        snapshotFile.save(RULES, SEQUENCES);
+        snapshotFile.save(RULES.subList(0, 1), List.of());
+
+        await(() -> snapshotFile().read().map(ruleSet -> ruleSet.rules().size() == 1).orElse(false));
+        assertTrue(snapshotFile().read().orElseThrow().sequences().isEmpty());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5s");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
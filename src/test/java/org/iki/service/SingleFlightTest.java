@@ -0,0 +1,105 @@
+package org.iki.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final List<CompletableFuture<String>> runs = new ArrayList<>();
+    private final List<Boolean> fullRuns = new ArrayList<>();
+    private SingleFlight<String> flight;
+
+    @BeforeEach
+    void setUp() {
+        flight = new SingleFlight<>(full -> {
+            CompletableFuture<String> run = new CompletableFuture<>();
+            runs.add(run);
+            fullRuns.add(full);
+            return run;
+        });
+    }
+
+    @Test
+    void requestsDuringARunShareOneFollowUp() throws Exception {
+        CompletableFuture<String> first = flight.request(false);
+        List<CompletableFuture<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(flight.request(false));
+        }
+        assertEquals(1, runs.size());
+        assertTrue(followers.stream().allMatch(follower -> follower == followers.get(0)));
+
+        runs.get(0).complete("first");
+        assertEquals("first", first.get());
+        assertEquals(2, runs.size());
+        assertFalse(followers.get(0).isDone());
+
+        runs.get(1).complete("second");
+        assertEquals("second", followers.get(0).get());
+        assertFalse(flight.isRunning());
+        assertEquals(6, flight.getRequestCount());
+        assertEquals(2, flight.getRunCount());
+    }
+
+    @Test
+    void followUpIsFullIfAnyCallerAskedForIt() {
+        flight.request(false);
+        flight.request(false);
+        flight.request(true);
+        flight.request(false);
+
+        runs.get(0).complete("delta");
+        assertEquals(List.of(false, true), fullRuns);
+    }
+
+    @Test
+    void joinSharesTheRunningRun() throws Exception {
+        CompletableFuture<String> first = flight.request(true);
+        CompletableFuture<String> joined = flight.join(false);
+        assertSame(first, joined);
+
+        runs.get(0).complete("only");
+        assertEquals("only", joined.get());
+        assertEquals(1, runs.size());
+    }
+
+    @Test
+    void fullJoinDoesNotJoinADeltaRun() {
+        CompletableFuture<String> first = flight.request(false);
+        CompletableFuture<String> joined = flight.join(true);
+        assertNotSame(first, joined);
+
+        runs.get(0).complete("delta");
+        assertEquals(List.of(false, true), fullRuns);
+    }
+
+    @Test
+    void failedRunFailsItsCallersAndStartsTheFollowUp() throws Exception {
+        CompletableFuture<String> first = flight.request(false);
+        CompletableFuture<String> follower = flight.request(false);
+
+        runs.get(0).completeExceptionally(new IllegalStateException("source down"));
+        ExecutionException e = assertThrows(ExecutionException.class, first::get);
+        assertEquals("source down", e.getCause().getMessage());
+
+        runs.get(1).complete("recovered");
+        assertEquals("recovered", follower.get());
+    }
+
+    @Test
+    void taskThatThrowsFailsTheRun() {
+        SingleFlight<String> throwing = new SingleFlight<>(full -> {
+            throw new IllegalStateException("no source");
+        });
+
+        assertThrows(ExecutionException.class, () -> throwing.request(false).get());
+        assertFalse(throwing.isRunning());
+    }
+}
@@ -0,0 +1,76 @@
+package org.iki.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Update and query cost of the windowed HyperLogLog sketches.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=CardinalityStoreBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardinalityStoreBenchmark {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Param({"9", "12"})
+    int precision;
+
+    private WindowedHyperLogLog sketch;
+    private String[] counterparties;
+    private long[] hashes;
+    private long now;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sketch = new WindowedHyperLogLog(precision, 3 * HOUR, 8);
+        counterparties = new String[4096];
+        hashes = new long[counterparties.length];
+        for (int i = 0; i < counterparties.length; i++) {
+            counterparties[i] = "ACC-" + i;
+            hashes[i] = Hashing.hash64(counterparties[i]);
+        }
+        now = System.currentTimeMillis();
+        for (int i = 0; i < 8; i++) {
+            for (long hash : hashes) {
+                sketch.add(now - i * 3 * HOUR, hash);
+            }
+        }
+    }
+
+    @Benchmark
+    public long hash() {
+        return Hashing.hash64(counterparties[next++ & 4095]);
+    }
+
+    @Benchmark
+    public boolean update() {
+        return sketch.add(now, hashes[next++ & 4095]);
+    }
+
+    @Benchmark
+    public long query1h() {
+        return sketch.estimate(now, HOUR);
+    }
+
+    @Benchmark
+    public long query24h() {
+        return sketch.estimate(now, 24 * HOUR);
+    }
+}
@@ -0,0 +1,121 @@
+package org.iki.state;
+
+import org.iki.model.TransactionEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardinalityStoreTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private CardinalityStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new CardinalityStore();
+        store.clock = new EventTimeClock();
+        store.precision = 9;
+        store.bucketSeconds = 10800;
+        store.buckets = 8;
+        store.maxKeys = 100;
+    }
+
+    private TransactionEvent event(String debit, String credit) {
+        return new TransactionEvent(debit, credit, "CIN-1", new BigDecimal("10.00"), Instant.now());
+    }
+
+    @Test
+    void countsDistinctCreditAccountsPerDebitAccount() {
+        for (int i = 0; i < 200; i++) {
+            store.record(event("FAN-OUT", "DEST-" + i));
+            store.record(event("FAN-OUT", "DEST-" + i));
+        }
+        long estimate = store.distinctCounterparties("FAN-OUT", 24 * HOUR);
+        assertTrue(Math.abs(estimate - 200) <= 20, "estimate " + estimate + " outside 10% of 200");
+    }
+
+    @Test
+    void countsDistinctSendersPerCreditAccount() {
+        for (int i = 0; i < 50; i++) {
+            store.record(event("SRC-" + i, "FAN-IN"));
+        }
+        long estimate = store.distinctSenders("FAN-IN", 24 * HOUR);
+        assertTrue(Math.abs(estimate - 50) <= 5, "estimate " + estimate + " outside 10% of 50");
+        assertEquals(1, store.distinctCounterparties("SRC-0", 24 * HOUR));
+    }
+
+    @Test
+    void unknownAccountReturnsZero() {
+        assertEquals(0, store.distinctCounterparties("missing", 24 * HOUR));
+    }
+
+    @Test
+    void sketchForgetsBucketsOutsideWindow() {
+        WindowedHyperLogLog sketch = new WindowedHyperLogLog(9, 3 * HOUR, 8);
+        long now = 1000 * HOUR;
+        for (int i = 0; i < 100; i++) {
+            sketch.add(now - 12 * HOUR, Hashing.hash64("OLD-" + i));
+        }
+        sketch.add(now, Hashing.hash64("NEW"));
+
+        assertEquals(1, sketch.estimate(now, 3 * HOUR));
+        assertTrue(sketch.estimate(now, 24 * HOUR) > 90);
+        assertEquals(0, sketch.estimate(now + 48 * HOUR, 24 * HOUR));
+    }
+
+    @Test
+    void windowsLongerThanTheRingAreRejected() {
+        store.record(event("FAN-OUT", "DEST-1"));
+
+        assertEquals(24 * HOUR, store.maxWindowMillis());
+        assertEquals(1, store.distinctCounterparties("FAN-OUT", 24 * HOUR));
+        assertThrows(IllegalArgumentException.class, () -> store.distinctCounterparties("FAN-OUT", 7 * 24 * HOUR));
+        assertThrows(IllegalArgumentException.class, () -> store.distinctSenders("missing", 7 * 24 * HOUR));
+        WindowedHyperLogLog sketch = new WindowedHyperLogLog(9, 3 * HOUR, 8);
+        assertThrows(IllegalArgumentException.class, () -> sketch.estimate(1000 * HOUR, 24 * HOUR + 1));
+    }
+
+    @Test
+    void estimateStaysWithinErrorBoundForLargeSets() {
+        WindowedHyperLogLog sketch = new WindowedHyperLogLog(9, 3 * HOUR, 8);
+        long now = 1000 * HOUR;
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(now, Hashing.hash64("ACC-" + i));
+        }
+        double error = Math.abs(sketch.estimate(now, 24 * HOUR) - 100_000) / 100_000.0;
+        // 3 standard errors at precision 9 (1.04 / sqrt(512) ~ 4.6%)
+        assertTrue(error < 0.14, "relative error " + error);
+    }
+
+    @Test
+    void memoryPerKeyMatchesConfiguration() {
+        assertEquals(512 * 8 + 8 * Long.BYTES, store.bytesPerKey());
+        assertEquals(store.bytesPerKey(), new WindowedHyperLogLog(9, 3 * HOUR, 8).sizeInBytes());
+    }
+
+    @Test
+    void keyCapCoversBothDirections() {
+        store.maxKeys = 3;
+        store.record(event("A", "B"));
+        store.record(event("C", "D"));
+
+        // A, B and C fill the cap; D's inbound sketch is dropped
+        assertEquals(3, store.keyCount());
+        assertEquals(1, store.getDroppedKeys());
+        assertEquals(1, store.distinctCounterparties("C", 24 * HOUR));
+        assertEquals(0, store.distinctSenders("D", 24 * HOUR));
+    }
+
+    @Test
+    void idleKeysAreEvicted() {
+        store.record(event("A", "B"));
+        assertEquals(2, store.keyCount());
+        assertEquals(2, store.evictIdle(System.currentTimeMillis() + 25 * HOUR));
+        assertEquals(0, store.keyCount());
+    }
+}
@@ -0,0 +1,112 @@
+package org.iki.state;
+
+import org.iki.model.TransactionEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to restore a full checkpoint of {@code keys} customer profiles and a velocity store of a hundredth as many
+ * accounts into empty stores, as done on startup. Setup writes the checkpoint once per trial.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=CheckpointRestoreBenchmark};
+ * the 10M case needs about 4 GB of free disk for the profile tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CheckpointRestoreBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int keys;
+
+    private Path directory;
+    private CheckpointService restoring;
+
+    @Setup(Level.Trial)
+    public void writeCheckpoint() throws IOException {
+        directory = Files.createTempDirectory("checkpoint-bench");
+        VelocityStore velocity = velocityStore();
+        ProfileStore profiles = profileStore("source.dat");
+        Instant now = Instant.now();
+        BigDecimal amount = new BigDecimal("25.00");
+        for (int i = 0; i < keys; i++) {
+            TransactionEvent event = new TransactionEvent("ACC-" + (i % (keys / 100)), "DEST-" + (i % 97),
+                    "CIN-" + i, amount, now);
+            velocity.record(event);
+            profiles.record(event);
+        }
+        service(velocity, profiles).checkpoint();
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyStores() throws IOException {
+        Files.deleteIfExists(directory.resolve("restored.dat"));
+        restoring = service(velocityStore(), profileStore("restored.dat"));
+    }
+
+    @Benchmark
+    public CheckpointService.RestoreResult restore() {
+        return restoring.restoreLatest();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private CheckpointService service(CheckpointableStore... stores) {
+        CheckpointService service = new CheckpointService();
+        service.enabled = true;
+        service.directory = directory.toString();
+        service.fullEvery = 10;
+        service.stores = List.of(stores);
+        return service;
+    }
+
+    private VelocityStore velocityStore() {
+        VelocityStore store = new VelocityStore();
+        store.clock = new EventTimeClock();
+        store.fineBucketSeconds = 60;
+        store.fineBuckets = 60;
+        store.coarseBucketSeconds = 3600;
+        store.coarseBuckets = 24;
+        store.maxKeys = keys / 100;
+        return store;
+    }
+
+    private ProfileStore profileStore(String name) {
+        ProfileStore store = new ProfileStore();
+        store.file = directory.resolve(name).toString();
+        store.capacity = keys + keys / 2;
+        store.averageWeight = 0.05;
+        store.init();
+        return store;
+    }
+}
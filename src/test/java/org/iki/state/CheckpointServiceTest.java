@@ -0,0 +1,229 @@
+package org.iki.state;
+
+import org.iki.model.TransactionEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointServiceTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private Path directory;
+    private VelocityStore velocity;
+    private CardinalityStore cardinality;
+    private ProfileStore profiles;
+    private CheckpointService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("checkpoints");
+        velocity = velocityStore(60);
+        cardinality = cardinalityStore();
+        profiles = profileStore("source.dat");
+        service = service(velocity, cardinality, profiles);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void fullCheckpointRestoresEveryStore() throws IOException {
+        record("ACC-1", "DEST-1", "CIN-1", "10.00");
+        record("ACC-1", "DEST-2", "CIN-1", "30.00");
+        record("ACC-2", "DEST-1", "CIN-2", "5.00");
+
+        CheckpointService.CheckpointResult written = service.checkpoint();
+        assertTrue(written.full());
+        assertEquals(0, written.sequence());
+
+        VelocityStore restoredVelocity = velocityStore(60);
+        CardinalityStore restoredCardinality = cardinalityStore();
+        ProfileStore restoredProfiles = profileStore("restored.dat");
+        CheckpointService.RestoreResult restored =
+                service(restoredVelocity, restoredCardinality, restoredProfiles).restoreLatest();
+
+        assertEquals(0, restored.sequence());
+        assertEquals(1, restored.files());
+        assertEquals(2, restoredVelocity.count(VelocityStore.KeyKind.ACCOUNT, "ACC-1", HOUR));
+        assertEquals(4000, restoredVelocity.sumMinor(VelocityStore.KeyKind.ACCOUNT, "ACC-1", HOUR));
+        assertEquals(2, restoredCardinality.distinctCounterparties("ACC-1", 24 * HOUR));
+        assertEquals(2, restoredCardinality.distinctSenders("DEST-1", 24 * HOUR));
+        assertEquals(profiles.lookup("CIN-1", "DEST-1"), restoredProfiles.lookup("CIN-1", "DEST-1"));
+        assertEquals(2, restoredProfiles.lookup("CIN-1", "DEST-1").txCount());
+    }
+
+    @Test
+    void deltasApplyOnTopOfTheFullCheckpoint() throws IOException {
+        record("ACC-1", "DEST-1", "CIN-1", "10.00");
+        service.checkpoint();
+        record("ACC-1", "DEST-2", "CIN-1", "20.00");
+        record("ACC-3", "DEST-3", "CIN-3", "1.00");
+
+        CheckpointService.CheckpointResult delta = service.checkpoint();
+        assertFalse(delta.full());
+        assertEquals(1, delta.sequence());
+
+        VelocityStore restoredVelocity = velocityStore(60);
+        ProfileStore restoredProfiles = profileStore("restored.dat");
+        CheckpointService.RestoreResult restored =
+                service(restoredVelocity, cardinalityStore(), restoredProfiles).restoreLatest();
+
+        assertEquals(1, restored.sequence());
+        assertEquals(2, restored.files());
+        assertEquals(2, restoredVelocity.count(VelocityStore.KeyKind.ACCOUNT, "ACC-1", HOUR));
+        assertEquals(1, restoredVelocity.count(VelocityStore.KeyKind.ACCOUNT, "ACC-3", HOUR));
+        assertEquals(2, restoredProfiles.lookup("CIN-1", "DEST-2").txCount());
+        assertTrue(restoredProfiles.lookup("CIN-1", "DEST-2").knownCounterparty());
+    }
+
+    @Test
+    void deltaOnlyCarriesChangedProfiles() throws IOException {
+        CheckpointService profileCheckpoints = service(profiles);
+        for (int i = 0; i < 50; i++) {
+            profiles.record(event("ACC-" + i, "DEST-" + i, "CIN-" + i, "10.00"));
+        }
+        profileCheckpoints.checkpoint();
+        profiles.record(event("ACC-0", "DEST-0", "CIN-0", "10.00"));
+
+        CheckpointService.CheckpointResult delta = profileCheckpoints.checkpoint();
+        assertFalse(delta.full());
+        assertEquals(1, delta.records());
+    }
+
+    @Test
+    void incompleteCheckpointIsIgnored() throws IOException {
+        record("ACC-1", "DEST-1", "CIN-1", "10.00");
+        service.checkpoint();
+        record("ACC-1", "DEST-2", "CIN-1", "20.00");
+        service.checkpoint();
+        corruptTrailer(checkpointFiles().get(1));
+
+        VelocityStore restoredVelocity = velocityStore(60);
+        CheckpointService restoring = service(restoredVelocity, cardinalityStore(), profileStore("restored.dat"));
+        CheckpointService.RestoreResult restored = restoring.restoreLatest();
+
+        assertEquals(0, restored.sequence());
+        assertEquals(1, restoredVelocity.count(VelocityStore.KeyKind.ACCOUNT, "ACC-1", HOUR));
+        // The incomplete delta is discarded and its sequence number reused by the next checkpoint
+        assertEquals(1, checkpointFiles().size());
+        assertEquals(1, restoring.checkpoint().sequence());
+    }
+
+    @Test
+    void storeWithDifferentConfigurationIsNotRestored() throws IOException {
+        record("ACC-1", "DEST-1", "CIN-1", "10.00");
+        service.checkpoint();
+
+        VelocityStore resized = velocityStore(30);
+        ProfileStore restoredProfiles = profileStore("restored.dat");
+        service(resized, cardinalityStore(), restoredProfiles).restoreLatest();
+
+        assertEquals(0, resized.keyCount());
+        assertEquals(1, restoredProfiles.lookup("CIN-1", "DEST-1").txCount());
+    }
+
+    @Test
+    void fullCheckpointPrunesOlderFiles() throws IOException {
+        service.fullEvery = 3;
+        record("ACC-1", "DEST-1", "CIN-1", "10.00");
+        assertTrue(service.checkpoint().full());
+        assertFalse(service.checkpoint().full());
+        assertFalse(service.checkpoint().full());
+        assertEquals(3, checkpointFiles().size());
+
+        assertTrue(service.checkpoint().full());
+        List<Path> files = checkpointFiles();
+        assertEquals(1, files.size());
+        assertEquals("checkpoint-0000000000000003.full", files.get(0).getFileName().toString());
+    }
+
+    @Test
+    void nothingToRestoreLeavesStoresEmpty() {
+        assertEquals(CheckpointService.RestoreResult.NONE, service.restoreLatest());
+        assertEquals(0, velocity.keyCount());
+    }
+
+    private void record(String debit, String credit, String cin, String amount) {
+        TransactionEvent event = event(debit, credit, cin, amount);
+        velocity.record(event);
+        cardinality.record(event);
+        profiles.record(event);
+    }
+
+    private static TransactionEvent event(String debit, String credit, String cin, String amount) {
+        return new TransactionEvent(debit, credit, cin, new BigDecimal(amount), Instant.now());
+    }
+
+    private List<Path> checkpointFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith("checkpoint-"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void corruptTrailer(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write(raf.read() ^ 0xFF);
+        }
+    }
+
+    private CheckpointService service(CheckpointableStore... stores) {
+        CheckpointService checkpoints = new CheckpointService();
+        checkpoints.enabled = true;
+        checkpoints.directory = directory.toString();
+        checkpoints.fullEvery = 10;
+        checkpoints.stores = List.of(stores);
+        return checkpoints;
+    }
+
+    private static VelocityStore velocityStore(int fineBuckets) {
+        VelocityStore store = new VelocityStore();
+        store.clock = new EventTimeClock();
+        store.fineBucketSeconds = 60;
+        store.fineBuckets = fineBuckets;
+        store.coarseBucketSeconds = 3600;
+        store.coarseBuckets = 24;
+        store.maxKeys = 100;
+        return store;
+    }
+
+    private static CardinalityStore cardinalityStore() {
+        CardinalityStore store = new CardinalityStore();
+        store.clock = new EventTimeClock();
+        store.precision = 9;
+        store.bucketSeconds = 10800;
+        store.buckets = 8;
+        store.maxKeys = 100;
+        return store;
+    }
+
+    private ProfileStore profileStore(String name) {
+        ProfileStore store = new ProfileStore();
+        store.file = directory.resolve(name).toString();
+        store.capacity = 1024;
+        store.averageWeight = 0.05;
+        store.init();
+        return store;
+    }
+}
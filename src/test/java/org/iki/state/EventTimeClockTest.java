@@ -0,0 +1,116 @@
+package org.iki.state;
+
+import org.iki.model.TransactionEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventTimeClockTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private EventTimeClock clock;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        clock = new EventTimeClock();
+        clock.allowedLatenessSeconds = 300;
+        clock.maxFutureSeconds = 300;
+        clock.partitions = 4;
+        clock.idlePartitionSeconds = 60;
+        clock.init();
+        now = System.currentTimeMillis();
+    }
+
+    private static TransactionEvent event(String cin, long timeMillis) {
+        return new TransactionEvent("ACC-1", "ACC-2", cin, BigDecimal.TEN, Instant.ofEpochMilli(timeMillis));
+    }
+
+    @Test
+    void followsWallClockUntilTheFirstEvent() {
+        assertTrue(Math.abs(clock.now() - System.currentTimeMillis()) < MINUTE);
+        assertEquals(Long.MIN_VALUE, clock.lowWatermark());
+
+        long replayed = now - 24 * 60 * MINUTE;
+        assertTrue(clock.admit(event("CIN-1", replayed)));
+        assertEquals(replayed, clock.now());
+    }
+
+    @Test
+    void eventsWithinAllowedLatenessAreAdmitted() {
+        assertTrue(clock.admit(event("CIN-1", now)));
+        assertTrue(clock.admit(event("CIN-1", now - 4 * MINUTE)));
+        assertFalse(clock.admit(event("CIN-1", now - 6 * MINUTE)));
+
+        assertEquals(1, clock.getLateEvents());
+        // A late event does not move the clock back
+        assertEquals(now, clock.now());
+        assertEquals(now - 5 * MINUTE, clock.watermark("CIN-1"));
+    }
+
+    @Test
+    void watermarksArePerPartition() {
+        String other = otherPartition("CIN-1");
+        assertTrue(clock.admit(event("CIN-1", now)));
+        // A customer in a lagging partition is not late against the faster one
+        assertTrue(clock.admit(event(other, now - 30 * MINUTE)));
+
+        assertEquals(0, clock.getLateEvents());
+        assertEquals(now - 35 * MINUTE, clock.lowWatermark());
+    }
+
+    @Test
+    void eventsTooFarInTheFutureAreRejected() {
+        assertFalse(clock.admit(event("CIN-1", now + 10 * MINUTE)));
+
+        assertEquals(1, clock.getFutureEvents());
+        assertEquals(Long.MIN_VALUE, clock.watermark("CIN-1"));
+    }
+
+    @Test
+    void idlePartitionsDoNotHoldBackTheLowWatermark() {
+        assertTrue(clock.admit(event("CIN-1", now)));
+        assertTrue(clock.admit(event(otherPartition("CIN-1"), now - 30 * MINUTE)));
+
+        assertEquals(Long.MIN_VALUE, clock.lowWatermark(now + 2 * MINUTE));
+    }
+
+    @Test
+    void windowsEndAtTheEvaluatedEvent() {
+        String lagging = otherPartition("CIN-1");
+        assertTrue(clock.admit(event("CIN-1", now)));
+        assertTrue(clock.admit(event(lagging, now - 30 * MINUTE)));
+
+        clock.beginEvaluation(event(lagging, now - 30 * MINUTE));
+        assertEquals(now - 30 * MINUTE, clock.now());
+        clock.endEvaluation();
+        assertEquals(now, clock.now());
+
+        // An event ahead of every store is capped at the latest event time
+        clock.beginEvaluation(event("CIN-1", now + 10 * MINUTE));
+        assertEquals(now, clock.now());
+        clock.endEvaluation();
+    }
+
+    @Test
+    void advanceOnlyMovesForward() {
+        clock.advance(now);
+        clock.advance(now - MINUTE);
+
+        assertEquals(now, clock.now());
+    }
+
+    private String otherPartition(String cin) {
+        for (int i = 0; ; i++) {
+            String candidate = "CIN-" + i;
+            if (Math.floorMod(candidate.hashCode(), 4) != Math.floorMod(cin.hashCode(), 4)) {
+                return candidate;
+            }
+        }
+    }
+}
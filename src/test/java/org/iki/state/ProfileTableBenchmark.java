@@ -0,0 +1,61 @@
+package org.iki.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Update and lookup cost of a profile table holding 1M customers.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=ProfileTableBenchmark}
+ * and {@code -prof gc} to confirm updates do not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileTableBenchmark {
+
+    private static final int CUSTOMERS = 1_000_000;
+
+    private ProfileTable table;
+    private String[] cins;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path file = Files.createTempFile("profile-bench", ".dat");
+        file.toFile().deleteOnExit();
+        table = ProfileTable.create(file, 2 * CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            table.update("CIN-" + i, "ACC-" + (i % 97), 100.0, 1_700_000_000_000L, 0.05);
+        }
+        cins = new String[1024];
+        for (int i = 0; i < cins.length; i++) {
+            cins[i] = "CIN-" + (i * 977);
+        }
+    }
+
+    @Benchmark
+    public boolean update() {
+        return table.update(cins[next++ & 1023], "ACC-1", 250.0, 1_700_000_000_000L, 0.05);
+    }
+
+    @Benchmark
+    public Profile lookup() {
+        return table.lookup(cins[next++ & 1023], "ACC-1");
+    }
+}
@@ -0,0 +1,121 @@
+package org.iki.state;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileTableTest {
+
+    private static final long T0 = 1_718_447_400_000L;
+
+    private Path file;
+    private ProfileTable table;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("profiles", ".dat");
+        table = ProfileTable.create(file, 1024);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void unknownCinHasNoProfile() {
+        assertEquals(Profile.NONE, table.lookup("CIN-1", "ACC-2"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void recordsCountAverageAndLastTransaction() {
+        table.update("CIN-1", "ACC-2", 100.0, T0, 0.1);
+        table.update("CIN-1", "ACC-3", 300.0, T0 + 60_000, 0.1);
+        table.update("CIN-1", "ACC-2", 200.0, T0 - 60_000, 0.1);
+
+        Profile profile = table.lookup("CIN-1", "ACC-2");
+        assertEquals(3, profile.txCount());
+        assertEquals(200.0, profile.avgAmount(), 1e-9);
+        assertEquals((T0 + 60_000) / 1000, profile.lastTxEpochSeconds());
+        assertTrue(profile.knownCounterparty());
+        assertFalse(table.lookup("CIN-1", "ACC-9").knownCounterparty());
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void averageBecomesExponentiallyWeightedAfterWarmUp() {
+        // weight 0.5: exact mean for the first two events, then halfway towards each new amount
+        table.update("CIN-1", "ACC-2", 100.0, T0, 0.5);
+        table.update("CIN-1", "ACC-2", 200.0, T0, 0.5);
+        table.update("CIN-1", "ACC-2", 1000.0, T0, 0.5);
+
+        assertEquals(575.0, table.lookup("CIN-1", "ACC-2").avgAmount(), 1e-9);
+    }
+
+    @Test
+    void collidingSlotsAreProbedLinearly() {
+        for (int i = 0; i < 700; i++) {
+            assertTrue(table.update("CIN-" + i, "ACC", i, T0, 0.1));
+        }
+        for (int i = 0; i < 700; i++) {
+            Profile profile = table.lookup("CIN-" + i, "ACC");
+            assertEquals(1, profile.txCount(), "CIN-" + i);
+            assertEquals(i, profile.avgAmount(), 1e-9);
+        }
+        assertEquals(700, table.size());
+    }
+
+    @Test
+    void newKeysAreRejectedAtMaximumLoad() {
+        int accepted = 0;
+        for (int i = 0; i < 1024; i++) {
+            if (table.update("CIN-" + i, "ACC", 1.0, T0, 0.1)) {
+                accepted++;
+            }
+        }
+        assertEquals(768, accepted);
+        assertTrue(table.update("CIN-0", "ACC", 1.0, T0, 0.1), "existing keys are still updated");
+    }
+
+    @Test
+    void capacityIsRoundedToPowerOfTwo() throws IOException {
+        Path other = Files.createTempFile("profiles", ".dat");
+        try {
+            ProfileTable rounded = ProfileTable.create(other, 3_000_000);
+            assertEquals(1 << 22, rounded.capacity());
+            assertEquals((long) (1 << 22) * ProfileTable.RECORD_BYTES, Files.size(other));
+        } finally {
+            Files.deleteIfExists(other);
+        }
+    }
+
+    @Test
+    void concurrentUpdatesAreNotLost() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    table.update("CIN-" + (i % 50), "ACC", 10.0, T0, 0.1);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long total = 0;
+        for (int i = 0; i < 50; i++) {
+            total += table.lookup("CIN-" + i, "ACC").txCount();
+        }
+        assertEquals(8000, total);
+        assertEquals(50, table.size());
+    }
+}
@@ -0,0 +1,127 @@
+package org.iki.state;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceStoreTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long T0 = 1_718_447_400_000L;
+    private static final long STEP_0 = 1;
+    private static final long STEP_1 = 1 << 1;
+    private static final long STEP_2 = 1 << 2;
+
+    private SequenceStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new SequenceStore();
+        store.maxKeys = 100;
+    }
+
+    @Test
+    void twoStepSequenceCompletesWithinWindow() {
+        SequenceStore.Partials partials = store.partials(1L, 2, 30 * MINUTE);
+
+        assertFalse(partials.advance("CIN-1", T0, STEP_0));
+        assertEquals(STEP_1, partials.waitingSteps("CIN-1", T0 + MINUTE));
+        assertTrue(partials.advance("CIN-1", T0 + 10 * MINUTE, STEP_1));
+        // The completed partial match is consumed
+        assertEquals(0, partials.size());
+    }
+
+    @Test
+    void partialMatchExpiresAfterWindow() {
+        SequenceStore.Partials partials = store.partials(1L, 2, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+
+        assertEquals(0, partials.waitingSteps("CIN-1", T0 + 31 * MINUTE));
+        assertFalse(partials.advance("CIN-1", T0 + 31 * MINUTE, STEP_1));
+        assertEquals(0, partials.size());
+    }
+
+    @Test
+    void oneEventTakesAtMostOneStep() {
+        SequenceStore.Partials partials = store.partials(1L, 3, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+
+        // Satisfies steps 1 and 2, but the partial match only moves to step 2
+        assertFalse(partials.advance("CIN-1", T0 + MINUTE, STEP_1 | STEP_2));
+        assertEquals(STEP_2, partials.waitingSteps("CIN-1", T0 + 2 * MINUTE));
+        assertTrue(partials.advance("CIN-1", T0 + 2 * MINUTE, STEP_2));
+    }
+
+    @Test
+    void windowIsMeasuredFromTheFirstStep() {
+        SequenceStore.Partials partials = store.partials(1L, 3, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+        partials.advance("CIN-1", T0 + 20 * MINUTE, STEP_1);
+
+        assertFalse(partials.advance("CIN-1", T0 + 40 * MINUTE, STEP_2));
+    }
+
+    @Test
+    void laterStartKeepsTheSequenceAlive() {
+        SequenceStore.Partials partials = store.partials(1L, 2, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+        partials.advance("CIN-1", T0 + 20 * MINUTE, STEP_0);
+
+        assertTrue(partials.advance("CIN-1", T0 + 45 * MINUTE, STEP_1));
+    }
+
+    @Test
+    void eventsOfOtherCustomersDoNotAdvance() {
+        SequenceStore.Partials partials = store.partials(1L, 2, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+
+        assertFalse(partials.advance("CIN-2", T0 + MINUTE, STEP_1));
+        assertEquals(1, partials.size());
+    }
+
+    @Test
+    void keyCapDropsNewPartialMatches() {
+        store.maxKeys = 2;
+        SequenceStore.Partials partials = store.partials(1L, 2, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+        partials.advance("CIN-2", T0, STEP_0);
+        partials.advance("CIN-3", T0, STEP_0);
+
+        assertEquals(2, store.keyCount());
+        assertEquals(1, store.getDroppedKeys());
+        assertEquals(2 * (64 + Long.BYTES), store.memoryBytes());
+    }
+
+    @Test
+    void expiredPartialMatchesAreEvicted() {
+        SequenceStore.Partials partials = store.partials(1L, 2, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+        partials.advance("CIN-2", T0 + 20 * MINUTE, STEP_0);
+
+        assertEquals(1, store.evictIdle(T0 + 40 * MINUTE));
+        assertEquals(1, store.keyCount());
+    }
+
+    @Test
+    void partialMatchesSurviveRecompilationOfAnUnchangedRule() {
+        SequenceStore.Partials partials = store.partials(1L, 2, 30 * MINUTE);
+        partials.advance("CIN-1", T0, STEP_0);
+
+        assertSame(partials, store.partials(1L, 2, 30 * MINUTE));
+        assertNotSame(partials, store.partials(1L, 2, 60 * MINUTE));
+        assertEquals(0, store.keyCount());
+    }
+
+    @Test
+    void removedRulesDropTheirPartialMatches() {
+        store.partials(1L, 2, 30 * MINUTE).advance("CIN-1", T0, STEP_0);
+        store.partials(2L, 2, 30 * MINUTE).advance("CIN-1", T0, STEP_0);
+
+        store.retain(Set.of(2L));
+
+        assertEquals(1, store.keyCount());
+    }
+}
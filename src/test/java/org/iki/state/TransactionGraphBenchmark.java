@@ -0,0 +1,89 @@
+package org.iki.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append and query cost of a transfer graph holding millions of edges over 24h, between a tenth as many
+ * accounts chosen uniformly at random. {@code inCycle} is bounded by {@code max-visits} edges per search.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=TransactionGraphBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TransactionGraphBenchmark {
+
+    private static final long DAY = 86_400_000L;
+    private static final long HOUR = 3_600_000L;
+
+    @Param({"1000000", "5000000"})
+    int edges;
+
+    private TransactionGraphStore store;
+    private String[] accounts;
+    private SplittableRandom random;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        store = new TransactionGraphStore();
+        store.clock = new EventTimeClock();
+        store.retentionSeconds = DAY / 1000;
+        store.maxEdges = 2L * edges;
+        store.maxVisits = 20_000;
+        accounts = new String[edges / 10];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = "ACC-" + i;
+        }
+        random = new SplittableRandom(42);
+        now = System.currentTimeMillis();
+        long start = now - DAY;
+        for (int i = 0; i < edges; i++) {
+            store.addTransfer(account(), account(), start + i * (DAY / edges));
+        }
+    }
+
+    private String account() {
+        return accounts[random.nextInt(accounts.length)];
+    }
+
+    @Benchmark
+    public void addTransfer() {
+        store.addTransfer(account(), account(), now);
+    }
+
+    @Benchmark
+    public long inDegree1h() {
+        return store.degree(account(), false, now, HOUR);
+    }
+
+    @Benchmark
+    public long outDegree24h() {
+        return store.degree(account(), true, now, DAY);
+    }
+
+    @Benchmark
+    public boolean inCycleDepth3() {
+        return store.inCycle(account(), 3, now, DAY);
+    }
+
+    @Benchmark
+    public boolean inCycleDepth5() {
+        return store.inCycle(account(), 5, now, DAY);
+    }
+}
@@ -0,0 +1,189 @@
+package org.iki.state;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionGraphStoreTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long T0 = 1_718_447_400_000L;
+
+    private TransactionGraphStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new TransactionGraphStore();
+        store.clock = new EventTimeClock();
+        store.retentionSeconds = 86400;
+        store.maxEdges = 1000;
+        store.maxVisits = 1000;
+    }
+
+    @Test
+    void degreesCountDistinctCounterpartiesInWindow() {
+        store.addTransfer("A", "B", T0 - 3 * HOUR);
+        store.addTransfer("A", "B", T0 - 10 * MINUTE);
+        store.addTransfer("A", "C", T0 - 5 * MINUTE);
+        store.addTransfer("D", "B", T0 - MINUTE);
+
+        assertEquals(2, store.degree("A", true, T0, HOUR));
+        assertEquals(2, store.degree("A", true, T0, 24 * HOUR));
+        assertEquals(2, store.degree("B", false, T0, HOUR));
+        assertEquals(0, store.degree("B", true, T0, HOUR));
+        assertEquals(0, store.degree("unknown", false, T0, HOUR));
+    }
+
+    @Test
+    void degreeWindowExcludesOlderEdges() {
+        store.addTransfer("A", "B", T0 - 2 * HOUR);
+        store.addTransfer("C", "B", T0 - 10 * MINUTE);
+
+        assertEquals(1, store.degree("B", false, T0, HOUR));
+        assertEquals(2, store.degree("B", false, T0, 3 * HOUR));
+    }
+
+    @Test
+    void windowsLongerThanTheRetentionAreRejected() {
+        store.addTransfer("A", "B", T0 - 10 * MINUTE);
+
+        assertEquals(24 * HOUR, store.maxWindowMillis());
+        assertEquals(1, store.degree("A", true, T0, 24 * HOUR));
+        assertThrows(IllegalArgumentException.class, () -> store.degree("A", true, T0, 7 * 24 * HOUR));
+        assertThrows(IllegalArgumentException.class, () -> store.inCycle("A", 2, T0, 7 * 24 * HOUR));
+    }
+
+    @Test
+    void lateEdgesAreInsertedAtTheirEventTime() {
+        store.addTransfer("A", "B", T0 - 10 * MINUTE);
+        store.addTransfer("A", "C", T0 - 2 * HOUR);
+        store.addTransfer("A", "D", T0 - 5 * MINUTE);
+
+        assertEquals(2, store.degree("A", true, T0, HOUR));
+        assertEquals(3, store.degree("A", true, T0, 3 * HOUR));
+    }
+
+    @Test
+    void repeatedNeighboursAreCountedOnceAcrossLateAndDroppedEdges() {
+        store.addTransfer("A", "B", T0 - 3 * HOUR);
+        store.addTransfer("A", "C", T0 - 2 * HOUR);
+        store.addTransfer("A", "B", T0 - 10 * MINUTE);
+        store.addTransfer("A", "C", T0 - 5 * MINUTE);
+        // Late: becomes the previous edge to B of the one at 10 minutes
+        store.addTransfer("A", "B", T0 - 30 * MINUTE);
+
+        assertEquals(2, store.degree("A", true, T0, 45 * MINUTE));
+        assertEquals(1, store.degree("A", true, T0, 7 * MINUTE));
+        assertEquals(2, store.degree("A", true, T0, 4 * HOUR));
+
+        // The edge to B at 3 hours is dropped on append; the others to B still count once
+        store.addTransfer("A", "D", T0 + 21 * HOUR + 30 * MINUTE);
+        assertEquals(3, store.degree("A", true, T0 + 21 * HOUR + 30 * MINUTE, 24 * HOUR));
+    }
+
+    @Test
+    void threeHopRoundTripIsACycle() {
+        store.addTransfer("A", "B", T0 - 30 * MINUTE);
+        store.addTransfer("B", "C", T0 - 20 * MINUTE);
+        store.addTransfer("C", "A", T0 - 10 * MINUTE);
+
+        assertTrue(store.inCycle("A", 3, T0, 24 * HOUR));
+        // From B the route would need A to pay B after C paid A
+        assertFalse(store.inCycle("B", 3, T0, 24 * HOUR));
+        assertFalse(store.inCycle("A", 2, T0, 24 * HOUR));
+    }
+
+    @Test
+    void cycleMustFollowTimeOrder() {
+        // C pays A before B pays C, so money from A cannot have returned
+        store.addTransfer("C", "A", T0 - 30 * MINUTE);
+        store.addTransfer("A", "B", T0 - 20 * MINUTE);
+        store.addTransfer("B", "C", T0 - 10 * MINUTE);
+
+        assertFalse(store.inCycle("A", 3, T0, 24 * HOUR));
+    }
+
+    @Test
+    void cycleMustFitInWindow() {
+        store.addTransfer("A", "B", T0 - 3 * HOUR);
+        store.addTransfer("B", "A", T0 - 10 * MINUTE);
+
+        assertTrue(store.inCycle("A", 2, T0, 24 * HOUR));
+        assertFalse(store.inCycle("A", 2, T0, HOUR));
+    }
+
+    @Test
+    void laterRouteIsFoundWhenEarlierOneDeadEnds() {
+        store.addTransfer("A", "B", T0 - 40 * MINUTE);
+        store.addTransfer("B", "C", T0 - 50 * MINUTE);
+        store.addTransfer("A", "D", T0 - 30 * MINUTE);
+        store.addTransfer("D", "C", T0 - 20 * MINUTE);
+        store.addTransfer("C", "A", T0 - 10 * MINUTE);
+
+        assertTrue(store.inCycle("A", 3, T0, 24 * HOUR));
+    }
+
+    @Test
+    void invalidDepthIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> store.inCycle("A", 1, T0, HOUR));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.inCycle("A", TransactionGraphStore.MAX_DEPTH + 1, T0, HOUR));
+    }
+
+    @Test
+    void searchStopsAtVisitBudget() {
+        store.maxVisits = 10;
+        for (int i = 0; i < 50; i++) {
+            store.addTransfer("HUB", "SPOKE-" + i, T0 - 20 * MINUTE);
+            store.addTransfer("SPOKE-" + i, "HUB", T0 - 10 * MINUTE);
+        }
+
+        assertFalse(store.inCycle("HUB", 2, T0, HOUR));
+        assertEquals(1, store.getExhaustedSearches());
+    }
+
+    @Test
+    void selfTransfersAreIgnored() {
+        store.addTransfer("A", "A", T0);
+
+        assertEquals(0, store.getEdgeCount());
+        assertEquals(0, store.keyCount());
+    }
+
+    @Test
+    void edgeCapDropsNewTransfers() {
+        store.maxEdges = 2;
+        store.addTransfer("A", "B", T0);
+        store.addTransfer("A", "C", T0);
+        store.addTransfer("A", "D", T0);
+
+        assertEquals(2, store.getEdgeCount());
+        assertEquals(1, store.getDroppedEdges());
+    }
+
+    @Test
+    void expiredEdgesArePrunedOnAppend() {
+        store.addTransfer("A", "B", T0 - 25 * HOUR);
+        store.addTransfer("A", "C", T0);
+
+        assertEquals(1, store.getEdgeCount());
+    }
+
+    @Test
+    void idleAccountsAreEvictedAndIdsReused() {
+        store.addTransfer("A", "B", T0 - 2 * HOUR);
+        store.addTransfer("C", "D", T0);
+        long before = store.sizeInBytes();
+
+        assertEquals(2, store.evictIdle(T0 + 23 * HOUR));
+        assertEquals(2, store.keyCount());
+        assertEquals(1, store.getEdgeCount());
+        assertTrue(store.sizeInBytes() < before);
+
+        store.addTransfer("E", "F", T0 + 23 * HOUR);
+        assertEquals(4, store.keyCount());
+        assertEquals(1, store.degree("E", true, T0 + 23 * HOUR, HOUR));
+    }
+}
@@ -0,0 +1,178 @@
+package org.iki.state;
+
+import org.iki.model.TransactionEvent;
+import org.iki.state.VelocityStore.KeyKind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityStoreTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    private VelocityStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new VelocityStore();
+        store.clock = new EventTimeClock();
+        store.fineBucketSeconds = 60;
+        store.fineBuckets = 60;
+        store.coarseBucketSeconds = 3600;
+        store.coarseBuckets = 24;
+        store.maxKeys = 100;
+    }
+
+    // --- RingCounter ---
+
+    @Test
+    void ringCountsSumsAndMaxesWithinWindow() {
+        RingCounter ring = new RingCounter(MINUTE, 60);
+        long now = 100 * HOUR;
+        ring.add(now - 5 * MINUTE, 100);
+        ring.add(now - 2 * MINUTE, 300);
+        ring.add(now, 200);
+
+        assertEquals(3, ring.count(now, HOUR));
+        assertEquals(600, ring.sum(now, HOUR));
+        assertEquals(300, ring.max(now, HOUR));
+        assertEquals(1, ring.count(now, MINUTE));
+    }
+
+    @Test
+    void ringIgnoresExpiredBuckets() {
+        RingCounter ring = new RingCounter(MINUTE, 60);
+        long now = 100 * HOUR;
+        ring.add(now - 2 * HOUR, 500);
+
+        assertEquals(0, ring.count(now, HOUR));
+        assertEquals(0, ring.max(now, HOUR));
+    }
+
+    @Test
+    void ringReusesSlotAfterWrapAround() {
+        RingCounter ring = new RingCounter(MINUTE, 60);
+        long now = 100 * HOUR;
+        ring.add(now - HOUR, 500);
+        ring.add(now, 7);
+
+        assertEquals(1, ring.count(now, HOUR));
+        assertEquals(7, ring.sum(now, HOUR));
+    }
+
+    @Test
+    void ringDropsObservationsOlderThanSlotOwner() {
+        RingCounter ring = new RingCounter(MINUTE, 60);
+        long now = 100 * HOUR;
+        ring.add(now, 1);
+        assertFalse(ring.add(now - HOUR, 1));
+    }
+
+    // --- VelocityStore ---
+
+    @Test
+    void countAndSumAcrossShortAndLongWindows() {
+        long now = System.currentTimeMillis();
+        store.add(KeyKind.CIN, "CIN-1", now - 3 * HOUR, 10_000);
+        store.add(KeyKind.CIN, "CIN-1", now - 10 * MINUTE, 20_000);
+        store.add(KeyKind.CIN, "CIN-1", now, 30_000);
+
+        assertEquals(2, store.count(KeyKind.CIN, "CIN-1", HOUR));
+        assertEquals(50_000, store.sumMinor(KeyKind.CIN, "CIN-1", HOUR));
+        assertEquals(3, store.count(KeyKind.CIN, "CIN-1", 24 * HOUR));
+        assertEquals(30_000, store.maxMinor(KeyKind.CIN, "CIN-1", 24 * HOUR));
+    }
+
+    @Test
+    void unknownKeyReturnsZero() {
+        assertEquals(0, store.count(KeyKind.CIN, "missing", HOUR));
+        assertEquals(0, store.sumMinor(KeyKind.CIN, "missing", HOUR));
+    }
+
+    @Test
+    void idleKeysAreEvicted() {
+        long now = System.currentTimeMillis();
+        store.add(KeyKind.CIN, "old", now - 48 * HOUR, 1);
+        store.add(KeyKind.CIN, "fresh", now, 1);
+
+        assertEquals(1, store.evictIdle(now));
+        assertEquals(1, store.keyCount());
+    }
+
+    @Test
+    void eventsAreBucketedByTransactionTime() {
+        // A replayed day: windows end at the newest event time, not at the wall clock
+        long t0 = System.currentTimeMillis() - 24 * HOUR;
+        store.record(new TransactionEvent("ACC-1", "ACC-2", "CIN-1", new BigDecimal("10.00"), Instant.ofEpochMilli(t0)));
+        store.record(new TransactionEvent("ACC-1", "ACC-2", "CIN-1", new BigDecimal("20.00"),
+                Instant.ofEpochMilli(t0 + 30 * MINUTE)));
+        // Out of order, but still inside the hour window ending at the newest event
+        store.record(new TransactionEvent("ACC-1", "ACC-2", "CIN-1", new BigDecimal("5.00"),
+                Instant.ofEpochMilli(t0 + 20 * MINUTE)));
+
+        assertEquals(3, store.count(KeyKind.CIN, "CIN-1", HOUR));
+        assertEquals(2, store.count(KeyKind.CIN, "CIN-1", 15 * MINUTE));
+        assertEquals(35_00, store.sumMinor(KeyKind.CIN, "CIN-1", HOUR));
+    }
+
+    @Test
+    void cinAndAccountKeysAreKeptApart() {
+        long now = System.currentTimeMillis();
+        // Customer 42 pays from account 7, while account 42 belongs to someone else
+        store.record(new TransactionEvent("7", "ACC-2", "42", new BigDecimal("10.00"), Instant.ofEpochMilli(now)));
+        store.record(new TransactionEvent("42", "ACC-2", "CIN-9", new BigDecimal("5.00"), Instant.ofEpochMilli(now)));
+
+        assertEquals(1000, store.sumMinor(KeyKind.CIN, "42", HOUR));
+        assertEquals(500, store.sumMinor(KeyKind.ACCOUNT, "42", HOUR));
+        assertEquals(4, store.keyCount());
+    }
+
+    @Test
+    void windowsLongerThanTheRingsAreRejected() {
+        store.add(KeyKind.CIN, "CIN-1", System.currentTimeMillis(), 1);
+
+        assertEquals(24 * HOUR, store.maxWindowMillis());
+        assertEquals(1, store.count(KeyKind.CIN, "CIN-1", 24 * HOUR));
+        assertThrows(IllegalArgumentException.class, () -> store.count(KeyKind.CIN, "CIN-1", 7 * 24 * HOUR));
+    }
+
+    @Test
+    void keyKindsParseFromRules() {
+        assertEquals(KeyKind.CIN, KeyKind.parse("cin"));
+        assertEquals(KeyKind.ACCOUNT, KeyKind.parse("account"));
+        assertThrows(IllegalArgumentException.class, () -> KeyKind.parse("customer"));
+    }
+
+    @Test
+    void newKeysAreDroppedAtCapacity() {
+        store.maxKeys = 1;
+        long now = System.currentTimeMillis();
+        store.add(KeyKind.CIN, "a", now, 1);
+        store.add(KeyKind.CIN, "b", now, 1);
+
+        assertEquals(1, store.keyCount());
+        assertEquals(1, store.getDroppedKeys());
+    }
+
+    @Test
+    void amountsConvertToMinorUnits() {
+        assertEquals(1_234_57, VelocityStore.toMinorUnits(new BigDecimal("1234.567")));
+        assertEquals(100, VelocityStore.toMinorUnits(new BigDecimal("1")));
+    }
+
+    @Test
+    void windowLiteralsParse() {
+        assertEquals(30_000, WindowDurations.toMillis("30s"));
+        assertEquals(15 * MINUTE, WindowDurations.toMillis("15m"));
+        assertEquals(24 * HOUR, WindowDurations.toMillis("24h"));
+        assertEquals(24 * HOUR, WindowDurations.toMillis("1d"));
+        assertThrows(IllegalArgumentException.class, () -> WindowDurations.toMillis("1w"));
+        assertThrows(IllegalArgumentException.class, () -> WindowDurations.toMillis("h"));
+        assertThrows(IllegalArgumentException.class, () -> WindowDurations.toMillis("0h"));
+    }
+}
@@ -0,0 +1,65 @@
+package org.iki.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of a 1M-entry watchlist for hits and misses.
+ * Run with {@code ./mvnw -Pbench test-compile exec:exec -Dbench.include=WatchlistBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WatchlistBenchmark {
+
+    private Watchlist list;
+    private String[] hits;
+    private String[] misses;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            entries.add("SANC-" + i);
+        }
+        Path table = Files.createTempFile("watchlist-bench", ".idx");
+        table.toFile().deleteOnExit();
+        list = Watchlist.build("bench", entries, table, 0.01);
+
+        hits = new String[1024];
+        misses = new String[1024];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = "SANC-" + (i * 977);
+            misses[i] = "ACC-" + i;
+        }
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return list.contains(hits[next++ & 1023]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return list.contains(misses[next++ & 1023]);
+    }
+}
@@ -0,0 +1,136 @@
+package org.iki.state;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchlistStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path listDir;
+    private WatchlistStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        listDir = Files.createDirectories(tempDir.resolve("lists"));
+        store = new WatchlistStore();
+        store.directory = listDir.toString();
+        store.indexDirectory = tempDir.resolve("index").toString();
+        store.falsePositiveRate = 0.01;
+    }
+
+    @Test
+    void loadsListsAndMatchesExactly() throws IOException {
+        Files.writeString(listDir.resolve("sanctions.txt"), "# comment\nACC-9\n\nACC-1\n  ACC-5  \nACC-1\n");
+        assertEquals(1, store.reload());
+
+        assertTrue(store.contains("sanctions", "ACC-1"));
+        assertTrue(store.contains("sanctions", "ACC-5"));
+        assertTrue(store.contains("sanctions", "ACC-9"));
+        assertFalse(store.contains("sanctions", "ACC-2"));
+        assertFalse(store.contains("sanctions", "ACC-"));
+        assertFalse(store.contains("sanctions", "ACC-10"));
+        assertEquals(3, store.getLists().get("sanctions").size());
+    }
+
+    @Test
+    void unknownListThrows() {
+        store.reload();
+        assertThrows(IllegalArgumentException.class, () -> store.contains("missing", "ACC-1"));
+    }
+
+    @Test
+    void missingDirectoryLoadsNothing() {
+        store.directory = tempDir.resolve("absent").toString();
+        assertEquals(0, store.reload());
+        assertTrue(store.getLists().isEmpty());
+    }
+
+    @Test
+    void unchangedFilesAreNotRebuilt() throws IOException {
+        Files.writeString(listDir.resolve("pep.txt"), "CIN-1\n");
+        store.reload();
+        Watchlist first = store.getLists().get("pep");
+
+        assertEquals(0, store.reload());
+        assertSame(first, store.getLists().get("pep"));
+    }
+
+    @Test
+    void failedReloadKeepsPreviousListsAndRetriesChangedFiles() throws IOException {
+        Path file = listDir.resolve("pep.txt");
+        Files.writeString(file, "CIN-1\n");
+        store.reload();
+        Watchlist first = store.getLists().get("pep");
+
+        Files.writeString(file, "CIN-2\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        // A directory named like a list cannot be read, failing the whole reload
+        Path unreadable = Files.createDirectory(listDir.resolve("broken.txt"));
+        assertEquals(0, store.reload());
+        assertSame(first, store.getLists().get("pep"));
+        // Tables built before the failure are deleted
+        try (var tables = Files.list(Path.of(store.indexDirectory))) {
+            assertEquals(List.of(first.tableFile()), tables.toList());
+        }
+
+        Files.delete(unreadable);
+        assertEquals(1, store.reload());
+        assertTrue(store.contains("pep", "CIN-2"));
+    }
+
+    @Test
+    void changedFileIsSwappedInAtomically() throws IOException {
+        Path file = listDir.resolve("pep.txt");
+        Files.writeString(file, "CIN-1\n");
+        store.reload();
+        Map<String, Watchlist> before = store.getLists();
+
+        Files.writeString(file, "CIN-2\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertEquals(1, store.reload());
+
+        assertTrue(before.get("pep").contains("CIN-1"));
+        assertFalse(store.contains("pep", "CIN-1"));
+        assertTrue(store.contains("pep", "CIN-2"));
+    }
+
+    @Test
+    void removedFileDropsList() throws IOException {
+        Path file = listDir.resolve("pep.txt");
+        Files.writeString(file, "CIN-1\n");
+        store.reload();
+
+        Files.delete(file);
+        assertEquals(1, store.reload());
+        assertFalse(store.getLists().containsKey("pep"));
+    }
+
+    @Test
+    void largeListHasNoFalseNegatives() throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            entries.add("SANC-" + i);
+        }
+        Watchlist list = Watchlist.build("large", entries, tempDir.resolve("large.idx"), 0.01);
+
+        for (String entry : entries) {
+            assertTrue(list.contains(entry), entry);
+        }
+        for (int i = 100_000; i < 110_000; i++) {
+            assertFalse(list.contains("SANC-" + i));
+        }
+    }
+}